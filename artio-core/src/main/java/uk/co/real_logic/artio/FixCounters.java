@@ -47,7 +47,17 @@ public class FixCounters implements AutoCloseable
         CURRENT_REPLAY_COUNT_TYPE_ID(10_008),
         NEGATIVE_TIMESTAMP_TYPE_ID(10_009),
         FAILED_ADMIN_TYPE_ID(10_010),
-        FAILED_ADMIN_REPLY_TYPE_ID(10_011);
+        FAILED_ADMIN_REPLY_TYPE_ID(10_011),
+        RECEIVE_BUFFER_POOL_BYTES_IN_USE_TYPE_ID(10_012),
+        RECEIVE_BUFFER_POOL_BYTES_FREE_TYPE_ID(10_013),
+        RECEIVER_BUSY_POLL_READS_TYPE_ID(10_014),
+        RECEIVER_BUSY_POLL_EMPTY_READS_TYPE_ID(10_015),
+        RECEIVER_SELECTED_READS_TYPE_ID(10_016),
+        RECEIVER_SELECTED_EMPTY_READS_TYPE_ID(10_017),
+        INDEX_CATCHUP_REMAINING_BYTES_TYPE_ID(10_018),
+        INDEX_CATCHUP_ETA_TYPE_ID(10_019),
+        REPLAY_CACHE_HITS_TYPE_ID(10_020),
+        REPLAY_CACHE_MISSES_TYPE_ID(10_021);
 
         final int id;
 
@@ -167,6 +177,66 @@ public class FixCounters implements AutoCloseable
                 "Invalid Library Attempts for " + address + " id = " + connectionId);
     }
 
+    public AtomicCounter receiveBufferPoolBytesInUse()
+    {
+        return newCounter(FixCountersId.RECEIVE_BUFFER_POOL_BYTES_IN_USE_TYPE_ID.id(),
+                "Receive buffer pool bytes in use");
+    }
+
+    public AtomicCounter receiveBufferPoolBytesFree()
+    {
+        return newCounter(FixCountersId.RECEIVE_BUFFER_POOL_BYTES_FREE_TYPE_ID.id(),
+                "Receive buffer pool bytes free");
+    }
+
+    public AtomicCounter receiverBusyPollReads()
+    {
+        return newCounter(FixCountersId.RECEIVER_BUSY_POLL_READS_TYPE_ID.id(),
+                "Receiver busy poll reads");
+    }
+
+    public AtomicCounter receiverBusyPollEmptyReads()
+    {
+        return newCounter(FixCountersId.RECEIVER_BUSY_POLL_EMPTY_READS_TYPE_ID.id(),
+                "Receiver busy poll empty reads");
+    }
+
+    public AtomicCounter receiverSelectedReads()
+    {
+        return newCounter(FixCountersId.RECEIVER_SELECTED_READS_TYPE_ID.id(),
+                "Receiver selector mode reads");
+    }
+
+    public AtomicCounter receiverSelectedEmptyReads()
+    {
+        return newCounter(FixCountersId.RECEIVER_SELECTED_EMPTY_READS_TYPE_ID.id(),
+                "Receiver selector mode empty reads");
+    }
+
+    public AtomicCounter indexCatchupRemainingBytes(final String indexerName)
+    {
+        return newCounter(FixCountersId.INDEX_CATCHUP_REMAINING_BYTES_TYPE_ID.id(),
+                "Index catchup remaining bytes: " + indexerName);
+    }
+
+    public AtomicCounter indexCatchupEstimatedRemainingTimeInMs(final String indexerName)
+    {
+        return newCounter(FixCountersId.INDEX_CATCHUP_ETA_TYPE_ID.id(),
+                "Index catchup estimated remaining ms: " + indexerName);
+    }
+
+    public AtomicCounter replayCacheHits()
+    {
+        return newCounter(FixCountersId.REPLAY_CACHE_HITS_TYPE_ID.id(),
+                "Replay cache hits");
+    }
+
+    public AtomicCounter replayCacheMisses()
+    {
+        return newCounter(FixCountersId.REPLAY_CACHE_MISSES_TYPE_ID.id(),
+                "Replay cache misses");
+    }
+
     public AtomicCounter sentMsgSeqNo(final long connectionId, final long sessionId)
     {
         return newCounter(
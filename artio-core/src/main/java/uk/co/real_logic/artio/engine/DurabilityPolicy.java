@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine;
+
+/**
+ * Determines when the engine's session and index files are synced to disk, see
+ * {@link EngineConfiguration#durabilityPolicy(DurabilityPolicy)}.
+ */
+public enum DurabilityPolicy
+{
+    /**
+     * Sync each file as soon as it has been written to.
+     */
+    PER_WRITE,
+
+    /**
+     * Sync all the files that have been written to since the last commit together once per commit interval.
+     * Checkpoints that replace one file with another are still synced before the files are swapped.
+     */
+    INTERVAL,
+
+    /**
+     * Leave it to the operating system to write back the files.
+     */
+    OS_MANAGED
+}
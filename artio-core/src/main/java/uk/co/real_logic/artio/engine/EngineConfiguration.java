@@ -46,18 +46,21 @@ import uk.co.real_logic.artio.messages.CancelOnDisconnectOption;
 import uk.co.real_logic.artio.messages.FixPProtocolType;
 import uk.co.real_logic.artio.messages.InitialAcceptedSessionOwner;
 import uk.co.real_logic.artio.session.CancelOnDisconnectTimeoutHandler;
+import uk.co.real_logic.artio.session.CompositeKey;
 import uk.co.real_logic.artio.session.ResendRequestController;
 import uk.co.real_logic.artio.session.SessionCustomisationStrategy;
 import uk.co.real_logic.artio.session.SessionIdStrategy;
 import uk.co.real_logic.artio.timing.HistogramHandler;
 import uk.co.real_logic.artio.validation.*;
 
+import javax.net.ssl.SSLContext;
 import java.io.File;
 import java.net.InetSocketAddress;
 import java.util.*;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static java.lang.Integer.getInteger;
 import static java.lang.System.getProperty;
@@ -99,6 +102,39 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
      */
     public static final String REPLAY_INDEX_RECORD_CAPACITY_PROP = "logging.index.records";
 
+    /**
+     * Property name for the number of sessions that the packed replay index can hold, 0 stores each session's replay
+     * index in its own files.
+     */
+    public static final String REPLAY_INDEX_PACKED_SESSION_CAPACITY_PROP = "logging.index.packed_session_capacity";
+
+    /**
+     * Property name for whether the replay index of new sessions is delta compressed
+     */
+    public static final String REPLAY_INDEX_COMPRESSED_PROP = "logging.index.compressed";
+
+    /**
+     * Property name for whether a time index is written for each session
+     */
+    public static final String SESSION_TIME_INDEX_ENABLED_PROP = "logging.index.session_time_index";
+
+    /**
+     * Property name for the number of records that the time index of each session holds
+     */
+    public static final String SESSION_TIME_INDEX_RECORD_CAPACITY_PROP =
+        "logging.index.session_time_index_record_capacity";
+
+    /**
+     * Property name for the capacity in bytes of the in memory cache of recently sent messages that replays are
+     * served from
+     */
+    public static final String REPLAY_CACHE_CAPACITY_PROP = "logging.replay_cache_capacity";
+
+    /**
+     * Property name for the directory of a local archive that replays read recording segment files from
+     */
+    public static final String ARCHIVE_SEGMENT_REPLAY_DIR_PROP = "logging.archive_segment_replay_dir";
+
     /**
      * Property name for enabling or disabling checksum calculation for index files
      */
@@ -141,6 +177,15 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
      * Property name for the size in bytes of the receiver end point's framing buffer.
      */
     public static final String RECEIVER_BUFFER_SIZE_PROP = "fix.core.receiver_buffer_size";
+    /**
+     * Property name for the size in bytes of the smallest framing buffer that a receiver end point holds.
+     */
+    public static final String RECEIVER_BUFFER_MIN_SIZE_PROP = "fix.core.receiver_buffer_min_size";
+    /**
+     * Property name for the free space threshold below which the receiver end point's framing buffer is compacted.
+     */
+    public static final String RECEIVER_BUFFER_COMPACTION_THRESHOLD_PROP =
+        "fix.core.receiver_buffer_compaction_threshold";
     /**
      * Property name for the size in bytes of the TCP socket's receive buffer.
      */
@@ -154,13 +199,51 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
      */
     public static final String SEQUENCE_NUMBER_INDEX_SIZE_PROP = "fix.core.sequence_number_cache_size";
     /**
-     * Property name for the size in bytes of the session id file
+     * Property name for the size in bytes of the journal of each sequence number cache file, 0 disables the journal
+     */
+    public static final String SEQUENCE_NUMBER_INDEX_JOURNAL_SIZE_PROP = "fix.core.sequence_number_journal_size";
+    /**
+     * Property name for whether the outbound indexer and the replayer run on threads of their own
+     */
+    public static final String PARALLEL_INDEXING_PROP = "fix.core.parallel_indexing";
+    /**
+     * Property name for the {@link DurabilityPolicy} of the engine's session and index files
+     */
+    public static final String DURABILITY_POLICY_PROP = "fix.core.durability_policy";
+    /**
+     * Property name for the interval in milliseconds between group commits of the engine's session and index files
+     */
+    public static final String PERSISTENCE_COMMIT_INTERVAL_IN_MS_PROP = "fix.core.persistence_commit_interval_in_ms";
+    /**
+     * Property name for the initial size in bytes of the session id file, the file is doubled in size whenever it runs
+     * out of space.
      */
     public static final String SESSION_ID_BUFFER_SIZE_PROP = "fix.core.session_id_file_size";
     /**
      * Property name for the maximum number of bytes to allow in the quarantine buffer before disconnection
      */
     public static final String SENDER_MAX_BYTES_IN_BUFFER_PROP = "fix.core.sender_max_bytes_in_buffer";
+    /**
+     * Property name for the maximum number of bytes of outbound messages coalesced into a single gathering write.
+     */
+    public static final String SENDER_MAX_BATCH_BYTES_PROP = "fix.core.sender_max_batch_bytes";
+    /**
+     * Property name for the maximum number of bytes buffered for a slow consumer, in memory and in its spill file,
+     * before disconnection.
+     */
+    public static final String SENDER_MAX_SPILL_BYTES_PROP = "fix.core.sender_max_spill_bytes";
+    /**
+     * Property name for the maximum number of TCP connections accepted per duty cycle of the framer.
+     */
+    public static final String MAX_ACCEPTS_PER_POLL_PROP = "fix.core.max_accepts_per_poll";
+    /**
+     * Property name for the maximum number of authenticated logons completed per duty cycle of the framer.
+     */
+    public static final String MAX_LOGONS_PER_POLL_PROP = "fix.core.max_logons_per_poll";
+    /**
+     * Property name for the maximum number of bytes that the replayer resends across all sessions per duty cycle.
+     */
+    public static final String REPLAY_BYTES_PER_POLL_PROP = "fix.core.replay_bytes_per_poll";
     /**
      * Property name for the timeout before a connection that hasn't sent a logon is disconnected
      */
@@ -173,6 +256,11 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     public static final String DEFAULT_LOG_FILE_DIR = "logs";
     public static final int DEFAULT_REPLAY_INDEX_RECORD_CAPACITY = 262144;
     public static final int DEFAULT_REPLAY_INDEX_SEGMENT_CAPACITY = 65536;
+    public static final int DEFAULT_REPLAY_INDEX_PACKED_SESSION_CAPACITY = 0;
+    public static final boolean DEFAULT_REPLAY_INDEX_COMPRESSED = false;
+    public static final boolean DEFAULT_SESSION_TIME_INDEX_ENABLED = false;
+    public static final int DEFAULT_SESSION_TIME_INDEX_RECORD_CAPACITY = 4096;
+    public static final int DEFAULT_REPLAY_CACHE_CAPACITY = 0;
     public static final int DEFAULT_LOGGER_CACHE_NUM_SETS = 8;
     public static final int DEFAULT_LOGGER_CACHE_SET_SIZE = 4;
 
@@ -180,11 +268,23 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     public static final int DEFAULT_REPLAY_FRAGMENT_LIMIT = 5;
     public static final int DEFAULT_INBOUND_BYTES_RECEIVED_LIMIT = 8 * 1024;
     public static final int DEFAULT_RECEIVER_BUFFER_SIZE = 16 * 1024;
+    public static final int DEFAULT_RECEIVER_BUFFER_MIN_SIZE = 0;
+    public static final int DEFAULT_RECEIVER_BUFFER_COMPACTION_THRESHOLD = 0;
     public static final int DEFAULT_RECEIVER_SOCKET_BUFFER_SIZE = 1024 * 1024;
     public static final int DEFAULT_SENDER_SOCKET_BUFFER_SIZE = 1024 * 1024;
     public static final int DEFAULT_SEQUENCE_NUMBER_INDEX_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_SEQUENCE_NUMBER_INDEX_JOURNAL_SIZE = 1024 * 1024;
+    public static final boolean DEFAULT_PARALLEL_INDEXING = false;
+    public static final DurabilityPolicy DEFAULT_DURABILITY_POLICY =
+        CommonConfiguration.FORCE_WRITES ? DurabilityPolicy.PER_WRITE : DurabilityPolicy.OS_MANAGED;
+    public static final long DEFAULT_PERSISTENCE_COMMIT_INTERVAL_IN_MS = 10;
     public static final int DEFAULT_SESSION_ID_BUFFER_SIZE = 4 * 1024 * 1024;
     public static final int DEFAULT_SENDER_MAX_BYTES_IN_BUFFER = 4 * 1024 * 1024;
+    public static final int DEFAULT_SENDER_MAX_BATCH_BYTES = 0;
+    public static final int DEFAULT_SENDER_MAX_SPILL_BYTES = 0;
+    public static final int DEFAULT_MAX_ACCEPTS_PER_POLL = 64;
+    public static final int DEFAULT_MAX_LOGONS_PER_POLL = 0;
+    public static final int DEFAULT_REPLAY_BYTES_PER_POLL = 0;
     public static final int DEFAULT_REPLAY_POSITION_BUFFER_SIZE = 4 * 1024;
     public static final int DEFAULT_NO_LOGON_DISCONNECT_TIMEOUT_IN_MS = (int)SECONDS.toMillis(5);
     public static final String DEFAULT_SESSION_ID_FILE = "session_id_buffer";
@@ -242,6 +342,15 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     private int replayIndexFileRecordCapacity = getInteger(
         REPLAY_INDEX_RECORD_CAPACITY_PROP, DEFAULT_REPLAY_INDEX_RECORD_CAPACITY);
     private int replayIndexSegmentRecordCapacity = DEFAULT_REPLAY_INDEX_SEGMENT_CAPACITY;
+    private int replayIndexPackedSessionCapacity = getInteger(
+        REPLAY_INDEX_PACKED_SESSION_CAPACITY_PROP, DEFAULT_REPLAY_INDEX_PACKED_SESSION_CAPACITY);
+    private boolean replayIndexCompressed = getBoolean(REPLAY_INDEX_COMPRESSED_PROP, DEFAULT_REPLAY_INDEX_COMPRESSED);
+    private boolean sessionTimeIndexEnabled = getBoolean(
+        SESSION_TIME_INDEX_ENABLED_PROP, DEFAULT_SESSION_TIME_INDEX_ENABLED);
+    private int sessionTimeIndexRecordCapacity = getInteger(
+        SESSION_TIME_INDEX_RECORD_CAPACITY_PROP, DEFAULT_SESSION_TIME_INDEX_RECORD_CAPACITY);
+    private int replayCacheCapacity = getInteger(REPLAY_CACHE_CAPACITY_PROP, DEFAULT_REPLAY_CACHE_CAPACITY);
+    private String archiveSegmentReplayDir = getProperty(ARCHIVE_SEGMENT_REPLAY_DIR_PROP);
     private String logFileDir = getProperty(LOG_FILE_DIR_PROP, DEFAULT_LOG_FILE_DIR);
     private int loggerCacheNumSets = DEFAULT_LOGGER_CACHE_NUM_SETS;
     private int loggerCacheSetSize = DEFAULT_LOGGER_CACHE_SET_SIZE;
@@ -270,16 +379,34 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         getInteger(INBOUND_BYTES_RECEIVED_LIMIT_PROP, DEFAULT_INBOUND_BYTES_RECEIVED_LIMIT);
     private int receiverBufferSize =
         getInteger(RECEIVER_BUFFER_SIZE_PROP, DEFAULT_RECEIVER_BUFFER_SIZE);
+    private int receiverBufferMinSize =
+        getInteger(RECEIVER_BUFFER_MIN_SIZE_PROP, DEFAULT_RECEIVER_BUFFER_MIN_SIZE);
+    private int receiverBufferCompactionThreshold =
+        getInteger(RECEIVER_BUFFER_COMPACTION_THRESHOLD_PROP, DEFAULT_RECEIVER_BUFFER_COMPACTION_THRESHOLD);
     private int receiverSocketBufferSize =
         getInteger(RECEIVER_SOCKET_BUFFER_SIZE_PROP, DEFAULT_RECEIVER_SOCKET_BUFFER_SIZE);
     private int senderSocketBufferSize =
         getInteger(SENDER_SOCKET_BUFFER_SIZE_PROP, DEFAULT_SENDER_SOCKET_BUFFER_SIZE);
     private final int sequenceNumberIndexSize =
         getInteger(SEQUENCE_NUMBER_INDEX_SIZE_PROP, DEFAULT_SEQUENCE_NUMBER_INDEX_SIZE);
+    private int sequenceNumberIndexJournalSize =
+        getInteger(SEQUENCE_NUMBER_INDEX_JOURNAL_SIZE_PROP, DEFAULT_SEQUENCE_NUMBER_INDEX_JOURNAL_SIZE);
+    private boolean parallelIndexing = getBoolean(PARALLEL_INDEXING_PROP, DEFAULT_PARALLEL_INDEXING);
+    private DurabilityPolicy durabilityPolicy =
+        DurabilityPolicy.valueOf(getProperty(DURABILITY_POLICY_PROP, DEFAULT_DURABILITY_POLICY.name()));
+    private long persistenceCommitIntervalInMs =
+        Long.getLong(PERSISTENCE_COMMIT_INTERVAL_IN_MS_PROP, DEFAULT_PERSISTENCE_COMMIT_INTERVAL_IN_MS);
     private final int sessionIdBufferSize =
         getInteger(SESSION_ID_BUFFER_SIZE_PROP, DEFAULT_SESSION_ID_BUFFER_SIZE);
     private int senderMaxBytesInBuffer =
         getInteger(SENDER_MAX_BYTES_IN_BUFFER_PROP, DEFAULT_SENDER_MAX_BYTES_IN_BUFFER);
+    private int senderMaxBatchBytes =
+        getInteger(SENDER_MAX_BATCH_BYTES_PROP, DEFAULT_SENDER_MAX_BATCH_BYTES);
+    private int senderMaxSpillBytes =
+        getInteger(SENDER_MAX_SPILL_BYTES_PROP, DEFAULT_SENDER_MAX_SPILL_BYTES);
+    private int maxAcceptsPerPoll = getInteger(MAX_ACCEPTS_PER_POLL_PROP, DEFAULT_MAX_ACCEPTS_PER_POLL);
+    private int maxLogonsPerPoll = getInteger(MAX_LOGONS_PER_POLL_PROP, DEFAULT_MAX_LOGONS_PER_POLL);
+    private int replayBytesPerPoll = getInteger(REPLAY_BYTES_PER_POLL_PROP, DEFAULT_REPLAY_BYTES_PER_POLL);
     private int noLogonDisconnectTimeoutInMs =
         getInteger(NO_LOGON_DISCONNECT_TIMEOUT_PROP, DEFAULT_NO_LOGON_DISCONNECT_TIMEOUT_IN_MS);
     private boolean indexChecksumEnabled = getBoolean(INDEX_CHECKSUM_ENABLED_PROP, DEFAULT_INDEX_CHECKSUM_ENABLED);
@@ -320,8 +447,13 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     private FixPProtocolType acceptorFixPProtocol = null;
     private CancelOnDisconnectTimeoutHandler cancelOnDisconnectTimeoutHandler = null;
     private FixPCancelOnDisconnectTimeoutHandler fixPCancelOnDisconnectTimeoutHandler = null;
+    private Predicate<CompositeKey> busyPollSessions = null;
+    private SSLContext acceptorSslContext = null;
+    private SSLContext initiatorSslContext = null;
+    private Predicate<InetSocketAddress> initiatorTlsAddresses = address -> true;
     private int throttleWindowInMs = NO_THROTTLE_WINDOW;
     private int throttleLimitOfMessages = NO_THROTTLE_WINDOW;
+    private final List<MessageTypeThrottle> messageTypeThrottles = new ArrayList<>();
     private long timeIndexReplayFlushIntervalInNs = DEFAULT_TIME_INDEX_FLUSH_INTERVAL_IN_NS;
     private CancelOnDisconnectOption cancelOnDisconnectOption = DO_NOT_CANCEL_ON_DISCONNECT_OR_LOGOUT;
     private int cancelOnDisconnectTimeoutWindowInMs = DEFAULT_CANCEL_ON_DISCONNECT_TIMEOUT_WINDOW_IN_MS;
@@ -410,6 +542,43 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets the minimum receiver buffer size. FIX receiver end points borrow their framing buffers from a pool that is
+     * shared by all connections. Each connection starts with a buffer of this size and doubles it, up to the
+     * {@link #receiverBufferSize(int)}, whenever a read fills it. The larger buffer is given back to the pool once all
+     * of the data in it has been framed, so idle connections only hold a buffer of this size.
+     *
+     * Set to 0, the default, in order to give every connection a buffer of the full receiver buffer size.
+     *
+     * @param receiverBufferMinSize the size in bytes of the smallest receiver buffer.
+     * @return this
+     * @see EngineConfiguration#RECEIVER_BUFFER_MIN_SIZE_PROP
+     */
+    public EngineConfiguration receiverBufferMinSize(final int receiverBufferMinSize)
+    {
+        this.receiverBufferMinSize = receiverBufferMinSize;
+        return this;
+    }
+
+    /**
+     * Sets the receiver buffer compaction threshold. By default, after framing the messages in its buffer, a receiver
+     * end point copies any partially received message back to the start of the buffer. When this threshold is set
+     * then the partial message is left in place and framed there once the rest of it has been read. The buffer is
+     * only compacted when the free space left at the end of it drops below the threshold.
+     *
+     * Larger thresholds compact more often, smaller thresholds leave less space for each read from the socket.
+     * Set to 0, the default, in order to compact the buffer on every poll.
+     *
+     * @param receiverBufferCompactionThreshold the free space in bytes below which the receiver buffer is compacted.
+     * @return this
+     * @see EngineConfiguration#RECEIVER_BUFFER_COMPACTION_THRESHOLD_PROP
+     */
+    public EngineConfiguration receiverBufferCompactionThreshold(final int receiverBufferCompactionThreshold)
+    {
+        this.receiverBufferCompactionThreshold = receiverBufferCompactionThreshold;
+        return this;
+    }
+
     /**
      * Sets the receiver socket buffer size.
      *
@@ -490,6 +659,127 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets the number of sessions that the replay index of each stream can hold when they're packed together into a
+     * few large files. By default each session's replay index is stored in its own header file and segment files,
+     * which means a lot of files and memory mappings when there are many sessions. When this is set the indices of
+     * all the sessions on a stream are stored in the segment sized blocks of a few large files instead, and the
+     * blocks of a session are reused by other sessions when its sequence numbers are reset.
+     *
+     * The capacity of an existing packed replay index can't be changed and the replay index isn't converted from one
+     * format to the other, so this should be set when the engine is first started with a log file directory.
+     *
+     * @param replayIndexPackedSessionCapacity the maximum number of sessions whose replay index can be stored at the
+     *                                         same time, or 0 to store each session in its own files.
+     * @return this
+     * @see EngineConfiguration#REPLAY_INDEX_PACKED_SESSION_CAPACITY_PROP
+     */
+    public EngineConfiguration replayIndexPackedSessionCapacity(final int replayIndexPackedSessionCapacity)
+    {
+        this.replayIndexPackedSessionCapacity = replayIndexPackedSessionCapacity;
+        return this;
+    }
+
+    /**
+     * Sets whether the replay index records of new sessions are delta compressed. Consecutive records of a session
+     * usually share their sequence index and recording id and have small differences in position and sequence
+     * number, so when enabled records are stored in fixed length blocks of a full record followed by the varint
+     * encoded differences of the following records. This lets a replay index of the same
+     * {@link #replayIndexFileRecordCapacity(int)} hold several times as much history before it wraps around.
+     *
+     * Each session's index keeps the format that it was created with until its sequence numbers are reset, so this
+     * can be changed for an existing log file directory. The replay index segments must hold at least 8 records in
+     * order for records to be compressed.
+     *
+     * @param replayIndexCompressed true to compress the replay index of new sessions.
+     * @return this
+     * @see EngineConfiguration#REPLAY_INDEX_COMPRESSED_PROP
+     */
+    public EngineConfiguration replayIndexCompressed(final boolean replayIndexCompressed)
+    {
+        this.replayIndexCompressed = replayIndexCompressed;
+        return this;
+    }
+
+    /**
+     * Sets whether a time index is written for each session alongside its replay index. The time index configured by
+     * {@link #timeIndexReplayFlushIntervalInNs(long)} only holds one entry per recording per flush interval, so a
+     * {@link uk.co.real_logic.artio.engine.logger.FixArchiveScanner} query can only be narrowed down to the
+     * positions that were recorded around its begin and end times. When this is enabled each indexed message of a
+     * session also gets an entry of its timestamp, position, sequence number and sequence index in that session's
+     * time index, so a query that filters by
+     * {@link uk.co.real_logic.artio.engine.logger.FixMessagePredicates#sessionOf(long)} and a time range only scans
+     * the parts of the archive that hold that session's messages from that time range.
+     *
+     * The time indices of every session on a stream are stored in a single memory mapped file. Each session's time
+     * index is a ring of {@link #sessionTimeIndexRecordCapacity(int)} entries, so it only covers the session's most
+     * recent messages, and it's discarded when the session's sequence numbers are reset. Queries that aren't covered
+     * by a session's time index fall back to the coarser time index.
+     *
+     * @param sessionTimeIndexEnabled true to write a time index for each session.
+     * @return this
+     * @see EngineConfiguration#SESSION_TIME_INDEX_ENABLED_PROP
+     */
+    public EngineConfiguration sessionTimeIndexEnabled(final boolean sessionTimeIndexEnabled)
+    {
+        this.sessionTimeIndexEnabled = sessionTimeIndexEnabled;
+        return this;
+    }
+
+    /**
+     * Sets the number of entries that the time index of each session holds, see
+     * {@link #sessionTimeIndexEnabled(boolean)}. Once a session's time index is full its oldest entries are
+     * overwritten. The time indices of a stream are stored in a single file that can't be larger than 2GB, so the
+     * number of sessions that can be indexed is limited by this capacity. The capacity of an existing time index
+     * can't be changed.
+     *
+     * @param sessionTimeIndexRecordCapacity the number of entries in each session's time index, must be a power of
+     *                                       two.
+     * @return this
+     * @see EngineConfiguration#SESSION_TIME_INDEX_RECORD_CAPACITY_PROP
+     */
+    public EngineConfiguration sessionTimeIndexRecordCapacity(final int sessionTimeIndexRecordCapacity)
+    {
+        this.sessionTimeIndexRecordCapacity = sessionTimeIndexRecordCapacity;
+        return this;
+    }
+
+    /**
+     * Sets the capacity in bytes of an in memory cache of the most recently sent messages. Resend requests for
+     * messages that are still within the cache are replayed from memory rather than from the archive, once a
+     * message has been evicted from the cache it's replayed from the archive as normal. The cache is disabled by
+     * default, a capacity of 0 disables it. The capacity must be a power of two.
+     *
+     * The number of replays served from the cache and from the archive are reported by the replay cache hits and
+     * misses counters.
+     *
+     * @param replayCacheCapacity the capacity in bytes of the replay cache, or 0 to disable it.
+     * @return this
+     * @see EngineConfiguration#REPLAY_CACHE_CAPACITY_PROP
+     */
+    public EngineConfiguration replayCacheCapacity(final int replayCacheCapacity)
+    {
+        this.replayCacheCapacity = replayCacheCapacity;
+        return this;
+    }
+
+    /**
+     * Sets the directory of the Aeron Archive that records the engine's streams, when the archive runs on the same
+     * host as the engine. Replays then read messages straight from the archive's recording segment files rather than
+     * asking the archive to replay them over a publication, which reduces the time before the first message is
+     * resent. Ranges whose segment files aren't in the directory, for example because they have been detached, are
+     * still replayed by the archive. Not set by default, which means that every replay goes through the archive.
+     *
+     * @param archiveSegmentReplayDir the archive directory, or null to replay everything through the archive.
+     * @return this
+     * @see EngineConfiguration#ARCHIVE_SEGMENT_REPLAY_DIR_PROP
+     */
+    public EngineConfiguration archiveSegmentReplayDir(final String archiveSegmentReplayDir)
+    {
+        this.archiveSegmentReplayDir = archiveSegmentReplayDir;
+        return this;
+    }
+
     /**
      * Convert the number of records in a replay index file to a file size. Note: because replay index file sizes must
      * be a power of two this method can return a file size greater than the requested number of records but never less.
@@ -649,6 +939,110 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets the maximum number of bytes of outbound messages that are coalesced into a single gathering write. By
+     * default each outbound message is written to its TCP connection as soon as it is polled from the library
+     * subscription. When this is set then messages for the same connection are buffered and written together at the
+     * end of each poll, or sooner if the batch would exceed this many bytes.
+     *
+     * A batch never outlives the poll that filled it, so the extra latency is capped by
+     * {@link #outboundLibraryFragmentLimit(int)}. Replayed messages are never batched. Batching is disabled when
+     * reproduction mode is enabled. Set to 0, the default, in order to disable batching.
+     *
+     * @param senderMaxBatchBytes the maximum number of bytes written in a single batch.
+     * @return this
+     * @see EngineConfiguration#SENDER_MAX_BATCH_BYTES_PROP
+     */
+    public EngineConfiguration senderMaxBatchBytes(final int senderMaxBatchBytes)
+    {
+        this.senderMaxBatchBytes = senderMaxBatchBytes;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes that are buffered for a slow consumer before it is disconnected, when spilling
+     * to disk is enabled. Once more than {@link #senderMaxBytesInBuffer(int)} bytes of non-replay messages are
+     * buffered for a connection they are moved into a memory mapped spill file under the {@link #logFileDir()} and
+     * are written to the connection, in order, from that file as it catches up. The file is deleted once it has been
+     * drained. This lets slow consumers, eg drop copy sessions, ride out a burst without each of them holding a large
+     * amount of memory. The bytesInBuffer counter for the connection includes the spilled bytes.
+     *
+     * Set to 0, the default, in order to disable spilling, in which case a slow consumer is disconnected once it has
+     * more than {@link #senderMaxBytesInBuffer(int)} bytes buffered. Otherwise it must be at least the value of
+     * {@link #senderMaxBytesInBuffer(int)}.
+     *
+     * @param senderMaxSpillBytes the maximum number of bytes buffered for a slow consumer when spilling to disk.
+     * @return this
+     * @see EngineConfiguration#SENDER_MAX_SPILL_BYTES_PROP
+     */
+    public EngineConfiguration senderMaxSpillBytes(final int senderMaxSpillBytes)
+    {
+        this.senderMaxSpillBytes = senderMaxSpillBytes;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of TCP connections that the framer accepts in a single duty cycle. Further pending
+     * connections stay in the listen backlog until the next duty cycle, so that a reconnect storm can't starve the
+     * established sessions that are serviced by the same thread.
+     *
+     * @param maxAcceptsPerPoll the maximum number of TCP connections accepted per duty cycle.
+     * @return this
+     * @see EngineConfiguration#MAX_ACCEPTS_PER_POLL_PROP
+     */
+    public EngineConfiguration maxAcceptsPerPoll(final int maxAcceptsPerPoll)
+    {
+        this.maxAcceptsPerPoll = maxAcceptsPerPoll;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of authenticated logons that the framer completes in a single duty cycle. Completing a
+     * logon allocates or looks up the session id, reads the sequence number indices and hands the session over to its
+     * owner. Logons that have been accepted by the authentication strategy beyond this limit are completed on
+     * subsequent duty cycles.
+     *
+     * Since authentication strategies can already complete asynchronously this bounds the logon work that remains on
+     * the framer thread during a reconnect storm. Set to 0, the default, in order to complete all authenticated logons
+     * as soon as possible.
+     *
+     * @param maxLogonsPerPoll the maximum number of authenticated logons completed per duty cycle.
+     * @return this
+     * @see EngineConfiguration#MAX_LOGONS_PER_POLL_PROP
+     */
+    public EngineConfiguration maxLogonsPerPoll(final int maxLogonsPerPoll)
+    {
+        this.maxLogonsPerPoll = maxLogonsPerPoll;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes of messages that the replayer resends in a single duty cycle, shared between
+     * all of the sessions that are being replayed to. Once the budget has been used up the remaining replays carry
+     * on in the next duty cycle.
+     *
+     * When a budget is set the replays with the fewest recorded bytes left to replay are serviced first, so the short
+     * gap fills of most sessions aren't held up behind a session that asked for a large replay. A replay that
+     * misses out on a duty cycle is treated as half as large on the next one, so large replays still make progress
+     * during a reconnect storm. A single message is never split, so a duty cycle can exceed the budget by up to one
+     * message. Messages that are back-pressured don't use up the budget. Set to 0, the default, in order to replay to
+     * every session as fast as possible on each duty cycle.
+     *
+     * The time between a resend request arriving and its replay first being serviced is recorded by the replay queue
+     * wait timer when {@link uk.co.real_logic.artio.CommonConfiguration#TIME_MESSAGES} is enabled. This is a single
+     * histogram covering the replays of all sessions. The wait of each individual replay is also logged along with its
+     * session id when the {@link uk.co.real_logic.artio.LogTag#REPLAY} log tag is enabled.
+     *
+     * @param replayBytesPerPoll the maximum number of bytes replayed per duty cycle, or 0 for no limit.
+     * @return this
+     * @see EngineConfiguration#REPLAY_BYTES_PER_POLL_PROP
+     */
+    public EngineConfiguration replayBytesPerPoll(final int replayBytesPerPoll)
+    {
+        this.replayBytesPerPoll = replayBytesPerPoll;
+        return this;
+    }
+
     /**
      * Set the timeout in milliseconds for TCP connections which don't send a logon message.
      *
@@ -913,6 +1307,79 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets the size of the journal that the sequence number indices append the records that have changed to every
+     * {@link #indexFileStateFlushTimeoutInMs(long)}. Without a journal the whole of each sequence number index file
+     * is rewritten every time it's flushed, with one the index file is only rewritten when the journal is full, when
+     * the Aeron term rolls over or when the engine is closed. Any journaled changes are replayed into the index file
+     * when the engine is started.
+     *
+     * @param sequenceNumberIndexJournalSize the size of each journal file in bytes, or 0 to disable the journal.
+     * @return this
+     * @see EngineConfiguration#SEQUENCE_NUMBER_INDEX_JOURNAL_SIZE_PROP
+     */
+    public EngineConfiguration sequenceNumberIndexJournalSize(final int sequenceNumberIndexJournalSize)
+    {
+        this.sequenceNumberIndexJournalSize = sequenceNumberIndexJournalSize;
+        return this;
+    }
+
+    /**
+     * Sets whether the archiving work is split across threads. By default the inbound indexer, the outbound indexer
+     * and the replayer all share the single archiving thread that the {@link EngineScheduler} runs the indexing agent
+     * on. When enabled the inbound indexer stays on that thread and the outbound indexer and the replayer each get a
+     * thread of their own, created using the {@link #threadFactory(ThreadFactory)} and idling with a
+     * backoff idle strategy, so that a busy stream or a long replay doesn't hold up indexing of the other stream.
+     * <p>
+     * Each stream's replay index and sequence number index stay on the same thread as the replay index reads the
+     * sequence number index whilst indexing a message. Closing the engine still waits for each indexer to reach its
+     * completion position. This isn't intended for use with the {@link LowResourceEngineScheduler}.
+     * <p>
+     * When enabled the indices of the outbound stream are also caught up with its recordings on a separate thread at
+     * startup, in parallel with those of the inbound stream. That thread connects an archive client of its own.
+     *
+     * @param parallelIndexing true to run the outbound indexer and the replayer on threads of their own.
+     * @return this
+     * @see EngineConfiguration#PARALLEL_INDEXING_PROP
+     */
+    public EngineConfiguration parallelIndexing(final boolean parallelIndexing)
+    {
+        this.parallelIndexing = parallelIndexing;
+        return this;
+    }
+
+    /**
+     * Sets when the session id files and the sequence number index files, including their journals and metadata, are
+     * synced to disk. With {@link DurabilityPolicy#INTERVAL} the files written to within each
+     * {@link #persistenceCommitIntervalInMs(long)} are synced together by the monitoring agent, rather than each
+     * writer syncing its own file as it goes, and the duration of each commit is recorded by the "Persistence" timer.
+     * <p>
+     * Defaults to {@link DurabilityPolicy#PER_WRITE} if {@link CommonConfiguration#FORCE_WRITES} is enabled and
+     * {@link DurabilityPolicy#OS_MANAGED} otherwise.
+     *
+     * @param durabilityPolicy the policy that decides when files are synced.
+     * @return this
+     * @see EngineConfiguration#DURABILITY_POLICY_PROP
+     */
+    public EngineConfiguration durabilityPolicy(final DurabilityPolicy durabilityPolicy)
+    {
+        this.durabilityPolicy = durabilityPolicy;
+        return this;
+    }
+
+    /**
+     * Sets the interval between group commits when using the {@link DurabilityPolicy#INTERVAL} durability policy.
+     *
+     * @param persistenceCommitIntervalInMs the interval between group commits in milliseconds.
+     * @return this
+     * @see EngineConfiguration#PERSISTENCE_COMMIT_INTERVAL_IN_MS_PROP
+     */
+    public EngineConfiguration persistenceCommitIntervalInMs(final long persistenceCommitIntervalInMs)
+    {
+        this.persistenceCommitIntervalInMs = persistenceCommitIntervalInMs;
+        return this;
+    }
+
     /**
      * Specify a single acceptor FIX Dictionary. If an override for a given FIX version is specified using
      * {@link #overrideAcceptorFixDictionary(Class)} then this FIX Dictionary will be used as a catch-all for any
@@ -1012,11 +1479,15 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
     /**
      * Enables Artio's message throttle. If a session starts to send more messages than the specified throttle limit
      * then Artio will drop those messages as efficiently as possible and reply to the messages with a business reject.
-     * The time window is applied as a rolling manner. This can be overriden on a per session basis at runtime using
-     * {@link uk.co.real_logic.artio.session.Session#throttleMessagesAt(int, int)}.
+     * The throttle is a token bucket: it allows a burst of up to throttleLimitOfMessages messages and refills at a rate
+     * of throttleLimitOfMessages per throttleWindowInMs. The limit is a rate rather than a ceiling for every time
+     * window: a session that sends a full burst and then keeps sending at the refill rate can have up to
+     * 2 * throttleLimitOfMessages - 1 messages accepted within a single window. This can be overriden on a per session
+     * basis at runtime using {@link uk.co.real_logic.artio.session.Session#throttleMessagesAt(int, int)}.
      *
      * @param throttleWindowInMs the time window to apply the throttle over.
-     * @param throttleLimitOfMessages the maximum number of messages that can be received within the time window.
+     * @param throttleLimitOfMessages the number of messages per time window that are accepted at a sustained rate,
+     *                                which is also the largest burst of messages that is accepted.
      * @throws IllegalArgumentException if either parameter is &lt; 1.
      * @return this
      */
@@ -1029,6 +1500,31 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Enables Artio's message throttle for a single message type, for example to give NewOrderSingle messages a lower
+     * limit than OrderCancelRequest messages. Messages of this type are only counted against this throttle and not the
+     * throttle configured by {@link #enableMessageThrottle(int, int)}. This can be overriden on a per session basis at
+     * runtime using {@link uk.co.real_logic.artio.session.Session#throttleMessagesAt(String, int, int)}. The limit is
+     * applied in the same way as the limit of {@link #enableMessageThrottle(int, int)}.
+     *
+     * @param messageType the value of the MsgType field of the messages to throttle.
+     * @param throttleWindowInMs the time window to apply the throttle over.
+     * @param throttleLimitOfMessages the number of messages per time window that are accepted at a sustained rate,
+     *                                which is also the largest burst of messages that is accepted.
+     * @throws IllegalArgumentException if either parameter is &lt; 1.
+     * @return this
+     */
+    public EngineConfiguration enableMessageThrottle(
+        final String messageType, final int throttleWindowInMs, final int throttleLimitOfMessages)
+    {
+        Objects.requireNonNull(messageType, "messageType");
+        validateMessageThrottleOptions(throttleWindowInMs, throttleLimitOfMessages);
+
+        messageTypeThrottles.removeIf(throttle -> throttle.messageTypeAsString().equals(messageType));
+        messageTypeThrottles.add(new MessageTypeThrottle(messageType, throttleWindowInMs, throttleLimitOfMessages));
+        return this;
+    }
+
     public static void validateMessageThrottleOptions(final int throttleWindowInMs, final int throttleLimitOfMessages)
     {
         if (throttleWindowInMs < 1)
@@ -1144,6 +1640,77 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return this;
     }
 
+    /**
+     * Sets a predicate that selects the FIX sessions whose connections are busy polled by the framer.
+     *
+     * Normally the framer only reads from a connection once the selector reports that it has data to read. A busy
+     * polled connection is instead read on every duty cycle of the framer, which removes the selector from the read
+     * path of latency sensitive sessions at the cost of additional system calls when no data is available. The
+     * predicate is evaluated once the session key of a connection is known: when an initiator connection is setup or
+     * once an acceptor connection has been authenticated. The <code>receiverBusyPollReads</code>,
+     * <code>receiverBusyPollEmptyReads</code>, <code>receiverSelectedReads</code> and
+     * <code>receiverSelectedEmptyReads</code> counters can be used to monitor the cost of this. When there are few
+     * enough connections for the framer to read all of them on every duty cycle without the selector, those reads
+     * are also counted as busy poll reads.
+     *
+     * This should only be used for a small number of sessions, and is most useful when the framer thread uses a
+     * busy spinning idle strategy.
+     *
+     * @param busyPollSessions the predicate that selects busy polled sessions, or null to busy poll no sessions.
+     * @return this
+     */
+    public EngineConfiguration busyPollSessions(final Predicate<CompositeKey> busyPollSessions)
+    {
+        this.busyPollSessions = busyPollSessions;
+        return this;
+    }
+
+    /**
+     * Sets the SSLContext used to terminate TLS within the engine for connections that are accepted on the
+     * {@link #bindTo(String, int)} address. When this is set every accepted connection is expected to start with a
+     * TLS handshake. The default SSLParameters of the context are used.
+     *
+     * TLS connections are busy polled by the framer, since decrypted data can be held within the engine where the
+     * selector can't see it. Handshakes, including their delegated tasks, run on the framer thread. This only applies
+     * to the default {@link #channelSupplierFactory(Function)}.
+     *
+     * @param acceptorSslContext the SSLContext for accepted connections, or null to accept plain TCP connections.
+     * @return this
+     */
+    public EngineConfiguration acceptorSslContext(final SSLContext acceptorSslContext)
+    {
+        this.acceptorSslContext = acceptorSslContext;
+        return this;
+    }
+
+    /**
+     * Sets the SSLContext used to terminate TLS within the engine for initiated connections. Which initiated
+     * connections use TLS is controlled by {@link #initiatorTlsAddresses(Predicate)}. See
+     * {@link #acceptorSslContext(SSLContext)} for how TLS connections are handled.
+     *
+     * @param initiatorSslContext the SSLContext for initiated connections, or null to initiate plain TCP connections.
+     * @return this
+     */
+    public EngineConfiguration initiatorSslContext(final SSLContext initiatorSslContext)
+    {
+        this.initiatorSslContext = initiatorSslContext;
+        return this;
+    }
+
+    /**
+     * Sets a predicate that selects the addresses of initiated connections that use TLS, if an
+     * {@link #initiatorSslContext(SSLContext)} has been set. It is tested with the host and port that the connection is
+     * made to. By default all initiated connections use TLS.
+     *
+     * @param initiatorTlsAddresses the predicate that selects the addresses of initiated connections that use TLS.
+     * @return this
+     */
+    public EngineConfiguration initiatorTlsAddresses(final Predicate<InetSocketAddress> initiatorTlsAddresses)
+    {
+        this.initiatorTlsAddresses = initiatorTlsAddresses;
+        return this;
+    }
+
     /**
      * Set the stream id from an admin API to a FIX Engine.
      *
@@ -1678,6 +2245,46 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return fixPCancelOnDisconnectTimeoutHandler;
     }
 
+    /**
+     * See {@link #busyPollSessions(Predicate)} for details.
+     *
+     * @return the predicate that selects busy polled sessions, or null if no sessions are busy polled.
+     */
+    public Predicate<CompositeKey> busyPollSessions()
+    {
+        return busyPollSessions;
+    }
+
+    /**
+     * See {@link #acceptorSslContext(SSLContext)} for details.
+     *
+     * @return the SSLContext for accepted connections, or null if they are plain TCP connections.
+     */
+    public SSLContext acceptorSslContext()
+    {
+        return acceptorSslContext;
+    }
+
+    /**
+     * See {@link #initiatorSslContext(SSLContext)} for details.
+     *
+     * @return the SSLContext for initiated connections, or null if they are plain TCP connections.
+     */
+    public SSLContext initiatorSslContext()
+    {
+        return initiatorSslContext;
+    }
+
+    /**
+     * See {@link #initiatorTlsAddresses(Predicate)} for details.
+     *
+     * @return the predicate that selects the addresses of initiated connections that use TLS.
+     */
+    public Predicate<InetSocketAddress> initiatorTlsAddresses()
+    {
+        return initiatorTlsAddresses;
+    }
+
     /**
      * See {@link #receiverBufferSize(int)} for details.
      *
@@ -1688,6 +2295,26 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return receiverBufferSize;
     }
 
+    /**
+     * See {@link #receiverBufferMinSize(int)} for details.
+     *
+     * @return the size in bytes of the smallest receiver buffer.
+     */
+    public int receiverBufferMinSize()
+    {
+        return receiverBufferMinSize == 0 ? receiverBufferSize : receiverBufferMinSize;
+    }
+
+    /**
+     * See {@link #receiverBufferCompactionThreshold(int)} for details.
+     *
+     * @return the receiver buffer compaction threshold
+     */
+    public int receiverBufferCompactionThreshold()
+    {
+        return receiverBufferCompactionThreshold;
+    }
+
     /**
      * See {@link #receiverSocketBufferSize(int)} for details.
      *
@@ -1733,6 +2360,66 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return replayIndexSegmentRecordCapacity;
     }
 
+    /**
+     * See {@link #replayIndexPackedSessionCapacity(int)} for details.
+     *
+     * @return the number of sessions that the packed replay index can hold, or 0 if it isn't used.
+     */
+    public int replayIndexPackedSessionCapacity()
+    {
+        return replayIndexPackedSessionCapacity;
+    }
+
+    /**
+     * See {@link #replayIndexCompressed(boolean)} for details.
+     *
+     * @return true if the replay index records of new sessions are delta compressed.
+     */
+    public boolean replayIndexCompressed()
+    {
+        return replayIndexCompressed;
+    }
+
+    /**
+     * See {@link #sessionTimeIndexEnabled(boolean)} for details.
+     *
+     * @return true if a time index is written for each session.
+     */
+    public boolean sessionTimeIndexEnabled()
+    {
+        return sessionTimeIndexEnabled;
+    }
+
+    /**
+     * See {@link #sessionTimeIndexRecordCapacity(int)} for details.
+     *
+     * @return the number of entries in each session's time index.
+     */
+    public int sessionTimeIndexRecordCapacity()
+    {
+        return sessionTimeIndexRecordCapacity;
+    }
+
+    /**
+     * See {@link #replayCacheCapacity(int)} for details.
+     *
+     * @return the capacity in bytes of the replay cache, or 0 if it's disabled.
+     */
+    public int replayCacheCapacity()
+    {
+        return replayCacheCapacity;
+    }
+
+    /**
+     * See {@link #archiveSegmentReplayDir(String)} for details.
+     *
+     * @return the directory of the archive that replays read segment files from, or null if not set.
+     */
+    public String archiveSegmentReplayDir()
+    {
+        return archiveSegmentReplayDir;
+    }
+
     public int loggerCacheSetSize()
     {
         return loggerCacheSetSize;
@@ -1862,6 +2549,56 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return senderMaxBytesInBuffer;
     }
 
+    /**
+     * See {@link #senderMaxBatchBytes(int)} for details.
+     *
+     * @return the maximum number of bytes written in a single batch.
+     */
+    public int senderMaxBatchBytes()
+    {
+        return senderMaxBatchBytes;
+    }
+
+    /**
+     * See {@link #senderMaxSpillBytes(int)} for details.
+     *
+     * @return the maximum number of bytes buffered for a slow consumer when spilling to disk.
+     */
+    public int senderMaxSpillBytes()
+    {
+        return senderMaxSpillBytes;
+    }
+
+    /**
+     * See {@link #maxAcceptsPerPoll(int)} for details.
+     *
+     * @return the maximum number of TCP connections accepted per duty cycle.
+     */
+    public int maxAcceptsPerPoll()
+    {
+        return maxAcceptsPerPoll;
+    }
+
+    /**
+     * See {@link #maxLogonsPerPoll(int)} for details.
+     *
+     * @return the maximum number of authenticated logons completed per duty cycle.
+     */
+    public int maxLogonsPerPoll()
+    {
+        return maxLogonsPerPoll;
+    }
+
+    /**
+     * See {@link #replayBytesPerPoll(int)} for details.
+     *
+     * @return the maximum number of bytes replayed per duty cycle, or 0 for no limit.
+     */
+    public int replayBytesPerPoll()
+    {
+        return replayBytesPerPoll;
+    }
+
     public int noLogonDisconnectTimeoutInMs()
     {
         return noLogonDisconnectTimeoutInMs;
@@ -1912,6 +2649,46 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return indexFileStateFlushTimeoutInMs;
     }
 
+    /**
+     * See {@link #sequenceNumberIndexJournalSize(int)} for details.
+     *
+     * @return the size of each sequence number index journal file in bytes, or 0 if they aren't used.
+     */
+    public int sequenceNumberIndexJournalSize()
+    {
+        return sequenceNumberIndexJournalSize;
+    }
+
+    /**
+     * See {@link #parallelIndexing(boolean)} for details.
+     *
+     * @return true if the outbound indexer and the replayer run on threads of their own.
+     */
+    public boolean parallelIndexing()
+    {
+        return parallelIndexing;
+    }
+
+    /**
+     * See {@link #durabilityPolicy(DurabilityPolicy)} for details.
+     *
+     * @return the policy that decides when files are synced.
+     */
+    public DurabilityPolicy durabilityPolicy()
+    {
+        return durabilityPolicy;
+    }
+
+    /**
+     * See {@link #persistenceCommitIntervalInMs(long)} for details.
+     *
+     * @return the interval between group commits in milliseconds.
+     */
+    public long persistenceCommitIntervalInMs()
+    {
+        return persistenceCommitIntervalInMs;
+    }
+
     public FixDictionary acceptorfixDictionary()
     {
         return acceptorfixDictionary;
@@ -2037,6 +2814,16 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
         return throttleLimitOfMessages;
     }
 
+    /**
+     * See {@link #enableMessageThrottle(String, int, int)} for details.
+     *
+     * @return the throttles configured for specific message types.
+     */
+    public List<MessageTypeThrottle> messageTypeThrottles()
+    {
+        return messageTypeThrottles;
+    }
+
     public long timeIndexReplayFlushIntervalInNs()
     {
         return timeIndexReplayFlushIntervalInNs;
@@ -2126,6 +2913,66 @@ public final class EngineConfiguration extends CommonConfiguration implements Au
                 sessionBufferSize()));
         }
 
+        if (senderMaxBatchBytes() < 0)
+        {
+            throw new IllegalArgumentException(String.format(
+                "senderMaxBatchBytes(%d) must not be negative", senderMaxBatchBytes()));
+        }
+
+        if (senderMaxSpillBytes() != 0 && senderMaxSpillBytes() < senderMaxBytesInBuffer())
+        {
+            throw new IllegalArgumentException(String.format(
+                "senderMaxSpillBytes(%d) must be 0 or at least senderMaxBytesInBuffer(%d)",
+                senderMaxSpillBytes(),
+                senderMaxBytesInBuffer()));
+        }
+
+        if (replayIndexPackedSessionCapacity() < 0)
+        {
+            throw new IllegalArgumentException(String.format(
+                "replayIndexPackedSessionCapacity(%d) must not be negative", replayIndexPackedSessionCapacity()));
+        }
+
+        if (sequenceNumberIndexJournalSize() < 0)
+        {
+            throw new IllegalArgumentException(String.format(
+                "sequenceNumberIndexJournalSize(%d) must not be negative", sequenceNumberIndexJournalSize()));
+        }
+
+        if (maxAcceptsPerPoll() <= 0)
+        {
+            throw new IllegalArgumentException(String.format(
+                "maxAcceptsPerPoll(%d) must be positive", maxAcceptsPerPoll()));
+        }
+
+        if (maxLogonsPerPoll() < 0)
+        {
+            throw new IllegalArgumentException(String.format(
+                "maxLogonsPerPoll(%d) must not be negative", maxLogonsPerPoll()));
+        }
+
+        if (replayBytesPerPoll() < 0)
+        {
+            throw new IllegalArgumentException(String.format(
+                "replayBytesPerPoll(%d) must not be negative", replayBytesPerPoll()));
+        }
+
+        if (receiverBufferMinSize() < 0 || receiverBufferMinSize() > receiverBufferSize())
+        {
+            throw new IllegalArgumentException(String.format(
+                "receiverBufferMinSize(%d) must be between 0 and receiverBufferSize(%d)",
+                receiverBufferMinSize(),
+                receiverBufferSize()));
+        }
+
+        if (receiverBufferCompactionThreshold() < 0 || receiverBufferCompactionThreshold() > receiverBufferSize())
+        {
+            throw new IllegalArgumentException(String.format(
+                "receiverBufferCompactionThreshold(%d) must be between 0 and receiverBufferSize(%d)",
+                receiverBufferCompactionThreshold(),
+                receiverBufferSize()));
+        }
+
         if (acceptsFixP() && !logAllMessages())
         {
             throw new IllegalArgumentException("FIXP acceptor is not supported without logging messages");
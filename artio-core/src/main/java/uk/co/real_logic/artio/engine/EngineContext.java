@@ -22,8 +22,10 @@ import io.aeron.UnavailableImageHandler;
 import io.aeron.archive.client.AeronArchive;
 import io.aeron.logbuffer.BufferClaim;
 import org.agrona.ErrorHandler;
+import org.agrona.LangUtil;
 import org.agrona.collections.Long2LongHashMap;
 import org.agrona.concurrent.*;
+import uk.co.real_logic.artio.CommonConfiguration;
 import uk.co.real_logic.artio.FixCounters;
 import uk.co.real_logic.artio.Reply;
 import uk.co.real_logic.artio.StreamInformation;
@@ -35,9 +37,13 @@ import uk.co.real_logic.artio.fields.EpochFractionFormat;
 import uk.co.real_logic.artio.messages.FixPProtocolType;
 import uk.co.real_logic.artio.protocol.GatewayPublication;
 import uk.co.real_logic.artio.protocol.Streams;
+import uk.co.real_logic.artio.timing.Timer;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import static uk.co.real_logic.artio.dictionary.generation.Exceptions.suppressingClose;
 import static uk.co.real_logic.artio.engine.SessionInfo.UNK_SESSION;
@@ -59,6 +65,8 @@ public class EngineContext implements AutoCloseable
     private final ReplayerCommandQueue replayerCommandQueue;
     private final SenderSequenceNumbers senderSequenceNumbers;
     private final AeronArchive aeronArchive;
+    private final PersistenceScheduler persistenceScheduler;
+    private final Timer replayQueueWaitTimer;
     private final RecordingCoordinator recordingCoordinator;
     private final ExclusivePublication replayPublication;
     private final SequenceNumberIndexWriter sentSequenceNumberIndex;
@@ -76,6 +84,7 @@ public class EngineContext implements AutoCloseable
     private Agent indexingAgent;
     private ReplayQuery pruneInboundReplayQuery;
     private ReplayQuery outboundReplayQuery;
+    private ReplayCache outboundReplayCache;
     private FramerContext framerContext;
     private long inboundIndexRegistrationId;
     private long outboundIndexRegistrationId;
@@ -87,9 +96,13 @@ public class EngineContext implements AutoCloseable
         final FixCounters fixCounters,
         final Aeron aeron,
         final AeronArchive aeronArchive,
-        final RecordingCoordinator recordingCoordinator)
+        final RecordingCoordinator recordingCoordinator,
+        final PersistenceScheduler persistenceScheduler,
+        final Timer replayQueueWaitTimer)
     {
         this.configuration = configuration;
+        this.persistenceScheduler = persistenceScheduler;
+        this.replayQueueWaitTimer = replayQueueWaitTimer;
         this.errorHandler = errorHandler;
         this.fixCounters = fixCounters;
         this.aeron = aeron;
@@ -106,7 +119,6 @@ public class EngineContext implements AutoCloseable
         try
         {
             final EpochClock epochClock = new SystemEpochClock();
-            final Long2LongHashMap connectionIdToFixPSessionId = new Long2LongHashMap(UNK_SESSION);
             final FixPProtocolType fixPProtocolType = configuration.supportedFixPProtocolType();
             final boolean indexChecksumEnabled = configuration.indexChecksumEnabled();
             sentSequenceNumberIndex = new SequenceNumberIndexWriter(
@@ -119,10 +131,11 @@ public class EngineContext implements AutoCloseable
                 configuration.indexFileStateFlushTimeoutInMs(),
                 epochClock,
                 configuration.logFileDir(),
-                connectionIdToFixPSessionId,
+                new Long2LongHashMap(UNK_SESSION),
                 fixPProtocolType,
                 indexChecksumEnabled,
-                configuration.logOutboundMessages());
+                configuration.logOutboundMessages(),
+                configuration.sequenceNumberIndexJournalSize());
             receivedSequenceNumberIndex = new SequenceNumberIndexWriter(
                 recvSequenceNumberExtractor,
                 configuration.receivedSequenceNumberBuffer(),
@@ -133,10 +146,13 @@ public class EngineContext implements AutoCloseable
                 configuration.indexFileStateFlushTimeoutInMs(),
                 epochClock,
                 null,
-                connectionIdToFixPSessionId,
+                new Long2LongHashMap(UNK_SESSION),
                 fixPProtocolType,
                 indexChecksumEnabled,
-                configuration.logInboundMessages());
+                configuration.logInboundMessages(),
+                configuration.sequenceNumberIndexJournalSize());
+            sentSequenceNumberIndex.persistenceScheduler(persistenceScheduler);
+            receivedSequenceNumberIndex.persistenceScheduler(persistenceScheduler);
 
             newStreams();
             newArchivingAgent();
@@ -192,7 +208,7 @@ public class EngineContext implements AutoCloseable
             streamId,
             configuration.replayIndexFileRecordCapacity(),
             configuration.replayIndexSegmentRecordCapacity(),
-            LoggerUtil::map,
+            newReplayIndexStore(logFileDir, streamId, true),
             ReplayIndexDescriptor.replayPositionBuffer(logFileDir, streamId, configuration.replayPositionBufferSize()),
             errorHandler,
             recordingIdLookup,
@@ -201,40 +217,66 @@ public class EngineContext implements AutoCloseable
             reader,
             configuration.timeIndexReplayFlushIntervalInNs(),
             indexChecksumEnabled,
-            evictionHandler);
+            evictionHandler,
+            configuration.replayIndexCompressed(),
+            configuration.sessionTimeIndexEnabled() ? configuration.sessionTimeIndexRecordCapacity() : 0);
+    }
+
+    private ReplayIndexStore newReplayIndexStore(final String logFileDir, final int streamId, final boolean writable)
+    {
+        final int indexFileCapacity = configuration.replayIndexFileRecordCapacity();
+        final int indexSegmentCapacity = configuration.replayIndexSegmentRecordCapacity();
+        final int packedSessionCapacity = configuration.replayIndexPackedSessionCapacity();
+        if (packedSessionCapacity > 0)
+        {
+            return new PackedReplayIndexStore(
+                logFileDir, streamId, indexFileCapacity, indexSegmentCapacity, packedSessionCapacity, writable);
+        }
+
+        return new FileReplayIndexStore(
+            logFileDir,
+            streamId,
+            indexFileCapacity,
+            indexSegmentCapacity,
+            LoggerUtil::map,
+            LoggerUtil::mapExistingFile,
+            errorHandler);
     }
 
-    private ReplayQuery newReplayQuery(final IdleStrategy idleStrategy, final int streamId)
+    private ReplayQuery newReplayQuery(
+        final IdleStrategy idleStrategy, final int streamId, final ReplayCache replayCache)
     {
         final String logFileDir = configuration.logFileDir();
         final int cacheSetSize = configuration.loggerCacheSetSize();
         final int cacheNumSets = configuration.loggerCacheNumSets();
         final int archiveReplayStream = configuration.archiveReplayStream();
+        final String archiveSegmentReplayDir = configuration.archiveSegmentReplayDir();
 
         return new ReplayQuery(
-            logFileDir,
+            newReplayIndexStore(logFileDir, streamId, false),
             cacheNumSets,
             cacheSetSize,
-            LoggerUtil::mapExistingFile,
-            streamId,
             idleStrategy,
             aeronArchive,
             errorHandler,
             NoOpReplayQueryListener.INSTANCE,
             archiveReplayStream,
             configuration.replayIndexFileRecordCapacity(),
-            configuration.replayIndexSegmentRecordCapacity());
+            configuration.replayIndexSegmentRecordCapacity(),
+            replayCache,
+            archiveSegmentReplayDir == null ?
+                null : new ArchiveSegmentReader(new File(archiveSegmentReplayDir), aeronArchive, errorHandler));
     }
 
     private Replayer newReplayer(
-        final ExclusivePublication replayPublication, final ReplayQuery replayQuery)
+        final ExclusivePublication replayPublication, final ReplayQuery replayQuery, final IdleStrategy idleStrategy)
     {
         final EpochFractionFormat epochFractionFormat = configuration.sessionEpochFractionFormat();
         return new Replayer(
             replayQuery,
             replayPublication,
             new BufferClaim(),
-            configuration.archiverIdleStrategy(),
+            idleStrategy,
             errorHandler,
             configuration.outboundMaxClaimAttempts(),
             inboundLibraryStreams.subscription("replayer"),
@@ -252,7 +294,8 @@ public class EngineContext implements AutoCloseable
             configuration.maxConcurrentSessionReplays(),
             clock,
             configuration.supportedFixPProtocolType(),
-            configuration);
+            configuration,
+            replayQueueWaitTimer);
     }
 
     private void newIndexers()
@@ -265,7 +308,6 @@ public class EngineContext implements AutoCloseable
             final String logFileDir = configuration.logFileDir();
             final boolean indexChecksumEnabled = configuration.indexChecksumEnabled();
 
-            final Long2LongHashMap connectionIdToILinkUuid = new Long2LongHashMap(UNK_SESSION);
             final List<Index> inboundIndices = new ArrayList<>();
             if (configuration.logInboundMessages())
             {
@@ -273,7 +315,7 @@ public class EngineContext implements AutoCloseable
                     logFileDir,
                     configuration.inboundLibraryStream(),
                     recordingCoordinator.indexerInboundRecordingIdLookup(),
-                    connectionIdToILinkUuid,
+                    new Long2LongHashMap(UNK_SESSION),
                     receivedSequenceNumberIndex.reader(),
                     recvSequenceNumberExtractor,
                     indexChecksumEnabled,
@@ -295,11 +337,24 @@ public class EngineContext implements AutoCloseable
             final List<Index> outboundIndices = new ArrayList<>();
             if (configuration.logOutboundMessages())
             {
+                final int replayCacheCapacity = configuration.replayCacheCapacity();
+                if (replayCacheCapacity > 0)
+                {
+                    // Has to be before the replay index so that messages are cached before replays can find them.
+                    outboundReplayCache = new ReplayCache(
+                        replayCacheCapacity,
+                        configuration.outboundLibraryStream(),
+                        recordingCoordinator.indexerOutboundRecordingIdLookup(),
+                        fixCounters.replayCacheHits(),
+                        fixCounters.replayCacheMisses());
+                    outboundIndices.add(outboundReplayCache);
+                }
+
                 outboundReplayIndex = newReplayIndex(
                     logFileDir,
                     configuration.outboundLibraryStream(),
                     recordingCoordinator.indexerOutboundRecordingIdLookup(),
-                    connectionIdToILinkUuid,
+                    new Long2LongHashMap(UNK_SESSION),
                     sentSequenceNumberIndex.reader(),
                     sentSequenceNumberExtractor,
                     indexChecksumEnabled,
@@ -340,15 +395,19 @@ public class EngineContext implements AutoCloseable
     {
         newIndexers();
 
+        final boolean parallelIndexing = configuration.parallelIndexing();
+        final IdleStrategy replayerIdleStrategy = parallelIndexing ?
+            CommonConfiguration.backoffIdleStrategy() : configuration.archiverIdleStrategy();
+
         final Agent replayer;
         if (configuration.logOutboundMessages())
         {
             outboundReplayQuery = newReplayQuery(
-                configuration.archiverIdleStrategy(), configuration.outboundLibraryStream());
+                replayerIdleStrategy, configuration.outboundLibraryStream(), outboundReplayCache);
             outboundEvictionHandler.replayQuery(outboundReplayQuery);
             try
             {
-                replayer = newReplayer(replayPublication, outboundReplayQuery);
+                replayer = newReplayer(replayPublication, outboundReplayQuery, replayerIdleStrategy);
             }
             catch (final Throwable e)
             {
@@ -361,7 +420,7 @@ public class EngineContext implements AutoCloseable
             final GatewayPublication replayGatewayPublication = new GatewayPublication(
                 replayPublication,
                 fixCounters.failedReplayPublications(),
-                configuration.archiverIdleStrategy(),
+                replayerIdleStrategy,
                 clock,
                 configuration.outboundMaxClaimAttempts());
 
@@ -375,29 +434,122 @@ public class EngineContext implements AutoCloseable
                 clock);
         }
 
-        final List<Agent> agents = new ArrayList<>();
-        agents.add(inboundIndexer);
-        agents.add(outboundIndexer);
-        agents.add(replayer);
+        if (parallelIndexing)
+        {
+            final IdleStrategy outboundIndexerIdleStrategy = CommonConfiguration.backoffIdleStrategy();
+            inboundEvictionHandler.replayerCommandQueue(replayerCommandQueue, configuration.archiverIdleStrategy());
+            outboundEvictionHandler.replayerCommandQueue(replayerCommandQueue, outboundIndexerIdleStrategy);
+
+            indexingAgent = new ParallelIndexingAgent(
+                inboundIndexer,
+                outboundIndexer,
+                outboundIndexerIdleStrategy,
+                replayer,
+                replayerIdleStrategy,
+                errorHandler,
+                configuration.threadFactory());
+        }
+        else
+        {
+            final List<Agent> agents = new ArrayList<>();
+            agents.add(inboundIndexer);
+            agents.add(outboundIndexer);
+            agents.add(replayer);
 
-        indexingAgent = new CompositeAgent(agents);
+            indexingAgent = new CompositeAgent(agents);
+        }
     }
 
     public void catchupIndices()
     {
+        final boolean logInboundMessages = configuration.logInboundMessages();
+        final boolean logOutboundMessages = configuration.logOutboundMessages();
+
+        // The outbound indices use an archive client of their own, but an Aeron client that uses an invoker can't be
+        // driven from two threads.
+        if (configuration.parallelIndexing() && logInboundMessages && logOutboundMessages &&
+            aeron.conductorAgentInvoker() == null)
+        {
+            catchupIndicesInParallel();
+            return;
+        }
+
         // when inbound logging disabled
-        if (configuration.logInboundMessages())
+        if (logInboundMessages)
         {
-            inboundIndexer.catchIndexUp(aeronArchive, errorHandler);
+            catchupInboundIndices();
         }
 
         // when outbound logging disabled
-        if (configuration.logOutboundMessages())
+        if (logOutboundMessages)
         {
-            outboundIndexer.catchIndexUp(aeronArchive, errorHandler);
+            catchupOutboundIndices(aeronArchive);
         }
     }
 
+    private void catchupIndicesInParallel()
+    {
+        final FutureTask<Void> outboundCatchup = new FutureTask<>(this::catchupOutboundIndicesWithOwnArchive, null);
+        configuration.threadFactory().newThread(outboundCatchup).start();
+
+        try
+        {
+            catchupInboundIndices();
+        }
+        finally
+        {
+            try
+            {
+                outboundCatchup.get();
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                LangUtil.rethrowUnchecked(e);
+            }
+            catch (final ExecutionException e)
+            {
+                LangUtil.rethrowUnchecked(e.getCause());
+            }
+        }
+    }
+
+    private void catchupInboundIndices()
+    {
+        inboundIndexer.catchIndexUp(
+            aeronArchive,
+            errorHandler,
+            fixCounters.indexCatchupRemainingBytes("inbound"),
+            fixCounters.indexCatchupEstimatedRemainingTimeInMs("inbound"));
+    }
+
+    // Each catchup thread sends its requests over a control session of its own rather than relying on the shared
+    // archive client being locked for the whole of each request and response.
+    private void catchupOutboundIndicesWithOwnArchive()
+    {
+        final AeronArchive.Context archiveContext = configuration.archiveContextClone().clone()
+            .aeron(aeron)
+            .ownsAeronClient(false);
+        try (AeronArchive outboundArchive = AeronArchive.connect(archiveContext))
+        {
+            catchupOutboundIndices(outboundArchive);
+        }
+    }
+
+    private void catchupOutboundIndices(final AeronArchive aeronArchive)
+    {
+        outboundIndexer.catchIndexUp(
+            aeronArchive,
+            errorHandler,
+            fixCounters.indexCatchupRemainingBytes("outbound"),
+            fixCounters.indexCatchupEstimatedRemainingTimeInMs("outbound"));
+    }
+
+    public PersistenceScheduler persistenceScheduler()
+    {
+        return persistenceScheduler;
+    }
+
     public Streams outboundLibraryStreams()
     {
         return outboundLibraryStreams;
@@ -424,7 +576,7 @@ public class EngineContext implements AutoCloseable
         }
 
         final ReplayQuery replayQuery = newReplayQuery(
-            configuration.framerIdleStrategy(), configuration.inboundLibraryStream());
+            configuration.framerIdleStrategy(), configuration.inboundLibraryStream(), null);
         if (replayerThread)
         {
             inboundEvictionHandler.replayQuery(replayQuery);
@@ -21,6 +21,7 @@ import io.aeron.Subscription;
 import io.aeron.archive.client.AeronArchive;
 import org.agrona.collections.Long2LongHashMap;
 import org.agrona.concurrent.AgentInvoker;
+import org.agrona.concurrent.CompositeAgent;
 import org.agrona.concurrent.status.ReadablePosition;
 import uk.co.real_logic.artio.*;
 import uk.co.real_logic.artio.engine.framer.EngineStreamInfo;
@@ -32,6 +33,7 @@ import java.io.File;
 import java.util.List;
 
 import static io.aeron.CommonContext.IPC_CHANNEL;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static uk.co.real_logic.artio.dictionary.generation.Exceptions.closeAll;
 import static uk.co.real_logic.artio.dictionary.generation.Exceptions.suppressingClose;
 
@@ -53,6 +55,7 @@ public final class FixEngine extends GatewayProcess
 
     private final DuplicateEngineChecker duplicateEngineChecker;
     private final EngineTimers timers;
+    private final PersistenceScheduler persistenceScheduler;
     private final EngineConfiguration configuration;
     private final RecordingCoordinator recordingCoordinator;
 
@@ -296,6 +299,12 @@ public final class FixEngine extends GatewayProcess
                 scheduler.configure(configuration.aeronContext());
                 init(configuration, ENGINE_LIBRARY_ID);
                 timers = new EngineTimers(configuration.epochNanoClock(), fixCounters.negativeTimestamps());
+                persistenceScheduler = new PersistenceScheduler(
+                    configuration.durabilityPolicy(),
+                    MILLISECONDS.toNanos(configuration.persistenceCommitIntervalInMs()),
+                    configuration.epochNanoClock(),
+                    timers.persistenceTimer(),
+                    errorHandler);
                 final AeronArchive.Context archiveContext = configuration.aeronArchiveContext();
                 final AeronArchive aeronArchive =
                     configuration.logAnyMessages() ? AeronArchive.connect(archiveContext.aeron(aeron)) : null;
@@ -314,10 +323,16 @@ public final class FixEngine extends GatewayProcess
                     fixCounters,
                     aeron,
                     aeronArchive,
-                    recordingCoordinator);
+                    recordingCoordinator,
+                    persistenceScheduler,
+                    timers.replayQueueWaitTimer());
                 engineContext.catchupIndices();
                 initFramer(configuration, fixCounters, replayPublication.sessionId());
-                initMonitoringAgent(timers.all(), configuration, aeronArchive, duplicateEngineChecker);
+                initMonitoringAgent(
+                    timers.all(),
+                    configuration,
+                    aeronArchive,
+                    new CompositeAgent(duplicateEngineChecker, persistenceScheduler));
 
                 recordingCoordinator.monitoringAgent(monitoringAgent);
 
@@ -26,6 +26,7 @@ import uk.co.real_logic.artio.CommonConfiguration;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 
@@ -35,8 +36,9 @@ import static java.nio.file.StandardOpenOption.WRITE;
 public class MappedFile implements AutoCloseable
 {
     private final File file;
-    private FileChannel fileChannel;
+    private volatile FileChannel fileChannel;
     private AtomicBuffer buffer;
+    private PersistenceScheduler.Target persistenceTarget;
 
     public static MappedFile map(final File bufferFile, final int size)
     {
@@ -86,9 +88,43 @@ public class MappedFile implements AutoCloseable
         return file;
     }
 
+    /**
+     * Syncs the file to disk after a write, or leaves it to the {@link PersistenceScheduler} if the file has been
+     * registered with one.
+     */
     public void force()
     {
-        force(fileChannel);
+        final PersistenceScheduler.Target persistenceTarget = this.persistenceTarget;
+        if (persistenceTarget != null)
+        {
+            persistenceTarget.onWrite();
+        }
+        else
+        {
+            force(fileChannel);
+        }
+    }
+
+    /**
+     * Syncs the file to disk before it's swapped into place as a checkpoint. Unlike {@link #force()} this isn't
+     * deferred by a {@link DurabilityPolicy#INTERVAL} policy.
+     */
+    public void forceCheckpoint()
+    {
+        final PersistenceScheduler.Target persistenceTarget = this.persistenceTarget;
+        if (persistenceTarget != null)
+        {
+            persistenceTarget.onCheckpoint();
+        }
+        else
+        {
+            force(fileChannel);
+        }
+    }
+
+    public void persistenceScheduler(final PersistenceScheduler persistenceScheduler)
+    {
+        persistenceTarget = persistenceScheduler.register(() -> fileChannel.force(true));
     }
 
     public void transferTo(final File backupLocation)
@@ -110,6 +146,29 @@ public class MappedFile implements AutoCloseable
         map();
     }
 
+    /**
+     * Extends the file to the new size and maps the whole of it. Any buffer previously returned from
+     * {@link #buffer()} is unmapped, so callers should use the buffer returned by this method afterwards.
+     *
+     * @param newSize the new size of the file in bytes, must be greater than its current size.
+     * @return the buffer of the remapped file.
+     */
+    public AtomicBuffer growTo(final int newSize)
+    {
+        try
+        {
+            // Writing the last byte extends the file with zeros
+            fileChannel.write(ByteBuffer.allocate(1), newSize - 1);
+        }
+        catch (final IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+
+        remap();
+        return buffer;
+    }
+
     public void map()
     {
         final MappedFile remappedFile = map(file, buffer.capacity());
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine;
+
+import uk.co.real_logic.artio.util.MessageTypeEncoding;
+
+/**
+ * Throttle configuration for a single FIX message type.
+ *
+ * @see EngineConfiguration#enableMessageThrottle(String, int, int)
+ */
+public final class MessageTypeThrottle
+{
+    private final String messageTypeAsString;
+    private final long messageType;
+    private final int throttleWindowInMs;
+    private final int throttleLimitOfMessages;
+
+    MessageTypeThrottle(
+        final String messageTypeAsString, final int throttleWindowInMs, final int throttleLimitOfMessages)
+    {
+        this.messageTypeAsString = messageTypeAsString;
+        this.messageType = MessageTypeEncoding.packMessageType(messageTypeAsString);
+        this.throttleWindowInMs = throttleWindowInMs;
+        this.throttleLimitOfMessages = throttleLimitOfMessages;
+    }
+
+    public String messageTypeAsString()
+    {
+        return messageTypeAsString;
+    }
+
+    /**
+     * Gets the message type in the packed format used by Artio's protocol.
+     *
+     * @return the packed message type.
+     * @see MessageTypeEncoding#packMessageType(String)
+     */
+    public long messageType()
+    {
+        return messageType;
+    }
+
+    public int throttleWindowInMs()
+    {
+        return throttleWindowInMs;
+    }
+
+    public int throttleLimitOfMessages()
+    {
+        return throttleLimitOfMessages;
+    }
+
+    public String toString()
+    {
+        return "MessageTypeThrottle{" +
+            "messageType=" + messageTypeAsString +
+            ", throttleWindowInMs=" + throttleWindowInMs +
+            ", throttleLimitOfMessages=" + throttleLimitOfMessages +
+            '}';
+    }
+}
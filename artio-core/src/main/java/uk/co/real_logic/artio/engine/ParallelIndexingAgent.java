@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine;
+
+import org.agrona.CloseHelper;
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.AgentRunner;
+import org.agrona.concurrent.IdleStrategy;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.agrona.concurrent.AgentRunner.startOnThread;
+
+/**
+ * The indexing agent used when {@link EngineConfiguration#parallelIndexing(boolean)} is enabled. The inbound indexer
+ * runs on whichever thread the {@link EngineScheduler} runs this agent on, the outbound indexer and the replayer run
+ * on threads that this agent starts and stops.
+ * <p>
+ * Each indexer keeps its own subscription and completion position so closing quiesces them just as it does when they
+ * share a thread. The replayer is closed last as the indexers wait upon it to reset replay queries.
+ */
+class ParallelIndexingAgent implements Agent
+{
+    private final Agent inboundIndexer;
+    private final AgentRunner outboundIndexerRunner;
+    private final AgentRunner replayerRunner;
+    private final ThreadFactory threadFactory;
+
+    ParallelIndexingAgent(
+        final Agent inboundIndexer,
+        final Agent outboundIndexer,
+        final IdleStrategy outboundIndexerIdleStrategy,
+        final Agent replayer,
+        final IdleStrategy replayerIdleStrategy,
+        final ErrorHandler errorHandler,
+        final ThreadFactory threadFactory)
+    {
+        this.inboundIndexer = inboundIndexer;
+        this.threadFactory = threadFactory;
+
+        outboundIndexerRunner = new AgentRunner(outboundIndexerIdleStrategy, errorHandler, null, outboundIndexer);
+        replayerRunner = new AgentRunner(replayerIdleStrategy, errorHandler, null, replayer);
+    }
+
+    public void onStart()
+    {
+        startOnThread(replayerRunner, threadFactory);
+        startOnThread(outboundIndexerRunner, threadFactory);
+
+        inboundIndexer.onStart();
+    }
+
+    public int doWork() throws Exception
+    {
+        return inboundIndexer.doWork();
+    }
+
+    public void onClose()
+    {
+        try
+        {
+            CloseHelper.close(outboundIndexerRunner);
+            inboundIndexer.onClose();
+        }
+        finally
+        {
+            CloseHelper.close(replayerRunner);
+        }
+    }
+
+    public String roleName()
+    {
+        return inboundIndexer.roleName();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine;
+
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.EpochNanoClock;
+import uk.co.real_logic.artio.timing.Timer;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decides when the engine's persistence files are synced to disk according to its {@link DurabilityPolicy}.
+ * <p>
+ * Files are written to on the framer and the indexing threads and then report the write to their {@link Target}.
+ * With the {@link DurabilityPolicy#INTERVAL} policy the target is only marked as dirty and this agent syncs every
+ * dirty file in a single group commit once per interval, in the order in which they were registered, recording the
+ * duration of each commit with the persistence timer.
+ */
+public class PersistenceScheduler implements Agent
+{
+    /**
+     * A file that can be synced to disk.
+     */
+    @FunctionalInterface
+    public interface Syncable
+    {
+        void sync() throws IOException;
+    }
+
+    private final List<Target> targets = new CopyOnWriteArrayList<>();
+
+    private final DurabilityPolicy policy;
+    private final long commitIntervalInNs;
+    private final EpochNanoClock clock;
+    private final Timer commitTimer;
+    private final ErrorHandler errorHandler;
+
+    private long nextCommitTimeInNs;
+
+    public PersistenceScheduler(
+        final DurabilityPolicy policy,
+        final long commitIntervalInNs,
+        final EpochNanoClock clock,
+        final Timer commitTimer,
+        final ErrorHandler errorHandler)
+    {
+        this.policy = policy;
+        this.commitIntervalInNs = commitIntervalInNs;
+        this.clock = clock;
+        this.commitTimer = commitTimer;
+        this.errorHandler = errorHandler;
+    }
+
+    public Target register(final Syncable syncable)
+    {
+        final Target target = new Target(syncable);
+        targets.add(target);
+        return target;
+    }
+
+    public DurabilityPolicy policy()
+    {
+        return policy;
+    }
+
+    public int doWork()
+    {
+        if (policy != DurabilityPolicy.INTERVAL)
+        {
+            return 0;
+        }
+
+        final long timeInNs = clock.nanoTime();
+        if (timeInNs < nextCommitTimeInNs)
+        {
+            return 0;
+        }
+
+        nextCommitTimeInNs = timeInNs + commitIntervalInNs;
+        return commit(timeInNs);
+    }
+
+    int commit(final long startTimeInNs)
+    {
+        int synced = 0;
+        final List<Target> targets = this.targets;
+        for (int i = 0, size = targets.size(); i < size; i++)
+        {
+            final Target target = targets.get(i);
+            if (target.dirty.getAndSet(false))
+            {
+                target.sync();
+                synced++;
+            }
+        }
+
+        if (synced > 0)
+        {
+            commitTimer.recordSince(startTimeInNs);
+        }
+
+        return synced;
+    }
+
+    public void onClose()
+    {
+        if (policy == DurabilityPolicy.INTERVAL)
+        {
+            commit(clock.nanoTime());
+        }
+    }
+
+    public String roleName()
+    {
+        return "PersistenceScheduler";
+    }
+
+    /**
+     * The handle through which a registered file reports writes to the scheduler.
+     */
+    public final class Target
+    {
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private final Syncable syncable;
+
+        Target(final Syncable syncable)
+        {
+            this.syncable = syncable;
+        }
+
+        /**
+         * Called after writing to the file.
+         */
+        public void onWrite()
+        {
+            switch (policy)
+            {
+                case PER_WRITE:
+                    sync();
+                    break;
+
+                case INTERVAL:
+                    dirty.set(true);
+                    break;
+
+                case OS_MANAGED:
+                    break;
+            }
+        }
+
+        /**
+         * Called when the file needs to be on disk before the caller carries on, for example before a checkpoint is
+         * swapped into place.
+         */
+        public void onCheckpoint()
+        {
+            if (policy != DurabilityPolicy.OS_MANAGED)
+            {
+                dirty.set(false);
+                sync();
+            }
+        }
+
+        private void sync()
+        {
+            try
+            {
+                syncable.sync();
+            }
+            catch (final ClosedChannelException e)
+            {
+                // The file is being remapped, so retry on the next commit.
+                dirty.set(true);
+            }
+            catch (final IOException e)
+            {
+                errorHandler.onError(e);
+            }
+        }
+    }
+}
@@ -23,11 +23,9 @@ import org.agrona.ExpandableArrayBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.EpochNanoClock;
 import uk.co.real_logic.artio.DebugLogger;
-import uk.co.real_logic.artio.dictionary.LongDictionary;
 import uk.co.real_logic.artio.fields.UtcTimestampEncoder;
 import uk.co.real_logic.artio.messages.FixMessageDecoder;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
-import uk.co.real_logic.artio.otf.OtfParser;
 import uk.co.real_logic.artio.protocol.GatewayPublication;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
@@ -49,6 +47,8 @@ import static uk.co.real_logic.artio.util.MutableAsciiBuffer.SEPARATOR;
 public class PossDupEnabler
 {
     private static final byte[] POSS_DUP_FIELD = "43=Y\001".getBytes(US_ASCII);
+    private static final int POSS_DUP_FIELD_CHECKSUM = new MutableAsciiBuffer(POSS_DUP_FIELD)
+        .computeChecksum(0, POSS_DUP_FIELD.length);
     public static final String ORIG_SENDING_TIME_PREFIX_AS_STR = "122=";
     private static final byte[] ORIG_SENDING_TIME_PREFIX = ORIG_SENDING_TIME_PREFIX_AS_STR.getBytes(US_ASCII);
 
@@ -57,7 +57,6 @@ public class PossDupEnabler
 
     private final ExpandableArrayBuffer fragmentedMessageBuffer = new ExpandableArrayBuffer();
     private final PossDupFinder possDupFinder = new PossDupFinder();
-    private final OtfParser parser = new OtfParser(possDupFinder, new LongDictionary());
     private final MutableAsciiBuffer mutableAsciiFlyweight = new MutableAsciiBuffer();
     private final UtcTimestampEncoder utcTimestampEncoder;
 
@@ -106,7 +105,7 @@ public class PossDupEnabler
         final int metaDataAdjustment,
         final long messageType)
     {
-        parser.onMessage(srcBuffer, messageOffset, messageLength);
+        possDupFinder.find(srcBuffer, messageOffset, messageLength);
         final boolean missingPossDup = possDupFinder.possDupOffset() == NO_ENTRY;
         final boolean missingOrigSendingTime = possDupFinder.origSendingTimeOffset() == NO_ENTRY;
         if (missingPossDup || missingOrigSendingTime)
@@ -197,14 +196,15 @@ public class PossDupEnabler
 
             // Set poss dup flag to Y
             final int possDupClaimOffset = srcToClaim(possDupSrcOffset, srcOffset, writeOffset);
+            int checksumDelta = 'Y' - mutableAsciiFlyweight.getByte(possDupClaimOffset);
             mutableAsciiFlyweight.putCharAscii(possDupClaimOffset, 'Y');
 
-            updateSendingTime(srcOffset);
+            checksumDelta += updateSendingTime(srcOffset);
 
             final int messageClaimOffset = srcToClaim(messageOffset, srcOffset, writeOffset);
             final int messageEndOffset = messageClaimOffset + messageLength;
             final int beforeChecksum = srcToClaim(possDupFinder.checkSumOffset(), srcOffset, writeOffset) - 4;
-            updateChecksum(messageClaimOffset, beforeChecksum, messageEndOffset);
+            updateChecksum(messageClaimOffset, beforeChecksum, messageEndOffset, checksumDelta);
 
             return commit(messageType, metaDataAdjustment);
         }
@@ -354,20 +354,20 @@ public class PossDupEnabler
         final int possDupSrcOffset = possDupFinder.possDupOffset();
 
         final int origSendingTimePrefixClaimOffset;
+        int checksumDelta;
         if (possDupSrcOffset == NO_ENTRY)
         {
             // Insert Poss Dup Field
             final int possDupClaimOffset = writeOffset + lengthToSendingTimeEnd;
             writeBuffer.putBytes(possDupClaimOffset, POSS_DUP_FIELD);
+            checksumDelta = POSS_DUP_FIELD_CHECKSUM;
             // When inserting poss dup field, the orig sending time goes after the poss dup,
             origSendingTimePrefixClaimOffset = possDupClaimOffset + POSS_DUP_FIELD.length;
         }
         else
         {
-            // Update poss dup field
-            final int possDupValueClaimOffset = srcToClaim(possDupSrcOffset, srcOffset, writeOffset);
-            mutableAsciiFlyweight.putCharAscii(possDupValueClaimOffset, 'Y');
             // When updating poss dup field, the orig sending time goes after the sending time
+            checksumDelta = 0;
             origSendingTimePrefixClaimOffset = writeOffset + lengthToSendingTimeEnd;
         }
 
@@ -381,24 +381,36 @@ public class PossDupEnabler
 
         final int separatorClaimOffset = origSendingTimeValueClaimOffset + sendingTimeLength;
         writeBuffer.putByte(separatorClaimOffset, SEPARATOR);
+        checksumDelta += checksum(origSendingTimePrefixClaimOffset, separatorClaimOffset + SEPARATOR_LENGTH);
 
         // Insert the rest of the message
         final int remainingClaimOffset = separatorClaimOffset + SEPARATOR_LENGTH;
         final int remainingLength = srcLength - lengthToSendingTimeEnd;
         writeBuffer.putBytes(remainingClaimOffset, srcBuffer, sendingTimeSrcEnd, remainingLength);
 
+        if (possDupSrcOffset != NO_ENTRY)
+        {
+            // Update poss dup field, which may have been moved by the orig sending time if it's after the sending time
+            final int possDupValueClaimOffset = possDupSrcOffset < sendingTimeSrcEnd ?
+                srcToClaim(possDupSrcOffset, srcOffset, writeOffset) :
+                srcToClaim(possDupSrcOffset, sendingTimeSrcEnd, remainingClaimOffset);
+            checksumDelta += 'Y' - mutableAsciiFlyweight.getByte(possDupValueClaimOffset);
+            mutableAsciiFlyweight.putCharAscii(possDupValueClaimOffset, 'Y');
+        }
+
         // Update the sending time
-        updateSendingTime(srcOffset);
+        checksumDelta += updateSendingTime(srcOffset);
 
         updateFrameBodyLength(messageLength, writeBuffer, writeOffset, totalLengthDelta, metaDataAdjustment);
         final int messageClaimOffset = srcToClaim(messageOffset, srcOffset, writeOffset);
         updateBodyLengthAndChecksum(
-            srcOffset, messageClaimOffset, writeOffset, newBodyLength, writeOffset + newLength);
+            srcOffset, messageClaimOffset, writeOffset, newBodyLength, writeOffset + newLength, checksumDelta);
 
         return true;
     }
 
-    private void updateSendingTime(final int srcOffset)
+    // Returns the change to the message's checksum
+    private int updateSendingTime(final int srcOffset)
     {
         final MutableDirectBuffer claimBuffer = writeBuffer();
         final int claimOffset = writeOffset();
@@ -406,8 +418,11 @@ public class PossDupEnabler
         final int sendingTimeLength = possDupFinder.sendingTimeLength();
 
         final int sendingTimeClaimOffset = srcToClaim(sendingTimeOffset, srcOffset, claimOffset);
+        final int sendingTimeClaimEnd = sendingTimeClaimOffset + sendingTimeLength;
+        final int oldChecksum = checksum(sendingTimeClaimOffset, sendingTimeClaimEnd);
         utcTimestampEncoder.encodeFrom(clock.nanoTime(), TimeUnit.NANOSECONDS);
         claimBuffer.putBytes(sendingTimeClaimOffset, utcTimestampEncoder.buffer(), 0, sendingTimeLength);
+        return checksum(sendingTimeClaimOffset, sendingTimeClaimEnd) - oldChecksum;
     }
 
     private void updateFrameBodyLength(
@@ -428,12 +443,15 @@ public class PossDupEnabler
         final int messageClaimOffset,
         final int claimOffset,
         final int newBodyLength,
-        final int messageEndOffset)
+        final int messageEndOffset,
+        final int checksumDelta)
     {
         // BEGIN Update body length
         final int bodyLengthClaimOffset = srcToClaim(possDupFinder.bodyLengthOffset(), srcOffset, claimOffset);
         final int lengthOfOldBodyLength = possDupFinder.lengthOfBodyLength();
         final int lengthOfNewBodyLength = MutableAsciiBuffer.lengthInAscii(newBodyLength);
+        final int oldBodyLengthChecksum = checksum(
+            bodyLengthClaimOffset, bodyLengthClaimOffset + lengthOfOldBodyLength);
 
         final int lengthChange = lengthOfNewBodyLength - lengthOfOldBodyLength;
         if (lengthChange > 0)
@@ -449,22 +467,45 @@ public class PossDupEnabler
         final int lengthOfUpdatedBodyLengthField = Math.max(lengthOfOldBodyLength, lengthOfNewBodyLength);
         mutableAsciiFlyweight.putNaturalPaddedIntAscii(
             bodyLengthClaimOffset, lengthOfUpdatedBodyLengthField, newBodyLength);
+        final int newBodyLengthChecksum = checksum(
+            bodyLengthClaimOffset, bodyLengthClaimOffset + lengthOfUpdatedBodyLengthField);
         // END Update body length
 
         final int beforeChecksum = bodyLengthClaimOffset + lengthOfUpdatedBodyLengthField + newBodyLength;
-        updateChecksum(messageClaimOffset, beforeChecksum, messageEndOffset);
+        updateChecksum(
+            messageClaimOffset,
+            beforeChecksum,
+            messageEndOffset,
+            checksumDelta + newBodyLengthChecksum - oldBodyLengthChecksum);
     }
 
-    private void updateChecksum(final int messageClaimOffset, final int beforeChecksum, final int messageEndOffset)
+    private void updateChecksum(
+        final int messageClaimOffset, final int beforeChecksum, final int messageEndOffset, final int checksumDelta)
     {
-        final int lengthOfSeparator = 1;
-        final int checksumEnd = beforeChecksum + lengthOfSeparator;
-        final int checksum = mutableAsciiFlyweight.computeChecksum(messageClaimOffset, checksumEnd);
+        final int oldChecksum = possDupFinder.checkSum();
+        final int checksum;
+        if (oldChecksum == NO_ENTRY)
+        {
+            final int lengthOfSeparator = 1;
+            final int checksumEnd = beforeChecksum + lengthOfSeparator;
+            checksum = mutableAsciiFlyweight.computeChecksum(messageClaimOffset, checksumEnd);
+        }
+        else
+        {
+            // The original checksum has been validated against the message by the finder, so only the fields that
+            // have been changed contribute to the difference from it
+            checksum = (oldChecksum + checksumDelta) & 0xFF;
+        }
         final int checksumValueOffset = messageEndOffset - (CHECKSUM_VALUE_LENGTH + SEPARATOR_LENGTH);
         mutableAsciiFlyweight.putNaturalPaddedIntAscii(checksumValueOffset, CHECKSUM_VALUE_LENGTH, checksum);
         mutableAsciiFlyweight.putSeparator(checksumValueOffset + CHECKSUM_VALUE_LENGTH);
     }
 
+    private int checksum(final int startInclusive, final int endExclusive)
+    {
+        return mutableAsciiFlyweight.computeChecksum(startInclusive, endExclusive);
+    }
+
     private int srcToClaim(final int srcIndexedOffset, final int srcOffset, final int claimOffset)
     {
         return srcIndexedOffset - srcOffset + claimOffset;
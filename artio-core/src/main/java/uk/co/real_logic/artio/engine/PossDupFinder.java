@@ -15,17 +15,32 @@
  */
 package uk.co.real_logic.artio.engine;
 
+import org.agrona.DirectBuffer;
 import uk.co.real_logic.artio.ValidationError;
 import uk.co.real_logic.artio.dictionary.SessionConstants;
 import uk.co.real_logic.artio.fields.AsciiFieldFlyweight;
 import uk.co.real_logic.artio.otf.MessageControl;
 import uk.co.real_logic.artio.otf.OtfMessageAcceptor;
 import uk.co.real_logic.artio.util.AsciiBuffer;
+import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
+import static uk.co.real_logic.artio.util.MutableAsciiBuffer.SEPARATOR;
+
+/**
+ * Finds the fields of a message that need to be changed in order to resend it.
+ *
+ * Can either be used as an {@link OtfMessageAcceptor} or via {@link #find(DirectBuffer, int, int)}, which just
+ * splits the message into fields without the validation and group handling of the {@link
+ * uk.co.real_logic.artio.otf.OtfParser} as only header and trailer fields are of interest.
+ */
 class PossDupFinder implements OtfMessageAcceptor
 {
     public static final int NO_ENTRY = -1;
 
+    private static final int CHECKSUM_LENGTH = 3;
+
+    private final MutableAsciiBuffer string = new MutableAsciiBuffer();
+
     private int possDupOffset;
     private int sendingTimeOffset;
     private int sendingTimeLength;
@@ -35,6 +50,65 @@ class PossDupFinder implements OtfMessageAcceptor
     private int origSendingTimeOffset;
     private int origSendingTimeLength;
     private int checkSumOffset;
+    private int checkSum;
+
+    void find(final DirectBuffer buffer, final int offset, final int length)
+    {
+        final MutableAsciiBuffer string = this.string;
+        string.wrap(buffer);
+        onNext();
+
+        final int end = offset + length;
+        int position = offset;
+        // Sum of the bytes before the current field, which is the checksum of the message once the field is 10
+        int byteSum = 0;
+        try
+        {
+            while (position < end)
+            {
+                int index = position;
+                int fieldByteSum = 0;
+                byte value;
+                while ((value = string.getByte(index)) != '=')
+                {
+                    fieldByteSum += value;
+                    if (++index == end)
+                    {
+                        return;
+                    }
+                }
+
+                final int equalsPosition = index;
+                final int valueOffset = equalsPosition + 1;
+                index = valueOffset;
+                while (index < end && (value = string.getByte(index)) != SEPARATOR)
+                {
+                    fieldByteSum += value;
+                    index++;
+                }
+
+                if (index == end)
+                {
+                    return;
+                }
+
+                final int tag = string.getNatural(position, equalsPosition);
+                final int valueLength = index - valueOffset;
+                onField(tag, string, valueOffset, valueLength);
+                if (tag == SessionConstants.CHECKSUM)
+                {
+                    checkSum = validCheckSum(string, valueOffset, valueLength, byteSum & 0xFF);
+                }
+
+                byteSum += fieldByteSum + '=' + SEPARATOR;
+                position = index + 1;
+            }
+        }
+        catch (final NumberFormatException ex)
+        {
+            // Leave the remaining fields as missing, in common with parsing the message.
+        }
+    }
 
     public MessageControl onNext()
     {
@@ -47,6 +121,7 @@ class PossDupFinder implements OtfMessageAcceptor
         bodyLengthOffset = NO_ENTRY;
         lengthOfBodyLength = NO_ENTRY;
         checkSumOffset = NO_ENTRY;
+        checkSum = NO_ENTRY;
         return MessageControl.CONTINUE;
     }
 
@@ -82,6 +157,29 @@ class PossDupFinder implements OtfMessageAcceptor
         return MessageControl.CONTINUE;
     }
 
+    // The checksum field is only trusted when it matches the bytes of the message.
+    private static int validCheckSum(
+        final AsciiBuffer buffer, final int offset, final int length, final int computedCheckSum)
+    {
+        if (length != CHECKSUM_LENGTH)
+        {
+            return NO_ENTRY;
+        }
+
+        int checkSum = 0;
+        for (int index = offset; index < offset + length; index++)
+        {
+            final int digit = buffer.getByte(index) - '0';
+            if (digit < 0 || digit > 9)
+            {
+                return NO_ENTRY;
+            }
+            checkSum = checkSum * 10 + digit;
+        }
+
+        return checkSum == computedCheckSum ? checkSum : NO_ENTRY;
+    }
+
     public MessageControl onGroupHeader(final int tag, final int numInGroup)
     {
         return MessageControl.CONTINUE;
@@ -121,6 +219,18 @@ class PossDupFinder implements OtfMessageAcceptor
         return checkSumOffset;
     }
 
+    /**
+     * Gets the value of the message's checksum field, only valid after {@link #find(DirectBuffer, int, int)}, which
+     * validates it against the bytes of the message as it splits the message into fields.
+     *
+     * @return the value of the message's checksum field or {@link #NO_ENTRY} if it's missing, malformed, wrong or
+     * the message was parsed rather than found.
+     */
+    int checkSum()
+    {
+        return checkSum;
+    }
+
     int sendingTimeEnd()
     {
         return sendingTimeOffset + sendingTimeLength + 1;
@@ -162,7 +162,9 @@ public class RecordingCoordinator implements AutoCloseable, RecordingDescriptorC
             framerInboundLookup = new RecordingIdLookup(archiverIdleStrategy, counters);
             framerOutboundLookup = new RecordingIdLookup(archiverIdleStrategy, counters);
             indexerInboundLookup = new RecordingIdLookup(archiverIdleStrategy, counters);
-            indexerOutboundLookup = new RecordingIdLookup(archiverIdleStrategy, counters);
+            // The outbound indexer has a thread of its own when indexing in parallel
+            indexerOutboundLookup = new RecordingIdLookup(configuration.parallelIndexing() ?
+                CommonConfiguration.backoffIdleStrategy() : archiverIdleStrategy, counters);
         }
         else
         {
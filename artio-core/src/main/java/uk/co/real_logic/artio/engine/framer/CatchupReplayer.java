@@ -428,6 +428,9 @@ public class CatchupReplayer implements ControlledFragmentHandler, Continuation
 
                 if (replayOperation.pollReplay())
                 {
+                    inboundMessages.release(replayOperation);
+                    replayOperation = null;
+
                     if (hasMissingMessages())
                     {
                         return switchToMissingMessages("Is missing messages from replay index query");
@@ -51,11 +51,26 @@ public class DefaultTcpChannel extends TcpChannel
         return written;
     }
 
+    public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException
+    {
+        final long written = socketChannel.write(srcs, offset, length);
+        if (written < 0)
+        {
+            throw new IOException("Disconnected " + remoteAddress + ", written=" + written);
+        }
+        return written;
+    }
+
     public int read(final ByteBuffer dst) throws IOException
     {
         return socketChannel.read(dst);
     }
 
+    public boolean isOpen()
+    {
+        return socketChannel.isOpen();
+    }
+
     public void close()
     {
         if (socketChannel.isOpen())
@@ -5,15 +5,21 @@ import org.agrona.LangUtil;
 import uk.co.real_logic.artio.dictionary.generation.Exceptions;
 import uk.co.real_logic.artio.engine.EngineConfiguration;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import static java.net.StandardSocketOptions.*;
 import static java.nio.channels.SelectionKey.OP_CONNECT;
@@ -23,7 +29,14 @@ public class DefaultTcpChannelSupplier extends TcpChannelSupplier
 {
     private final EngineConfiguration configuration;
     private final boolean hasBindAddress;
+    private final int maxAcceptsPerPoll;
     private final Set<SocketChannel> openingSocketChannels = new HashSet<>();
+    private final SSLContext acceptorSslContext;
+    private final SSLContext initiatorSslContext;
+    private final Predicate<InetSocketAddress> initiatorTlsAddresses;
+    // Opening channels that use TLS, mapped to the address that they are connecting to
+    private final Map<SocketChannel, InetSocketAddress> tlsOpeningSocketChannels = new HashMap<>();
+    private final TlsBufferPool tlsBufferPool;
 
     private Selector selector;
     private ServerSocketChannel listeningChannel;
@@ -31,6 +44,12 @@ public class DefaultTcpChannelSupplier extends TcpChannelSupplier
     public DefaultTcpChannelSupplier(final EngineConfiguration configuration)
     {
         hasBindAddress = configuration.hasBindAddress();
+        maxAcceptsPerPoll = configuration.maxAcceptsPerPoll();
+        acceptorSslContext = configuration.acceptorSslContext();
+        initiatorSslContext = configuration.initiatorSslContext();
+        initiatorTlsAddresses = configuration.initiatorTlsAddresses();
+        final int tlsBufferSize = Math.max(tlsBufferSize(acceptorSslContext), tlsBufferSize(initiatorSslContext));
+        tlsBufferPool = tlsBufferSize > 0 ? new TlsBufferPool(tlsBufferSize) : null;
         this.configuration = configuration;
         try
         {
@@ -62,14 +81,7 @@ public class DefaultTcpChannelSupplier extends TcpChannelSupplier
 
                     if (selectionKey.isAcceptable())
                     {
-                        final SocketChannel channel = listeningChannel.accept();
-                        if (channel != null)
-                        {
-                            configure(channel);
-                            channel.configureBlocking(false);
-
-                            handler.onNewChannel(timeInMs, newTcpChannel(channel));
-                        }
+                        acceptChannels(timeInMs, handler);
 
                         it.remove();
                     }
@@ -93,6 +105,7 @@ public class DefaultTcpChannelSupplier extends TcpChannelSupplier
                             channelHandler.onInitiatedChannel(null, e);
                             it.remove();
                             openingSocketChannels.remove(channel);
+                            tlsOpeningSocketChannels.remove(channel);
                         }
                     }
                 }
@@ -104,10 +117,54 @@ public class DefaultTcpChannelSupplier extends TcpChannelSupplier
         return 0;
     }
 
+    // Drains the accept backlog rather than waking the selector up again for every pending connection. Bounded so
+    // that a connection storm can't starve the rest of the duty cycle, OP_ACCEPT stays selected until drained.
+    private void acceptChannels(final long timeInMs, final NewChannelHandler handler) throws IOException
+    {
+        final ServerSocketChannel listeningChannel = this.listeningChannel;
+        for (int i = 0; i < maxAcceptsPerPoll; i++)
+        {
+            final SocketChannel channel = listeningChannel.accept();
+            if (channel == null)
+            {
+                return;
+            }
+
+            configure(channel);
+            channel.configureBlocking(false);
+
+            final SSLContext acceptorSslContext = this.acceptorSslContext;
+            if (acceptorSslContext == null)
+            {
+                handler.onNewChannel(timeInMs, newTcpChannel(channel));
+            }
+            else
+            {
+                final SSLEngine sslEngine = acceptorSslContext.createSSLEngine();
+                sslEngine.setUseClientMode(false);
+                handler.onNewChannel(timeInMs, newTlsTcpChannel(channel, sslEngine));
+            }
+        }
+    }
+
     protected void onFinishConnect(
         final InitiatedChannelHandler channelHandler, final SocketChannel channel) throws IOException
     {
-        channelHandler.onInitiatedChannel(newTcpChannel(channel), null);
+        final InetSocketAddress tlsAddress = tlsOpeningSocketChannels.remove(channel);
+        final TcpChannel tcpChannel;
+        if (tlsAddress == null)
+        {
+            tcpChannel = newTcpChannel(channel);
+        }
+        else
+        {
+            final SSLEngine sslEngine = initiatorSslContext.createSSLEngine(
+                tlsAddress.getHostString(), tlsAddress.getPort());
+            sslEngine.setUseClientMode(true);
+            tcpChannel = newTlsTcpChannel(channel, sslEngine);
+        }
+
+        channelHandler.onInitiatedChannel(tcpChannel, null);
         openingSocketChannels.remove(channel);
     }
 
@@ -182,6 +239,10 @@ public class DefaultTcpChannelSupplier extends TcpChannelSupplier
         }
         channel.register(selector, OP_CONNECT, channelHandler);
         openingSocketChannels.add(channel);
+        if (initiatorSslContext != null && initiatorTlsAddresses.test(address))
+        {
+            tlsOpeningSocketChannels.put(channel, address);
+        }
     }
 
     protected TcpChannel newTcpChannel(final SocketChannel channel) throws IOException
@@ -189,6 +250,23 @@ public class DefaultTcpChannelSupplier extends TcpChannelSupplier
         return new DefaultTcpChannel(channel);
     }
 
+    protected TcpChannel newTlsTcpChannel(final SocketChannel channel, final SSLEngine sslEngine) throws IOException
+    {
+        return new TlsTcpChannel(channel, sslEngine, tlsBufferPool);
+    }
+
+    // Large enough for any whole TLS record, encrypted or decrypted
+    private static int tlsBufferSize(final SSLContext sslContext)
+    {
+        if (sslContext == null)
+        {
+            return 0;
+        }
+
+        final SSLSession session = sslContext.createSSLEngine().getSession();
+        return Math.max(session.getPacketBufferSize(), session.getApplicationBufferSize());
+    }
+
     public void stopConnecting(final InetSocketAddress address) throws IOException
     {
         final Iterator<SocketChannel> iterator = openingSocketChannels.iterator();
@@ -199,6 +277,7 @@ public class DefaultTcpChannelSupplier extends TcpChannelSupplier
             {
                 CloseHelper.quietClose(channel);
                 iterator.remove();
+                tlsOpeningSocketChannels.remove(channel);
                 break;
             }
         }
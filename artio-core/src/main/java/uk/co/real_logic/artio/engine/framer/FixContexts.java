@@ -16,6 +16,7 @@
 package uk.co.real_logic.artio.engine.framer;
 
 import org.agrona.ErrorHandler;
+import org.agrona.collections.Long2ObjectHashMap;
 import org.agrona.collections.LongHashSet;
 import org.agrona.concurrent.AtomicBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
@@ -35,6 +36,7 @@ import uk.co.real_logic.artio.storage.messages.SessionIdEncoder;
 
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -53,6 +55,10 @@ import static uk.co.real_logic.artio.storage.messages.SessionIdEncoder.BLOCK_LEN
  * The session ids table is saved into a file. Records are written out using the {@link SessionIdEncoder}
  * and aren't allowed to span sectors. Each sector has a CRC32 checksum and each checksum is updated after writing
  * each session id record.
+ * <p>
+ * The file starts at the configured size and is doubled whenever a record doesn't fit into it, so the size only bounds
+ * the number of sessions at the largest file that can be mapped. Sessions are also indexed by their session id so that
+ * looking them up doesn't scan every session.
  */
 public class FixContexts implements SessionContexts
 {
@@ -81,6 +87,7 @@ public class FixContexts implements SessionContexts
     static final int VERSION_WITHOUT_FIX_DICTIONARY = 2;
 
     private static final int HEADER_SIZE = MessageHeaderDecoder.ENCODED_LENGTH;
+    private static final int MAX_FILE_SIZE = (Integer.MAX_VALUE / SECTOR_SIZE) * SECTOR_SIZE;
 
     private static final int ENCODING_BUFFER_SIZE = SECTOR_SIZE - CHECKSUM_SIZE;
     private final UnsafeBuffer compositeKeyBuffer = new UnsafeBuffer(new byte[ENCODING_BUFFER_SIZE]);
@@ -95,12 +102,14 @@ public class FixContexts implements SessionContexts
     private final LongHashSet currentlyAuthenticatedSessionIds = new LongHashSet();
     private final CopyOnWriteArrayList<SessionInfo> allSessions = new CopyOnWriteArrayList<>();
     private final Map<CompositeKey, SessionContext> compositeToContext = new HashMap<>();
+    private final Long2ObjectHashMap<Entry<CompositeKey, SessionContext>> sessionIdToEntry =
+        new Long2ObjectHashMap<>();
 
     private final CRC32 crc32 = new CRC32();
-    private final SectorFramer sectorFramer;
-    private final ByteBuffer byteBuffer;
+    private SectorFramer sectorFramer;
+    private ByteBuffer byteBuffer;
+    private AtomicBuffer buffer;
 
-    private final AtomicBuffer buffer;
     private final boolean reproductionEnabled;
     private final SessionIdStrategy idStrategy;
     private final ErrorHandler errorHandler;
@@ -151,6 +160,8 @@ public class FixContexts implements SessionContexts
         boolean requiresCompaction = false;
         int sectorEnd = 0;
         filePosition = HEADER_SIZE;
+        // Most sessions share a handful of dictionaries, so each is only looked up and instantiated once
+        final Map<String, FixDictionary> dictionaryByName = new HashMap<>();
         final int lastRecordStart = buffer.capacity() - BLOCK_LENGTH;
         while (filePosition < lastRecordStart)
         {
@@ -207,12 +218,12 @@ public class FixContexts implements SessionContexts
                 try
                 {
                     final FixDictionary thisDictionary = (dictionary == null) ?
-                        FixDictionary.of(FixDictionary.find(lastFixDictionary)) : dictionary;
+                        dictionaryByName.computeIfAbsent(lastFixDictionary, FixContexts::loadDictionary) : dictionary;
                     final SessionContext sessionContext = new SessionContext(compositeKey,
                         sessionId, sequenceIndex, lastLogonTime, lastSequenceResetTime, this,
                         sessionIdDecoder.initialOffset(),
                         initialSequenceIndex, thisDictionary, reproductionEnabled);
-                    compositeToContext.put(compositeKey, sessionContext);
+                    putContext(sessionContext);
                 }
                 catch (final Exception e)
                 {
@@ -313,10 +324,18 @@ public class FixContexts implements SessionContexts
             sessionId,
             SessionInfo.UNKNOWN_SEQUENCE_INDEX,
             fixDictionary);
+        sessionIdToEntry.put(sessionId, new SimpleImmutableEntry<>(compositeKey, sessionContext));
         allSessions.add(sessionContext);
         return sessionContext;
     }
 
+    private void putContext(final SessionContext sessionContext)
+    {
+        final CompositeKey compositeKey = sessionContext.sessionKey();
+        compositeToContext.put(compositeKey, sessionContext);
+        sessionIdToEntry.put(sessionContext.sessionId(), new SimpleImmutableEntry<>(compositeKey, sessionContext));
+    }
+
     private SessionContext assignSessionId(
         final CompositeKey compositeKey,
         final long sessionId,
@@ -363,7 +382,12 @@ public class FixContexts implements SessionContexts
             {
                 final int length = (BLOCK_LENGTH + SessionIdEncoder.lastFixDictionaryHeaderLength() +
                     fixDictionaryName.length() + compositeKeyLength);
-                filePosition = sectorFramer.claim(filePosition, length);
+                int claimedPosition = sectorFramer.claim(filePosition, length);
+                while (claimedPosition == OUT_OF_SPACE && growFile())
+                {
+                    claimedPosition = sectorFramer.claim(filePosition, length);
+                }
+                filePosition = claimedPosition;
                 keyPosition = filePosition;
                 if (filePosition == OUT_OF_SPACE)
                 {
@@ -394,6 +418,27 @@ public class FixContexts implements SessionContexts
         context.filePosition(keyPosition);
     }
 
+    private boolean growFile()
+    {
+        final int capacity = buffer.capacity();
+        if (capacity >= MAX_FILE_SIZE)
+        {
+            return false;
+        }
+
+        final int newCapacity = (int)Math.min(2L * capacity, MAX_FILE_SIZE);
+        final AtomicBuffer newBuffer = mappedFile.growTo(newCapacity);
+        if (newBuffer == null || newBuffer.capacity() <= capacity)
+        {
+            return false;
+        }
+
+        buffer = newBuffer;
+        byteBuffer = newBuffer.byteBuffer();
+        sectorFramer = new SectorFramer(newBuffer.capacity());
+        return true;
+    }
+
     private String nameOf(final FixDictionary fixDictionary)
     {
         return fixDictionary.getClass().getName();
@@ -419,17 +464,14 @@ public class FixContexts implements SessionContexts
         }
     }
 
-    Entry<CompositeKey, SessionContext> lookupById(final long sessionId)
+    private static FixDictionary loadDictionary(final String name)
     {
-        for (final Entry<CompositeKey, SessionContext> entry : compositeToContext.entrySet())
-        {
-            if (entry.getValue().sessionId() == sessionId)
-            {
-                return entry;
-            }
-        }
+        return FixDictionary.of(FixDictionary.find(name));
+    }
 
-        return null;
+    Entry<CompositeKey, SessionContext> lookupById(final long sessionId)
+    {
+        return sessionIdToEntry.get(sessionId);
     }
 
     // TODO: optimisation, more efficient checksumming, only checksum new data
@@ -460,6 +502,7 @@ public class FixContexts implements SessionContexts
 
         counter = LOWEST_VALID_SESSION_ID;
         compositeToContext.clear();
+        sessionIdToEntry.clear();
         allSessions.clear();
 
         if (backupLocation != null)
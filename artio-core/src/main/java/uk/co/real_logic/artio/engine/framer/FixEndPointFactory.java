@@ -16,13 +16,18 @@
 package uk.co.real_logic.artio.engine.framer;
 
 import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
 import org.agrona.concurrent.status.AtomicCounter;
 import uk.co.real_logic.artio.FixCounters;
 import uk.co.real_logic.artio.engine.EngineConfiguration;
 import uk.co.real_logic.artio.engine.MessageTimingHandler;
+import uk.co.real_logic.artio.engine.MessageTypeThrottle;
 import uk.co.real_logic.artio.engine.SenderSequenceNumbers;
 import uk.co.real_logic.artio.protocol.GatewayPublication;
 
+import java.io.File;
+import java.util.List;
+
 class FixEndPointFactory
 {
     private final FixReceiverEndPoint.FixReceiverEndPointFormatters receiverFormatters =
@@ -38,6 +43,7 @@ class FixEndPointFactory
     private final FixGatewaySessions gatewaySessions;
     private final SenderSequenceNumbers senderSequenceNumbers;
     private final MessageTimingHandler messageTimingHandler;
+    private final File senderSpillDir;
 
     FixEndPointFactory(
         final EngineConfiguration configuration,
@@ -59,6 +65,18 @@ class FixEndPointFactory
         this.gatewaySessions = gatewaySessions;
         this.senderSequenceNumbers = senderSequenceNumbers;
         this.messageTimingHandler = messageTimingHandler;
+
+        if (configuration.senderMaxSpillBytes() > 0)
+        {
+            // Spill files left behind by a previous run are stale
+            senderSpillDir = new File(configuration.logFileDir(), "sender-spill");
+            IoUtil.delete(senderSpillDir, true);
+            IoUtil.ensureDirectoryExists(senderSpillDir, senderSpillDir.getAbsolutePath());
+        }
+        else
+        {
+            senderSpillDir = null;
+        }
     }
 
     FixReceiverEndPoint receiverEndPoint(
@@ -67,11 +85,13 @@ class FixEndPointFactory
         final long sessionId,
         final int sequenceIndex,
         final int libraryId,
-        final Framer framer)
+        final Framer framer,
+        final ReceiveBufferPool bufferPool)
     {
-        return new FixReceiverEndPoint(
+        final FixReceiverEndPoint receiverEndPoint = new FixReceiverEndPoint(
             channel,
-            configuration.receiverBufferSize(),
+            bufferPool,
+            configuration.receiverBufferCompactionThreshold(),
             inboundLibraryPublication,
             connectionId,
             sessionId,
@@ -88,6 +108,16 @@ class FixEndPointFactory
             configuration.throttleWindowInMs(),
             configuration.throttleLimitOfMessages(),
             configuration.isReproductionEnabled());
+
+        final List<MessageTypeThrottle> messageTypeThrottles = configuration.messageTypeThrottles();
+        for (int i = 0, size = messageTypeThrottles.size(); i < size; i++)
+        {
+            final MessageTypeThrottle throttle = messageTypeThrottles.get(i);
+            receiverEndPoint.configureThrottle(
+                throttle.messageType(), throttle.throttleWindowInMs(), throttle.throttleLimitOfMessages());
+        }
+
+        return receiverEndPoint;
     }
 
     FixSenderEndPoint senderEndPoint(
@@ -110,11 +140,35 @@ class FixEndPointFactory
             errorHandler,
             framer,
             configuration.senderMaxBytesInBuffer(),
+            senderMaxBatchBytes(),
             configuration.slowConsumerTimeoutInMs(),
             System.currentTimeMillis(),
             senderSequenceNumbers.onNewSender(connectionId, bytesInBuffer),
             messageTimingHandler,
             receiverEndPoint,
-            senderFormatters);
+            senderFormatters,
+            senderSpillFile(connectionId),
+            configuration.senderMaxSpillBytes());
+    }
+
+    private SenderSpillFile senderSpillFile(final long connectionId)
+    {
+        if (senderSpillDir == null)
+        {
+            return null;
+        }
+
+        return new SenderSpillFile(new File(senderSpillDir, connectionId + ".spill"), errorHandler);
+    }
+
+    private int senderMaxBatchBytes()
+    {
+        // Reproduction records and replays writes per message, so it can't be combined with batching
+        if (reproductionLogWriter != null || configuration.isReproductionEnabled())
+        {
+            return 0;
+        }
+
+        return configuration.senderMaxBatchBytes();
     }
 }
@@ -195,7 +195,10 @@ class FixGatewaySession extends GatewaySession implements ConnectedSessionInfo,
     }
 
     public Reply<ThrottleConfigurationStatus> messageThrottle(
-        final long sessionId, final int throttleWindowInMs, final int throttleLimitOfMessages)
+        final long sessionId,
+        final long messageType,
+        final int throttleWindowInMs,
+        final int throttleLimitOfMessages)
     {
         return unsupported();
     }
@@ -496,12 +499,13 @@ class FixGatewaySession extends GatewaySession implements ConnectedSessionInfo,
         return true;
     }
 
-    public boolean configureThrottle(final int throttleWindowInMs, final int throttleLimitOfMessages)
+    public boolean configureThrottle(
+        final long messageType, final int throttleWindowInMs, final int throttleLimitOfMessages)
     {
-        final boolean ok = senderEndPoint.configureThrottle(throttleWindowInMs, throttleLimitOfMessages);
+        final boolean ok = senderEndPoint.configureThrottle(messageType, throttleWindowInMs, throttleLimitOfMessages);
         if (ok)
         {
-            receiverEndPoint.configureThrottle(throttleWindowInMs, throttleLimitOfMessages);
+            receiverEndPoint.configureThrottle(messageType, throttleWindowInMs, throttleLimitOfMessages);
         }
         return ok;
     }
@@ -116,7 +116,8 @@ public class FixGatewaySessions extends GatewaySessions
             outboundPublication,
             errorHandler,
             sentSequenceNumberIndex,
-            receivedSequenceNumberIndex);
+            receivedSequenceNumberIndex,
+            configuration.maxLogonsPerPoll());
 
         this.sessionIdStrategy = sessionIdStrategy;
         this.customisationStrategy = customisationStrategy;
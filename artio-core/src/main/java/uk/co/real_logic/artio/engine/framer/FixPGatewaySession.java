@@ -22,6 +22,7 @@ import uk.co.real_logic.artio.messages.FixPProtocolType;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
 import static uk.co.real_logic.artio.messages.DisconnectReason.ENGINE_SHUTDOWN;
+import static uk.co.real_logic.artio.protocol.GatewayPublication.ALL_MESSAGE_TYPES;
 
 public class FixPGatewaySession extends GatewaySession implements FixPConnectedSessionInfo
 {
@@ -161,8 +162,15 @@ public class FixPGatewaySession extends GatewaySession implements FixPConnectedS
         return context.key();
     }
 
-    public boolean configureThrottle(final int throttleWindowInMs, final int throttleLimitOfMessages)
+    public boolean configureThrottle(
+        final long messageType, final int throttleWindowInMs, final int throttleLimitOfMessages)
     {
+        // FIXP protocols don't have FIX message types, so only a session wide throttle is supported
+        if (messageType != ALL_MESSAGE_TYPES)
+        {
+            return false;
+        }
+
         receiverEndPoint.configureThrottle(throttleWindowInMs, throttleLimitOfMessages);
         return true;
     }
@@ -59,7 +59,8 @@ public class FixPGatewaySessions extends GatewaySessions
             outboundPublication,
             errorHandler,
             sentSequenceNumberIndex,
-            receivedSequenceNumberIndex);
+            receivedSequenceNumberIndex,
+            engineConfiguration.maxLogonsPerPoll());
         this.engineConfiguration = engineConfiguration;
         this.fixPContexts = fixPContexts;
     }
@@ -32,6 +32,7 @@ import uk.co.real_logic.artio.session.Session;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 
 import static uk.co.real_logic.artio.LogTag.FIX_MESSAGE_TCP;
@@ -73,8 +74,8 @@ abstract class FixPReceiverEndPoint extends ReceiverEndPoint
         final int throttleLimitOfMessages,
         final FixPRejectRefIdExtractor fixPRejectRefIdExtractor)
     {
-        super(publication, channel, connectionId, bufferSize, errorHandler, framer, libraryId,
-            throttleWindowInMs, throttleLimitOfMessages);
+        super(publication, channel, connectionId, ByteBuffer.allocateDirect(bufferSize), errorHandler, framer,
+            libraryId, throttleWindowInMs, throttleLimitOfMessages);
         inboundPublication = publication.dataPublication();
         this.epochNanoClock = epochNanoClock;
         this.correlationId = correlationId;
@@ -35,6 +35,7 @@ import uk.co.real_logic.artio.util.CharFormatter;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.ClosedChannelException;
 import java.util.Arrays;
@@ -139,6 +140,8 @@ class FixReceiverEndPoint extends ReceiverEndPoint
 
     private static final int PASSWORD_CLEANED = 0;
 
+    static final int SHRINK_AFTER_SMALL_DRAINS = 16;
+
     static class FixReceiverEndPointFormatters
     {
         private final CharFormatter noProxyProtocol = new CharFormatter("No proxy protocol usage for connId=%s");
@@ -157,6 +160,7 @@ class FixReceiverEndPoint extends ReceiverEndPoint
     private final AcceptorFixDictionaryLookup acceptorFixDictionaryLookup;
     private final FixReceiverEndPointFormatters formatters;
     private final boolean reproductionEnabled;
+    private final int compactionThreshold;
 
     private FixGatewaySession gatewaySession;
     private long sessionId;
@@ -173,10 +177,17 @@ class FixReceiverEndPoint extends ReceiverEndPoint
     private long lastReadTimestampInNs;
     private String address;
     private boolean requiresProxyCheck = true;
+    // Offset of the first unframed byte, only non-zero when buffer compaction is deferred.
+    private int startOfData = 0;
+    private final ReceiveBufferPool bufferPool;
+    private boolean bufferReleased = false;
+    // Consecutive drains of a grown buffer whose data would have fitted in a minimum sized buffer.
+    private int smallDrainCount = 0;
 
     FixReceiverEndPoint(
         final TcpChannel channel,
-        final int bufferSize,
+        final ReceiveBufferPool bufferPool,
+        final int compactionThreshold,
         final GatewayPublication publication,
         final long connectionId,
         final long sessionId,
@@ -194,8 +205,8 @@ class FixReceiverEndPoint extends ReceiverEndPoint
         final int throttleLimitOfMessages,
         final boolean reproductionEnabled)
     {
-        super(publication, channel, connectionId, bufferSize, errorHandler, framer, libraryId,
-            throttleWindowInMs, throttleLimitOfMessages);
+        super(publication, channel, connectionId, bufferPool.acquire(bufferPool.minBufferSize()), errorHandler, framer,
+            libraryId, throttleWindowInMs, throttleLimitOfMessages);
         Objects.requireNonNull(fixContexts, "sessionContexts");
         Objects.requireNonNull(gatewaySessions, "gatewaySessions");
         Objects.requireNonNull(clock, "clock");
@@ -209,6 +220,8 @@ class FixReceiverEndPoint extends ReceiverEndPoint
         this.clock = clock;
         this.acceptorFixDictionaryLookup = acceptorFixDictionaryLookup;
         this.reproductionEnabled = reproductionEnabled;
+        this.compactionThreshold = compactionThreshold;
+        this.bufferPool = bufferPool;
 
         address = channel.remoteAddr();
     }
@@ -223,6 +236,12 @@ class FixReceiverEndPoint extends ReceiverEndPoint
                 DebugLogger.log(FIX_MESSAGE_TCP, "Read     ", buffer, usedBufferData, dataRead);
             }
             usedBufferData += dataRead;
+
+            if (dataRead > 0 && !byteBuffer.hasRemaining())
+            {
+                // Either a large message or a burst of data, so give the next read more space if possible.
+                growBuffer();
+            }
         }
         else
         {
@@ -232,6 +251,59 @@ class FixReceiverEndPoint extends ReceiverEndPoint
         return dataRead;
     }
 
+    private void growBuffer()
+    {
+        final ByteBuffer oldByteBuffer = byteBuffer;
+        final ByteBuffer newByteBuffer = bufferPool.acquireLarger(oldByteBuffer);
+        if (newByteBuffer == null)
+        {
+            return;
+        }
+
+        // Compacts the unframed data as part of copying it into the larger buffer.
+        final int startOfData = this.startOfData;
+        final int usedBufferData = this.usedBufferData;
+        ByteBufferUtil.limit(oldByteBuffer, usedBufferData);
+        ByteBufferUtil.position(oldByteBuffer, startOfData);
+        newByteBuffer.put(oldByteBuffer);
+
+        swapBuffer(newByteBuffer);
+        this.usedBufferData = usedBufferData - startOfData;
+        this.startOfData = 0;
+    }
+
+    private void shrinkBuffer()
+    {
+        swapBuffer(bufferPool.acquire(bufferPool.minBufferSize()));
+    }
+
+    private void swapBuffer(final ByteBuffer newByteBuffer)
+    {
+        bufferPool.release(byteBuffer);
+        byteBuffer = newByteBuffer;
+        buffer.wrap(newByteBuffer);
+        smallDrainCount = 0;
+    }
+
+    // Only shrinks once SHRINK_AFTER_SMALL_DRAINS drains in a row would have fitted in a minimum sized buffer, so that
+    // steady traffic of large messages or bursts doesn't swap buffers with the pool on every drain. Polls that read
+    // nothing don't count, otherwise busy polling would shrink the buffer between every burst.
+    private boolean isShrinkDue(final int drainedData)
+    {
+        if (drainedData == 0)
+        {
+            return false;
+        }
+
+        if (drainedData >= bufferPool.minBufferSize())
+        {
+            smallDrainCount = 0;
+            return false;
+        }
+
+        return ++smallDrainCount >= SHRINK_AFTER_SMALL_DRAINS;
+    }
+
     int poll()
     {
         if (isPaused || hasDisconnected())
@@ -386,6 +458,12 @@ class FixReceiverEndPoint extends ReceiverEndPoint
 
     boolean retryFrameMessages()
     {
+        if (bufferReleased)
+        {
+            // Closed whilst back-pressured, the buffer may already belong to another connection.
+            return true;
+        }
+
         return frameMessages(lastReadTimestampInNs);
     }
 
@@ -396,7 +474,8 @@ class FixReceiverEndPoint extends ReceiverEndPoint
     private boolean frameMessages(final long readTimestampInNs)
     {
         final MutableAsciiBuffer buffer = this.buffer;
-        int offset = checkProxyLine(buffer);
+        final int startOfData = this.startOfData;
+        int offset = startOfData == 0 ? checkProxyLine(buffer) : startOfData;
 
         while (true)
         {
@@ -838,7 +917,7 @@ class FixReceiverEndPoint extends ReceiverEndPoint
     {
         DirectBuffer buffer = this.buffer;
 
-        if (shouldThrottle(readTimestamp))
+        if (shouldThrottle(messageType, readTimestamp))
         {
             return throttleMessage(messageOffset, messageType, messageLength, buffer);
         }
@@ -1045,10 +1124,30 @@ class FixReceiverEndPoint extends ReceiverEndPoint
 
     private void moveRemainingDataToBufferStart(final int offset)
     {
-        usedBufferData -= offset;
-        buffer.putBytes(0, buffer, offset, usedBufferData);
+        final int usedBufferData = this.usedBufferData;
+        final int compactionThreshold = this.compactionThreshold;
+        if (offset < usedBufferData && compactionThreshold > 0 &&
+            byteBuffer.capacity() - usedBufferData >= compactionThreshold)
+        {
+            // Leave the remaining data in place, the rest of the message will be read after it and framed there.
+            startOfData = offset;
+            return;
+        }
+
+        final int remainingData = usedBufferData - offset;
+        this.usedBufferData = remainingData;
+        startOfData = 0;
+        if (remainingData == 0 && pendingAcceptorLogon == null &&
+            byteBuffer.capacity() > bufferPool.minBufferSize() && isShrinkDue(usedBufferData))
+        {
+            // Drained and traffic has been small for a while, so hand the larger buffer back to the pool.
+            shrinkBuffer();
+            return;
+        }
+
+        buffer.putBytes(0, buffer, offset, remainingData);
         // position set to ensure that back pressure is applied to TCP when read(byteBuffer) called.
-        ByteBufferUtil.position(byteBuffer, usedBufferData);
+        ByteBufferUtil.position(byteBuffer, remainingData);
     }
 
     private boolean saveInvalidChecksumMessage(
@@ -1086,6 +1185,20 @@ class FixReceiverEndPoint extends ReceiverEndPoint
         {
             errorHandler.onError(ex);
         }
+
+        if (!bufferReleased)
+        {
+            bufferReleased = true;
+            if (pendingAcceptorLogon == null)
+            {
+                bufferPool.release(byteBuffer);
+            }
+            else
+            {
+                // A pending logon may still be read out of the buffer, so it can't be reused by another connection.
+                bufferPool.discard(byteBuffer);
+            }
+        }
     }
 
     void removeEndpointFromFramer()
@@ -1118,6 +1231,12 @@ class FixReceiverEndPoint extends ReceiverEndPoint
         this.gatewaySession = gatewaySession;
     }
 
+    CompositeKey sessionKey()
+    {
+        final FixGatewaySession gatewaySession = this.gatewaySession;
+        return gatewaySession == null ? null : gatewaySession.sessionKey();
+    }
+
     void pause()
     {
         isPaused = true;
@@ -21,6 +21,8 @@ import io.aeron.protocol.DataHeaderFlyweight;
 import org.agrona.DirectBuffer;
 import org.agrona.ErrorHandler;
 import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
 import org.agrona.concurrent.status.AtomicCounter;
 import uk.co.real_logic.artio.DebugLogger;
 import uk.co.real_logic.artio.LogTag;
@@ -28,6 +30,7 @@ import uk.co.real_logic.artio.dictionary.FixDictionary;
 import uk.co.real_logic.artio.engine.ByteBufferUtil;
 import uk.co.real_logic.artio.engine.EngineConfiguration;
 import uk.co.real_logic.artio.engine.MessageTimingHandler;
+import uk.co.real_logic.artio.engine.MessageTypeThrottle;
 import uk.co.real_logic.artio.engine.SenderSequenceNumber;
 import uk.co.real_logic.artio.fields.UtcTimestampEncoder;
 import uk.co.real_logic.artio.messages.*;
@@ -36,6 +39,7 @@ import uk.co.real_logic.artio.util.CharFormatter;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
@@ -62,6 +66,9 @@ class FixSenderEndPoint extends SenderEndPoint
 
     protected static final int NO_REATTEMPT = 0;
 
+    // Bounds the number of buffers passed to a gathering write, well below IOV_MAX
+    static final int MAX_BATCH_MESSAGES = 64;
+
     static class Formatters
     {
         final CharFormatter replayComplete = new CharFormatter(
@@ -95,6 +102,7 @@ class FixSenderEndPoint extends SenderEndPoint
     private final MessageTimingHandler messageTimingHandler;
     private final FixReceiverEndPoint receiverEndPoint;
     private final Formatters formatters;
+    private final int maxBatchBytes;
 
     private long sessionId;
     private long sendingTimeoutTimeInMs;
@@ -104,14 +112,22 @@ class FixSenderEndPoint extends SenderEndPoint
     private CompositeKey sessionKey;
     private EngineConfiguration configuration;
 
-    private final ReattemptState normalBuffer = new ReattemptState();
-    private final ReattemptState replayBuffer = new ReattemptState();
+    private final ReattemptState normalBuffer;
+    private final ReattemptState replayBuffer;
 
     private boolean replaying;
     private long replayCorrelationId;
     private boolean requiresRetry;
     private int reattemptBytesWritten = NO_REATTEMPT;
 
+    // Non-replay messages polled within a single duty cycle, stored in the same format as the reattempt buffers
+    private final ReattemptState batch = new ReattemptState();
+    private int batchMessageCount;
+    private boolean flushScheduled;
+    private boolean closing;
+    private ByteBuffer[] batchViews;
+    private ByteBuffer batchViewsSource;
+
     FixSenderEndPoint(
         final long connectionId,
         final int libraryId,
@@ -123,12 +139,15 @@ class FixSenderEndPoint extends SenderEndPoint
         final ErrorHandler errorHandler,
         final Framer framer,
         final int maxBytesInBuffer,
+        final int maxBatchBytes,
         final long slowConsumerTimeoutInMs,
         final long timeInMs,
         final SenderSequenceNumber senderSequenceNumber,
         final MessageTimingHandler messageTimingHandler,
         final FixReceiverEndPoint receiverEndPoint,
-        final Formatters formatters)
+        final Formatters formatters,
+        final SenderSpillFile spillFile,
+        final int maxSpillBytes)
     {
         super(connectionId, inboundPublication, reproductionPublication, libraryId, channel, bytesInBuffer,
             maxBytesInBuffer, errorHandler,
@@ -142,6 +161,10 @@ class FixSenderEndPoint extends SenderEndPoint
         this.messageTimingHandler = messageTimingHandler;
         this.receiverEndPoint = receiverEndPoint;
         this.formatters = formatters;
+        this.maxBatchBytes = maxBatchBytes;
+        // Only non-replay messages are spilled, replays are bounded by the resend request that triggered them
+        normalBuffer = new ReattemptState(spillFile, maxBytesInBuffer, maxSpillBytes);
+        replayBuffer = new ReattemptState(null, maxBytesInBuffer, 0);
         sendingTimeoutTimeInMs = timeInMs + slowConsumerTimeoutInMs;
     }
 
@@ -228,15 +251,23 @@ class FixSenderEndPoint extends SenderEndPoint
                 configuration.epochNanoClock(),
                 configuration.throttleWindowInMs(), configuration.throttleLimitOfMessages()
             );
+            final List<MessageTypeThrottle> messageTypeThrottles = configuration.messageTypeThrottles();
+            for (int i = 0, size = messageTypeThrottles.size(); i < size; i++)
+            {
+                final MessageTypeThrottle throttle = messageTypeThrottles.get(i);
+                throttleRejectBuilder.configureThrottle(
+                    throttle.messageType(), throttle.throttleWindowInMs(), throttle.throttleLimitOfMessages());
+            }
             configuration.sessionIdStrategy().setupSession(sessionKey, throttleRejectBuilder.header());
         }
 
         return throttleRejectBuilder;
     }
 
-    boolean configureThrottle(final int throttleWindowInMs, final int throttleLimitOfMessages)
+    boolean configureThrottle(
+        final long messageType, final int throttleWindowInMs, final int throttleLimitOfMessages)
     {
-        return throttleRejectBuilder().configureThrottle(throttleWindowInMs, throttleLimitOfMessages);
+        return throttleRejectBuilder().configureThrottle(messageType, throttleWindowInMs, throttleLimitOfMessages);
     }
 
     private int throttleRejectLength(final int businessRejectRefIDLength)
@@ -252,6 +283,17 @@ class FixSenderEndPoint extends SenderEndPoint
         {
             final int metaDataOffset = offset - FixMessageDecoder.bodyHeaderLength() - metaDataLength;
 
+            if (batchMessageCount > 0 && (replay || !fitsInBatch(bodyLength, metaDataLength)))
+            {
+                flushBatch(timeInMs);
+            }
+
+            if (maxBatchBytes > 0 && !replay && !replaying && !requiresRetry)
+            {
+                appendToBatch(directBuffer, offset, bodyLength, metaDataOffset, metaDataLength, seqNum);
+                return;
+            }
+
             if ((replaying && !replay) || (!replaying && replay) || requiresRetry)
             {
                 enqueueMessage(directBuffer, offset, bodyLength, metaDataOffset, metaDataLength, seqNum, replay);
@@ -309,6 +351,159 @@ class FixSenderEndPoint extends SenderEndPoint
         }
     }
 
+    private boolean fitsInBatch(final int bodyLength, final int metaDataLength)
+    {
+        return batchMessageCount < MAX_BATCH_MESSAGES &&
+            batch.usage + ENQ_MESSAGE_BLOCK_LEN + bodyLength + metaDataLength <= maxBatchBytes;
+    }
+
+    private void appendToBatch(
+        final DirectBuffer srcBuffer, final int srcOffset, final int bodyLength,
+        final int metaDataOffset, final int metaDataLength, final int sequenceNumber)
+    {
+        final int totalLength = ENQ_MESSAGE_BLOCK_LEN + bodyLength + metaDataLength;
+        final ReattemptState batch = this.batch;
+        batch.usage += totalLength;
+
+        putMessage(
+            batch.buffer(), batch.usage - totalLength,
+            srcBuffer, srcOffset, bodyLength, metaDataOffset, metaDataLength, sequenceNumber);
+        batchMessageCount++;
+    }
+
+    // return true iff this is the first message batched since the last flush
+    boolean scheduleFlush()
+    {
+        if (batchMessageCount > 0 && !flushScheduled)
+        {
+            flushScheduled = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    void flushBatch(final long timeInMs)
+    {
+        flushScheduled = false;
+        final int messageCount = batchMessageCount;
+        if (messageCount == 0)
+        {
+            return;
+        }
+
+        final ReattemptState batch = this.batch;
+        final MutableDirectBuffer buffer = batch.buffer;
+        final int usage = batch.usage;
+        final int wrapAdjustment = buffer.wrapAdjustment();
+        final ByteBuffer[] views = batchViews(buffer.byteBuffer());
+
+        int offset = 0;
+        for (int i = 0; i < messageCount; i++)
+        {
+            final int bodyLength = buffer.getInt(offset + SIZE_OF_INT + SIZE_OF_INT);
+            final int bodyOffset = offset + SIZE_OF_INT + SIZE_OF_INT + SIZE_OF_INT;
+            final int metaDataLength = buffer.getInt(bodyOffset + bodyLength);
+
+            final ByteBuffer view = views[i];
+            ByteBufferUtil.limit(view, wrapAdjustment + bodyOffset + bodyLength);
+            ByteBufferUtil.position(view, wrapAdjustment + bodyOffset);
+
+            offset += ENQ_MESSAGE_BLOCK_LEN + bodyLength + metaDataLength;
+        }
+
+        batchMessageCount = 0;
+        batch.usage = 0;
+
+        try
+        {
+            final long written = channel.write(views, 0, messageCount);
+
+            long remaining = written;
+            offset = 0;
+            while (offset < usage)
+            {
+                final int sequenceNumber = buffer.getInt(offset + SIZE_OF_INT);
+                final int bodyLength = buffer.getInt(offset + SIZE_OF_INT + SIZE_OF_INT);
+                final int bodyOffset = offset + SIZE_OF_INT + SIZE_OF_INT + SIZE_OF_INT;
+
+                if (remaining < bodyLength)
+                {
+                    // Everything from the partially written message onwards gets re-attempted
+                    final int partiallyWritten = (int)remaining;
+                    final int unwrittenLength = usage - offset;
+                    final ReattemptState reattemptState = enqueue(unwrittenLength, false);
+                    reattemptState.buffer().putBytes(
+                        reattemptState.usage - unwrittenLength, buffer, offset, unwrittenLength);
+                    this.reattemptBytesWritten = partiallyWritten;
+
+                    tryLogBackPressure(sequenceNumber, false, partiallyWritten);
+                    break;
+                }
+
+                remaining -= bodyLength;
+                DebugLogger.log(FIX_MESSAGE_TCP, "Written  ", buffer, bodyOffset, bodyLength);
+                offset = onProcessMsgComplete(
+                    false, buffer, offset, sequenceNumber, bodyLength, bodyOffset, bodyLength);
+            }
+
+            updateSendingTimeoutTimeInMs(timeInMs, written);
+        }
+        catch (final IOException e)
+        {
+            onBatchError(e, messageCount);
+        }
+    }
+
+    // Flushes a batch that would otherwise be discarded by the end point being disconnected or closed, a failure to
+    // write it is then reported without disconnecting again.
+    void flushBatchBeforeClose(final long timeInMs)
+    {
+        closing = true;
+        try
+        {
+            flushBatch(timeInMs);
+        }
+        finally
+        {
+            closing = false;
+        }
+    }
+
+    // The batch has been cleared by the time the write fails, so its messages can't be reattempted.
+    private void onBatchError(final IOException e, final int messageCount)
+    {
+        errorHandler.onError(new Exception(String.format(
+            "Failed to write %d batched messages for sessionId=%d,connectionId=%d",
+            messageCount, sessionId, connectionId), e));
+
+        if (!closing && !receiverEndPoint.hasDisconnected())
+        {
+            disconnectEndpoint(EXCEPTION);
+        }
+    }
+
+    private ByteBuffer[] batchViews(final ByteBuffer source)
+    {
+        ByteBuffer[] views = batchViews;
+        // Only re-created when the batch buffer has been expanded
+        if (batchViewsSource != source)
+        {
+            if (views == null)
+            {
+                views = batchViews = new ByteBuffer[MAX_BATCH_MESSAGES];
+            }
+
+            for (int i = 0; i < MAX_BATCH_MESSAGES; i++)
+            {
+                views[i] = source.duplicate();
+            }
+            batchViewsSource = source;
+        }
+
+        return views;
+    }
+
     private void tryLogBackPressure(final int seqNum, final boolean replay, final int written)
     {
         final ReproductionLogWriter reproductionLogWriter = this.reproductionLogWriter;
@@ -357,8 +552,17 @@ class FixSenderEndPoint extends SenderEndPoint
         final int totalLength = ENQ_MESSAGE_BLOCK_LEN + bodyLength + metaDataLength;
         final ReattemptState reattemptState = enqueue(totalLength, replay);
 
-        int reattemptOffset = reattemptState.usage - totalLength;
-        final ExpandableDirectByteBuffer buffer = reattemptState.buffer();
+        putMessage(
+            reattemptState.buffer(), reattemptState.usage - totalLength,
+            srcBuffer, srcOffset, bodyLength, metaDataOffset, metaDataLength, sequenceNumber);
+    }
+
+    private static void putMessage(
+        final MutableDirectBuffer buffer, final int offset,
+        final DirectBuffer srcBuffer, final int srcOffset, final int bodyLength,
+        final int metaDataOffset, final int metaDataLength, final int sequenceNumber)
+    {
+        int reattemptOffset = offset;
 
         buffer.putInt(reattemptOffset, ENQ_MSG);
         reattemptOffset += SIZE_OF_INT;
@@ -393,7 +597,7 @@ class FixSenderEndPoint extends SenderEndPoint
         final ReattemptState reattemptState = enqueue(ENQ_REPLAY_COMPLETE_LEN, true);
 
         int reattemptOffset = reattemptState.usage - ENQ_REPLAY_COMPLETE_LEN;
-        final ExpandableDirectByteBuffer buffer = reattemptState.buffer();
+        final MutableDirectBuffer buffer = reattemptState.buffer();
 
         buffer.putInt(reattemptOffset, messageType);
         reattemptOffset += SIZE_OF_INT;
@@ -413,10 +617,13 @@ class FixSenderEndPoint extends SenderEndPoint
 
         final ReattemptState reattemptState = reattemptState(replay);
 
-        final int bufferUsage = reattemptState.usage + length;
-        reattemptState.usage = bufferUsage;
+        reattemptState.usage += length;
         if (currentStream)
         {
+            // Ensures that the spill file has been mapped before the limit is checked
+            reattemptState.buffer();
+            final int bufferUsage = reattemptState.bytesInBuffer();
+            final int maxBytesInBuffer = reattemptState.maxBytesInBuffer();
             if (bufferUsage > maxBytesInBuffer)
             {
                 if (IS_SLOW_CONSUMER_LOG_TAG_ENABLED)
@@ -444,14 +651,14 @@ class FixSenderEndPoint extends SenderEndPoint
     private boolean processReattemptBuffer(final boolean replay)
     {
         final ReattemptState reattemptState = reattemptState(replay);
-        final ExpandableDirectByteBuffer buffer = reattemptState.buffer;
+        final MutableDirectBuffer buffer = reattemptState.buffer;
         final int reattemptBufferUsage = reattemptState.usage;
         if (reattemptBufferUsage == 0)
         {
             return true;
         }
 
-        int offset = 0;
+        int offset = reattemptState.start;
         while (offset < reattemptBufferUsage)
         {
             try
@@ -508,7 +715,7 @@ class FixSenderEndPoint extends SenderEndPoint
                     {
                         replaying(false, correlationId);
                         reattemptState.shuffleWritten(endOfReplayEntry);
-                        bytesInBuffer.setOrdered(normalBuffer.usage);
+                        bytesInBuffer.setOrdered(normalBuffer.bytesInBuffer());
                         return true;
                     }
                 }
@@ -538,7 +745,7 @@ class FixSenderEndPoint extends SenderEndPoint
 
     private int onProcessMsgComplete(
         final boolean replay,
-        final ExpandableDirectByteBuffer buffer,
+        final MutableDirectBuffer buffer,
         final int offset,
         final int sequenceNumber,
         final int bodyLength,
@@ -577,7 +784,7 @@ class FixSenderEndPoint extends SenderEndPoint
                 // Do we need to try the other queue?
                 final boolean other = !replaying;
                 final ReattemptState reattemptState = reattemptState(other);
-                final int usage = reattemptState.usage;
+                final int usage = reattemptState.bytesInBuffer();
                 if (usage == 0)
                 {
                     requiresRetry(false);
@@ -605,7 +812,7 @@ class FixSenderEndPoint extends SenderEndPoint
         return CONTINUE;
     }
 
-    private void updateSendingTimeoutTimeInMs(final long timeInMs, final int written)
+    private void updateSendingTimeoutTimeInMs(final long timeInMs, final long written)
     {
         if (written > 0)
         {
@@ -622,6 +829,18 @@ class FixSenderEndPoint extends SenderEndPoint
 
     public void close()
     {
+        // Batched messages are normally flushed when disconnecting, anything left can only be written if the
+        // connection is still up, eg on engine shutdown. The sending timeout is irrelevant once closed.
+        if (channel.isOpen() && !receiverEndPoint.hasDisconnected())
+        {
+            flushBatchBeforeClose(0);
+        }
+        else
+        {
+            batchMessageCount = 0;
+            batch.usage = 0;
+        }
+        normalBuffer.close();
         senderSequenceNumber.close();
         invalidLibraryAttempts.close();
         super.close();
@@ -660,6 +879,7 @@ class FixSenderEndPoint extends SenderEndPoint
 
     boolean poll(final long timeInMs)
     {
+        flushBatch(timeInMs);
         reattempt();
 
         if (isSlowConsumer() && timeInMs > sendingTimeoutTimeInMs)
@@ -799,14 +1019,56 @@ class FixSenderEndPoint extends SenderEndPoint
         return reattemptBytesWritten;
     }
 
-    static class ReattemptState
+    static class ReattemptState implements AutoCloseable
     {
-        ExpandableDirectByteBuffer buffer;
+        private final int maxBytesInMemory;
+        private final int maxSpillBytes;
+        private SenderSpillFile spillFile;
+
+        MutableDirectBuffer buffer;
+        // Offset of the first entry that is still to be written, only non-zero whilst spilled to disk
+        int start;
         int usage;
 
-        ExpandableDirectByteBuffer buffer()
+        ReattemptState()
+        {
+            this(null, Integer.MAX_VALUE, 0);
+        }
+
+        ReattemptState(final SenderSpillFile spillFile, final int maxBytesInMemory, final int maxSpillBytes)
         {
-            ExpandableDirectByteBuffer buffer = this.buffer;
+            this.spillFile = spillFile;
+            this.maxBytesInMemory = maxBytesInMemory;
+            this.maxSpillBytes = maxSpillBytes;
+        }
+
+        MutableDirectBuffer buffer()
+        {
+            final int usage = this.usage;
+            final SenderSpillFile spillFile = this.spillFile;
+            if (spillFile != null && (spillFile.isMapped() || usage > maxBytesInMemory))
+            {
+                final UnsafeBuffer spillBuffer = spillFile.map(usage);
+                if (spillBuffer != null)
+                {
+                    final MutableDirectBuffer buffer = this.buffer;
+                    if (buffer != spillBuffer)
+                    {
+                        if (buffer != null)
+                        {
+                            spillBuffer.putBytes(0, buffer, 0, Math.min(buffer.capacity(), usage));
+                        }
+                        // The in memory buffer is dropped so that its memory can be reclaimed whilst spilled
+                        this.buffer = spillBuffer;
+                    }
+
+                    return spillBuffer;
+                }
+
+                unspill(spillFile);
+            }
+
+            MutableDirectBuffer buffer = this.buffer;
             if (buffer == null)
             {
                 buffer = this.buffer = new ExpandableDirectByteBuffer();
@@ -817,16 +1079,74 @@ class FixSenderEndPoint extends SenderEndPoint
             return buffer;
         }
 
+        // Falls back to buffering in memory, the in memory limit then disconnects the slow consumer
+        private void unspill(final SenderSpillFile spillFile)
+        {
+            final MutableDirectBuffer buffer = this.buffer;
+            if (spillFile.isMapped())
+            {
+                final ExpandableDirectByteBuffer memoryBuffer = new ExpandableDirectByteBuffer(usage);
+                memoryBuffer.putBytes(0, buffer, 0, Math.min(buffer.capacity(), usage));
+                this.buffer = memoryBuffer;
+            }
+            spillFile.release();
+            this.spillFile = null;
+        }
+
+        int maxBytesInBuffer()
+        {
+            return spillFile != null ? maxSpillBytes : maxBytesInMemory;
+        }
+
+        int bytesInBuffer()
+        {
+            return usage - start;
+        }
+
+        boolean isSpilled()
+        {
+            final SenderSpillFile spillFile = this.spillFile;
+            return spillFile != null && spillFile.isMapped();
+        }
+
         int shuffleWritten(final int written)
         {
             int usage = this.usage;
-            if (written > 0)
+            if (written >= usage)
+            {
+                this.start = 0;
+                this.usage = 0;
+                if (isSpilled())
+                {
+                    // Drained, so go back to buffering in memory
+                    spillFile.release();
+                    buffer = null;
+                }
+                return 0;
+            }
+
+            int start = written;
+            // A spill file is only compacted once the drained entries outweigh the remaining ones, so that draining a
+            // large backlog doesn't repeatedly copy it.
+            if (start > 0 && (!isSpilled() || start >= usage - start))
             {
-                usage -= written;
-                buffer.putBytes(0, buffer, written, usage);
+                usage -= start;
+                buffer.putBytes(0, buffer, start, usage);
+                start = 0;
                 this.usage = usage;
             }
-            return usage;
+            this.start = start;
+
+            return usage - start;
+        }
+
+        public void close()
+        {
+            final SenderSpillFile spillFile = this.spillFile;
+            if (spillFile != null)
+            {
+                spillFile.close();
+            }
         }
     }
 
@@ -24,6 +24,7 @@ import uk.co.real_logic.artio.LogTag;
 import uk.co.real_logic.artio.engine.FixEngine;
 import uk.co.real_logic.artio.util.CharFormatter;
 
+import java.util.ArrayList;
 import java.util.function.LongToIntFunction;
 
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
@@ -35,6 +36,7 @@ class FixSenderEndPoints implements AutoCloseable
         "SEPs.missReplayComplete, connId=%s, corrId=%s, slow=%s");
 
     private final Long2ObjectHashMap<FixSenderEndPoint> connectionIdToSenderEndpoint = new Long2ObjectHashMap<>();
+    private final ArrayList<FixSenderEndPoint> endPointsToFlush = new ArrayList<>();
     private final ErrorHandler errorHandler;
     private final LongToIntFunction libraryLookup = this::libraryLookup;
 
@@ -96,6 +98,7 @@ class FixSenderEndPoints implements AutoCloseable
                 messageType,
                 timeInMs,
                 metaDataLength);
+            scheduleFlush(endPoint);
             return true;
         }
 
@@ -120,11 +123,47 @@ class FixSenderEndPoints implements AutoCloseable
                 libraryId, refMsgType, refSeqNum, sequenceNumber, sequenceIndex,
                 businessRejectRefIDBuffer, businessRejectRefIDOffset, businessRejectRefIDLength,
                 timeInMs);
+            scheduleFlush(endPoint);
         }
 
         return null;
     }
 
+    private void scheduleFlush(final FixSenderEndPoint endPoint)
+    {
+        if (endPoint.scheduleFlush())
+        {
+            endPointsToFlush.add(endPoint);
+        }
+    }
+
+    // Writes out the messages batched by each end point during the last poll of the library subscription
+    int flushBatches()
+    {
+        final ArrayList<FixSenderEndPoint> endPointsToFlush = this.endPointsToFlush;
+        final int size = endPointsToFlush.size();
+        if (size > 0)
+        {
+            final long timeInMs = this.timeInMs;
+            for (int i = 0; i < size; i++)
+            {
+                endPointsToFlush.get(i).flushBatch(timeInMs);
+            }
+            endPointsToFlush.clear();
+        }
+
+        return size;
+    }
+
+    void flushBatchBeforeDisconnect(final long connectionId)
+    {
+        final FixSenderEndPoint endPoint = connectionIdToSenderEndpoint.get(connectionId);
+        if (endPoint != null)
+        {
+            endPoint.flushBatchBeforeClose(timeInMs);
+        }
+    }
+
     Action onReplayMessage(
         final long connectionId, final DirectBuffer buffer, final int offset, final int length,
         final int sequenceNumber)
@@ -156,6 +195,7 @@ class FixSenderEndPoints implements AutoCloseable
         final FixSenderEndPoint senderEndPoint = connectionIdToSenderEndpoint.get(connectionId);
         if (senderEndPoint != null)
         {
+            senderEndPoint.flushBatch(timeInMs);
             return senderEndPoint.onReplayComplete(correlationId);
         }
         else
@@ -221,6 +261,7 @@ class FixSenderEndPoints implements AutoCloseable
         final FixSenderEndPoint fixSenderEndPoint = connectionIdToSenderEndpoint.get(connection);
         if (fixSenderEndPoint != null)
         {
+            fixSenderEndPoint.flushBatch(timeInMs);
             fixSenderEndPoint.onStartReplay(correlationId);
         }
     }
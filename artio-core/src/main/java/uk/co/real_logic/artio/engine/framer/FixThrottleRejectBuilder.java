@@ -2,6 +2,7 @@ package uk.co.real_logic.artio.engine.framer;
 
 import org.agrona.DirectBuffer;
 import org.agrona.ErrorHandler;
+import org.agrona.collections.Long2ObjectHashMap;
 import org.agrona.concurrent.EpochNanoClock;
 import uk.co.real_logic.artio.builder.AbstractBusinessMessageRejectEncoder;
 import uk.co.real_logic.artio.builder.Encoder;
@@ -14,10 +15,13 @@ import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 import java.nio.ByteBuffer;
 
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static uk.co.real_logic.artio.dictionary.generation.CodecUtil.MISSING_INT;
+import static uk.co.real_logic.artio.protocol.GatewayPublication.ALL_MESSAGE_TYPES;
 
 public class FixThrottleRejectBuilder
 {
     private static final int BUFFER_CAPACITY = 512;
+    private static final String NO_LIMIT_TEXT = "Throttle limit exceeded";
 
     private final MutableAsciiBuffer businessRejectBuffer;
     private int offset;
@@ -28,6 +32,11 @@ public class FixThrottleRejectBuilder
     private final AbstractBusinessMessageRejectEncoder businessMessageReject;
     private final byte[] refMsgTypeBuffer = new byte[2];
 
+    // Used when the session wide throttle is disabled and only message type specific throttles are configured
+    private String text = NO_LIMIT_TEXT;
+    // Lazily created as most sessions don't have message type specific throttles
+    private Long2ObjectHashMap<String> messageTypeTexts;
+
     public FixThrottleRejectBuilder(
         final FixDictionary fixDictionary,
         final ErrorHandler errorHandler,
@@ -57,12 +66,32 @@ public class FixThrottleRejectBuilder
     }
 
     boolean configureThrottle(final int throttleWindowInMs, final int throttleLimitOfMessages)
+    {
+        return configureThrottle(ALL_MESSAGE_TYPES, throttleWindowInMs, throttleLimitOfMessages);
+    }
+
+    boolean configureThrottle(
+        final long messageType, final int throttleWindowInMs, final int throttleLimitOfMessages)
     {
         if (businessMessageReject != null)
         {
-            businessMessageReject.text(String.format("Throttle limit exceeded (%s in %sms)",
+            final String text = throttleWindowInMs == MISSING_INT ? NO_LIMIT_TEXT : String.format(
+                "Throttle limit exceeded (%s in %sms)",
                 throttleLimitOfMessages,
-                throttleWindowInMs));
+                throttleWindowInMs);
+
+            if (messageType == ALL_MESSAGE_TYPES)
+            {
+                this.text = text;
+            }
+            else
+            {
+                if (messageTypeTexts == null)
+                {
+                    messageTypeTexts = new Long2ObjectHashMap<>();
+                }
+                messageTypeTexts.put(messageType, text);
+            }
             return true;
         }
         else
@@ -102,6 +131,10 @@ public class FixThrottleRejectBuilder
             header.possDupFlag(true);
         }
 
+        final Long2ObjectHashMap<String> messageTypeTexts = this.messageTypeTexts;
+        final String messageTypeText = messageTypeTexts != null ? messageTypeTexts.get(refMsgType) : null;
+        businessMessageReject.text(messageTypeText != null ? messageTypeText : text);
+
         final int refMsgTypeLength = MessageTypeEncoding.unpackMessageType(refMsgType, refMsgTypeBuffer);
         businessMessageReject
             .refMsgType(refMsgTypeBuffer, 0, refMsgTypeLength)
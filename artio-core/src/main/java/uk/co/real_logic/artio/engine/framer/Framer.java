@@ -180,6 +180,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     private final AcceptorFixDictionaryLookup acceptorFixDictionaryLookup;
     private final LongHashSet requestAllSessionSeenSessions = new LongHashSet();
     private final CancelOnDisconnectFinder cancelOnDisconnectFinder = new CancelOnDisconnectFinder();
+    private final UnsafeBuffer readMetaDataBuffer = new UnsafeBuffer();
     private final Image outboundEngineImage;
     private final boolean acceptsFixP;
     private final FixPContexts fixPContexts;
@@ -283,7 +284,18 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             configuration.acceptorfixDictionary(),
             configuration.acceptorFixDictionaryOverrides());
 
-        receiverEndPoints = new ReceiverEndPoints(errorHandler);
+        receiverEndPoints = new ReceiverEndPoints(
+            errorHandler,
+            new ReceiveBufferPool(
+                configuration.receiverBufferMinSize(),
+                configuration.receiverBufferSize(),
+                fixCounters.receiveBufferPoolBytesInUse(),
+                fixCounters.receiveBufferPoolBytesFree()),
+            configuration.busyPollSessions(),
+            fixCounters.receiverBusyPollReads(),
+            fixCounters.receiverBusyPollEmptyReads(),
+            fixCounters.receiverSelectedReads(),
+            fixCounters.receiverSelectedEmptyReads());
 
         this.outboundLibraryFragmentLimit = configuration.outboundLibraryFragmentLimit();
         this.replayFragmentLimit = configuration.replayFragmentLimit();
@@ -449,7 +461,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
     {
         return fixPSenderEndPoints.reattempt() +
             librarySubscription.controlledPoll(librarySubscriber, outboundLibraryFragmentLimit) +
-            adminEngineSubscription.poll(adminEngineProtocolSubscription, outboundLibraryFragmentLimit);
+            adminEngineSubscription.poll(adminEngineProtocolSubscription, outboundLibraryFragmentLimit) +
+            fixSenderEndPoints.flushBatches();
     }
 
     private int pollLibraries(final long timeInMs)
@@ -961,6 +974,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         final int libraryId,
         final long correlationId,
         final long sessionId,
+        final long messageType,
         final int throttleWindowInMs,
         final int throttleLimitOfMessages)
     {
@@ -982,7 +996,7 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         }
 
         final ThrottleConfigurationStatus status =
-            gatewaySession.configureThrottle(throttleWindowInMs, throttleLimitOfMessages) ?
+            gatewaySession.configureThrottle(messageType, throttleWindowInMs, throttleLimitOfMessages) ?
             ThrottleConfigurationStatus.OK : ThrottleConfigurationStatus.INVALID_DICTIONARY;
         return saveThrottleConfReply(libraryId, correlationId, status);
     }
@@ -1759,8 +1773,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             context.sessionId(),
             context.sequenceIndex(),
             libraryId,
-            this);
-        receiverEndPoints.add(receiverEndPoint);
+            this,
+            receiverEndPoints.bufferPool());
 
         final FixSenderEndPoint senderEndPoint = endPointFactory.senderEndPoint(
             channel, connectionId, libraryId, this, receiverEndPoint);
@@ -1783,6 +1797,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             configuration);
 
         receiverEndPoint.gatewaySession(gatewaySession);
+        // Added once the gateway session is set so that initiator session keys are known
+        receiverEndPoints.add(receiverEndPoint);
 
         return gatewaySession;
     }
@@ -1794,6 +1810,8 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
 
     public Action onDisconnect(final int libraryId, final long connectionId, final DisconnectReason reason)
     {
+        // eg: a logout batched in the same poll as the disconnect needs writing before the channel is closed
+        fixSenderEndPoints.flushBatchBeforeDisconnect(connectionId);
         receiverEndPoints.removeConnection(connectionId, reason);
         fixSenderEndPoints.removeConnection(connectionId);
         fixPSenderEndPoints.removeConnection(connectionId);
@@ -3282,16 +3300,18 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
         final long sessionId,
         final long correlationId)
     {
-        final DirectBuffer metaDataBuffer = new UnsafeBuffer();
-        final MetaDataStatus status = sentSequenceNumberIndex.readMetaData(sessionId, metaDataBuffer);
-
-        schedule(() -> inboundPublication.saveReadMetaDataReply(
-            libraryId,
-            correlationId,
-            status,
-            metaDataBuffer,
-            0,
-            metaDataBuffer.capacity()));
+        schedule(() ->
+        {
+            // Read when sending the reply as the index reuses its copy of the metadata for the next read
+            final MetaDataStatus status = sentSequenceNumberIndex.wrapMetaData(sessionId, readMetaDataBuffer);
+            return inboundPublication.saveReadMetaDataReply(
+                libraryId,
+                correlationId,
+                status,
+                readMetaDataBuffer,
+                0,
+                status == MetaDataStatus.OK ? readMetaDataBuffer.capacity() : 0);
+        });
 
         return CONTINUE;
     }
@@ -3302,8 +3322,9 @@ class Framer implements Agent, EngineEndPointHandler, ProtocolHandler
             this::quiesce,
             retryManager,
             inboundMessages,
-            receiverEndPoints,
+            // Closed before the receiver end points close the channels so that batched messages can be flushed
             fixSenderEndPoints,
+            receiverEndPoints,
             fixPSenderEndPoints,
             channelSupplier,
             sentSequenceNumberIndex,
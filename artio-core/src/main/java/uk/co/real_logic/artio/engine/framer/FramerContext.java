@@ -79,6 +79,9 @@ public class FramerContext
         final IdleStrategy idleStrategy = configuration.framerIdleStrategy();
         final Streams outboundLibraryStreams = engineContext.outboundLibraryStreams();
 
+        final PersistenceScheduler persistenceScheduler = engineContext.persistenceScheduler();
+        configuration.sessionIdBuffer().persistenceScheduler(persistenceScheduler);
+        configuration.fixPIdBuffer().persistenceScheduler(persistenceScheduler);
         this.fixContexts = new FixContexts(
             configuration.sessionIdBuffer(), sessionIdStrategy, configuration.initialSequenceIndex(), errorHandler,
             configuration.isReproductionEnabled());
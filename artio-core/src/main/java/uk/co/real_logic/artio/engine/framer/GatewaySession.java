@@ -145,7 +145,7 @@ abstract class GatewaySession implements AbstractConnectedSessionInfo
 
     abstract void close();
 
-    public abstract boolean configureThrottle(int throttleWindowInMs, int throttleLimitOfMessages);
+    public abstract boolean configureThrottle(long messageType, int throttleWindowInMs, int throttleLimitOfMessages);
 
     public abstract long startEndOfDay();
 }
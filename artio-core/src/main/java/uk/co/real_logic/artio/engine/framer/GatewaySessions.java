@@ -50,13 +50,18 @@ abstract class GatewaySessions
     protected final SequenceNumberIndexReader receivedSequenceNumberIndex;
     protected ErrorHandler errorHandler;
 
+    // Admission limit for completing authenticated logons on the framer thread, 0 means no limit
+    private final int maxLogonsPerPoll;
+    private int logonsCompletedThisPoll;
+
     GatewaySessions(
         final EpochClock epochClock,
         final GatewayPublication inboundPublication,
         final GatewayPublication outboundPublication,
         final ErrorHandler errorHandler,
         final SequenceNumberIndexReader sentSequenceNumberIndex,
-        final SequenceNumberIndexReader receivedSequenceNumberIndex)
+        final SequenceNumberIndexReader receivedSequenceNumberIndex,
+        final int maxLogonsPerPoll)
     {
         this.epochClock = epochClock;
         this.inboundPublication = inboundPublication;
@@ -64,6 +69,7 @@ abstract class GatewaySessions
         this.errorHandler = errorHandler;
         this.sentSequenceNumberIndex = sentSequenceNumberIndex;
         this.receivedSequenceNumberIndex = receivedSequenceNumberIndex;
+        this.maxLogonsPerPoll = maxLogonsPerPoll;
     }
 
     static GatewaySession removeSessionByConnectionId(final long connectionId, final List<GatewaySession> sessions)
@@ -142,6 +148,9 @@ abstract class GatewaySessions
 
     int pollSessions(final long timeInMs, final long timeInNs)
     {
+        // Called once per duty cycle, after the receiver end points have polled their pending logons
+        logonsCompletedThisPoll = 0;
+
         final List<GatewaySession> sessions = this.sessions;
 
         int eventsProcessed = 0;
@@ -166,6 +175,24 @@ abstract class GatewaySessions
         return sessions;
     }
 
+    private boolean admitLogon()
+    {
+        final int maxLogonsPerPoll = this.maxLogonsPerPoll;
+        if (maxLogonsPerPoll == 0)
+        {
+            return true;
+        }
+
+        final int logonsCompletedThisPoll = this.logonsCompletedThisPoll;
+        if (logonsCompletedThisPoll >= maxLogonsPerPoll)
+        {
+            return false;
+        }
+
+        this.logonsCompletedThisPoll = logonsCompletedThisPoll + 1;
+        return true;
+    }
+
     private boolean lookupSequenceNumbers(final GatewaySession gatewaySession, final long requiredPosition)
     {
         final int aeronSessionId = outboundPublication.sessionId();
@@ -351,6 +378,12 @@ abstract class GatewaySessions
             switch (state)
             {
                 case AUTHENTICATED:
+                    // Retried on the next duty cycle by the receiver end point
+                    if (!admitLogon())
+                    {
+                        return false;
+                    }
+
                     session.onAuthenticationResult();
 
                     onAuthenticated();
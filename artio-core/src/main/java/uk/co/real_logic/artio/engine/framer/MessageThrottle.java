@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static uk.co.real_logic.artio.dictionary.generation.CodecUtil.MISSING_INT;
+
+/**
+ * Inbound message throttle that implements the generic cell rate algorithm (GCRA), ie a token bucket that is tracked
+ * with a single timestamp rather than a count of tokens.
+ *
+ * Allows a burst of up to throttleLimitOfMessages messages and then one message every
+ * throttleWindowInMs / throttleLimitOfMessages, so a session sending at a steady rate of up to
+ * throttleLimitOfMessages per throttleWindowInMs is never throttled. A burst followed by sending at that steady rate
+ * means that up to 2 * throttleLimitOfMessages - 1 messages can be accepted within a single throttleWindowInMs. Memory
+ * use is constant regardless of the limit.
+ * Throttled messages don't count towards the limit.
+ */
+final class MessageThrottle
+{
+    private boolean enabled;
+    private long emissionIntervalInNs;
+    private long toleranceInNs;
+    private long theoreticalArrivalTimeInNs = Long.MIN_VALUE;
+
+    /**
+     * Configure the throttle.
+     *
+     * @param throttleWindowInMs the time window to apply the throttle over or {@link
+     *                           uk.co.real_logic.artio.dictionary.generation.CodecUtil#MISSING_INT} to disable it.
+     * @param throttleLimitOfMessages the number of messages per time window that are accepted at a sustained rate,
+     *                                which is also the largest burst of messages that is accepted.
+     */
+    void configure(final int throttleWindowInMs, final int throttleLimitOfMessages)
+    {
+        if (throttleWindowInMs == MISSING_INT)
+        {
+            enabled = false;
+            theoreticalArrivalTimeInNs = Long.MIN_VALUE;
+            return;
+        }
+
+        final long throttleWindowInNs = MILLISECONDS.toNanos(throttleWindowInMs);
+        emissionIntervalInNs = Math.max(1, throttleWindowInNs / throttleLimitOfMessages);
+        toleranceInNs = throttleWindowInNs - emissionIntervalInNs;
+        // NB: the theoretical arrival time is retained when reconfiguring, so that a change of limit doesn't grant
+        // a fresh burst to a session that has just used up its current one.
+        enabled = true;
+    }
+
+    boolean shouldThrottle(final long timeInNs)
+    {
+        if (!enabled)
+        {
+            return false;
+        }
+
+        final long theoreticalArrivalTimeInNs = Math.max(this.theoreticalArrivalTimeInNs, timeInNs);
+        if (theoreticalArrivalTimeInNs - timeInNs > toleranceInNs)
+        {
+            return true;
+        }
+
+        this.theoreticalArrivalTimeInNs = theoreticalArrivalTimeInNs + emissionIntervalInNs;
+        return false;
+    }
+}
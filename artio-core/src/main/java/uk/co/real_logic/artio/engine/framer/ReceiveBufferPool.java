@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.status.AtomicCounter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pool of direct receive buffers shared by the FIX receiver end points of the framer.
+ *
+ * Buffers are handed out in size classes that double from the minimum buffer size up to the maximum buffer size. This
+ * lets an idle connection hold a small buffer, grow it when a large message or a burst of data arrives and give the
+ * larger buffer back once all of its data has been framed.
+ *
+ * Only accessed on the Framer thread.
+ */
+class ReceiveBufferPool implements AutoCloseable
+{
+    // Buffers released beyond this number per size class are left for the garbage collector
+    static final int MAX_FREE_BUFFERS_PER_SIZE = 64;
+
+    private final int minBufferSize;
+    private final int maxBufferSize;
+    private final int[] sizes;
+    private final ByteBuffer[][] freeBuffers;
+    private final int[] freeCounts;
+    private final AtomicCounter bytesInUse;
+    private final AtomicCounter bytesFree;
+
+    private long bytesInUseValue;
+    private long bytesFreeValue;
+
+    ReceiveBufferPool(
+        final int minBufferSize,
+        final int maxBufferSize,
+        final AtomicCounter bytesInUse,
+        final AtomicCounter bytesFree)
+    {
+        if (minBufferSize <= 0 || minBufferSize > maxBufferSize)
+        {
+            throw new IllegalArgumentException(String.format(
+                "minBufferSize(%d) must be positive and no more than maxBufferSize(%d)",
+                minBufferSize,
+                maxBufferSize));
+        }
+
+        this.minBufferSize = minBufferSize;
+        this.maxBufferSize = maxBufferSize;
+        this.bytesInUse = bytesInUse;
+        this.bytesFree = bytesFree;
+
+        int sizeClasses = 1;
+        for (long size = minBufferSize; size < maxBufferSize; size <<= 1)
+        {
+            sizeClasses++;
+        }
+
+        sizes = new int[sizeClasses];
+        long size = minBufferSize;
+        for (int i = 0; i < sizeClasses; i++)
+        {
+            sizes[i] = (int)Math.min(size, maxBufferSize);
+            size <<= 1;
+        }
+
+        freeBuffers = new ByteBuffer[sizeClasses][MAX_FREE_BUFFERS_PER_SIZE];
+        freeCounts = new int[sizeClasses];
+    }
+
+    int minBufferSize()
+    {
+        return minBufferSize;
+    }
+
+    int maxBufferSize()
+    {
+        return maxBufferSize;
+    }
+
+    /**
+     * Acquire a cleared buffer from the smallest size class that can hold the requested size.
+     *
+     * @param size the minimum capacity of the buffer, must be no more than the maximum buffer size.
+     * @return a cleared buffer with a capacity of at least size.
+     */
+    ByteBuffer acquire(final int size)
+    {
+        final int sizeClass = sizeClass(size);
+        final int bufferSize = sizes[sizeClass];
+        final int freeCount = freeCounts[sizeClass];
+
+        final ByteBuffer buffer;
+        if (freeCount > 0)
+        {
+            final ByteBuffer[] freeBuffers = this.freeBuffers[sizeClass];
+            final int index = freeCount - 1;
+            buffer = freeBuffers[index];
+            freeBuffers[index] = null;
+            freeCounts[sizeClass] = index;
+            bytesFreeValue -= bufferSize;
+            bytesFree.setOrdered(bytesFreeValue);
+        }
+        else
+        {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        bytesInUseValue += bufferSize;
+        bytesInUse.setOrdered(bytesInUseValue);
+
+        return buffer;
+    }
+
+    /**
+     * Acquire a buffer from the next size class up from the given buffer's size class.
+     *
+     * @param buffer the buffer that needs to grow.
+     * @return a cleared larger buffer or null if the buffer is already at the maximum buffer size.
+     */
+    ByteBuffer acquireLarger(final ByteBuffer buffer)
+    {
+        final int capacity = buffer.capacity();
+        if (capacity >= maxBufferSize)
+        {
+            return null;
+        }
+
+        return acquire(capacity + 1);
+    }
+
+    void release(final ByteBuffer buffer)
+    {
+        final int capacity = buffer.capacity();
+        bytesInUseValue -= capacity;
+        bytesInUse.setOrdered(bytesInUseValue);
+
+        final int sizeClass = sizeClass(capacity);
+        final int freeCount = freeCounts[sizeClass];
+        if (freeCount < MAX_FREE_BUFFERS_PER_SIZE && sizes[sizeClass] == capacity)
+        {
+            buffer.clear();
+            freeBuffers[sizeClass][freeCount] = buffer;
+            freeCounts[sizeClass] = freeCount + 1;
+            bytesFreeValue += capacity;
+            bytesFree.setOrdered(bytesFreeValue);
+        }
+    }
+
+    // For buffers that are no longer in use but can't safely be reused
+    void discard(final ByteBuffer buffer)
+    {
+        bytesInUseValue -= buffer.capacity();
+        bytesInUse.setOrdered(bytesInUseValue);
+    }
+
+    private int sizeClass(final int size)
+    {
+        final int[] sizes = this.sizes;
+        final int lastSizeClass = sizes.length - 1;
+        for (int i = 0; i < lastSizeClass; i++)
+        {
+            if (size <= sizes[i])
+            {
+                return i;
+            }
+        }
+
+        return lastSizeClass;
+    }
+
+    long bytesInUse()
+    {
+        return bytesInUseValue;
+    }
+
+    long bytesFree()
+    {
+        return bytesFreeValue;
+    }
+
+    public void close()
+    {
+        CloseHelper.closeAll(bytesInUse, bytesFree);
+    }
+}
@@ -15,10 +15,11 @@
  */
 package uk.co.real_logic.artio.engine.framer;
 
-import org.agrona.BitUtil;
 import org.agrona.ErrorHandler;
+import org.agrona.collections.Long2ObjectHashMap;
 import uk.co.real_logic.artio.messages.DisconnectReason;
 import uk.co.real_logic.artio.protocol.GatewayPublication;
+import uk.co.real_logic.artio.session.CompositeKey;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
 import java.io.IOException;
@@ -28,10 +29,8 @@ import java.nio.channels.Selector;
 import java.util.Objects;
 
 import static java.nio.channels.SelectionKey.OP_READ;
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static uk.co.real_logic.artio.dictionary.generation.CodecUtil.MISSING_INT;
-import static uk.co.real_logic.artio.dictionary.generation.CodecUtil.MISSING_LONG;
 import static uk.co.real_logic.artio.messages.DisconnectReason.*;
+import static uk.co.real_logic.artio.protocol.GatewayPublication.ALL_MESSAGE_TYPES;
 
 public abstract class ReceiverEndPoint
 {
@@ -42,7 +41,8 @@ public abstract class ReceiverEndPoint
     protected final long connectionId;
     protected boolean hasDisconnected = false;
     protected final MutableAsciiBuffer buffer;
-    protected final ByteBuffer byteBuffer;
+    // Wrapped by buffer, may be swapped for a buffer of a different size by subclasses
+    protected ByteBuffer byteBuffer;
     protected final ErrorHandler errorHandler;
     protected final Framer framer;
 
@@ -51,17 +51,15 @@ public abstract class ReceiverEndPoint
     protected SelectionKey selectionKey;
     protected AcceptorLogonResult pendingAcceptorLogon;
 
-    private long throttleWindowInNs;
-    private int throttleLimitOfMessages;
-    private long[] lastMessageTimestampsInNs;
-    private int lastMessageTimestampsInNsMask;
-    private int throttlePosition;
+    private final MessageThrottle throttle = new MessageThrottle();
+    // Lazily created as most sessions don't have message type specific throttles
+    private Long2ObjectHashMap<MessageThrottle> messageTypeThrottles;
 
     public ReceiverEndPoint(
         final GatewayPublication publication,
         final TcpChannel channel,
         final long connectionId,
-        final int bufferSize,
+        final ByteBuffer byteBuffer,
         final ErrorHandler errorHandler,
         final Framer framer,
         final int libraryId,
@@ -77,7 +75,7 @@ public abstract class ReceiverEndPoint
         this.framer = framer;
         this.libraryId = libraryId;
 
-        byteBuffer = ByteBuffer.allocateDirect(bufferSize);
+        this.byteBuffer = byteBuffer;
         buffer = new MutableAsciiBuffer(byteBuffer);
 
         configureThrottle(throttleWindowInMs, throttleLimitOfMessages);
@@ -85,68 +83,52 @@ public abstract class ReceiverEndPoint
 
     void configureThrottle(final int throttleWindowInMs, final int throttleLimitOfMessages)
     {
-        if (this.throttleWindowInNs == throttleWindowInMs && this.throttleLimitOfMessages == throttleLimitOfMessages)
+        throttle.configure(throttleWindowInMs, throttleLimitOfMessages);
+    }
+
+    // Messages of a type with its own throttle are only counted against that throttle, not the session's throttle.
+    void configureThrottle(final long messageType, final int throttleWindowInMs, final int throttleLimitOfMessages)
+    {
+        if (messageType == ALL_MESSAGE_TYPES)
         {
+            configureThrottle(throttleWindowInMs, throttleLimitOfMessages);
             return;
         }
 
-        final long[] oldLastMessageTimestampsInNs = this.lastMessageTimestampsInNs;
-        final int oldThrottleLimitOfMessages = this.throttleLimitOfMessages;
-        final int oldLastMessageTimestampsInNsMask = this.lastMessageTimestampsInNsMask;
-        final int oldThrottlePosition = this.throttlePosition;
-
-        if (throttleWindowInMs == MISSING_INT)
-        {
-            this.throttleWindowInNs = MISSING_LONG;
-            lastMessageTimestampsInNs = null;
-            lastMessageTimestampsInNsMask = 0;
-        }
-        else
+        Long2ObjectHashMap<MessageThrottle> messageTypeThrottles = this.messageTypeThrottles;
+        if (messageTypeThrottles == null)
         {
-            this.throttleWindowInNs = MILLISECONDS.toNanos(throttleWindowInMs);
-            final int lastMessageTimestampsInNsCapacity = BitUtil.findNextPositivePowerOfTwo(throttleLimitOfMessages);
-            lastMessageTimestampsInNs = new long[lastMessageTimestampsInNsCapacity];
-            lastMessageTimestampsInNsMask = lastMessageTimestampsInNsCapacity - 1;
+            messageTypeThrottles = new Long2ObjectHashMap<>();
+            this.messageTypeThrottles = messageTypeThrottles;
         }
-        this.throttleLimitOfMessages = throttleLimitOfMessages;
-        throttlePosition = 0;
 
-        if (oldLastMessageTimestampsInNs != null && lastMessageTimestampsInNs != null)
+        MessageThrottle throttle = messageTypeThrottles.get(messageType);
+        if (throttle == null)
         {
-            final int minLimitOfMessages = Math.min(oldThrottleLimitOfMessages, throttleLimitOfMessages);
-            int srcPosition = Math.max(0, oldThrottlePosition - minLimitOfMessages);
-            while (srcPosition < oldThrottlePosition)
-            {
-                lastMessageTimestampsInNs[throttlePosition & lastMessageTimestampsInNsMask] =
-                    oldLastMessageTimestampsInNs[srcPosition & oldLastMessageTimestampsInNsMask];
-                srcPosition++;
-                throttlePosition++;
-            }
+            throttle = new MessageThrottle();
+            messageTypeThrottles.put(messageType, throttle);
         }
+        throttle.configure(throttleWindowInMs, throttleLimitOfMessages);
     }
 
     final boolean shouldThrottle(final long readTimestampInNs)
     {
-        final long throttleWindowInNs = this.throttleWindowInNs;
-        if (throttleWindowInNs == MISSING_LONG)
+        return throttle.shouldThrottle(readTimestampInNs);
+    }
+
+    final boolean shouldThrottle(final long messageType, final long readTimestampInNs)
+    {
+        final Long2ObjectHashMap<MessageThrottle> messageTypeThrottles = this.messageTypeThrottles;
+        if (messageTypeThrottles != null)
         {
-            return false;
+            final MessageThrottle throttle = messageTypeThrottles.get(messageType);
+            if (throttle != null)
+            {
+                return throttle.shouldThrottle(readTimestampInNs);
+            }
         }
 
-        final long[] lastMessageTimestampsInNs = this.lastMessageTimestampsInNs;
-        final int lastMessageTimestampsMask = this.lastMessageTimestampsInNsMask;
-        final int throttlePosition = this.throttlePosition;
-
-        final int oldestMessagePosition = throttlePosition - throttleLimitOfMessages;
-        final int oldestMessageIndex = oldestMessagePosition & lastMessageTimestampsMask;
-        final long oldestMessageTimestampInNs = lastMessageTimestampsInNs[oldestMessageIndex];
-
-        final int currentIndex = throttlePosition & lastMessageTimestampsMask;
-        lastMessageTimestampsInNs[currentIndex] = readTimestampInNs;
-        this.throttlePosition = throttlePosition + 1;
-
-        final long timeAgoOfOldestMessageInNs = readTimestampInNs - oldestMessageTimestampInNs;
-        return timeAgoOfOldestMessageInNs < throttleWindowInNs;
+        return throttle.shouldThrottle(readTimestampInNs);
     }
 
     long connectionId()
@@ -154,6 +136,17 @@ public abstract class ReceiverEndPoint
         return connectionId;
     }
 
+    // null until the session of the connection is known, or for protocols without a FIX session key
+    CompositeKey sessionKey()
+    {
+        return null;
+    }
+
+    boolean requiresBusyPolling()
+    {
+        return channel.requiresBusyPolling();
+    }
+
     void register(final Selector selector) throws IOException
     {
         selectionKey = channel.register(selector, OP_READ, this);
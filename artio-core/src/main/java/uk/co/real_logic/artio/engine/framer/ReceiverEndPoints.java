@@ -17,14 +17,20 @@ package uk.co.real_logic.artio.engine.framer;
 
 import org.agrona.ErrorHandler;
 import org.agrona.LangUtil;
+import org.agrona.CloseHelper;
+import org.agrona.collections.ArrayListUtil;
 import org.agrona.collections.ArrayUtil;
+import org.agrona.concurrent.status.AtomicCounter;
 import org.agrona.nio.TransportPoller;
 import uk.co.real_logic.artio.messages.DisconnectReason;
+import uk.co.real_logic.artio.session.CompositeKey;
 
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.function.LongConsumer;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import static org.agrona.collections.ArrayUtil.UNKNOWN_INDEX;
@@ -38,18 +44,53 @@ class ReceiverEndPoints extends TransportPoller
         ARTIO_ITERATION_THRESHOLD_PROP_NAME, ITERATION_THRESHOLD_DEFAULT);
 
     private final ErrorHandler errorHandler;
+    private final ReceiveBufferPool bufferPool;
+    private final Predicate<CompositeKey> busyPollSessions;
+    private final AtomicCounter busyPollReads;
+    private final AtomicCounter busyPollEmptyReads;
+    private final AtomicCounter selectedReads;
+    private final AtomicCounter selectedEmptyReads;
 
     // Authentication flow requires periodic polling of the receiver end points until the authentication is
     // complete, so these endpoints are always polled, rather than using the selector.
     private ReceiverEndPoint[] requiredPollingEndPoints = new ReceiverEndPoint[0];
+    // Authenticated sessions that have been configured as latency sensitive are read on every duty cycle and never
+    // registered with the selector.
+    private ReceiverEndPoint[] busyPollEndPoints = new ReceiverEndPoint[0];
     private ReceiverEndPoint[] endPoints = new ReceiverEndPoint[0];
+    // Registered endpoints whose channels hold data that the selector can't see, eg decrypted TLS data, or that are in
+    // the middle of a TLS handshake. These are polled on every duty cycle until their channels no longer need it.
+    private final ArrayList<ReceiverEndPoint> heldDataEndPoints = new ArrayList<>();
     // An endpoint that has read data out of the TCP layer but has been back-pressured when attempting to write
     // the data into the Aeron stream.
     private ReceiverEndPoint backpressuredEndPoint = null;
-
-    ReceiverEndPoints(final ErrorHandler errorHandler)
+    // Counted during a poll and added to the counters once at the end of it, rather than with an ordered store per read
+    private long busyPollReadCount;
+    private long busyPollEmptyReadCount;
+    private long selectedReadCount;
+    private long selectedEmptyReadCount;
+
+    ReceiverEndPoints(
+        final ErrorHandler errorHandler,
+        final ReceiveBufferPool bufferPool,
+        final Predicate<CompositeKey> busyPollSessions,
+        final AtomicCounter busyPollReads,
+        final AtomicCounter busyPollEmptyReads,
+        final AtomicCounter selectedReads,
+        final AtomicCounter selectedEmptyReads)
     {
         this.errorHandler = errorHandler;
+        this.bufferPool = bufferPool;
+        this.busyPollSessions = busyPollSessions;
+        this.busyPollReads = busyPollReads;
+        this.busyPollEmptyReads = busyPollEmptyReads;
+        this.selectedReads = selectedReads;
+        this.selectedEmptyReads = selectedEmptyReads;
+    }
+
+    ReceiveBufferPool bufferPool()
+    {
+        return bufferPool;
     }
 
     void add(final ReceiverEndPoint endPoint)
@@ -71,12 +112,20 @@ class ReceiverEndPoints extends TransportPoller
 
     private void addToNormalEndpoints(final ReceiverEndPoint endPoint, final boolean register)
     {
+        // Lingering endpoints aren't registered and shouldn't be busy polled either
+        if (register && isBusyPollSession(endPoint))
+        {
+            busyPollEndPoints = ArrayUtil.add(busyPollEndPoints, endPoint);
+            return;
+        }
+
         try
         {
             endPoints = ArrayUtil.add(endPoints, endPoint);
             if (register)
             {
                 endPoint.register(selector);
+                checkHeldData(endPoint);
             }
         }
         catch (final IOException ex)
@@ -85,8 +134,42 @@ class ReceiverEndPoints extends TransportPoller
         }
     }
 
+    private void checkHeldData(final ReceiverEndPoint endPoint)
+    {
+        if (endPoint.requiresBusyPolling() && !heldDataEndPoints.contains(endPoint))
+        {
+            heldDataEndPoints.add(endPoint);
+        }
+    }
+
+    private void removeHeldData(final long connectionId)
+    {
+        final ArrayList<ReceiverEndPoint> heldDataEndPoints = this.heldDataEndPoints;
+        for (int i = heldDataEndPoints.size() - 1; i >= 0; i--)
+        {
+            if (heldDataEndPoints.get(i).connectionId() == connectionId)
+            {
+                ArrayListUtil.fastUnorderedRemove(heldDataEndPoints, i);
+            }
+        }
+    }
+
+    private boolean isBusyPollSession(final ReceiverEndPoint endPoint)
+    {
+        final Predicate<CompositeKey> busyPollSessions = this.busyPollSessions;
+        if (busyPollSessions == null)
+        {
+            return false;
+        }
+
+        final CompositeKey sessionKey = endPoint.sessionKey();
+        return sessionKey != null && busyPollSessions.test(sessionKey);
+    }
+
     void removeConnection(final long connectionId, final DisconnectReason reason)
     {
+        removeHeldData(connectionId);
+
         final ReceiverEndPoint[] endPoints = this.endPoints;
         int index = findAndCloseEndPoint(connectionId, reason, endPoints);
 
@@ -94,6 +177,10 @@ class ReceiverEndPoints extends TransportPoller
         {
             this.endPoints = ArrayUtil.remove(endPoints, index);
         }
+        else if ((index = findAndCloseEndPoint(connectionId, reason, busyPollEndPoints)) != UNKNOWN_INDEX)
+        {
+            this.busyPollEndPoints = ArrayUtil.remove(busyPollEndPoints, index);
+        }
         else
         {
             index = findAndCloseEndPoint(connectionId, reason, requiredPollingEndPoints);
@@ -105,8 +192,11 @@ class ReceiverEndPoints extends TransportPoller
 
     void receiverEndPointPollingRequired(final long connectionId)
     {
+        removeHeldData(connectionId);
+
         final ReceiverEndPoint[] endPoints = this.endPoints;
-        final int index = findEndPoint(connectionId, endPoints);
+        final ReceiverEndPoint[] busyPollEndPoints = this.busyPollEndPoints;
+        int index = findEndPoint(connectionId, endPoints);
         if (index != UNKNOWN_INDEX)
         {
             final ReceiverEndPoint endPoint = endPoints[index];
@@ -114,6 +204,13 @@ class ReceiverEndPoints extends TransportPoller
 
             addToRequiredPollingEndpoints(endPoint);
         }
+        else if ((index = findEndPoint(connectionId, busyPollEndPoints)) != UNKNOWN_INDEX)
+        {
+            final ReceiverEndPoint endPoint = busyPollEndPoints[index];
+            this.busyPollEndPoints = ArrayUtil.remove(busyPollEndPoints, index);
+
+            addToRequiredPollingEndpoints(endPoint);
+        }
         else
         {
             errorHandler.onError(new Exception(String.format(
@@ -196,12 +293,12 @@ class ReceiverEndPoints extends TransportPoller
                 {
                     this.backpressuredEndPoint = null;
 
-                    bytesReceived += pollNormalEndPoints(numRequiredPollingEndPoints);
+                    bytesReceived += pollOptionalEndPoints(numRequiredPollingEndPoints);
                 }
             }
             else
             {
-                bytesReceived += pollNormalEndPoints(numRequiredPollingEndPoints);
+                bytesReceived += pollOptionalEndPoints(numRequiredPollingEndPoints);
             }
 
             bytesReceived = pollArray(bytesReceived, requiredPollingEndPoints, numRequiredPollingEndPoints);
@@ -210,22 +307,99 @@ class ReceiverEndPoints extends TransportPoller
         {
             LangUtil.rethrowUnchecked(ex);
         }
+        finally
+        {
+            updateReadCounters();
+        }
 
         return bytesReceived;
     }
 
-    private int pollNormalEndPoints(final int numRequiredPollingEndPoints) throws IOException
+    private void updateReadCounters()
+    {
+        addReads(busyPollReads, busyPollReadCount);
+        addReads(busyPollEmptyReads, busyPollEmptyReadCount);
+        addReads(selectedReads, selectedReadCount);
+        addReads(selectedEmptyReads, selectedEmptyReadCount);
+        busyPollReadCount = 0;
+        busyPollEmptyReadCount = 0;
+        selectedReadCount = 0;
+        selectedEmptyReadCount = 0;
+    }
+
+    private static void addReads(final AtomicCounter counter, final long reads)
+    {
+        if (reads != 0)
+        {
+            counter.getAndAddOrdered(reads);
+        }
+    }
+
+    private int pollOptionalEndPoints(final int numRequiredPollingEndPoints) throws IOException
+    {
+        final int bytesReceived = pollBusyPollEndPoints();
+        if (backpressuredEndPoint != null)
+        {
+            return bytesReceived;
+        }
+
+        return bytesReceived + pollNormalEndPoints(numRequiredPollingEndPoints + busyPollEndPoints.length);
+    }
+
+    private int pollBusyPollEndPoints()
+    {
+        int bytesReceived = 0;
+        final ReceiverEndPoint[] busyPollEndPoints = this.busyPollEndPoints;
+        final int numEndPoints = busyPollEndPoints.length;
+        for (int i = 0; i < numEndPoints; i++)
+        {
+            final ReceiverEndPoint endPoint = busyPollEndPoints[i];
+            final int polledBytes = endPoint.poll();
+            busyPollReadCount++;
+            if (polledBytes < 0)
+            {
+                backpressuredEndPoint = endPoint;
+                bytesReceived -= polledBytes;
+                break;
+            }
+            else if (polledBytes == 0)
+            {
+                busyPollEmptyReadCount++;
+            }
+
+            bytesReceived += polledBytes;
+        }
+        return bytesReceived;
+    }
+
+    private int pollNormalEndPoints(final int numAlwaysPolledEndPoints) throws IOException
     {
         int bytesReceived = 0;
         final ReceiverEndPoint[] endPoints = this.endPoints;
         final int numEndPoints = endPoints.length;
-        final int threshold = ARTIO_ITERATION_THRESHOLD - numRequiredPollingEndPoints;
+        final int threshold = ARTIO_ITERATION_THRESHOLD - numAlwaysPolledEndPoints;
         if (numEndPoints <= threshold)
         {
-            bytesReceived = pollArray(bytesReceived, endPoints, numEndPoints);
+            // Every end point is read without consulting the selector, so these are busy poll reads.
+            for (int i = numEndPoints - 1; i >= 0; i--)
+            {
+                final int polledBytes = endPoints[i].poll();
+                busyPollReadCount++;
+                if (polledBytes == 0)
+                {
+                    busyPollEmptyReadCount++;
+                }
+                bytesReceived += polledBytes;
+            }
         }
         else
         {
+            bytesReceived += pollHeldDataEndPoints();
+            if (backpressuredEndPoint != null)
+            {
+                return bytesReceived;
+            }
+
             selector.selectNow();
 
             final SelectionKey[] keys = selectedKeySet.keys();
@@ -240,12 +414,18 @@ class ReceiverEndPoints extends TransportPoller
                 {
                     final ReceiverEndPoint endPoint = (ReceiverEndPoint)key.attachment();
                     final int polledBytes = endPoint.poll();
+                    checkHeldData(endPoint);
+                    selectedReadCount++;
                     if (polledBytes < 0)
                     {
                         backpressuredEndPoint = endPoint;
                         bytesReceived -= polledBytes;
                         break;
                     }
+                    else if (polledBytes == 0)
+                    {
+                        selectedEmptyReadCount++;
+                    }
 
                     bytesReceived += polledBytes;
                 }
@@ -267,6 +447,37 @@ class ReceiverEndPoints extends TransportPoller
         return bytesReceived;
     }
 
+    // Not needed when there are few enough endpoints for them all to be polled without the selector
+    private int pollHeldDataEndPoints()
+    {
+        int bytesReceived = 0;
+        final ArrayList<ReceiverEndPoint> heldDataEndPoints = this.heldDataEndPoints;
+        for (int i = heldDataEndPoints.size() - 1; i >= 0; i--)
+        {
+            final ReceiverEndPoint endPoint = heldDataEndPoints.get(i);
+            final int polledBytes = endPoint.poll();
+            busyPollReadCount++;
+            if (!endPoint.requiresBusyPolling())
+            {
+                ArrayListUtil.fastUnorderedRemove(heldDataEndPoints, i);
+            }
+
+            if (polledBytes < 0)
+            {
+                backpressuredEndPoint = endPoint;
+                bytesReceived -= polledBytes;
+                break;
+            }
+            else if (polledBytes == 0)
+            {
+                busyPollEmptyReadCount++;
+            }
+
+            bytesReceived += polledBytes;
+        }
+        return bytesReceived;
+    }
+
     private int pollArray(
         final int bytesAlreadyReceived, final ReceiverEndPoint[] endPoints, final int numRequiredPollingEndPoints)
     {
@@ -280,7 +491,7 @@ class ReceiverEndPoints extends TransportPoller
 
     int size()
     {
-        return requiredPollingEndPoints.length + endPoints.length;
+        return requiredPollingEndPoints.length + busyPollEndPoints.length + endPoints.length;
     }
 
     void closeRequiredPollingEndPoints()
@@ -292,7 +503,10 @@ class ReceiverEndPoints extends TransportPoller
     public void close()
     {
         closeRequiredPollingEndPoints();
+        closeAll(busyPollEndPoints);
         closeAll(endPoints);
+        bufferPool.close();
+        CloseHelper.closeAll(busyPollReads, busyPollEmptyReads, selectedReads, selectedEmptyReads);
         super.close();
     }
 
@@ -303,7 +517,10 @@ class ReceiverEndPoints extends TransportPoller
 
     public void disconnectILinkConnections(final int libraryId, final LongConsumer removeFunc)
     {
+        heldDataEndPoints.removeIf(
+            endPoint -> endPoint.libraryId() == libraryId && endPoint instanceof InitiatorFixPReceiverEndPoint);
         endPoints = disconnectILinkConnections(libraryId, endPoints, removeFunc);
+        busyPollEndPoints = disconnectILinkConnections(libraryId, busyPollEndPoints, removeFunc);
         requiredPollingEndPoints = disconnectILinkConnections(libraryId, requiredPollingEndPoints, removeFunc);
         selectNowToForceProcessing();
     }
@@ -343,7 +560,9 @@ class ReceiverEndPoints extends TransportPoller
         return "ReceiverEndPoints{" +
             "errorHandler=" + errorHandler +
             ", requiredPollingEndPoints=" + Arrays.toString(requiredPollingEndPoints) +
+            ", busyPollEndPoints=" + Arrays.toString(busyPollEndPoints) +
             ", endPoints=" + Arrays.toString(endPoints) +
+            ", heldDataEndPoints=" + heldDataEndPoints +
             ", backpressuredEndPoint=" + backpressuredEndPoint +
             '}';
     }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import org.agrona.CloseHelper;
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Memory mapped file that the messages buffered for a slow consumer are spilled into once they exceed the in memory
+ * limit. The file is only created when it is first mapped, grows by remapping a larger region of it and is deleted
+ * when it is released, so a connection that isn't slow never touches the disk.
+ *
+ * Only accessed on the Framer thread.
+ */
+class SenderSpillFile implements AutoCloseable
+{
+    static final int MIN_CAPACITY = 1024 * 1024;
+
+    private final File file;
+    private final ErrorHandler errorHandler;
+    private final UnsafeBuffer buffer = new UnsafeBuffer(0, 0);
+
+    private FileChannel fileChannel;
+    private MappedByteBuffer mappedBuffer;
+
+    SenderSpillFile(final File file, final ErrorHandler errorHandler)
+    {
+        this.file = file;
+        this.errorHandler = errorHandler;
+    }
+
+    boolean isMapped()
+    {
+        return mappedBuffer != null;
+    }
+
+    /**
+     * Map the file, or remap a larger region of it, so that it can hold at least the required number of bytes. The
+     * contents of any existing mapping are retained.
+     *
+     * @param requiredCapacity the number of bytes that the mapping needs to hold.
+     * @return a buffer that wraps the mapping, this is the same buffer instance whenever the file is remapped, or
+     * null if the file couldn't be mapped, in which case any existing mapping is left in place.
+     */
+    UnsafeBuffer map(final int requiredCapacity)
+    {
+        final MappedByteBuffer mappedBuffer = this.mappedBuffer;
+        final int capacity = mappedBuffer == null ? 0 : mappedBuffer.capacity();
+        if (capacity >= requiredCapacity)
+        {
+            return buffer;
+        }
+
+        long newCapacity = Math.max(capacity, MIN_CAPACITY);
+        while (newCapacity < requiredCapacity)
+        {
+            newCapacity <<= 1;
+        }
+
+        try
+        {
+            if (fileChannel == null)
+            {
+                fileChannel = FileChannel.open(file.toPath(), CREATE, READ, WRITE);
+            }
+
+            final MappedByteBuffer newMappedBuffer = fileChannel.map(
+                READ_WRITE, 0, Math.min(newCapacity, Integer.MAX_VALUE));
+            buffer.wrap(newMappedBuffer);
+            if (mappedBuffer != null)
+            {
+                IoUtil.unmap(mappedBuffer);
+            }
+            this.mappedBuffer = newMappedBuffer;
+        }
+        catch (final IOException ex)
+        {
+            errorHandler.onError(new IOException("Unable to map sender spill file " + file, ex));
+            return null;
+        }
+
+        return buffer;
+    }
+
+    void release()
+    {
+        final MappedByteBuffer mappedBuffer = this.mappedBuffer;
+        if (mappedBuffer != null)
+        {
+            buffer.wrap(0, 0);
+            IoUtil.unmap(mappedBuffer);
+            this.mappedBuffer = null;
+        }
+
+        if (fileChannel != null)
+        {
+            CloseHelper.close(fileChannel);
+            fileChannel = null;
+            IoUtil.deleteIfExists(file);
+        }
+    }
+
+    File file()
+    {
+        return file;
+    }
+
+    public void close()
+    {
+        release();
+    }
+}
@@ -43,8 +43,45 @@ public abstract class TcpChannel implements AutoCloseable
     // Any subclass should maintain the API that negative numbers of bytes are never returned
     public abstract int write(ByteBuffer src, int seqNum, boolean replay) throws IOException;
 
+    // Gathering write of non-replay messages, subclasses that can't gather fall back to sequential writes
+    public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException
+    {
+        long totalWritten = 0;
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            final ByteBuffer src = srcs[i];
+            final int remaining = src.remaining();
+            final int written = write(src, UNKNOWN_SEQ_NUM, false);
+            totalWritten += written;
+            if (written < remaining)
+            {
+                break;
+            }
+        }
+        return totalWritten;
+    }
+
     public abstract int read(ByteBuffer dst) throws IOException;
 
+    /**
+     * Whether the channel currently needs to be read regardless of selector readiness, eg because it holds back data
+     * that it has read from the socket in order to decrypt it. Checked when the channel's receiver end point is
+     * registered and after each read, the end point is polled on every duty cycle for as long as this returns true
+     * and relies upon the selector otherwise.
+     *
+     * @return true if the channel needs to be read regardless of selector readiness.
+     */
+    public boolean requiresBusyPolling()
+    {
+        return false;
+    }
+
+    // Whether the channel can still be written to, ie it hasn't been closed
+    public boolean isOpen()
+    {
+        return true;
+    }
+
     public abstract void close();
 
     public abstract void onReplayComplete(long correlationId);
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pool of the direct buffers that TLS channels hold their encrypted and decrypted data in. Every buffer is large
+ * enough to hold a whole TLS record, so that the channels never have to grow them.
+ *
+ * Only accessed on the Framer thread.
+ */
+class TlsBufferPool
+{
+    // Buffers released beyond this number are left for the garbage collector
+    static final int MAX_FREE_BUFFERS = 256;
+
+    private final int bufferSize;
+    private final ByteBuffer[] freeBuffers = new ByteBuffer[MAX_FREE_BUFFERS];
+    private int freeCount;
+
+    TlsBufferPool(final int bufferSize)
+    {
+        this.bufferSize = bufferSize;
+    }
+
+    int bufferSize()
+    {
+        return bufferSize;
+    }
+
+    ByteBuffer acquire()
+    {
+        final int freeCount = this.freeCount;
+        if (freeCount > 0)
+        {
+            final int index = freeCount - 1;
+            final ByteBuffer buffer = freeBuffers[index];
+            freeBuffers[index] = null;
+            this.freeCount = index;
+            return buffer;
+        }
+
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    void release(final ByteBuffer buffer)
+    {
+        final int freeCount = this.freeCount;
+        if (freeCount < MAX_FREE_BUFFERS)
+        {
+            buffer.clear();
+            freeBuffers[freeCount] = buffer;
+            this.freeCount = freeCount + 1;
+        }
+    }
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import org.agrona.LangUtil;
+import uk.co.real_logic.artio.engine.ByteBufferUtil;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * TcpChannel that terminates TLS within the engine using an {@link SSLEngine}.
+ *
+ * The handshake is driven by calls to {@link #read(ByteBuffer)}, which happen on every duty cycle while the handshake
+ * is in progress as this channel then {@link #requiresBusyPolling() requires busy polling}, and by calls to
+ * {@link #write(ByteBuffer, int, boolean)}. Once the handshake has completed the channel only requires busy polling
+ * while it holds data that the selector can't see: decrypted data that didn't fit into the caller's buffer or
+ * encrypted records that were read from the socket but not decrypted. Otherwise the receiver end point relies upon
+ * selector readiness like a plain TCP channel.
+ * Writes return 0 until the handshake has completed, which the sender end point treats as back-pressure. Delegated
+ * tasks of the handshake are run inline on the Framer thread.
+ *
+ * Writes encrypt the data into TLS records and write them to the socket one at a time. If a record can't be completely
+ * written to the socket then the bytes that it encrypted aren't reported as written, but the record is kept and
+ * written by the next call. That call must be passed the same data again, as the sender end point does when it
+ * reattempts a back-pressured write, and the bytes are then reported as written without being encrypted again.
+ *
+ * The encrypted and decrypted data is held in direct buffers from a {@link TlsBufferPool} that are returned to the
+ * pool when the channel is closed. Records are decrypted straight into the caller's buffer whenever it has room for a
+ * whole record.
+ */
+public class TlsTcpChannel extends TcpChannel
+{
+    private static final ByteBuffer NO_DATA = ByteBuffer.allocateDirect(0);
+
+    private static final int NEEDS_DATA = -1;
+    private static final int INBOUND_CLOSED = -2;
+
+    private final SocketChannel socketChannel;
+    private final SSLEngine sslEngine;
+    private final TlsBufferPool bufferPool;
+    private final int applicationBufferSize;
+
+    // Encrypted data read from the socket that is yet to be decrypted, ready for filling: the data is [0, position)
+    private final ByteBuffer netIn;
+    // Encrypted data that is yet to be written to the socket, ready for draining: the data is [position, limit)
+    private final ByteBuffer netOut;
+    // Decrypted data that didn't fit into the caller's buffer, ready for draining: the data is [position, limit)
+    private final ByteBuffer appIn;
+
+    // Number of bytes of the caller's data encrypted into netOut and not yet reported as written
+    private int pendingWriteLength;
+    // True iff the last read stopped because netIn holds no complete record and the socket had no more data
+    private boolean awaitingSocketData;
+    private boolean endOfStream;
+    private boolean closed;
+
+    TlsTcpChannel(final SocketChannel socketChannel, final SSLEngine sslEngine, final TlsBufferPool bufferPool)
+        throws IOException
+    {
+        super(socketChannel.getRemoteAddress().toString());
+        this.socketChannel = socketChannel;
+        this.sslEngine = sslEngine;
+        this.bufferPool = bufferPool;
+        applicationBufferSize = sslEngine.getSession().getApplicationBufferSize();
+
+        netIn = bufferPool.acquire();
+        netOut = bufferPool.acquire();
+        netOut.flip();
+        appIn = bufferPool.acquire();
+        appIn.flip();
+
+        sslEngine.beginHandshake();
+    }
+
+    public SelectionKey register(final Selector sel, final int ops, final Object att) throws ClosedChannelException
+    {
+        return socketChannel.register(sel, ops, att);
+    }
+
+    // Any subclass should maintain the API that negative numbers of bytes are never returned
+    public int write(final ByteBuffer src, final int seqNum, final boolean replay) throws IOException
+    {
+        checkOpen();
+
+        if (!flushNetOut())
+        {
+            return 0;
+        }
+
+        int written = 0;
+        final int pendingWriteLength = this.pendingWriteLength;
+        if (pendingWriteLength > 0)
+        {
+            // The record holding the start of src was written by the flush
+            ByteBufferUtil.position(src, src.position() + pendingWriteLength);
+            written = pendingWriteLength;
+            this.pendingWriteLength = 0;
+        }
+
+        if (!handshake())
+        {
+            return written;
+        }
+
+        while (src.hasRemaining())
+        {
+            final int position = src.position();
+            final int consumed = wrap(src);
+            if (!flushNetOut())
+            {
+                this.pendingWriteLength = consumed;
+                ByteBufferUtil.position(src, position);
+                break;
+            }
+
+            written += consumed;
+        }
+
+        return written;
+    }
+
+    public int read(final ByteBuffer dst) throws IOException
+    {
+        checkOpen();
+        awaitingSocketData = false;
+
+        if (!handshake())
+        {
+            return isInboundDone() ? ReceiverEndPoint.SOCKET_DISCONNECTED : 0;
+        }
+
+        int totalRead = drainAppIn(dst);
+        while (dst.hasRemaining())
+        {
+            final int produced = unwrapApplicationData(dst);
+            if (produced >= 0)
+            {
+                totalRead += produced;
+
+                // Eg a TLS 1.3 key update
+                if (isHandshaking() && !handshake())
+                {
+                    break;
+                }
+            }
+            else if (produced == INBOUND_CLOSED)
+            {
+                return totalRead > 0 ? totalRead : ReceiverEndPoint.SOCKET_DISCONNECTED;
+            }
+            else
+            {
+                final int read = readFromSocket();
+                if (read < 0)
+                {
+                    return totalRead > 0 ? totalRead : ReceiverEndPoint.SOCKET_DISCONNECTED;
+                }
+                else if (read == 0)
+                {
+                    awaitingSocketData = true;
+                    break;
+                }
+            }
+        }
+
+        return totalRead;
+    }
+
+    public boolean requiresBusyPolling()
+    {
+        if (closed)
+        {
+            return false;
+        }
+
+        return isHandshaking() || appIn.hasRemaining() || (netIn.position() > 0 && !awaitingSocketData);
+    }
+
+    public boolean isOpen()
+    {
+        return !closed && socketChannel.isOpen();
+    }
+
+    public void close()
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+
+        try
+        {
+            if (socketChannel.isOpen())
+            {
+                sendCloseNotify();
+
+                try
+                {
+                    socketChannel.close();
+                }
+                catch (final IOException ex)
+                {
+                    LangUtil.rethrowUnchecked(ex);
+                }
+            }
+        }
+        finally
+        {
+            bufferPool.release(netIn);
+            bufferPool.release(netOut);
+            bufferPool.release(appIn);
+        }
+    }
+
+    public void onReplayComplete(final long correlationId)
+    {
+    }
+
+    // Best effort, the socket is closed regardless of whether the close_notify alert could be written
+    private void sendCloseNotify()
+    {
+        try
+        {
+            sslEngine.closeOutbound();
+            if (flushNetOut())
+            {
+                final ByteBuffer netOut = this.netOut;
+                netOut.clear();
+                try
+                {
+                    sslEngine.wrap(NO_DATA, netOut);
+                }
+                finally
+                {
+                    netOut.flip();
+                }
+                flushNetOut();
+            }
+        }
+        catch (final IOException ignore)
+        {
+        }
+    }
+
+    // return true iff the handshake is no longer in progress
+    private boolean handshake() throws IOException
+    {
+        while (true)
+        {
+            if (!flushNetOut())
+            {
+                return false;
+            }
+
+            switch (sslEngine.getHandshakeStatus())
+            {
+                case NOT_HANDSHAKING:
+                case FINISHED:
+                    return true;
+
+                case NEED_TASK:
+                    runDelegatedTasks();
+                    break;
+
+                case NEED_WRAP:
+                    wrap(NO_DATA);
+                    break;
+
+                default:
+                {
+                    final ByteBuffer appIn = this.appIn;
+                    appIn.compact();
+                    final int produced;
+                    try
+                    {
+                        produced = unwrap(appIn);
+                    }
+                    finally
+                    {
+                        appIn.flip();
+                    }
+
+                    if (produced == INBOUND_CLOSED || (produced == NEEDS_DATA && readFromSocket() <= 0))
+                    {
+                        return false;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isHandshaking()
+    {
+        final SSLEngineResult.HandshakeStatus status = sslEngine.getHandshakeStatus();
+        return status != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING &&
+            status != SSLEngineResult.HandshakeStatus.FINISHED;
+    }
+
+    private boolean isInboundDone()
+    {
+        return endOfStream || sslEngine.isInboundDone();
+    }
+
+    private void runDelegatedTasks()
+    {
+        Runnable task;
+        while ((task = sslEngine.getDelegatedTask()) != null)
+        {
+            task.run();
+        }
+    }
+
+    // Decrypts straight into dst when it has room for a whole record, otherwise via appIn
+    private int unwrapApplicationData(final ByteBuffer dst) throws SSLException
+    {
+        if (dst.remaining() >= applicationBufferSize)
+        {
+            return unwrap(dst);
+        }
+
+        // appIn has always been drained when dst has room
+        final ByteBuffer appIn = this.appIn;
+        appIn.clear();
+        final int produced;
+        try
+        {
+            produced = unwrap(appIn);
+        }
+        finally
+        {
+            appIn.flip();
+        }
+
+        return produced < 0 ? produced : drainAppIn(dst);
+    }
+
+    private int unwrap(final ByteBuffer dst) throws SSLException
+    {
+        final ByteBuffer netIn = this.netIn;
+        netIn.flip();
+        final SSLEngineResult result;
+        try
+        {
+            result = sslEngine.unwrap(netIn, dst);
+        }
+        finally
+        {
+            netIn.compact();
+        }
+
+        switch (result.getStatus())
+        {
+            case OK:
+                return result.bytesProduced();
+
+            case BUFFER_UNDERFLOW:
+                return NEEDS_DATA;
+
+            case CLOSED:
+                return INBOUND_CLOSED;
+
+            default:
+                throw new SSLException("Unable to decrypt TLS record from " + remoteAddress + ", " + result);
+        }
+    }
+
+    private int wrap(final ByteBuffer src) throws SSLException
+    {
+        final ByteBuffer netOut = this.netOut;
+        netOut.clear();
+        final SSLEngineResult result;
+        try
+        {
+            result = sslEngine.wrap(src, netOut);
+        }
+        finally
+        {
+            netOut.flip();
+        }
+
+        if (result.getStatus() != SSLEngineResult.Status.OK)
+        {
+            throw new SSLException("Unable to encrypt TLS record to " + remoteAddress + ", " + result);
+        }
+
+        return result.bytesConsumed();
+    }
+
+    private int drainAppIn(final ByteBuffer dst)
+    {
+        final ByteBuffer appIn = this.appIn;
+        final int length = Math.min(appIn.remaining(), dst.remaining());
+        if (length > 0)
+        {
+            final int limit = appIn.limit();
+            ByteBufferUtil.limit(appIn, appIn.position() + length);
+            dst.put(appIn);
+            ByteBufferUtil.limit(appIn, limit);
+        }
+
+        return length;
+    }
+
+    private int readFromSocket() throws IOException
+    {
+        final ByteBuffer netIn = this.netIn;
+        if (!netIn.hasRemaining())
+        {
+            // Can only happen if the peer sends records that are larger than the session allows
+            throw new SSLException("TLS record from " + remoteAddress + " is larger than " + netIn.capacity());
+        }
+
+        final int read = socketChannel.read(netIn);
+        if (read < 0)
+        {
+            endOfStream = true;
+        }
+
+        return read;
+    }
+
+    // return true iff all the encrypted data has been written
+    private boolean flushNetOut() throws IOException
+    {
+        final ByteBuffer netOut = this.netOut;
+        while (netOut.hasRemaining())
+        {
+            final int written = socketChannel.write(netOut);
+            if (written < 0)
+            {
+                throw new IOException("Disconnected " + remoteAddress + ", written=" + written);
+            }
+            else if (written == 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void checkOpen() throws ClosedChannelException
+    {
+        if (closed)
+        {
+            throw new ClosedChannelException();
+        }
+    }
+}
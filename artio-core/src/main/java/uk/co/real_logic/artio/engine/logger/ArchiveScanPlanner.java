@@ -17,6 +17,7 @@ package uk.co.real_logic.artio.engine.logger;
 
 import uk.co.real_logic.artio.engine.logger.FixMessagePredicates.FilterBy;
 import uk.co.real_logic.artio.engine.logger.FixMessagePredicates.From;
+import uk.co.real_logic.artio.engine.logger.FixMessagePredicates.SessionOf;
 import uk.co.real_logic.artio.engine.logger.FixMessagePredicates.To;
 
 final class ArchiveScanPlanner
@@ -36,18 +37,29 @@ final class ArchiveScanPlanner
     private static IndexQuery extractIndexQuery(final FixMessagePredicate queryPredicate)
     {
         final IndexQuery indexQuery = new IndexQuery();
-        extractIndexQuery(queryPredicate, indexQuery);
+        extractIndexQuery(queryPredicate, indexQuery, true);
         return indexQuery.needed() ? indexQuery : null;
     }
 
-    private static void extractIndexQuery(final FixMessagePredicate predicate, final IndexQuery indexQuery)
+    private static void extractIndexQuery(
+        final FixMessagePredicate predicate, final IndexQuery indexQuery, final boolean required)
     {
         // NB: range returned by the index plan still needs filtering afterwards to ensure correctness
         if (predicate instanceof CompositeFixMessagePredicate)
         {
             final CompositeFixMessagePredicate and = (CompositeFixMessagePredicate)predicate;
-            extractIndexQuery(and.left(), indexQuery);
-            extractIndexQuery(and.right(), indexQuery);
+            final boolean bothRequired = required && predicate instanceof FixMessageAnd;
+            extractIndexQuery(and.left(), indexQuery, bothRequired);
+            extractIndexQuery(and.right(), indexQuery, bothRequired);
+        }
+        else if (predicate instanceof SessionOf)
+        {
+            // Only messages from one session can match if every message has to pass this predicate
+            if (required)
+            {
+                final SessionOf sessionOf = (SessionOf)predicate;
+                indexQuery.sessionId(sessionOf.sessionId());
+            }
         }
         else if (predicate instanceof From)
         {
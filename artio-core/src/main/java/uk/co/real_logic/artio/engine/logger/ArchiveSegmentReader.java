@@ -0,0 +1,341 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.archive.Archive;
+import io.aeron.archive.client.AeronArchive;
+import io.aeron.archive.client.RecordingDescriptorConsumer;
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import io.aeron.logbuffer.Header;
+import io.aeron.logbuffer.LogBufferDescriptor;
+import org.agrona.BitUtil;
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static io.aeron.archive.client.AeronArchive.NULL_POSITION;
+import static io.aeron.archive.client.AeronArchive.segmentFileBasePosition;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.BREAK;
+import static io.aeron.logbuffer.FrameDescriptor.*;
+import static io.aeron.protocol.DataHeaderFlyweight.HEADER_LENGTH;
+
+/**
+ * Reads recording ranges straight from the segment files of an archive that's on the same host as the engine rather
+ * than asking the archive to replay them.
+ *
+ * Segment files are mapped read only and their frames handed to the replay's fragment handler. Ranges whose segment
+ * files aren't in the archive directory, for example because they have been detached from the recording, are
+ * replayed by the archive instead. The layout of each recording is looked up from the archive the first time that
+ * it's read.
+ *
+ * Frames are only read up to the recording's stop position, or the archive's recording position whilst it's still
+ * being recorded, as the archive only reports a position once the frames before it have been written. Anything beyond
+ * that may be a torn frame, so it's replayed by the archive instead.
+ *
+ * This object isn't thread-safe, in common with the {@link ReplayQuery} that owns it.
+ */
+public class ArchiveSegmentReader implements RecordingDescriptorConsumer
+{
+    private final Long2ObjectHashMap<RecordingLayout> recordingIdToLayout = new Long2ObjectHashMap<>();
+    private final File archiveDir;
+    private final AeronArchive aeronArchive;
+    private final ErrorHandler errorHandler;
+
+    private RecordingLayout listedLayout;
+
+    public ArchiveSegmentReader(final File archiveDir, final AeronArchive aeronArchive, final ErrorHandler errorHandler)
+    {
+        this.archiveDir = archiveDir;
+        this.aeronArchive = aeronArchive;
+        this.errorHandler = errorHandler;
+    }
+
+    SegmentReplay newReplay()
+    {
+        return new SegmentReplay();
+    }
+
+    private RecordingLayout layout(final long recordingId)
+    {
+        RecordingLayout layout = recordingIdToLayout.get(recordingId);
+        if (layout == null)
+        {
+            listedLayout = null;
+            try
+            {
+                aeronArchive.listRecording(recordingId, this);
+            }
+            catch (final Throwable e)
+            {
+                errorHandler.onError(e);
+            }
+
+            layout = listedLayout;
+            if (layout != null)
+            {
+                recordingIdToLayout.put(recordingId, layout);
+            }
+        }
+
+        return layout;
+    }
+
+    // Only called once the cached readable position has been reached, so a stopped recording isn't queried again
+    // unless it has been extended.
+    private long refreshReadablePosition(final long recordingId, final RecordingLayout layout)
+    {
+        try
+        {
+            long position = aeronArchive.getRecordingPosition(recordingId);
+            if (position == NULL_POSITION)
+            {
+                position = aeronArchive.getStopPosition(recordingId);
+            }
+
+            if (position > layout.readablePosition)
+            {
+                layout.readablePosition = position;
+            }
+        }
+        catch (final Throwable e)
+        {
+            errorHandler.onError(e);
+        }
+
+        return layout.readablePosition;
+    }
+
+    public void onRecordingDescriptor(
+        final long controlSessionId, final long correlationId, final long recordingId, final long startTimestamp,
+        final long stopTimestamp, final long startPosition, final long stopPosition, final int initialTermId,
+        final int segmentFileLength, final int termBufferLength, final int mtuLength, final int sessionId,
+        final int streamId, final String strippedChannel, final String originalChannel, final String sourceIdentity)
+    {
+        listedLayout = new RecordingLayout(
+            startPosition, stopPosition, initialTermId, segmentFileLength, termBufferLength);
+    }
+
+    static final class RecordingLayout
+    {
+        final long startPosition;
+        final int initialTermId;
+        final int segmentFileLength;
+        final int termBufferLength;
+
+        // Everything before this position has been written to the segment files, only ever increases.
+        long readablePosition;
+
+        RecordingLayout(
+            final long startPosition,
+            final long stopPosition,
+            final int initialTermId,
+            final int segmentFileLength,
+            final int termBufferLength)
+        {
+            this.startPosition = startPosition;
+            readablePosition = stopPosition == NULL_POSITION ? startPosition : stopPosition;
+            this.initialTermId = initialTermId;
+            this.segmentFileLength = segmentFileLength;
+            this.termBufferLength = termBufferLength;
+        }
+    }
+
+    /**
+     * Reads a single recording range at a time. Messages are only ever handed over whole, so if a segment file turns
+     * out to be missing part way through a range the rest of the range can be replayed by the archive from
+     * {@link #resumePosition()}.
+     */
+    final class SegmentReplay implements AutoCloseable
+    {
+        private final UnsafeBuffer segmentBuffer = new UnsafeBuffer(0, 0);
+
+        private MappedByteBuffer mappedSegment;
+        private RecordingLayout layout;
+        private Header header;
+        private long recordingId;
+        private long segmentBasePosition;
+        private long segmentEndPosition;
+        private long position;
+        private long endPosition;
+        private long resumePosition;
+
+        boolean start(final long recordingId, final long beginPosition, final long endPosition)
+        {
+            final RecordingLayout layout = layout(recordingId);
+            if (layout == null)
+            {
+                return false;
+            }
+
+            if (this.layout != layout)
+            {
+                this.layout = layout;
+                header = new Header(
+                    layout.initialTermId, LogBufferDescriptor.positionBitsToShift(layout.termBufferLength));
+            }
+
+            if (this.recordingId != recordingId)
+            {
+                close();
+                this.recordingId = recordingId;
+            }
+
+            this.position = beginPosition;
+            this.resumePosition = beginPosition;
+            this.endPosition = endPosition;
+
+            if (beginPosition >= layout.readablePosition &&
+                beginPosition >= refreshReadablePosition(recordingId, layout))
+            {
+                return false;
+            }
+
+            return (beginPosition >= segmentBasePosition && beginPosition < segmentEndPosition) || mapSegment();
+        }
+
+        /**
+         * Hands the frames of the range to the handler until the range has been read or the handler aborts or breaks.
+         *
+         * @param handler the handler to read frames into.
+         * @return false if the rest of the range needs to be replayed from {@link #resumePosition()} by the archive.
+         */
+        boolean poll(final ControlledFragmentHandler handler)
+        {
+            final UnsafeBuffer segmentBuffer = this.segmentBuffer;
+            final Header header = this.header;
+            final RecordingLayout layout = this.layout;
+            final long endPosition = this.endPosition;
+
+            while (position < endPosition)
+            {
+                if (position >= layout.readablePosition && position >= refreshReadablePosition(recordingId, layout))
+                {
+                    // The frame may not have been completely written to the segment file yet
+                    return false;
+                }
+
+                if (position >= segmentEndPosition && !mapSegment())
+                {
+                    return false;
+                }
+
+                final int frameOffset = (int)(position - segmentBasePosition);
+                final int frameLength = frameLengthVolatile(segmentBuffer, frameOffset);
+                if (frameLength <= 0)
+                {
+                    // Shouldn't happen before the readable position, but a corrupt file mustn't be read
+                    return false;
+                }
+
+                final int alignedLength = BitUtil.align(frameLength, FRAME_ALIGNMENT);
+                if (isPaddingFrame(segmentBuffer, frameOffset))
+                {
+                    position += alignedLength;
+                    if (resumePosition == position - alignedLength)
+                    {
+                        resumePosition = position;
+                    }
+                    continue;
+                }
+
+                header.offset(frameOffset);
+                final ControlledFragmentHandler.Action action = handler.onFragment(
+                    segmentBuffer, frameOffset + HEADER_LENGTH, frameLength - HEADER_LENGTH, header);
+                if (action == ABORT)
+                {
+                    return true;
+                }
+
+                position += alignedLength;
+                if ((header.flags() & END_FRAG_FLAG) == END_FRAG_FLAG)
+                {
+                    resumePosition = position;
+                }
+
+                if (action == BREAK)
+                {
+                    return true;
+                }
+            }
+
+            return true;
+        }
+
+        boolean isComplete()
+        {
+            return position >= endPosition;
+        }
+
+        long resumePosition()
+        {
+            return resumePosition;
+        }
+
+        long position()
+        {
+            return position;
+        }
+
+        private boolean mapSegment()
+        {
+            close();
+
+            final RecordingLayout layout = this.layout;
+            final long segmentBasePosition = segmentFileBasePosition(
+                layout.startPosition, position, layout.termBufferLength, layout.segmentFileLength);
+            final File file = new File(archiveDir, Archive.segmentFileName(recordingId, segmentBasePosition));
+            if (!file.exists())
+            {
+                return false;
+            }
+
+            try
+            {
+                mappedSegment = IoUtil.mapExistingFile(file, FileChannel.MapMode.READ_ONLY, file.getName());
+            }
+            catch (final Throwable e)
+            {
+                errorHandler.onError(e);
+                return false;
+            }
+
+            segmentBuffer.wrap(mappedSegment);
+            header.buffer(segmentBuffer);
+            this.segmentBasePosition = segmentBasePosition;
+            segmentEndPosition = segmentBasePosition + segmentBuffer.capacity();
+
+            // The segment file of an active recording may not have been extended to the position yet
+            return position < segmentEndPosition;
+        }
+
+        public void close()
+        {
+            if (mappedSegment != null)
+            {
+                IoUtil.unmap(mappedSegment);
+                mappedSegment = null;
+                segmentBuffer.wrap(0, 0);
+                segmentEndPosition = 0;
+            }
+        }
+    }
+}
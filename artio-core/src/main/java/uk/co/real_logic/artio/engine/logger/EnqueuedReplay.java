@@ -26,6 +26,7 @@ public class EnqueuedReplay
     private final long endSeqNo;
     private final int sequenceIndex;
     private final AsciiBuffer asciiBuffer;
+    private final long enqueuedTimeInNs;
 
     public EnqueuedReplay(
         final long sessionId,
@@ -33,7 +34,8 @@ public class EnqueuedReplay
         final long correlationId, final long beginSeqNo,
         final long endSeqNo,
         final int sequenceIndex,
-        final AsciiBuffer asciiBuffer)
+        final AsciiBuffer asciiBuffer,
+        final long enqueuedTimeInNs)
     {
 
         this.sessionId = sessionId;
@@ -43,6 +45,7 @@ public class EnqueuedReplay
         this.endSeqNo = endSeqNo;
         this.sequenceIndex = sequenceIndex;
         this.asciiBuffer = asciiBuffer;
+        this.enqueuedTimeInNs = enqueuedTimeInNs;
     }
 
     public long sessionId()
@@ -75,6 +78,11 @@ public class EnqueuedReplay
         return correlationId;
     }
 
+    public long enqueuedTimeInNs()
+    {
+        return enqueuedTimeInNs;
+    }
+
     public String toString()
     {
         return "EnqueuedReplay{" +
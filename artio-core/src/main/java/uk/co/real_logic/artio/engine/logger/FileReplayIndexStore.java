@@ -0,0 +1,204 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.ErrorHandler;
+import org.agrona.collections.LongHashSet;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.HEADER_FILE_SIZE;
+
+/**
+ * Stores the replay index of each session in its own memory mapped files: a header file at
+ * {@link ReplayIndexDescriptor#replayIndexHeaderFile(String, long, int)} and a file per segment at
+ * {@link ReplayIndexDescriptor#replayIndexSegmentFile(String, long, int, int)}.
+ */
+public class FileReplayIndexStore implements ReplayIndexStore
+{
+    private final String logFileDir;
+    private final int streamId;
+    private final int segmentSize;
+    private final int segmentCount;
+    private final BufferFactory newBufferFactory;
+    private final ExistingBufferFactory existingBufferFactory;
+    private final ErrorHandler errorHandler;
+
+    public FileReplayIndexStore(
+        final String logFileDir,
+        final int streamId,
+        final int indexFileCapacity,
+        final int indexSegmentCapacity,
+        final BufferFactory newBufferFactory,
+        final ExistingBufferFactory existingBufferFactory,
+        final ErrorHandler errorHandler)
+    {
+        this.logFileDir = logFileDir;
+        this.streamId = streamId;
+        this.segmentSize = ReplayIndexDescriptor.capacityToBytesInt(indexSegmentCapacity);
+        this.segmentCount = ReplayIndexDescriptor.segmentCount(indexFileCapacity, indexSegmentCapacity);
+        this.newBufferFactory = newBufferFactory;
+        this.existingBufferFactory = existingBufferFactory;
+        this.errorHandler = errorHandler;
+    }
+
+    public boolean hasSession(final long fixSessionId)
+    {
+        return headerFile(fixSessionId).exists();
+    }
+
+    public Session openSession(final long fixSessionId)
+    {
+        final File headerFile = headerFile(fixSessionId);
+        final boolean exists = headerFile.exists();
+        final UnsafeBuffer headerBuffer = new UnsafeBuffer(newBufferFactory.map(headerFile, HEADER_FILE_SIZE));
+        if (!exists)
+        {
+            checkSegmentFilesDoNotExist(fixSessionId);
+        }
+
+        return new FileSession(fixSessionId, headerBuffer, !exists, true);
+    }
+
+    public Session openExistingSession(final long fixSessionId)
+    {
+        final UnsafeBuffer headerBuffer = new UnsafeBuffer(existingBufferFactory.map(headerFile(fixSessionId)));
+        return new FileSession(fixSessionId, headerBuffer, false, false);
+    }
+
+    public void deleteSession(final long fixSessionId)
+    {
+        final File headerFile = headerFile(fixSessionId);
+        if (headerFile.exists())
+        {
+            deleteFile(headerFile);
+        }
+
+        for (int segmentIndex = 0; segmentIndex < segmentCount; segmentIndex++)
+        {
+            final File segmentFile = segmentFile(fixSessionId, segmentIndex);
+            if (segmentFile.exists())
+            {
+                deleteFile(segmentFile);
+            }
+        }
+    }
+
+    public LongHashSet sessionIds()
+    {
+        return ReplayIndexDescriptor.listReplayIndexSessionIds(new File(logFileDir), streamId);
+    }
+
+    public void close()
+    {
+    }
+
+    private void checkSegmentFilesDoNotExist(final long fixSessionId)
+    {
+        final List<File> existingSegmentFiles = new ArrayList<>();
+
+        for (int segmentIndex = 0; segmentIndex < segmentCount; segmentIndex++)
+        {
+            final File segmentFile = segmentFile(fixSessionId, segmentIndex);
+            if (segmentFile.exists())
+            {
+                existingSegmentFiles.add(segmentFile);
+            }
+        }
+
+        if (!existingSegmentFiles.isEmpty())
+        {
+            errorHandler.onError(new IllegalStateException("Replay index header file did not exist, " +
+                "but the following segment files did: " + existingSegmentFiles));
+        }
+    }
+
+    private void deleteFile(final File replayIndexFile)
+    {
+        if (!replayIndexFile.delete())
+        {
+            errorHandler.onError(new IOException("Unable to delete replay index file: " + replayIndexFile));
+        }
+    }
+
+    private File headerFile(final long fixSessionId)
+    {
+        return ReplayIndexDescriptor.replayIndexHeaderFile(logFileDir, fixSessionId, streamId);
+    }
+
+    private File segmentFile(final long fixSessionId, final int segmentIndex)
+    {
+        return ReplayIndexDescriptor.replayIndexSegmentFile(logFileDir, fixSessionId, streamId, segmentIndex);
+    }
+
+    private final class FileSession implements Session
+    {
+        private final long fixSessionId;
+        private final UnsafeBuffer headerBuffer;
+        private final UnsafeBuffer[] segmentBuffers;
+        private final boolean isNew;
+        private final boolean writable;
+
+        FileSession(
+            final long fixSessionId, final UnsafeBuffer headerBuffer, final boolean isNew, final boolean writable)
+        {
+            this.fixSessionId = fixSessionId;
+            this.headerBuffer = headerBuffer;
+            this.isNew = isNew;
+            this.writable = writable;
+            segmentBuffers = new UnsafeBuffer[segmentCount];
+        }
+
+        public AtomicBuffer headerBuffer()
+        {
+            return headerBuffer;
+        }
+
+        public boolean isNew()
+        {
+            return isNew;
+        }
+
+        public AtomicBuffer segmentBuffer(final int segmentIndex)
+        {
+            UnsafeBuffer segmentBuffer = segmentBuffers[segmentIndex];
+            if (segmentBuffer == null)
+            {
+                final File file = segmentFile(fixSessionId, segmentIndex);
+                segmentBuffer = new UnsafeBuffer(writable ?
+                    newBufferFactory.map(file, segmentSize) : existingBufferFactory.map(file));
+                segmentBuffers[segmentIndex] = segmentBuffer;
+            }
+            return segmentBuffer;
+        }
+
+        public boolean isValid()
+        {
+            // Deleted files stay mapped with their contents unchanged
+            return true;
+        }
+
+        public void close()
+        {
+            ReplayIndexDescriptor.unmapBuffers(headerBuffer, segmentBuffers);
+        }
+    }
+}
@@ -45,6 +45,7 @@ public class FixArchiveScanningAgent implements AutoCloseable
     private final String logFileDir;
 
     private final Long2ObjectHashMap<TimeIndexReader> streamIdToInboundTimeIndex = new Long2ObjectHashMap<>();
+    private final Long2ObjectHashMap<SessionTimeIndexReader> streamIdToSessionTimeIndex = new Long2ObjectHashMap<>();
 
     private StreamTimestampZipper timestampZipper;
     private Subscription replaySubscription;
@@ -178,6 +179,21 @@ public class FixArchiveScanningAgent implements AutoCloseable
             final Long2ObjectHashMap<PositionRange> recordingIdToPositionRange = new Long2ObjectHashMap<>();
             for (final int streamId : queryStreamIds)
             {
+                if (indexQuery.sessionId() != IndexQuery.NO_SESSION)
+                {
+                    SessionTimeIndexReader sessionReader = streamIdToSessionTimeIndex.get(streamId);
+                    if (sessionReader == null)
+                    {
+                        sessionReader = new SessionTimeIndexReader(logFileDir, streamId);
+                        streamIdToSessionTimeIndex.put(streamId, sessionReader);
+                    }
+
+                    if (sessionReader.findPositionRange(indexQuery, recordingIdToPositionRange))
+                    {
+                        continue;
+                    }
+                }
+
                 TimeIndexReader reader = streamIdToInboundTimeIndex.get(streamId);
                 if (reader == null)
                 {
@@ -220,6 +236,7 @@ public class FixArchiveScanningAgent implements AutoCloseable
 
     public void close()
     {
+        streamIdToSessionTimeIndex.values().forEach(SessionTimeIndexReader::close);
         aeronArchive.close();
     }
 
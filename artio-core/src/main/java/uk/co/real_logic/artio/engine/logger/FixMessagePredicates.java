@@ -532,7 +532,34 @@ public final class FixMessagePredicates
      */
     public static FixMessagePredicate sessionOf(final long sessionId)
     {
-        return (message) -> message.session() == sessionId;
+        return new SessionOf(sessionId);
+    }
+
+    static class SessionOf implements FixMessagePredicate
+    {
+        private final long sessionId;
+
+        SessionOf(final long sessionId)
+        {
+            this.sessionId = sessionId;
+        }
+
+        public boolean test(final FixMessageDecoder message)
+        {
+            return message.session() == sessionId;
+        }
+
+        long sessionId()
+        {
+            return sessionId;
+        }
+
+        public String toString()
+        {
+            return "SessionOf{" +
+                "sessionId=" + sessionId +
+                '}';
+        }
     }
 
     public static FixMessagePredicate bodyMatches(final Pattern pattern)
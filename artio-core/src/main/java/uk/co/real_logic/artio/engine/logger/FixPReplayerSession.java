@@ -135,7 +135,7 @@ public class FixPReplayerSession extends ReplayerSession
 
             case CLOSING:
             {
-                return replayOperation.pollReplay();
+                return replayOperation == null || replayOperation.pollReplay();
             }
 
             default:
@@ -197,7 +197,12 @@ public class FixPReplayerSession extends ReplayerSession
                 .connection(connectionId)
                 /*.enqueueTime(epochNanoClock.nanoTime())*/;
 
-            return Pressure.apply(publication.offer(buffer, offset, length));
+            final long position = publication.offer(buffer, offset, length);
+            if (position > 0)
+            {
+                replayer.consumeReplayBudget(messageLength);
+            }
+            return Pressure.apply(position);
         }
     }
 
@@ -405,7 +405,7 @@ class FixReplayerSession extends ReplayerSession
 
             case CLOSING:
             {
-                return replayOperation.pollReplay();
+                return replayOperation == null || replayOperation.pollReplay();
             }
 
             default:
@@ -19,9 +19,11 @@ class IndexQuery
 {
     static final long NO_BEGIN = Long.MIN_VALUE;
     static final long NO_END = Long.MAX_VALUE;
+    static final long NO_SESSION = Long.MIN_VALUE;
 
     private long beginTimestampInclusive = Long.MIN_VALUE;
     private long endTimestampExclusive = Long.MAX_VALUE;
+    private long sessionId = NO_SESSION;
 
     void from(final long beginTimestampInclusive)
     {
@@ -43,6 +45,16 @@ class IndexQuery
         }
     }
 
+    void sessionId(final long sessionId)
+    {
+        // Any session that every message must be from narrows down the query, if there's more than one the query
+        // can't match anything.
+        if (this.sessionId == NO_SESSION)
+        {
+            this.sessionId = sessionId;
+        }
+    }
+
     boolean needed()
     {
         return beginTimestampInclusive != NO_BEGIN ||
@@ -54,6 +66,7 @@ class IndexQuery
         return "IndexPlan{" +
             "beginTimestampInclusive=" + beginTimestampInclusive +
             ", endTimestampExclusive=" + endTimestampExclusive +
+            ", sessionId=" + sessionId +
             '}';
     }
 
@@ -66,4 +79,9 @@ class IndexQuery
     {
         return endTimestampExclusive;
     }
+
+    public long sessionId()
+    {
+        return sessionId;
+    }
 }
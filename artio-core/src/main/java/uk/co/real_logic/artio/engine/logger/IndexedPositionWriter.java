@@ -174,6 +174,31 @@ class IndexedPositionWriter implements AutoCloseable
         return buffer;
     }
 
+    /**
+     * Append the record of every recording to a journal, there's only one record per recording so these are always
+     * appended rather than tracking which have changed.
+     *
+     * @param journal the journal to append to.
+     * @param indexBuffer the buffer of the whole sequence number index that this writer's buffer is a part of.
+     * @param positionsOffset the offset of this writer's buffer within the index buffer.
+     * @return true if appended, false if the journal is full.
+     */
+    boolean appendTo(
+        final SequenceNumberIndexJournal journal, final AtomicBuffer indexBuffer, final int positionsOffset)
+    {
+        final Long2LongHashMap.ValueIterator it = recordOffsets.values().iterator();
+        while (it.hasNext())
+        {
+            final int offset = (int)it.nextValue();
+            if (!journal.append(indexBuffer, positionsOffset + offset, RECORD_LENGTH))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     private void putPosition(final long position, final AtomicBuffer buffer, final int offset)
     {
         buffer.putLongVolatile(offset + POSITION_OFFSET, position);
@@ -27,6 +27,7 @@ import org.agrona.ErrorHandler;
 import org.agrona.concurrent.Agent;
 import org.agrona.concurrent.AgentInvoker;
 import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.status.AtomicCounter;
 import uk.co.real_logic.artio.CommonConfiguration;
 import uk.co.real_logic.artio.DebugLogger;
 import uk.co.real_logic.artio.LogTag;
@@ -34,11 +35,13 @@ import uk.co.real_logic.artio.dictionary.generation.Exceptions;
 import uk.co.real_logic.artio.engine.CompletionPosition;
 import uk.co.real_logic.artio.util.CharFormatter;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static io.aeron.CommonContext.IPC_CHANNEL;
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
 import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /**
  * Incrementally builds indexes by polling a subscription.
@@ -93,11 +96,98 @@ public class Indexer implements Agent, ControlledFragmentHandler
         return total;
     }
 
-    public void catchIndexUp(final AeronArchive aeronArchive, final ErrorHandler errorHandler)
+    /**
+     * Replays any part of the recordings that was written after the indices were last updated, one recording at a
+     * time. Progress is reported through the counters and each index is periodically given the chance to checkpoint
+     * its state, so a crash during catchup resumes from the last checkpoint.
+     *
+     * @param aeronArchive the archive to replay recordings from.
+     * @param errorHandler receives any archive errors.
+     * @param remainingBytes set to the number of bytes that are still to be replayed.
+     * @param estimatedRemainingTimeInMs set to an estimate of the time that the remaining replay will take.
+     */
+    public void catchIndexUp(
+        final AeronArchive aeronArchive,
+        final ErrorHandler errorHandler,
+        final AtomicCounter remainingBytes,
+        final AtomicCounter estimatedRemainingTimeInMs)
     {
         final IdleStrategy idleStrategy = CommonConfiguration.backoffIdleStrategy();
         final AgentInvoker aeronInvoker = aeronArchive.context().aeron().conductorAgentInvoker();
 
+        final List<CatchupRange> catchupRanges = catchupRanges(aeronArchive, errorHandler);
+        long totalBytes = 0;
+        for (int i = 0, size = catchupRanges.size(); i < size; i++)
+        {
+            totalBytes += catchupRanges.get(i).length();
+        }
+        remainingBytes.setOrdered(totalBytes);
+
+        final long startTimeInNs = System.nanoTime();
+        long completedBytes = 0;
+        for (int i = 0, size = catchupRanges.size(); i < size; i++)
+        {
+            final CatchupRange range = catchupRanges.get(i);
+            final Index index = range.index;
+            final long recordingId = range.recordingId;
+            final long indexStoppedPosition = range.indexStoppedPosition;
+            final long recordingStoppedPosition = range.recordingStoppedPosition;
+
+            DebugLogger.log(
+                LogTag.INDEX,
+                catchupFormatter,
+                index.getName(),
+                recordingId,
+                recordingStoppedPosition,
+                indexStoppedPosition);
+
+            try (Subscription subscription = aeronArchive.replay(
+                recordingId, indexStoppedPosition, range.length(), IPC_CHANNEL, archiveReplayStream))
+            {
+                // Only do 1 replay at a time
+                while (subscription.imageCount() != 1)
+                {
+                    idle(idleStrategy, aeronInvoker, 0);
+                    aeronArchive.checkForErrorResponse();
+                }
+                idleStrategy.reset();
+
+                final Image replayImage = subscription.imageAtIndex(0);
+
+                final FragmentHandler handler = (buffer, offset, srcLength, header) ->
+                    index.onCatchup(buffer, offset, srcLength, header, recordingId);
+
+                while (replayImage.position() < recordingStoppedPosition)
+                {
+                    final int workCount = replayImage.poll(handler, LIMIT);
+                    if (workCount > 0)
+                    {
+                        // Lets the index flush its state as it would when polling normally.
+                        index.doWork();
+                        updateProgress(
+                            remainingBytes,
+                            estimatedRemainingTimeInMs,
+                            totalBytes,
+                            completedBytes + replayImage.position() - indexStoppedPosition,
+                            startTimeInNs);
+                    }
+                    idle(idleStrategy, aeronInvoker, workCount);
+                }
+                idleStrategy.reset();
+            }
+            catch (final ArchiveException ex)
+            {
+                errorHandler.onError(ex);
+            }
+
+            completedBytes += range.length();
+            updateProgress(remainingBytes, estimatedRemainingTimeInMs, totalBytes, completedBytes, startTimeInNs);
+        }
+    }
+
+    private List<CatchupRange> catchupRanges(final AeronArchive aeronArchive, final ErrorHandler errorHandler)
+    {
+        final List<CatchupRange> catchupRanges = new ArrayList<>();
         for (int i = 0, size = indices.size(); i < size; i++)
         {
             final Index index = indices.get(i);
@@ -109,38 +199,8 @@ public class Indexer implements Agent, ControlledFragmentHandler
                     final long recordingStoppedPosition = aeronArchive.getStopPosition(recordingId);
                     if (recordingStoppedPosition > indexStoppedPosition)
                     {
-                        DebugLogger.log(
-                            LogTag.INDEX,
-                            catchupFormatter,
-                            index.getName(),
-                            recordingId,
-                            recordingStoppedPosition,
-                            indexStoppedPosition);
-
-                        final long length = recordingStoppedPosition - indexStoppedPosition;
-                        try (Subscription subscription = aeronArchive.replay(
-                            recordingId, indexStoppedPosition, length, IPC_CHANNEL, archiveReplayStream))
-                        {
-                            // Only do 1 replay at a time
-                            while (subscription.imageCount() != 1)
-                            {
-                                idle(idleStrategy, aeronInvoker, 0);
-                                aeronArchive.checkForErrorResponse();
-                            }
-                            idleStrategy.reset();
-
-                            final Image replayImage = subscription.imageAtIndex(0);
-
-                            final FragmentHandler handler = (buffer, offset, srcLength, header) ->
-                                index.onCatchup(buffer, offset, srcLength, header, recordingId);
-
-                            while (replayImage.position() < recordingStoppedPosition)
-                            {
-                                final int workCount = replayImage.poll(handler, LIMIT);
-                                idle(idleStrategy, aeronInvoker, workCount);
-                            }
-                            idleStrategy.reset();
-                        }
+                        catchupRanges.add(new CatchupRange(
+                            index, recordingId, indexStoppedPosition, recordingStoppedPosition));
                     }
                 }
                 catch (final ArchiveException ex)
@@ -149,6 +209,23 @@ public class Indexer implements Agent, ControlledFragmentHandler
                 }
             });
         }
+        return catchupRanges;
+    }
+
+    private static void updateProgress(
+        final AtomicCounter remainingBytes,
+        final AtomicCounter estimatedRemainingTimeInMs,
+        final long totalBytes,
+        final long completedBytes,
+        final long startTimeInNs)
+    {
+        final long remaining = totalBytes - completedBytes;
+        remainingBytes.setOrdered(remaining);
+        if (completedBytes > 0)
+        {
+            final long elapsedTimeInMs = NANOSECONDS.toMillis(System.nanoTime() - startTimeInNs);
+            estimatedRemainingTimeInMs.setOrdered((long)((double)elapsedTimeInMs * remaining / completedBytes));
+        }
     }
 
     private void idle(final IdleStrategy idleStrategy, final AgentInvoker aeronInvoker, final int workCount)
@@ -227,4 +304,29 @@ public class Indexer implements Agent, ControlledFragmentHandler
     {
         return agentNamePrefix + "Indexer";
     }
+
+    private static final class CatchupRange
+    {
+        private final Index index;
+        private final long recordingId;
+        private final long indexStoppedPosition;
+        private final long recordingStoppedPosition;
+
+        CatchupRange(
+            final Index index,
+            final long recordingId,
+            final long indexStoppedPosition,
+            final long recordingStoppedPosition)
+        {
+            this.index = index;
+            this.recordingId = recordingId;
+            this.indexStoppedPosition = indexStoppedPosition;
+            this.recordingStoppedPosition = recordingStoppedPosition;
+        }
+
+        long length()
+        {
+            return recordingStoppedPosition - indexStoppedPosition;
+        }
+    }
 }
@@ -0,0 +1,475 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.CloseHelper;
+import org.agrona.DirectBuffer;
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.LangUtil;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.IntHashSet;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.artio.CommonConfiguration;
+import uk.co.real_logic.artio.dictionary.generation.Exceptions;
+import uk.co.real_logic.artio.engine.PersistenceScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static org.agrona.BitUtil.SIZE_OF_INT;
+import static org.agrona.BitUtil.SIZE_OF_LONG;
+import static org.agrona.BitUtil.findNextPositivePowerOfTwo;
+import static org.agrona.BitUtil.isPowerOfTwo;
+import static org.agrona.UnsafeAccess.UNSAFE;
+import static uk.co.real_logic.artio.engine.SectorFramer.OUT_OF_SPACE;
+import static uk.co.real_logic.artio.engine.logger.SequenceNumberIndexDescriptor.*;
+
+/**
+ * Memory mapped store of session metadata, written by a single {@link SequenceNumberIndexWriter} and read by
+ * {@link SequenceNumberIndexReader}s.
+ * <p>
+ * Metadata is held in slots whose sizes are powers of two, so it's updated in place until it outgrows its size class
+ * and then moves to a larger slot. Slots are reclaimed onto a free list per size class when metadata moves or
+ * expires. A reclaimed slot is only reused once the index no longer references it on disk, see
+ * {@link #onIndexFlushed()}, and slots that the index doesn't reference are reclaimed on startup, which covers a crash
+ * between allocating a slot and flushing the index.
+ * <p>
+ * Header: magic number (long), version (int)
+ * ...
+ * Slots: capacity (int), length (int), version (long), metadata
+ * ...
+ * <p>
+ * The version of a slot is odd while its metadata is being written, readers copy metadata out and retry if the version
+ * changed during the copy. A crash part way through a write leaves the version odd, so the versions of every slot are
+ * made even again when the store is opened.
+ * <p>
+ * The metadata positions in the index records have {@link #STORE_POSITION_FLAG} set, which tells them apart from
+ * positions in the legacy {@link SequenceNumberIndexDescriptor#metaDataFile(String)}.
+ */
+class MetaDataStore implements AutoCloseable
+{
+    static final int STORE_POSITION_FLAG = 1 << 30;
+    static final int MAX_FILE_LENGTH = STORE_POSITION_FLAG;
+
+    static final int MAGIC_NUMBER_OFFSET = 0;
+    static final int VERSION_OFFSET = MAGIC_NUMBER_OFFSET + SIZE_OF_LONG;
+    static final int HEADER_LENGTH = 64;
+
+    static final int SLOT_CAPACITY_OFFSET = 0;
+    static final int SLOT_LENGTH_OFFSET = SLOT_CAPACITY_OFFSET + SIZE_OF_INT;
+    static final int SLOT_VERSION_OFFSET = SLOT_LENGTH_OFFSET + SIZE_OF_INT;
+    static final int SLOT_HEADER_LENGTH = SLOT_VERSION_OFFSET + SIZE_OF_LONG;
+    static final int MIN_SLOT_SIZE = 64;
+
+    static final int INITIAL_FILE_LENGTH = 64 * 1024;
+
+    private static final int MIN_SLOT_SIZE_SHIFT = Integer.numberOfTrailingZeros(MIN_SLOT_SIZE);
+    private static final int SIZE_CLASSES = Integer.numberOfTrailingZeros(MAX_FILE_LENGTH) - MIN_SLOT_SIZE_SHIFT + 1;
+
+    private final IntArrayList[] freeSlots = new IntArrayList[SIZE_CLASSES];
+    private final IntArrayList pendingFreeSlots = new IntArrayList();
+    private final UnsafeBuffer buffer = new UnsafeBuffer();
+    private final File file;
+    private final ErrorHandler errorHandler;
+    private final RandomAccessFile randomAccessFile;
+
+    private MappedByteBuffer mappedBuffer;
+    private PersistenceScheduler.Target persistenceTarget;
+    private int end;
+
+    MetaDataStore(final File file, final ErrorHandler errorHandler)
+    {
+        this.file = file;
+        this.errorHandler = errorHandler;
+        for (int i = 0; i < SIZE_CLASSES; i++)
+        {
+            freeSlots[i] = new IntArrayList();
+        }
+
+        randomAccessFile = open(file);
+        try
+        {
+            final boolean isNew = randomAccessFile.length() == 0;
+            if (isNew)
+            {
+                randomAccessFile.setLength(INITIAL_FILE_LENGTH);
+            }
+            map();
+
+            if (isNew)
+            {
+                buffer.putLong(MAGIC_NUMBER_OFFSET, META_DATA_MAGIC_NUMBER);
+                buffer.putInt(VERSION_OFFSET, META_DATA_STORE_VERSION);
+                force();
+            }
+            else
+            {
+                validateHeader();
+            }
+        }
+        catch (final IOException | IllegalStateException e)
+        {
+            Exceptions.suppressingClose(randomAccessFile, e);
+            LangUtil.rethrowUnchecked(e);
+        }
+
+        end = scanSlots(null);
+    }
+
+    static boolean isStorePosition(final int position)
+    {
+        return position != NO_META_DATA && (position & STORE_POSITION_FLAG) != 0;
+    }
+
+    static int slotOffset(final int position)
+    {
+        return position & ~STORE_POSITION_FLAG;
+    }
+
+    /**
+     * Put any slots that the index doesn't reference onto the free lists, called once on startup.
+     *
+     * @param referencedPositions the metadata positions referenced by the records of the index.
+     */
+    void reclaimUnreferencedSlots(final IntHashSet referencedPositions)
+    {
+        scanSlots(referencedPositions);
+    }
+
+    /**
+     * Write an update to a session's metadata.
+     *
+     * @param position the position of the session's metadata, or {@link SequenceNumberIndexDescriptor#NO_META_DATA}.
+     * @param src the buffer holding the update.
+     * @param srcOffset the offset of the update within src.
+     * @param updateOffset the offset within the metadata to write the update at.
+     * @param updateLength the length of the update.
+     * @return the position of the updated metadata, which differs from position if the metadata had to move, or
+     * {@link uk.co.real_logic.artio.engine.SectorFramer#OUT_OF_SPACE} if it couldn't be stored.
+     */
+    int write(
+        final int position,
+        final DirectBuffer src,
+        final int srcOffset,
+        final int updateOffset,
+        final int updateLength)
+    {
+        final int length = updateOffset + updateLength;
+        final AtomicBuffer buffer = this.buffer;
+        int prefixLength = 0;
+        if (position != NO_META_DATA)
+        {
+            final int oldSlotOffset = slotOffset(position);
+            final int oldLength = buffer.getInt(oldSlotOffset + SLOT_LENGTH_OFFSET);
+            if (length <= buffer.getInt(oldSlotOffset + SLOT_CAPACITY_OFFSET))
+            {
+                final long version = beginWrite(oldSlotOffset);
+                buffer.putBytes(oldSlotOffset + SLOT_HEADER_LENGTH + updateOffset, src, srcOffset, updateLength);
+                if (length > oldLength)
+                {
+                    buffer.putIntOrdered(oldSlotOffset + SLOT_LENGTH_OFFSET, length);
+                }
+                endWrite(oldSlotOffset, version);
+                return position;
+            }
+
+            prefixLength = Math.min(oldLength, updateOffset);
+        }
+
+        final int slotOffset = allocate(length);
+        if (slotOffset == OUT_OF_SPACE)
+        {
+            return OUT_OF_SPACE;
+        }
+
+        // A reused slot can still be read by a reader that looked up its previous position
+        final long version = beginWrite(slotOffset);
+        final int dataOffset = slotOffset + SLOT_HEADER_LENGTH;
+        if (prefixLength > 0)
+        {
+            buffer.putBytes(dataOffset, buffer, slotOffset(position) + SLOT_HEADER_LENGTH, prefixLength);
+        }
+        buffer.setMemory(dataOffset + prefixLength, updateOffset - prefixLength, (byte)0);
+        buffer.putBytes(dataOffset + updateOffset, src, srcOffset, updateLength);
+        buffer.putIntOrdered(slotOffset + SLOT_LENGTH_OFFSET, length);
+        endWrite(slotOffset, version);
+        free(position);
+        return slotOffset | STORE_POSITION_FLAG;
+    }
+
+    /**
+     * Reclaim the slot of metadata that the index no longer references. The slot is reused after the next
+     * {@link #onIndexFlushed()}.
+     *
+     * @param position the position of the metadata.
+     */
+    void free(final int position)
+    {
+        if (isStorePosition(position))
+        {
+            pendingFreeSlots.addInt(slotOffset(position));
+        }
+    }
+
+    /**
+     * Called once the index has been flushed to disk, so slots that it referenced before can be reused.
+     */
+    void onIndexFlushed()
+    {
+        final IntArrayList pendingFreeSlots = this.pendingFreeSlots;
+        for (int i = 0, size = pendingFreeSlots.size(); i < size; i++)
+        {
+            final int slotOffset = pendingFreeSlots.getInt(i);
+            freeSlots[sizeClass(buffer.getInt(slotOffset + SLOT_CAPACITY_OFFSET) + SLOT_HEADER_LENGTH)]
+                .addInt(slotOffset);
+        }
+        pendingFreeSlots.clear();
+    }
+
+    /**
+     * Discard the metadata of every session. The file isn't truncated as readers may have it mapped, and each slot is
+     * cleared as a write so that readers copying it retry. Slot versions are kept so they never go backwards.
+     */
+    void reset()
+    {
+        final AtomicBuffer buffer = this.buffer;
+        int slotOffset = HEADER_LENGTH;
+        while (slotOffset < end)
+        {
+            final int slotSize = buffer.getInt(slotOffset + SLOT_CAPACITY_OFFSET) + SLOT_HEADER_LENGTH;
+            final long version = beginWrite(slotOffset);
+            buffer.setMemory(slotOffset, SLOT_VERSION_OFFSET, (byte)0);
+            buffer.setMemory(slotOffset + SLOT_HEADER_LENGTH, slotSize - SLOT_HEADER_LENGTH, (byte)0);
+            endWrite(slotOffset, version);
+            slotOffset += slotSize;
+        }
+        end = HEADER_LENGTH;
+        pendingFreeSlots.clear();
+        for (final IntArrayList freeSlots : this.freeSlots)
+        {
+            freeSlots.clear();
+        }
+        force();
+    }
+
+    void persistenceScheduler(final PersistenceScheduler persistenceScheduler)
+    {
+        persistenceTarget = persistenceScheduler.register(() -> randomAccessFile.getChannel().force(true));
+    }
+
+    void force()
+    {
+        final PersistenceScheduler.Target persistenceTarget = this.persistenceTarget;
+        if (persistenceTarget != null)
+        {
+            persistenceTarget.onWrite();
+        }
+        else
+        {
+            forceNow();
+        }
+    }
+
+    void forceCheckpoint()
+    {
+        final PersistenceScheduler.Target persistenceTarget = this.persistenceTarget;
+        if (persistenceTarget != null)
+        {
+            persistenceTarget.onCheckpoint();
+        }
+        else
+        {
+            forceNow();
+        }
+    }
+
+    private void forceNow()
+    {
+        if (CommonConfiguration.FORCE_WRITES)
+        {
+            try
+            {
+                randomAccessFile.getChannel().force(true);
+            }
+            catch (final IOException e)
+            {
+                errorHandler.onError(e);
+            }
+        }
+    }
+
+    public void close()
+    {
+        IoUtil.unmap(mappedBuffer);
+        CloseHelper.close(randomAccessFile);
+    }
+
+    private long beginWrite(final int slotOffset)
+    {
+        final long version = buffer.getLong(slotOffset + SLOT_VERSION_OFFSET) | 1;
+        buffer.putLongOrdered(slotOffset + SLOT_VERSION_OFFSET, version);
+        UNSAFE.storeFence();
+        return version;
+    }
+
+    private void endWrite(final int slotOffset, final long version)
+    {
+        buffer.putLongOrdered(slotOffset + SLOT_VERSION_OFFSET, version + 1);
+    }
+
+    private int allocate(final int length)
+    {
+        final int slotSize = slotSize(length);
+        final IntArrayList freeSlots = this.freeSlots[sizeClass(slotSize)];
+        if (!freeSlots.isEmpty())
+        {
+            return freeSlots.popInt();
+        }
+
+        final int slotOffset = end;
+        if (slotSize > MAX_FILE_LENGTH - slotOffset)
+        {
+            errorHandler.onError(new IllegalStateException(String.format(
+                "Metadata store %s out of space, can't allocate a slot for %d bytes", file, length)));
+            return OUT_OF_SPACE;
+        }
+
+        if (slotOffset + slotSize > buffer.capacity() && !grow(slotOffset + slotSize))
+        {
+            return OUT_OF_SPACE;
+        }
+
+        buffer.putInt(slotOffset + SLOT_CAPACITY_OFFSET, slotSize - SLOT_HEADER_LENGTH);
+        end = slotOffset + slotSize;
+        return slotOffset;
+    }
+
+    private boolean grow(final int requiredLength)
+    {
+        long fileLength = buffer.capacity();
+        while (fileLength < requiredLength)
+        {
+            fileLength *= 2;
+        }
+
+        try
+        {
+            randomAccessFile.setLength(Math.min(fileLength, MAX_FILE_LENGTH));
+            IoUtil.unmap(mappedBuffer);
+            map();
+            return true;
+        }
+        catch (final IOException e)
+        {
+            errorHandler.onError(e);
+            return false;
+        }
+    }
+
+    private void map() throws IOException
+    {
+        mappedBuffer = randomAccessFile.getChannel().map(READ_WRITE, 0, randomAccessFile.length());
+        buffer.wrap(mappedBuffer);
+    }
+
+    private void validateHeader()
+    {
+        if (buffer.capacity() < HEADER_LENGTH)
+        {
+            throw new IllegalStateException("Metadata store is smaller than its header: " + buffer.capacity());
+        }
+
+        final long magicNumber = buffer.getLong(MAGIC_NUMBER_OFFSET);
+        if (magicNumber != META_DATA_MAGIC_NUMBER)
+        {
+            throw new IllegalStateException("Invalid magic number in metadata store: " + magicNumber);
+        }
+
+        final int version = buffer.getInt(VERSION_OFFSET);
+        if (version != META_DATA_STORE_VERSION)
+        {
+            throw new IllegalStateException("Unreadable metadata store version: " + version);
+        }
+    }
+
+    // Slots are allocated contiguously from the header, the first slot without a capacity is the end of the store.
+    // Only the writer scans slots, so odd versions left by a crash part way through a write are made even here.
+    private int scanSlots(final IntHashSet referencedPositions)
+    {
+        final AtomicBuffer buffer = this.buffer;
+        final int capacity = buffer.capacity();
+        int slotOffset = HEADER_LENGTH;
+        while (slotOffset <= capacity - SLOT_HEADER_LENGTH)
+        {
+            final int slotCapacity = buffer.getInt(slotOffset + SLOT_CAPACITY_OFFSET);
+            if (slotCapacity == 0)
+            {
+                break;
+            }
+
+            final int slotSize = slotCapacity + SLOT_HEADER_LENGTH;
+            if (slotCapacity < 0 || slotSize < MIN_SLOT_SIZE || !isPowerOfTwo(slotSize) ||
+                slotSize > capacity - slotOffset)
+            {
+                errorHandler.onError(new IllegalStateException(String.format(
+                    "Invalid slot in metadata store %s at %d: capacity=%d", file, slotOffset, slotCapacity)));
+                break;
+            }
+
+            final long version = buffer.getLong(slotOffset + SLOT_VERSION_OFFSET);
+            if ((version & 1) != 0)
+            {
+                buffer.putLongOrdered(slotOffset + SLOT_VERSION_OFFSET, version + 1);
+            }
+
+            if (referencedPositions != null && !referencedPositions.contains(slotOffset | STORE_POSITION_FLAG))
+            {
+                freeSlots[sizeClass(slotSize)].addInt(slotOffset);
+            }
+            slotOffset += slotSize;
+        }
+
+        return slotOffset;
+    }
+
+    private static RandomAccessFile open(final File file)
+    {
+        try
+        {
+            return new RandomAccessFile(file, "rw");
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+            return null;
+        }
+    }
+
+    private static int slotSize(final int length)
+    {
+        return Math.max(MIN_SLOT_SIZE, findNextPositivePowerOfTwo(length + SLOT_HEADER_LENGTH));
+    }
+
+    private static int sizeClass(final int slotSize)
+    {
+        return Integer.numberOfTrailingZeros(slotSize) - MIN_SLOT_SIZE_SHIFT;
+    }
+}
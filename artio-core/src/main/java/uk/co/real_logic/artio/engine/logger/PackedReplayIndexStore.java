@@ -0,0 +1,542 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.BitUtil;
+import org.agrona.IoUtil;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.collections.LongHashSet;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.agrona.UnsafeAccess.UNSAFE;
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexDescriptor.HEADER_FILE_SIZE;
+
+/**
+ * Stores the replay indices of many sessions in a few large memory mapped files, rather than in a set of files per
+ * session.
+ *
+ * Segments are stored in fixed size blocks within block files at
+ * {@link ReplayIndexDescriptor#packedReplayIndexBlockFile(String, int, int)}, each of which holds many blocks. The
+ * allocation table at {@link ReplayIndexDescriptor#packedReplayIndexTableFile(String, int)} has a slot for every
+ * session that can be stored, which holds the session's header and the block that each of its segments is stored in.
+ * Blocks are only allocated when a session first writes to a segment. When a session is deleted its slot and blocks
+ * are reused by other sessions, so readers check {@link Session#isValid()} after reading a record.
+ *
+ * Table Consists of:
+ *
+ * Table header: session capacity, segment size, segment count, blocks per file and the number of allocated blocks
+ * Multiple slots, each of which is: state, generation, FIX session id, the session's header and its block references
+ */
+public class PackedReplayIndexStore implements ReplayIndexStore
+{
+    public static final int MAX_BLOCK_FILE_SIZE = 1024 * 1024 * 1024;
+
+    private static final int SESSION_CAPACITY_OFFSET = 0;
+    private static final int SEGMENT_SIZE_OFFSET = SESSION_CAPACITY_OFFSET + BitUtil.SIZE_OF_INT;
+    private static final int SEGMENT_COUNT_OFFSET = SEGMENT_SIZE_OFFSET + BitUtil.SIZE_OF_INT;
+    private static final int BLOCKS_PER_FILE_OFFSET = SEGMENT_COUNT_OFFSET + BitUtil.SIZE_OF_INT;
+    private static final int BLOCK_COUNT_OFFSET = BLOCKS_PER_FILE_OFFSET + BitUtil.SIZE_OF_INT;
+    private static final int TABLE_HEADER_LENGTH = BitUtil.CACHE_LINE_LENGTH;
+
+    private static final int SLOT_STATE_OFFSET = 0;
+    private static final int SLOT_GENERATION_OFFSET = BitUtil.SIZE_OF_LONG;
+    private static final int SLOT_SESSION_ID_OFFSET = SLOT_GENERATION_OFFSET + BitUtil.SIZE_OF_LONG;
+    private static final int SLOT_HEADER_OFFSET = SLOT_SESSION_ID_OFFSET + 2 * BitUtil.SIZE_OF_LONG;
+    private static final int SLOT_HEADER_LENGTH = 32;
+    private static final int SLOT_BLOCKS_OFFSET = SLOT_HEADER_OFFSET + SLOT_HEADER_LENGTH;
+
+    private static final int FREE = 0;
+    private static final int ALLOCATED = 1;
+
+    // Block references are the block's index plus one so that a zeroed slot has no blocks allocated
+    private static final int NO_BLOCK = 0;
+    private static final long MISSING_SLOT = -1;
+
+    static
+    {
+        // Safety check against making the header bigger without modifying this
+        if (HEADER_FILE_SIZE > SLOT_HEADER_LENGTH) // lgtm [java/constant-comparison]
+        {
+            throw new IllegalStateException("Invalid slot header length");
+        }
+    }
+
+    private final String logFileDir;
+    private final int streamId;
+    private final int sessionCapacity;
+    private final int segmentSize;
+    private final int segmentCount;
+    private final int blocksPerFile;
+    private final int slotLength;
+    private final boolean writable;
+    private final File tableFile;
+
+    private final Long2LongHashMap sessionIdToSlot = new Long2LongHashMap(MISSING_SLOT);
+    private final List<UnsafeBuffer> blockFileBuffers = new ArrayList<>();
+
+    // Only used by the writer
+    private final IntArrayList freeSlots = new IntArrayList();
+    private final IntArrayList freeBlocks = new IntArrayList();
+
+    private UnsafeBuffer tableBuffer;
+
+    /**
+     * Creates a store.
+     *
+     * @param logFileDir the directory that the store's files are in.
+     * @param streamId the stream whose index is stored.
+     * @param indexFileCapacity the number of records in a session's index.
+     * @param indexSegmentCapacity the number of records in a segment of a session's index.
+     * @param sessionCapacity the maximum number of sessions that can have an index at the same time.
+     * @param writable true for the single writer of the store, which creates its files, false for a reader.
+     */
+    public PackedReplayIndexStore(
+        final String logFileDir,
+        final int streamId,
+        final int indexFileCapacity,
+        final int indexSegmentCapacity,
+        final int sessionCapacity,
+        final boolean writable)
+    {
+        this.logFileDir = logFileDir;
+        this.streamId = streamId;
+        this.sessionCapacity = sessionCapacity;
+        this.segmentSize = ReplayIndexDescriptor.capacityToBytesInt(indexSegmentCapacity);
+        this.segmentCount = ReplayIndexDescriptor.segmentCount(indexFileCapacity, indexSegmentCapacity);
+        this.blocksPerFile = Math.max(1, MAX_BLOCK_FILE_SIZE / segmentSize);
+        this.slotLength = BitUtil.align(SLOT_BLOCKS_OFFSET + segmentCount * BitUtil.SIZE_OF_INT,
+            BitUtil.CACHE_LINE_LENGTH);
+        this.writable = writable;
+
+        if (sessionCapacity <= 0)
+        {
+            throw new IllegalArgumentException("sessionCapacity must be positive: " + sessionCapacity);
+        }
+
+        tableFile = ReplayIndexDescriptor.packedReplayIndexTableFile(logFileDir, streamId);
+        if (writable)
+        {
+            final boolean exists = tableFile.exists();
+            tableBuffer = new UnsafeBuffer(LoggerUtil.map(tableFile, tableFileSize()));
+            if (exists)
+            {
+                validateTable();
+                loadTable();
+            }
+            else
+            {
+                tableBuffer.putInt(SESSION_CAPACITY_OFFSET, sessionCapacity);
+                tableBuffer.putInt(SEGMENT_SIZE_OFFSET, segmentSize);
+                tableBuffer.putInt(SEGMENT_COUNT_OFFSET, segmentCount);
+                tableBuffer.putInt(BLOCKS_PER_FILE_OFFSET, blocksPerFile);
+                for (int slot = sessionCapacity - 1; slot >= 0; slot--)
+                {
+                    freeSlots.addInt(slot);
+                }
+            }
+        }
+    }
+
+    private int tableFileSize()
+    {
+        final long tableFileSize = TABLE_HEADER_LENGTH + (long)sessionCapacity * slotLength;
+        if (tableFileSize > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException(
+                "sessionCapacity is too large for the replay index segment count: sessionCapacity=" +
+                sessionCapacity + ", segmentCount=" + segmentCount);
+        }
+        return (int)tableFileSize;
+    }
+
+    private void validateTable()
+    {
+        final UnsafeBuffer tableBuffer = this.tableBuffer;
+        if (tableBuffer.getInt(SESSION_CAPACITY_OFFSET) != sessionCapacity ||
+            tableBuffer.getInt(SEGMENT_SIZE_OFFSET) != segmentSize ||
+            tableBuffer.getInt(SEGMENT_COUNT_OFFSET) != segmentCount ||
+            tableBuffer.getInt(BLOCKS_PER_FILE_OFFSET) != blocksPerFile)
+        {
+            throw new IllegalStateException("Replay index table " + tableFile + " was created with a different " +
+                "configuration: sessionCapacity=" + tableBuffer.getInt(SESSION_CAPACITY_OFFSET) +
+                ", segmentSize=" + tableBuffer.getInt(SEGMENT_SIZE_OFFSET) +
+                ", segmentCount=" + tableBuffer.getInt(SEGMENT_COUNT_OFFSET) +
+                ", blocksPerFile=" + tableBuffer.getInt(BLOCKS_PER_FILE_OFFSET) +
+                ", but is configured with: sessionCapacity=" + sessionCapacity +
+                ", segmentSize=" + segmentSize +
+                ", segmentCount=" + segmentCount +
+                ", blocksPerFile=" + blocksPerFile);
+        }
+    }
+
+    // Rebuilds the writer's free lists from the allocation table
+    private void loadTable()
+    {
+        final UnsafeBuffer tableBuffer = this.tableBuffer;
+        final int blockCount = tableBuffer.getInt(BLOCK_COUNT_OFFSET);
+        final boolean[] usedBlocks = new boolean[blockCount];
+
+        for (int slot = sessionCapacity - 1; slot >= 0; slot--)
+        {
+            final int slotOffset = slotOffset(slot);
+            final boolean allocated = tableBuffer.getInt(slotOffset + SLOT_STATE_OFFSET) == ALLOCATED;
+            for (int segmentIndex = 0; segmentIndex < segmentCount; segmentIndex++)
+            {
+                final int blockReferenceOffset = blockReferenceOffset(slotOffset, segmentIndex);
+                final int blockReference = tableBuffer.getInt(blockReferenceOffset);
+                if (blockReference != NO_BLOCK)
+                {
+                    if (allocated)
+                    {
+                        usedBlocks[blockReference - 1] = true;
+                    }
+                    else
+                    {
+                        // Stopped part way through deleting the session
+                        tableBuffer.putInt(blockReferenceOffset, NO_BLOCK);
+                    }
+                }
+            }
+
+            if (allocated)
+            {
+                sessionIdToSlot.put(tableBuffer.getLong(slotOffset + SLOT_SESSION_ID_OFFSET), slot);
+            }
+            else
+            {
+                freeSlots.addInt(slot);
+            }
+        }
+
+        for (int block = blockCount - 1; block >= 0; block--)
+        {
+            if (!usedBlocks[block])
+            {
+                freeBlocks.addInt(block);
+            }
+        }
+    }
+
+    public boolean hasSession(final long fixSessionId)
+    {
+        return lookupSlot(fixSessionId) != MISSING_SLOT;
+    }
+
+    public Session openSession(final long fixSessionId)
+    {
+        final long slot = sessionIdToSlot.get(fixSessionId);
+        if (slot != MISSING_SLOT)
+        {
+            return new PackedSession(slotOffset((int)slot), false);
+        }
+
+        if (freeSlots.isEmpty())
+        {
+            throw new IllegalStateException("Unable to store the replay index for session " + fixSessionId +
+                " as all " + sessionCapacity + " sessions of the packed replay index are in use, " +
+                "increase the replay index's packed session capacity");
+        }
+
+        final UnsafeBuffer tableBuffer = this.tableBuffer;
+        final int newSlot = freeSlots.popInt();
+        final int slotOffset = slotOffset(newSlot);
+        tableBuffer.putLong(slotOffset + SLOT_SESSION_ID_OFFSET, fixSessionId);
+        tableBuffer.setMemory(slotOffset + SLOT_HEADER_OFFSET, SLOT_HEADER_LENGTH, (byte)0);
+        UNSAFE.storeFence();
+        tableBuffer.putIntOrdered(slotOffset + SLOT_STATE_OFFSET, ALLOCATED);
+        sessionIdToSlot.put(fixSessionId, newSlot);
+
+        return new PackedSession(slotOffset, true);
+    }
+
+    public Session openExistingSession(final long fixSessionId)
+    {
+        final long slot = lookupSlot(fixSessionId);
+        if (slot != MISSING_SLOT)
+        {
+            final int slotOffset = slotOffset((int)slot);
+            final PackedSession session = new PackedSession(slotOffset, false);
+            // The session's generation is only valid if the slot was still allocated to it after reading it
+            if (isAllocatedTo(slotOffset, fixSessionId))
+            {
+                return session;
+            }
+        }
+
+        throw new IllegalStateException("No replay index for session " + fixSessionId + " in " + tableFile);
+    }
+
+    public void deleteSession(final long fixSessionId)
+    {
+        final long slot = sessionIdToSlot.remove(fixSessionId);
+        if (slot == MISSING_SLOT)
+        {
+            return;
+        }
+
+        final UnsafeBuffer tableBuffer = this.tableBuffer;
+        final int slotOffset = slotOffset((int)slot);
+
+        // Invalidate any readers of the session before its slot or blocks can be reused
+        tableBuffer.putIntOrdered(slotOffset + SLOT_STATE_OFFSET, FREE);
+        tableBuffer.putLongOrdered(
+            slotOffset + SLOT_GENERATION_OFFSET, tableBuffer.getLong(slotOffset + SLOT_GENERATION_OFFSET) + 1);
+        UNSAFE.storeFence();
+
+        for (int segmentIndex = 0; segmentIndex < segmentCount; segmentIndex++)
+        {
+            final int blockReferenceOffset = blockReferenceOffset(slotOffset, segmentIndex);
+            final int blockReference = tableBuffer.getInt(blockReferenceOffset);
+            if (blockReference != NO_BLOCK)
+            {
+                freeBlocks.addInt(blockReference - 1);
+                tableBuffer.putInt(blockReferenceOffset, NO_BLOCK);
+            }
+        }
+
+        freeSlots.addInt((int)slot);
+    }
+
+    public LongHashSet sessionIds()
+    {
+        if (!writable)
+        {
+            scanTable();
+        }
+
+        final LongHashSet sessionIds = new LongHashSet();
+        final Long2LongHashMap.KeyIterator it = sessionIdToSlot.keySet().iterator();
+        while (it.hasNext())
+        {
+            sessionIds.add(it.nextValue());
+        }
+        return sessionIds;
+    }
+
+    public void close()
+    {
+        if (tableBuffer != null)
+        {
+            IoUtil.unmap(tableBuffer.byteBuffer());
+            tableBuffer = null;
+        }
+
+        for (final UnsafeBuffer blockFileBuffer : blockFileBuffers)
+        {
+            if (blockFileBuffer != null)
+            {
+                IoUtil.unmap(blockFileBuffer.byteBuffer());
+            }
+        }
+        blockFileBuffers.clear();
+    }
+
+    private long lookupSlot(final long fixSessionId)
+    {
+        if (writable)
+        {
+            return sessionIdToSlot.get(fixSessionId);
+        }
+
+        final long slot = sessionIdToSlot.get(fixSessionId);
+        if (slot != MISSING_SLOT && isAllocatedTo(slotOffset((int)slot), fixSessionId))
+        {
+            return slot;
+        }
+
+        // Sessions are allocated and moved by the writer, so readers rescan the table on a miss
+        scanTable();
+        return sessionIdToSlot.get(fixSessionId);
+    }
+
+    private boolean isAllocatedTo(final int slotOffset, final long fixSessionId)
+    {
+        final UnsafeBuffer tableBuffer = this.tableBuffer;
+        return tableBuffer.getIntVolatile(slotOffset + SLOT_STATE_OFFSET) == ALLOCATED &&
+            tableBuffer.getLong(slotOffset + SLOT_SESSION_ID_OFFSET) == fixSessionId;
+    }
+
+    private void scanTable()
+    {
+        sessionIdToSlot.clear();
+
+        if (tableBuffer == null)
+        {
+            if (!tableFile.exists())
+            {
+                return;
+            }
+
+            tableBuffer = new UnsafeBuffer(LoggerUtil.mapExistingFile(tableFile));
+            validateTable();
+        }
+
+        final UnsafeBuffer tableBuffer = this.tableBuffer;
+        for (int slot = 0; slot < sessionCapacity; slot++)
+        {
+            final int slotOffset = slotOffset(slot);
+            if (tableBuffer.getIntVolatile(slotOffset + SLOT_STATE_OFFSET) == ALLOCATED)
+            {
+                sessionIdToSlot.put(tableBuffer.getLong(slotOffset + SLOT_SESSION_ID_OFFSET), slot);
+            }
+        }
+    }
+
+    private int slotOffset(final int slot)
+    {
+        return TABLE_HEADER_LENGTH + slot * slotLength;
+    }
+
+    private static int blockReferenceOffset(final int slotOffset, final int segmentIndex)
+    {
+        return slotOffset + SLOT_BLOCKS_OFFSET + segmentIndex * BitUtil.SIZE_OF_INT;
+    }
+
+    private int allocateBlock()
+    {
+        if (!freeBlocks.isEmpty())
+        {
+            final int block = freeBlocks.popInt();
+            final UnsafeBuffer blockFileBuffer = blockFileBuffer(block / blocksPerFile);
+            // Readers rely upon unwritten records being zero
+            blockFileBuffer.setMemory(blockOffset(block), segmentSize, (byte)0);
+            return block;
+        }
+
+        final UnsafeBuffer tableBuffer = this.tableBuffer;
+        final int block = tableBuffer.getInt(BLOCK_COUNT_OFFSET);
+        if (block == Integer.MAX_VALUE)
+        {
+            throw new IllegalStateException("Unable to allocate a replay index block in " + tableFile);
+        }
+
+        // Blocks that haven't been allocated before read as zeros
+        blockFileBuffer(block / blocksPerFile);
+        tableBuffer.putIntOrdered(BLOCK_COUNT_OFFSET, block + 1);
+        return block;
+    }
+
+    private int blockOffset(final int block)
+    {
+        return (block % blocksPerFile) * segmentSize;
+    }
+
+    private UnsafeBuffer blockFileBuffer(final int fileIndex)
+    {
+        final List<UnsafeBuffer> blockFileBuffers = this.blockFileBuffers;
+        while (blockFileBuffers.size() <= fileIndex)
+        {
+            blockFileBuffers.add(null);
+        }
+
+        UnsafeBuffer blockFileBuffer = blockFileBuffers.get(fileIndex);
+        if (blockFileBuffer == null)
+        {
+            final File file = ReplayIndexDescriptor.packedReplayIndexBlockFile(logFileDir, streamId, fileIndex);
+            blockFileBuffer = new UnsafeBuffer(mapBlockFile(file));
+            blockFileBuffers.set(fileIndex, blockFileBuffer);
+        }
+        return blockFileBuffer;
+    }
+
+    private MappedByteBuffer mapBlockFile(final File file)
+    {
+        if (!writable || file.exists())
+        {
+            return LoggerUtil.mapExistingFile(file);
+        }
+
+        // Sparse rather than filled with zeros as a block file is much larger than the blocks in use when there are
+        // few sessions
+        return IoUtil.mapNewFile(file, (long)blocksPerFile * segmentSize, false);
+    }
+
+    private final class PackedSession implements Session
+    {
+        private final int slotOffset;
+        private final long generation;
+        private final boolean isNew;
+        private final UnsafeBuffer headerBuffer;
+        private final UnsafeBuffer[] segmentBuffers;
+
+        PackedSession(final int slotOffset, final boolean isNew)
+        {
+            final UnsafeBuffer tableBuffer = PackedReplayIndexStore.this.tableBuffer;
+            this.slotOffset = slotOffset;
+            this.isNew = isNew;
+            generation = tableBuffer.getLongVolatile(slotOffset + SLOT_GENERATION_OFFSET);
+            headerBuffer = new UnsafeBuffer(tableBuffer, slotOffset + SLOT_HEADER_OFFSET, SLOT_HEADER_LENGTH);
+            segmentBuffers = new UnsafeBuffer[segmentCount];
+        }
+
+        public AtomicBuffer headerBuffer()
+        {
+            return headerBuffer;
+        }
+
+        public boolean isNew()
+        {
+            return isNew;
+        }
+
+        public AtomicBuffer segmentBuffer(final int segmentIndex)
+        {
+            UnsafeBuffer segmentBuffer = segmentBuffers[segmentIndex];
+            if (segmentBuffer == null)
+            {
+                final UnsafeBuffer tableBuffer = PackedReplayIndexStore.this.tableBuffer;
+                final int blockReferenceOffset = blockReferenceOffset(slotOffset, segmentIndex);
+                int blockReference = tableBuffer.getIntVolatile(blockReferenceOffset);
+                if (blockReference == NO_BLOCK)
+                {
+                    if (!writable)
+                    {
+                        throw new IllegalStateException(
+                            "Replay index segment " + segmentIndex + " has not been written in " + tableFile);
+                    }
+
+                    blockReference = allocateBlock() + 1;
+                    tableBuffer.putIntOrdered(blockReferenceOffset, blockReference);
+                }
+
+                final int block = blockReference - 1;
+                segmentBuffer = new UnsafeBuffer(
+                    blockFileBuffer(block / blocksPerFile), blockOffset(block), segmentSize);
+                segmentBuffers[segmentIndex] = segmentBuffer;
+            }
+            return segmentBuffer;
+        }
+
+        public boolean isValid()
+        {
+            final UnsafeBuffer tableBuffer = PackedReplayIndexStore.this.tableBuffer;
+            return tableBuffer != null &&
+                tableBuffer.getLongVolatile(slotOffset + SLOT_GENERATION_OFFSET) == generation;
+        }
+
+        public void close()
+        {
+            // Views of the store's mappings, which are unmapped when the store is closed
+        }
+    }
+}
@@ -26,8 +26,8 @@ public final class RecordingRange
     private static final ThreadLocal<CharFormatter> CURRENT_POSITION =
         ThreadLocal.withInitial(() -> new CharFormatter("currentPosition == addPosition, %s%n"));
 
-    final long recordingId;
-    final long sessionId;
+    long recordingId;
+    long sessionId;
     long position = MISSING_LONG;
     long length;
     int count;
@@ -39,6 +39,17 @@ public final class RecordingRange
         this.count = 0;
     }
 
+    // Ranges are pooled by the ReplayQuery, so are reset rather than allocated for each query.
+    RecordingRange reset(final long recordingId, final long sessionId)
+    {
+        this.recordingId = recordingId;
+        this.sessionId = sessionId;
+        this.position = MISSING_LONG;
+        this.length = 0;
+        this.count = 0;
+        return this;
+    }
+
     void add(final long addPosition, final int addLength)
     {
         final long currentPosition = this.position;
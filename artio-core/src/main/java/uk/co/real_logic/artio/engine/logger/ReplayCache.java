@@ -0,0 +1,437 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.logbuffer.Header;
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import uk.co.real_logic.artio.messages.*;
+
+import java.nio.ByteBuffer;
+
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
+import static io.aeron.logbuffer.FrameDescriptor.*;
+import static io.aeron.protocol.DataHeaderFlyweight.CURRENT_VERSION;
+import static io.aeron.protocol.DataHeaderFlyweight.FLAGS_FIELD_OFFSET;
+import static io.aeron.protocol.DataHeaderFlyweight.FRAME_LENGTH_FIELD_OFFSET;
+import static io.aeron.protocol.DataHeaderFlyweight.HDR_TYPE_DATA;
+import static io.aeron.protocol.DataHeaderFlyweight.HEADER_LENGTH;
+import static io.aeron.protocol.DataHeaderFlyweight.RESERVED_VALUE_OFFSET;
+import static io.aeron.protocol.DataHeaderFlyweight.SESSION_ID_FIELD_OFFSET;
+import static io.aeron.protocol.DataHeaderFlyweight.STREAM_ID_FIELD_OFFSET;
+import static io.aeron.protocol.DataHeaderFlyweight.TERM_ID_FIELD_OFFSET;
+import static io.aeron.protocol.DataHeaderFlyweight.TERM_OFFSET_FIELD_OFFSET;
+import static io.aeron.protocol.DataHeaderFlyweight.TYPE_FIELD_OFFSET;
+import static io.aeron.protocol.DataHeaderFlyweight.VERSION_FIELD_OFFSET;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.agrona.UnsafeAccess.UNSAFE;
+
+/**
+ * Holds the most recently indexed messages of a stream in an off heap ring so that replays of recent messages can be
+ * served from memory rather than by an archive replay.
+ *
+ * The cache is an {@link Index} on the outbound indexer that is run before the {@link ReplayIndex}, so any message
+ * that a replay query finds has already been cached unless it has since been evicted. Only the messages that
+ * replays are interested in are held and entries are evicted oldest first when the ring is full. Fragmented messages
+ * aren't held, a marker is left in their place so that replays that include them go to the archive.
+ *
+ * Buffer consists of:
+ *
+ * Ring of entries, each one a header, an Aeron data frame header and then the message
+ * Head position, the position within the ring of the oldest entry
+ * Tail position, the position within the ring that the next entry is written to
+ *
+ * The ring is written to by the indexer thread and read by the replayer thread. The indexer moves the head position
+ * past entries before it overwrites them, so a reader that still sees the head before an entry after it has copied
+ * the entry knows that the copy is intact.
+ *
+ * The data frame header describes the message at its position within the recording. Replayed messages are handed to
+ * the tracker with an Aeron {@link Header} over it, so the frame length is the exact length of the message and the
+ * header's position is the end position of the message within the recording, as if it had been replayed by the
+ * archive.
+ *
+ * Each range counts once towards the hits or misses counters: a miss when it isn't found or has to fall back to the
+ * archive part way through, a hit once all of it has been replayed from the cache.
+ */
+public class ReplayCache implements Index
+{
+    static final int ENTRY_LENGTH_OFFSET = 0;
+    static final int ENTRY_TYPE_OFFSET = 4;
+    static final int ENTRY_RECORDING_ID_OFFSET = 8;
+    static final int ENTRY_BEGIN_POSITION_OFFSET = 16;
+    static final int ENTRY_END_POSITION_OFFSET = 24;
+    static final int ENTRY_HEADER_LENGTH = 32;
+    static final int ENTRY_FRAME_OFFSET = ENTRY_HEADER_LENGTH;
+    static final int ENTRY_MESSAGE_OFFSET = ENTRY_FRAME_OFFSET + HEADER_LENGTH;
+
+    static final int MESSAGE_ENTRY = 1;
+    static final int GAP_ENTRY = 2;
+    static final int PADDING_ENTRY = 3;
+
+    static final long MISSING = -1;
+
+    private static final int ENTRY_ALIGNMENT = 8;
+    // Large enough that the term id of any recording position fits in an int, the initial term id is always 0.
+    private static final int REPLAY_POSITION_BITS_TO_SHIFT = 30;
+    private static final int REPLAY_TERM_OFFSET_MASK = (1 << REPLAY_POSITION_BITS_TO_SHIFT) - 1;
+    private static final int HEAD_POSITION_OFFSET = BitUtil.CACHE_LINE_LENGTH * 2;
+    private static final int TAIL_POSITION_OFFSET = HEAD_POSITION_OFFSET + BitUtil.CACHE_LINE_LENGTH * 2;
+    private static final int TRAILER_LENGTH = BitUtil.CACHE_LINE_LENGTH * 6;
+
+    private final MessageHeaderDecoder messageHeader = new MessageHeaderDecoder();
+    private final Header replayHeader = new Header(0, REPLAY_POSITION_BITS_TO_SHIFT);
+    private final UnsafeBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private final int headPositionIndex;
+    private final int tailPositionIndex;
+    private final int requiredStreamId;
+    private final RecordingIdLookup recordingIdLookup;
+    private final AtomicCounter hits;
+    private final AtomicCounter misses;
+
+    private byte[] readBytes = new byte[1024];
+    private final UnsafeBuffer readBuffer = new UnsafeBuffer(readBytes);
+
+    public ReplayCache(
+        final int capacity,
+        final int requiredStreamId,
+        final RecordingIdLookup recordingIdLookup,
+        final AtomicCounter hits,
+        final AtomicCounter misses)
+    {
+        if (!BitUtil.isPowerOfTwo(capacity))
+        {
+            throw new IllegalArgumentException("capacity must be a positive power of 2: capacity=" + capacity);
+        }
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.requiredStreamId = requiredStreamId;
+        this.recordingIdLookup = recordingIdLookup;
+        this.hits = hits;
+        this.misses = misses;
+
+        buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(capacity + TRAILER_LENGTH));
+        headPositionIndex = capacity + HEAD_POSITION_OFFSET;
+        tailPositionIndex = capacity + TAIL_POSITION_OFFSET;
+    }
+
+    public void onFragment(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        if (header.streamId() != requiredStreamId)
+        {
+            return;
+        }
+
+        final byte flags = header.flags();
+        final boolean unfragmented = (flags & UNFRAGMENTED) == UNFRAGMENTED;
+        if (!unfragmented && (flags & BEGIN_FRAG_FLAG) != BEGIN_FRAG_FLAG)
+        {
+            return;
+        }
+
+        final int templateId = messageHeader.wrap(buffer, offset).templateId();
+        if (!isReplayedTemplate(templateId))
+        {
+            return;
+        }
+
+        final long recordingId = recordingIdLookup.getRecordingId(header.sessionId());
+        final long endPosition = header.position();
+        final long beginPosition = endPosition - BitUtil.align(length + HEADER_LENGTH, FRAME_ALIGNMENT);
+        if (unfragmented)
+        {
+            append(MESSAGE_ENTRY, recordingId, beginPosition, endPosition, header, buffer, offset, length);
+        }
+        else
+        {
+            append(GAP_ENTRY, recordingId, beginPosition, endPosition, header, buffer, offset, 0);
+        }
+    }
+
+    static boolean isReplayedTemplate(final int templateId)
+    {
+        return templateId == FixMessageDecoder.TEMPLATE_ID ||
+            templateId == FixPMessageDecoder.TEMPLATE_ID ||
+            templateId == ThrottleNotificationDecoder.TEMPLATE_ID ||
+            templateId == ThrottleRejectDecoder.TEMPLATE_ID;
+    }
+
+    public void onCatchup(
+        final DirectBuffer buffer, final int offset, final int length, final Header header, final long recordingId)
+    {
+        // Only messages indexed since the engine started are cached.
+    }
+
+    public void readLastPosition(final IndexedPositionConsumer consumer)
+    {
+        // Nothing to catch up, see onCatchup.
+    }
+
+    private void append(
+        final int type,
+        final long recordingId,
+        final long beginPosition,
+        final long endPosition,
+        final Header header,
+        final DirectBuffer srcBuffer,
+        final int srcOffset,
+        final int srcLength)
+    {
+        final UnsafeBuffer buffer = this.buffer;
+        final int entryLength = BitUtil.align(ENTRY_MESSAGE_OFFSET + srcLength, ENTRY_ALIGNMENT);
+        if (entryLength > capacity >> 1)
+        {
+            append(GAP_ENTRY, recordingId, beginPosition, endPosition, header, srcBuffer, srcOffset, 0);
+            return;
+        }
+
+        final long tailPosition = buffer.getLong(tailPositionIndex);
+        final int tailIndex = (int)(tailPosition & mask);
+        final int toEndOfBuffer = capacity - tailIndex;
+        final int paddingLength = entryLength > toEndOfBuffer ? toEndOfBuffer : 0;
+        final long newTailPosition = tailPosition + paddingLength + entryLength;
+
+        long headPosition = buffer.getLong(headPositionIndex);
+        if (newTailPosition - headPosition > capacity)
+        {
+            do
+            {
+                headPosition += buffer.getInt((int)(headPosition & mask) + ENTRY_LENGTH_OFFSET);
+            }
+            while (newTailPosition - headPosition > capacity);
+
+            // Readers have to see the new head position before any entry that they might be reading is overwritten.
+            buffer.putLongOrdered(headPositionIndex, headPosition);
+            UNSAFE.storeFence();
+        }
+
+        int index = tailIndex;
+        if (paddingLength > 0)
+        {
+            buffer.putInt(index + ENTRY_LENGTH_OFFSET, paddingLength);
+            buffer.putInt(index + ENTRY_TYPE_OFFSET, PADDING_ENTRY);
+            index = 0;
+        }
+
+        buffer.putInt(index + ENTRY_LENGTH_OFFSET, entryLength);
+        buffer.putInt(index + ENTRY_TYPE_OFFSET, type);
+        buffer.putLong(index + ENTRY_RECORDING_ID_OFFSET, recordingId);
+        buffer.putLong(index + ENTRY_BEGIN_POSITION_OFFSET, beginPosition);
+        buffer.putLong(index + ENTRY_END_POSITION_OFFSET, endPosition);
+        putFrameHeader(index + ENTRY_FRAME_OFFSET, beginPosition, header, srcLength);
+        buffer.putBytes(index + ENTRY_MESSAGE_OFFSET, srcBuffer, srcOffset, srcLength);
+
+        buffer.putLongOrdered(tailPositionIndex, newTailPosition);
+    }
+
+    // The message is unfragmented within a frame that starts at its begin position, see REPLAY_POSITION_BITS_TO_SHIFT.
+    private void putFrameHeader(final int index, final long beginPosition, final Header header, final int messageLength)
+    {
+        final UnsafeBuffer buffer = this.buffer;
+        buffer.putInt(index + FRAME_LENGTH_FIELD_OFFSET, HEADER_LENGTH + messageLength, LITTLE_ENDIAN);
+        buffer.putByte(index + VERSION_FIELD_OFFSET, (byte)CURRENT_VERSION);
+        buffer.putByte(index + FLAGS_FIELD_OFFSET, UNFRAGMENTED);
+        buffer.putShort(index + TYPE_FIELD_OFFSET, (short)HDR_TYPE_DATA, LITTLE_ENDIAN);
+        buffer.putInt(index + TERM_OFFSET_FIELD_OFFSET, (int)(beginPosition & REPLAY_TERM_OFFSET_MASK), LITTLE_ENDIAN);
+        buffer.putInt(index + SESSION_ID_FIELD_OFFSET, header.sessionId(), LITTLE_ENDIAN);
+        buffer.putInt(index + STREAM_ID_FIELD_OFFSET, header.streamId(), LITTLE_ENDIAN);
+        buffer.putInt(
+            index + TERM_ID_FIELD_OFFSET, (int)(beginPosition >>> REPLAY_POSITION_BITS_TO_SHIFT), LITTLE_ENDIAN);
+        buffer.putLong(index + RESERVED_VALUE_OFFSET, header.reservedValue(), LITTLE_ENDIAN);
+    }
+
+    /**
+     * Finds the first message of a recording range within the cache. Only one thread can replay from the cache.
+     *
+     * @param recordingId the recording id of the range.
+     * @param beginPosition the position of the start of the range's first message.
+     * @return the position within the ring of the range's first message or {@link #MISSING} if it isn't cached.
+     */
+    long lookup(final long recordingId, final long beginPosition)
+    {
+        final UnsafeBuffer buffer = this.buffer;
+        final long tailPosition = buffer.getLongVolatile(tailPositionIndex);
+        long ringPosition = buffer.getLongVolatile(headPositionIndex);
+
+        while (ringPosition < tailPosition)
+        {
+            final int index = (int)(ringPosition & mask);
+            final int entryLength = buffer.getInt(index + ENTRY_LENGTH_OFFSET);
+            final int type = buffer.getInt(index + ENTRY_TYPE_OFFSET);
+            final long entryRecordingId = buffer.getLong(index + ENTRY_RECORDING_ID_OFFSET);
+            final long entryBeginPosition = buffer.getLong(index + ENTRY_BEGIN_POSITION_OFFSET);
+            if (isOverwritten(ringPosition))
+            {
+                // Fell behind the writer, restart from the new head
+                ringPosition = buffer.getLongVolatile(headPositionIndex);
+                continue;
+            }
+
+            if (type == MESSAGE_ENTRY && entryRecordingId == recordingId && entryBeginPosition >= beginPosition)
+            {
+                if (entryBeginPosition == beginPosition)
+                {
+                    // Counted once the replay of the range has completed or missed
+                    return ringPosition;
+                }
+
+                break;
+            }
+
+            ringPosition += entryLength;
+        }
+
+        misses.increment();
+        return MISSING;
+    }
+
+    /**
+     * Replays cached messages of a recording range from a position within the ring up to the end of the range or
+     * until the handler aborts or enough messages have been replayed. Shouldn't be called again for a range once it
+     * has completed or returned false.
+     *
+     * @param cursor the replay's position within the ring and within the recording.
+     * @param recordingId the recording id of the range.
+     * @param endPosition the position of the end of the range.
+     * @param tracker the tracker to replay messages to.
+     * @param maxCount the number of messages in the range.
+     * @return false if the rest of the range needs to be replayed from the archive, starting at the cursor's
+     * recording position.
+     */
+    boolean replay(
+        final Cursor cursor,
+        final long recordingId,
+        final long endPosition,
+        final MessageTracker tracker,
+        final int maxCount)
+    {
+        final UnsafeBuffer buffer = this.buffer;
+        final long tailPosition = buffer.getLongVolatile(tailPositionIndex);
+        long ringPosition = cursor.ringPosition;
+
+        while (cursor.recordingPosition < endPosition && tracker.count < maxCount)
+        {
+            if (ringPosition >= tailPosition)
+            {
+                return miss(cursor, ringPosition);
+            }
+
+            final int index = (int)(ringPosition & mask);
+            final int entryLength = buffer.getInt(index + ENTRY_LENGTH_OFFSET);
+            final int type = buffer.getInt(index + ENTRY_TYPE_OFFSET);
+            final long entryRecordingId = buffer.getLong(index + ENTRY_RECORDING_ID_OFFSET);
+            final long entryBeginPosition = buffer.getLong(index + ENTRY_BEGIN_POSITION_OFFSET);
+            final long entryEndPosition = buffer.getLong(index + ENTRY_END_POSITION_OFFSET);
+            final int frameLength = buffer.getInt(
+                index + ENTRY_FRAME_OFFSET + FRAME_LENGTH_FIELD_OFFSET, LITTLE_ENDIAN);
+            if (isOverwritten(ringPosition))
+            {
+                return miss(cursor, ringPosition);
+            }
+
+            if (type == PADDING_ENTRY || entryRecordingId != recordingId)
+            {
+                ringPosition += entryLength;
+                continue;
+            }
+
+            if (entryBeginPosition >= endPosition)
+            {
+                // The remaining messages of the range weren't cached because nothing replays them.
+                cursor.reset(ringPosition, endPosition);
+                hits.increment();
+                return true;
+            }
+
+            if (type == GAP_ENTRY)
+            {
+                return miss(cursor, ringPosition);
+            }
+
+            final UnsafeBuffer readBuffer = copy(index + ENTRY_FRAME_OFFSET, frameLength);
+            if (isOverwritten(ringPosition))
+            {
+                return miss(cursor, ringPosition);
+            }
+
+            final Header replayHeader = this.replayHeader;
+            replayHeader.buffer(readBuffer);
+            replayHeader.offset(0);
+            if (tracker.onFragment(readBuffer, HEADER_LENGTH, frameLength - HEADER_LENGTH, replayHeader) == ABORT)
+            {
+                cursor.ringPosition = ringPosition;
+                return true;
+            }
+
+            ringPosition += entryLength;
+            cursor.recordingPosition = entryEndPosition;
+        }
+
+        cursor.ringPosition = ringPosition;
+        hits.increment();
+        return true;
+    }
+
+    private boolean miss(final Cursor cursor, final long ringPosition)
+    {
+        cursor.ringPosition = ringPosition;
+        misses.increment();
+        return false;
+    }
+
+    private boolean isOverwritten(final long ringPosition)
+    {
+        UNSAFE.loadFence();
+        return buffer.getLongVolatile(headPositionIndex) > ringPosition;
+    }
+
+    private UnsafeBuffer copy(final int index, final int length)
+    {
+        byte[] readBytes = this.readBytes;
+        if (readBytes.length < length)
+        {
+            readBytes = new byte[BitUtil.findNextPositivePowerOfTwo(length)];
+            this.readBytes = readBytes;
+            readBuffer.wrap(readBytes);
+        }
+
+        buffer.getBytes(index, readBytes, 0, length);
+        return readBuffer;
+    }
+
+    public void close()
+    {
+    }
+
+    /**
+     * The position of a replay within the cache.
+     */
+    static final class Cursor
+    {
+        long ringPosition;
+        long recordingPosition;
+
+        void reset(final long ringPosition, final long recordingPosition)
+        {
+            this.ringPosition = ringPosition;
+            this.recordingPosition = recordingPosition;
+        }
+    }
+}
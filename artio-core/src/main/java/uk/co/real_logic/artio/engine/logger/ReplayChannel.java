@@ -24,13 +24,26 @@ import java.util.Objects;
  */
 class ReplayChannel
 {
+    private final long connectionId;
     private ReplayerSession session;
     private Deque<EnqueuedReplay> enqueuedReplays;
 
-    ReplayChannel(final ReplayerSession session)
+    // Scheduling state, owned by the ReplayScheduler
+    long queuedTimeInNs;
+    boolean awaitingService;
+    int skippedPolls;
+    long priority;
+
+    ReplayChannel(final long connectionId, final ReplayerSession session, final long queuedTimeInNs)
     {
         Objects.requireNonNull(session);
-        startReplay(session);
+        this.connectionId = connectionId;
+        startReplay(session, queuedTimeInNs);
+    }
+
+    long connectionId()
+    {
+        return connectionId;
     }
 
     void enqueueReplay(final EnqueuedReplay enqueuedReplay)
@@ -50,9 +63,24 @@ class ReplayChannel
     }
 
     // Can be null if back-pressured trying to create a new ReplayerSession
-    void startReplay(final ReplayerSession session)
+    void startReplay(final ReplayerSession session, final long queuedTimeInNs)
     {
         this.session = session;
+        this.queuedTimeInNs = queuedTimeInNs;
+        awaitingService = true;
+        skippedPolls = 0;
+    }
+
+    long remainingReplayBytes()
+    {
+        final ReplayerSession session = this.session;
+        return session == null ? 0 : session.remainingReplayBytes();
+    }
+
+    long sessionId()
+    {
+        final ReplayerSession session = this.session;
+        return session == null ? 0 : session.sessionId;
     }
 
     EnqueuedReplay pollReplay()
@@ -63,7 +91,19 @@ class ReplayChannel
 
     boolean attemptReplay()
     {
-        return session == null || session.attemptReplay();
+        final ReplayerSession session = this.session;
+        if (session == null)
+        {
+            return true;
+        }
+
+        if (session.attemptReplay())
+        {
+            session.releaseReplayOperation();
+            return true;
+        }
+
+        return false;
     }
 
     void closeNow()
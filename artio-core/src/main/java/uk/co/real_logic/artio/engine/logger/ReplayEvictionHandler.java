@@ -16,6 +16,8 @@
 package uk.co.real_logic.artio.engine.logger;
 
 import org.agrona.ErrorHandler;
+import org.agrona.concurrent.IdleStrategy;
+import uk.co.real_logic.artio.engine.ReplayerCommandQueue;
 import uk.co.real_logic.artio.engine.framer.FramerContext;
 
 public class ReplayEvictionHandler
@@ -24,6 +26,8 @@ public class ReplayEvictionHandler
     private ReplayQuery replayQuery;
     private ReplayQuery framerReplayQuery;
     private FramerContext framerContext;
+    private ReplayerCommandQueue replayerCommandQueue;
+    private IdleStrategy idleStrategy;
 
     public ReplayEvictionHandler(final ErrorHandler errorHandler)
     {
@@ -34,7 +38,14 @@ public class ReplayEvictionHandler
     {
         if (replayQuery != null)
         {
-            replayQuery.onReset(fixSessionId);
+            if (replayerCommandQueue != null)
+            {
+                resetOnReplayerThread(fixSessionId);
+            }
+            else
+            {
+                replayQuery.onReset(fixSessionId);
+            }
         }
 
         if (framerReplayQuery != null)
@@ -49,6 +60,24 @@ public class ReplayEvictionHandler
         }
     }
 
+    private void resetOnReplayerThread(final long fixSessionId)
+    {
+        final ReplayQueryResetCommand command = new ReplayQueryResetCommand(replayQuery, fixSessionId);
+        final IdleStrategy idleStrategy = this.idleStrategy;
+
+        while (!replayerCommandQueue.offer(command))
+        {
+            idleStrategy.idle();
+        }
+        idleStrategy.reset();
+
+        while (!command.isDone())
+        {
+            idleStrategy.idle();
+        }
+        idleStrategy.reset();
+    }
+
     public void replayQuery(final ReplayQuery replayQuery)
     {
         if (this.replayQuery != null)
@@ -64,6 +93,20 @@ public class ReplayEvictionHandler
         this.framerReplayQuery = framerReplayQuery;
     }
 
+    /**
+     * Reset the replayer's replay query on the replayer's thread, needed when the indexer and the replayer run on
+     * different threads. Resets wait until the replayer has executed them so that a session's replay index isn't
+     * deleted whilst the replayer still has it open.
+     *
+     * @param replayerCommandQueue the queue of commands that the replayer executes.
+     * @param idleStrategy the idle strategy of the indexer's thread to wait with.
+     */
+    public void replayerCommandQueue(final ReplayerCommandQueue replayerCommandQueue, final IdleStrategy idleStrategy)
+    {
+        this.replayerCommandQueue = replayerCommandQueue;
+        this.idleStrategy = idleStrategy;
+    }
+
     public void framerContext(final FramerContext framerContext)
     {
         this.framerContext = framerContext;
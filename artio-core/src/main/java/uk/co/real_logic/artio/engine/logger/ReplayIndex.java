@@ -18,21 +18,18 @@ package uk.co.real_logic.artio.engine.logger;
 import io.aeron.logbuffer.Header;
 import org.agrona.BitUtil;
 import org.agrona.DirectBuffer;
+import org.agrona.CloseHelper;
 import org.agrona.ErrorHandler;
 import org.agrona.IoUtil;
 import org.agrona.collections.Long2LongHashMap;
 import org.agrona.collections.Long2ObjectHashMap;
 import org.agrona.concurrent.AtomicBuffer;
-import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.artio.dictionary.generation.Exceptions;
 import uk.co.real_logic.artio.engine.SequenceNumberExtractor;
 import uk.co.real_logic.artio.messages.*;
+import uk.co.real_logic.artio.storage.messages.ReplayIndexBlockEncoder;
 import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordEncoder;
 
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.function.LongFunction;
 
 import static io.aeron.archive.status.RecordingPos.NULL_RECORDING_ID;
@@ -47,6 +44,11 @@ import static uk.co.real_logic.artio.messages.MessageStatus.OK;
 /**
  * Builds an index of a composite key of session id and sequence number for a given stream.
  *
+ * Each session's index is held in a {@link ReplayIndexStore}, by default a {@link FileReplayIndexStore}. The index of a
+ * session created when records are compressed holds {@link ReplayIndexBlock} blocks rather than individual records,
+ * an existing session's index keeps the format that it was created with. A {@link SessionTimeIndexWriter} optionally
+ * records the timestamp of each of a session's recent records as well.
+ *
  * Written Positions are stored in a separate file at {@link ReplayIndexDescriptor#replayPositionPath(String, int)}.
  *
  * Buffer Consists of:
@@ -68,7 +70,9 @@ public class ReplayIndex implements Index
     private final ResetSequenceNumberDecoder resetSequenceNumber = new ResetSequenceNumberDecoder();
     private final RedactSequenceUpdateDecoder redactSequenceUpdateDecoder = new RedactSequenceUpdateDecoder();
     private final ReplayIndexRecordEncoder replayIndexRecord = new ReplayIndexRecordEncoder();
+    private final ReplayIndexBlockEncoder replayIndexBlock = new ReplayIndexBlockEncoder();
     private final MessageHeaderEncoder indexHeaderEncoder = new MessageHeaderEncoder();
+    private final MessageHeaderDecoder indexHeaderDecoder = new MessageHeaderDecoder();
 
     private final IndexedPositionWriter positionWriter;
     private final IndexedPositionReader positionReader;
@@ -78,19 +82,20 @@ public class ReplayIndex implements Index
 
     private final Long2ObjectHashMap<SessionIndex> fixSessionIdToIndex;
 
-    private final String logFileDir;
     private final int requiredStreamId;
     private final long indexFileSize;
     private final int segmentSize;
     private final ReplayEvictionHandler evictionHandler;
     private final int segmentSizeBitShift;
     private final int segmentCount;
-    private final BufferFactory bufferFactory;
+    private final ReplayIndexStore indexStore;
     private final AtomicBuffer positionBuffer;
     private final ErrorHandler errorHandler;
     private final RecordingIdLookup recordingIdLookup;
     private final TimeIndexWriter timeIndex;
+    private final SessionTimeIndexWriter sessionTimeIndex;
     private final SessionOwnershipTracker sessTracker;
+    private final boolean compressRecords;
 
     public ReplayIndex(
         final SequenceNumberExtractor sequenceNumberExtractor,
@@ -108,23 +113,75 @@ public class ReplayIndex implements Index
         final long timeIndexReplayFlushIntervalInNs,
         final boolean indexChecksumEnabled,
         final ReplayEvictionHandler evictionHandler)
+    {
+        this(
+            sequenceNumberExtractor,
+            logFileDir,
+            requiredStreamId,
+            indexFileCapacity,
+            indexSegmentCapacity,
+            new FileReplayIndexStore(
+                logFileDir,
+                requiredStreamId,
+                indexFileCapacity,
+                indexSegmentCapacity,
+                bufferFactory,
+                LoggerUtil::mapExistingFile,
+                errorHandler),
+            positionBuffer,
+            errorHandler,
+            recordingIdLookup,
+            connectionIdToFixPSessionId,
+            fixPProtocolType,
+            reader,
+            timeIndexReplayFlushIntervalInNs,
+            indexChecksumEnabled,
+            evictionHandler,
+            false,
+            0);
+    }
+
+    public ReplayIndex(
+        final SequenceNumberExtractor sequenceNumberExtractor,
+        final String logFileDir,
+        final int requiredStreamId,
+        final int indexFileCapacity,
+        final int indexSegmentCapacity,
+        final ReplayIndexStore indexStore,
+        final AtomicBuffer positionBuffer,
+        final ErrorHandler errorHandler,
+        final RecordingIdLookup recordingIdLookup,
+        final Long2LongHashMap connectionIdToFixPSessionId,
+        final FixPProtocolType fixPProtocolType,
+        final SequenceNumberIndexReader reader,
+        final long timeIndexReplayFlushIntervalInNs,
+        final boolean indexChecksumEnabled,
+        final ReplayEvictionHandler evictionHandler,
+        final boolean compressRecords,
+        final int sessionTimeIndexRecordCapacity)
     {
         this.sequenceNumberExtractor = sequenceNumberExtractor;
-        this.logFileDir = logFileDir;
         this.requiredStreamId = requiredStreamId;
         this.indexFileSize = ReplayIndexDescriptor.capacityToBytes(indexFileCapacity);
         this.segmentSize = ReplayIndexDescriptor.capacityToBytesInt(indexSegmentCapacity);
         this.evictionHandler = evictionHandler;
         this.segmentSizeBitShift = Long.numberOfTrailingZeros(segmentSize);
         this.segmentCount = ReplayIndexDescriptor.segmentCount(indexFileCapacity, indexSegmentCapacity);
-        this.bufferFactory = bufferFactory;
+        this.indexStore = indexStore;
         this.positionBuffer = positionBuffer;
         this.errorHandler = errorHandler;
         this.recordingIdLookup = recordingIdLookup;
+        this.compressRecords = compressRecords;
 
         checkPowerOfTwo("segmentCount", segmentCount);
         checkPowerOfTwo("segmentSize", segmentSize);
         checkPowerOfTwo("indexFileSize", indexFileSize);
+        if (compressRecords && segmentSize < ReplayIndexBlock.BLOCK_LENGTH)
+        {
+            throw new IllegalStateException(
+                "segmentSize must be at least " + ReplayIndexBlock.BLOCK_LENGTH + " to compress records: segmentSize=" +
+                segmentSize);
+        }
 
         sessTracker = new SessionOwnershipTracker();
         fixPSequenceIndexer = new FixPSequenceIndexer(
@@ -139,6 +196,9 @@ public class ReplayIndex implements Index
         positionReader = new IndexedPositionReader(positionBuffer);
         timeIndex = new TimeIndexWriter(
             logFileDir, requiredStreamId, timeIndexReplayFlushIntervalInNs, errorHandler);
+        // A capacity of 0 disables the session time index
+        sessionTimeIndex = sessionTimeIndexRecordCapacity > 0 ? new SessionTimeIndexWriter(
+            logFileDir, requiredStreamId, sessionTimeIndexRecordCapacity, errorHandler) : null;
     }
 
     private void checkPowerOfTwo(final String name, final int value)
@@ -194,12 +254,12 @@ public class ReplayIndex implements Index
         else
         {
             // This session isn't in the cache
-            final File headerFile = replayIndexHeaderFile(sessionId);
-            if (headerFile.exists())
+            if (indexStore.hasSession(sessionId))
             {
-                final UnsafeBuffer headerBuffer = mapUnsafeBuffer(HEADER_FILE_SIZE, headerFile);
+                final ReplayIndexStore.Session session = indexStore.openSession(sessionId);
                 try
                 {
+                    final AtomicBuffer headerBuffer = session.headerBuffer();
                     if (forNextSessionVersion(headerBuffer))
                     {
                         flipNextSession(forNextSession, headerBuffer);
@@ -208,7 +268,7 @@ public class ReplayIndex implements Index
                 }
                 finally
                 {
-                    IoUtil.unmap(headerBuffer.byteBuffer());
+                    session.close();
                 }
             }
         }
@@ -216,7 +276,7 @@ public class ReplayIndex implements Index
         onResetSequenceNumber(sessionId);
     }
 
-    private void flipNextSession(final boolean forNextSession, final UnsafeBuffer headerBuffer)
+    private void flipNextSession(final boolean forNextSession, final AtomicBuffer headerBuffer)
     {
         if (!forNextSession)
         {
@@ -443,6 +503,11 @@ public class ReplayIndex implements Index
 
     private void onResetSequenceNumber(final long fixSessionId)
     {
+        if (sessionTimeIndex != null)
+        {
+            sessionTimeIndex.onResetSequenceNumber(fixSessionId);
+        }
+
         final SessionIndex index = fixSessionIdToIndex.remove(fixSessionId);
 
         if (index != null)
@@ -451,21 +516,9 @@ public class ReplayIndex implements Index
         }
         else
         {
-            // File might be present but not within the cache.
+            // Index might be stored but not within the cache.
             evictionHandler.onReset(fixSessionId);
-            final File headerFile = replayIndexHeaderFile(fixSessionId);
-            if (headerFile.exists())
-            {
-                deleteFile(headerFile);
-            }
-            for (int segmentIndex = 0; segmentIndex < segmentCount; segmentIndex++)
-            {
-                final File segmentFile = replayIndexSegmentFile(fixSessionId, segmentIndex);
-                if (segmentFile.exists())
-                {
-                    deleteFile(segmentFile);
-                }
-            }
+            indexStore.deleteSession(fixSessionId);
         }
     }
 
@@ -484,9 +537,11 @@ public class ReplayIndex implements Index
     {
         Exceptions.closeAll(
             timeIndex,
+            sessionTimeIndex,
             positionWriter);
         fixSessionIdToIndex.values().forEach(SessionIndex::close);
         fixSessionIdToIndex.clear();
+        CloseHelper.close(indexStore);
         IoUtil.unmap(positionBuffer.byteBuffer());
     }
 
@@ -501,11 +556,9 @@ public class ReplayIndex implements Index
         private final int segmentSize;
         private final int segmentSizeBitShift;
 
-        private final UnsafeBuffer headerBuffer;
-        private final File headerFile;
-
-        private final UnsafeBuffer[] segmentBuffers;
-        private final File[] segmentBufferFiles;
+        private final ReplayIndexStore.Session session;
+        private final AtomicBuffer headerBuffer;
+        private final ReplayIndexBlock.Writer blockWriter;
 
         SessionIndex(final long fixSessionId)
         {
@@ -514,76 +567,99 @@ public class ReplayIndex implements Index
             this.fixSessionId = fixSessionId;
             this.segmentSize = replayIndex.segmentSize;
             this.segmentSizeBitShift = replayIndex.segmentSizeBitShift;
-            segmentBuffers = new UnsafeBuffer[segmentCount];
-            segmentBufferFiles = new File[segmentCount];
 
-            headerFile = replayIndexHeaderFile(fixSessionId);
-            final boolean exists = headerFile.exists();
-            this.headerBuffer = mapUnsafeBuffer(HEADER_FILE_SIZE, headerFile);
+            session = indexStore.openSession(fixSessionId);
+            this.headerBuffer = session.headerBuffer();
 
-            if (!exists)
+            final boolean compressed;
+            if (session.isNew())
             {
-                final ReplayIndexRecordEncoder replayIndexRecord = replayIndex.replayIndexRecord;
-                final MessageHeaderEncoder indexHeaderEncoder = replayIndex.indexHeaderEncoder;
-                indexHeaderEncoder
-                    .wrap(headerBuffer, 0)
-                    .blockLength(replayIndexRecord.sbeBlockLength())
-                    .templateId(replayIndexRecord.sbeTemplateId())
-                    .schemaId(replayIndexRecord.sbeSchemaId())
-                    .version(replayIndexRecord.sbeSchemaVersion());
+                compressed = compressRecords;
+                final MessageHeaderEncoder indexHeaderEncoder = replayIndex.indexHeaderEncoder.wrap(headerBuffer, 0);
+                if (compressed)
+                {
+                    final ReplayIndexBlockEncoder replayIndexBlock = replayIndex.replayIndexBlock;
+                    indexHeaderEncoder
+                        .blockLength(replayIndexBlock.sbeBlockLength())
+                        .templateId(replayIndexBlock.sbeTemplateId())
+                        .schemaId(replayIndexBlock.sbeSchemaId())
+                        .version(replayIndexBlock.sbeSchemaVersion());
+                }
+                else
+                {
+                    final ReplayIndexRecordEncoder replayIndexRecord = replayIndex.replayIndexRecord;
+                    indexHeaderEncoder
+                        .blockLength(replayIndexRecord.sbeBlockLength())
+                        .templateId(replayIndexRecord.sbeTemplateId())
+                        .schemaId(replayIndexRecord.sbeSchemaId())
+                        .version(replayIndexRecord.sbeSchemaVersion());
+                }
                 notForNextSession(headerBuffer);
-
-                checkSegmentFilesDoNotExist();
             }
             else
             {
+                compressed = ReplayIndexBlock.isBlockTemplate(
+                    replayIndex.indexHeaderDecoder.wrap(headerBuffer, 0).templateId());
+
                 // Reset the positions in order to avoid wraps at the start.
                 final long resetPosition = beginChange(headerBuffer);
                 endChangeOrdered(headerBuffer, resetPosition);
             }
+
+            // A compressed index starts a new block after a restart rather than appending to the last one.
+            blockWriter = compressed ? new ReplayIndexBlock.Writer() : null;
         }
 
-        private void checkSegmentFilesDoNotExist()
+        void onRecord(
+            final long endPosition,
+            final int length,
+            final int sequenceNumber,
+            final int sequenceIndex,
+            final int aeronSessionId,
+            final long knownRecordingId,
+            final long timestamp)
         {
-            final List<File> existingSegmentFiles = new ArrayList<>();
+            final long recordingId = knownRecordingId ==
+                NULL_RECORDING_ID ? recordingIdLookup.getRecordingId(aeronSessionId) : knownRecordingId;
+            final long beginPosition = endPosition - length;
 
-            for (int segmentIndex = 0; segmentIndex < segmentCount; segmentIndex++)
+            if (blockWriter == null)
             {
-                final File segmentFile = replayIndexSegmentFile(fixSessionId, segmentIndex);
-                if (segmentFile.exists())
-                {
-                    existingSegmentFiles.add(segmentFile);
-                }
+                writeRecord(beginPosition, length, sequenceNumber, sequenceIndex, recordingId);
+            }
+            else if (!blockWriter.append(beginPosition, sequenceNumber, sequenceIndex, recordingId, length))
+            {
+                startBlock(beginPosition, length, sequenceNumber, sequenceIndex, recordingId);
             }
 
-            if (!existingSegmentFiles.isEmpty())
+            if (timestamp != NO_TIMESTAMP)
             {
-                errorHandler.onError(new IllegalStateException("Replay index header file did not exist, " +
-                    "but the following segment files did: " + existingSegmentFiles));
+                timeIndex.onRecord(recordingId, endPosition, timestamp);
+
+                if (sessionTimeIndex != null)
+                {
+                    sessionTimeIndex.onRecord(
+                        fixSessionId, timestamp, recordingId, beginPosition, length, sequenceNumber, sequenceIndex);
+                }
             }
         }
 
-        void onRecord(
-            final long endPosition,
+        private void writeRecord(
+            final long beginPosition,
             final int length,
             final int sequenceNumber,
             final int sequenceIndex,
-            final int aeronSessionId,
-            final long knownRecordingId,
-            final long timestamp)
+            final long recordingId)
         {
             final long beginChangePosition = beginChange(headerBuffer);
             final long changePosition = beginChangePosition + RECORD_LENGTH;
-            final long recordingId = knownRecordingId ==
-                NULL_RECORDING_ID ? recordingIdLookup.getRecordingId(aeronSessionId) : knownRecordingId;
-            final long beginPosition = endPosition - length;
 
             beginChangeOrdered(headerBuffer, changePosition);
             UNSAFE.storeFence();
 
             final int segmentIndex = ReplayIndexDescriptor.segmentIndex(
                 beginChangePosition, segmentSizeBitShift, indexFileSize);
-            final UnsafeBuffer segmentBuffer = segmentBuffer(segmentIndex);
+            final AtomicBuffer segmentBuffer = session.segmentBuffer(segmentIndex);
             final int offset = offsetInSegment(beginChangePosition, segmentSize);
 
             replayIndexRecord
@@ -595,24 +671,29 @@ public class ReplayIndex implements Index
                 .length(length);
 
             endChangeOrdered(headerBuffer, changePosition);
-
-            if (timestamp != NO_TIMESTAMP)
-            {
-                timeIndex.onRecord(recordingId, endPosition, timestamp);
-            }
         }
 
-        private UnsafeBuffer segmentBuffer(final int segmentIndex)
+        private void startBlock(
+            final long beginPosition,
+            final int length,
+            final int sequenceNumber,
+            final int sequenceIndex,
+            final long recordingId)
         {
-            UnsafeBuffer segmentBuffer = segmentBuffers[segmentIndex];
-            if (segmentBuffer == null)
-            {
-                final File file = replayIndexSegmentFile(fixSessionId, segmentIndex);
-                segmentBufferFiles[segmentIndex] = file;
-                segmentBuffer = mapUnsafeBuffer(segmentSize, file);
-                segmentBuffers[segmentIndex] = segmentBuffer;
-            }
-            return segmentBuffer;
+            final long beginChangePosition = beginChange(headerBuffer);
+            final long changePosition = beginChangePosition + ReplayIndexBlock.BLOCK_LENGTH;
+
+            beginChangeOrdered(headerBuffer, changePosition);
+            UNSAFE.storeFence();
+
+            final int segmentIndex = ReplayIndexDescriptor.segmentIndex(
+                beginChangePosition, segmentSizeBitShift, indexFileSize);
+            final AtomicBuffer segmentBuffer = session.segmentBuffer(segmentIndex);
+            final int offset = offsetInSegment(beginChangePosition, segmentSize);
+
+            blockWriter.start(segmentBuffer, offset, beginPosition, sequenceNumber, sequenceIndex, recordingId, length);
+
+            endChangeOrdered(headerBuffer, changePosition);
         }
 
         void reset()
@@ -620,19 +701,12 @@ public class ReplayIndex implements Index
             close();
 
             evictionHandler.onReset(fixSessionId);
-            deleteFile(headerFile);
-            for (final File segmentFile: segmentBufferFiles)
-            {
-                if (segmentFile != null)
-                {
-                    deleteFile(segmentFile);
-                }
-            }
+            indexStore.deleteSession(fixSessionId);
         }
 
         public void close()
         {
-            ReplayIndexDescriptor.unmapBuffers(headerBuffer, segmentBuffers);
+            session.close();
         }
 
         public void checkForNextSession(final boolean forNextSession)
@@ -644,31 +718,8 @@ public class ReplayIndex implements Index
         }
     }
 
-    static void notForNextSession(final UnsafeBuffer headerBuffer)
+    static void notForNextSession(final AtomicBuffer headerBuffer)
     {
         forNextSessionVersion(headerBuffer, false);
     }
-
-    private File replayIndexHeaderFile(final long fixSessionId)
-    {
-        return ReplayIndexDescriptor.replayIndexHeaderFile(logFileDir, fixSessionId, requiredStreamId);
-    }
-
-    private File replayIndexSegmentFile(final long fixSessionId, final int segmentIndex)
-    {
-        return ReplayIndexDescriptor.replayIndexSegmentFile(logFileDir, fixSessionId, requiredStreamId, segmentIndex);
-    }
-
-    void deleteFile(final File replayIndexFile)
-    {
-        if (!replayIndexFile.delete())
-        {
-            errorHandler.onError(new IOException("Unable to delete replay index file: " + replayIndexFile));
-        }
-    }
-
-    private UnsafeBuffer mapUnsafeBuffer(final int size, final File replayIndexFile)
-    {
-        return new UnsafeBuffer(bufferFactory.map(replayIndexFile, size));
-    }
 }
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.concurrent.AtomicBuffer;
+import uk.co.real_logic.artio.storage.messages.ReplayIndexBlockDecoder;
+import uk.co.real_logic.artio.storage.messages.ReplayIndexBlockEncoder;
+
+import static io.aeron.logbuffer.FrameDescriptor.FRAME_ALIGNMENT;
+
+/**
+ * Delta compressed encoding of replay index records, used for sessions whose index is created when
+ * {@link uk.co.real_logic.artio.engine.EngineConfiguration#replayIndexCompressed(boolean)} is enabled.
+ * <p>
+ * The ring of a compressed index holds fixed length blocks rather than fixed length records. Each block starts with a
+ * {@link ReplayIndexBlockEncoder} header that holds the number of records in the block, the sequence index and
+ * recording id shared by all of them and the first record in full. Each subsequent record is three varints: the
+ * zig-zag encoded differences from the previous record's position and sequence number, then the record's length.
+ * Positions and lengths are in units of the frame alignment. A record that doesn't share the block's sequence index
+ * and recording id, or doesn't fit into it, starts a new block.
+ * <p>
+ * The writer starts a block within the index header's begin and end change positions, just as it writes an
+ * uncompressed record, and appends records to it by writing them and then publishing the increased count. Readers
+ * only decode as many records as the count that they read, so appends don't move the change positions. As blocks
+ * are a fixed length their headers double as a skip directory, a reader doesn't need to decode a block if the next
+ * block starts before the sequence number that it's looking for.
+ */
+final class ReplayIndexBlock
+{
+    static final int BLOCK_LENGTH = 256;
+
+    private static final int COUNT_OFFSET = ReplayIndexBlockEncoder.countEncodingOffset();
+    private static final int MIN_ENTRY_LENGTH = 3;
+    private static final int ALIGNMENT_SHIFT = Integer.numberOfTrailingZeros(FRAME_ALIGNMENT);
+    private static final long TRUNCATED = -1;
+
+    static final int MAX_RECORDS = 1 + (BLOCK_LENGTH - ReplayIndexBlockEncoder.BLOCK_LENGTH) / MIN_ENTRY_LENGTH;
+
+    static boolean isBlockTemplate(final int templateId)
+    {
+        return templateId == ReplayIndexBlockDecoder.TEMPLATE_ID;
+    }
+
+    static final class Writer
+    {
+        private final ReplayIndexBlockEncoder blockHeader = new ReplayIndexBlockEncoder();
+
+        private AtomicBuffer buffer;
+        private int blockOffset;
+        private int tail;
+        private int count;
+        private int sequenceIndex;
+        private long recordingId;
+        private long lastPosition;
+        private int lastSequenceNumber;
+
+        // Only called within the begin and end change positions of the block
+        void start(
+            final AtomicBuffer buffer,
+            final int offset,
+            final long position,
+            final int sequenceNumber,
+            final int sequenceIndex,
+            final long recordingId,
+            final int length)
+        {
+            blockHeader
+                .wrap(buffer, offset)
+                .sequenceIndex(sequenceIndex)
+                .position(position)
+                .recordingId(recordingId)
+                .sequenceNumber(sequenceNumber)
+                .length(length);
+            buffer.putIntOrdered(offset + COUNT_OFFSET, 1);
+
+            this.buffer = buffer;
+            this.blockOffset = offset;
+            this.tail = offset + ReplayIndexBlockEncoder.BLOCK_LENGTH;
+            this.count = 1;
+            this.sequenceIndex = sequenceIndex;
+            this.recordingId = recordingId;
+            this.lastPosition = position;
+            this.lastSequenceNumber = sequenceNumber;
+        }
+
+        // Returns false if the record needs a new block
+        boolean append(
+            final long position,
+            final int sequenceNumber,
+            final int sequenceIndex,
+            final long recordingId,
+            final int length)
+        {
+            final AtomicBuffer buffer = this.buffer;
+            if (buffer == null || sequenceIndex != this.sequenceIndex || recordingId != this.recordingId)
+            {
+                return false;
+            }
+
+            final long positionDelta = position - lastPosition;
+            if (length < 0 || ((positionDelta | length) & (FRAME_ALIGNMENT - 1)) != 0)
+            {
+                return false;
+            }
+
+            final long encodedPosition = zigZag(positionDelta >> ALIGNMENT_SHIFT);
+            final long encodedSequenceNumber = zigZag((long)sequenceNumber - lastSequenceNumber);
+            final long encodedLength = length >> ALIGNMENT_SHIFT;
+            final int entryLength =
+                varIntLength(encodedPosition) + varIntLength(encodedSequenceNumber) + varIntLength(encodedLength);
+            if (tail + entryLength > blockOffset + BLOCK_LENGTH)
+            {
+                return false;
+            }
+
+            int offset = putVarInt(buffer, tail, encodedPosition);
+            offset = putVarInt(buffer, offset, encodedSequenceNumber);
+            tail = putVarInt(buffer, offset, encodedLength);
+            lastPosition = position;
+            lastSequenceNumber = sequenceNumber;
+            count++;
+
+            buffer.putIntOrdered(blockOffset + COUNT_OFFSET, count);
+            return true;
+        }
+    }
+
+    static final class Reader
+    {
+        private final ReplayIndexBlockDecoder blockHeader = new ReplayIndexBlockDecoder();
+        private final long[] positions = new long[MAX_RECORDS];
+        private final int[] sequenceNumbers = new int[MAX_RECORDS];
+        private final int[] lengths = new int[MAX_RECORDS];
+
+        private int sequenceIndex;
+        private long recordingId;
+        private int cursor;
+        private int end;
+
+        // Returns the number of records decoded. The records may be inconsistent if the writer laps the reader, so
+        // callers check the change positions afterwards.
+        int read(final AtomicBuffer buffer, final int offset, final int actingBlockLength, final int actingVersion)
+        {
+            final int count = Math.min(buffer.getIntVolatile(offset + COUNT_OFFSET), MAX_RECORDS);
+            if (count <= 0)
+            {
+                return 0;
+            }
+
+            final ReplayIndexBlockDecoder blockHeader = this.blockHeader.wrap(
+                buffer, offset, actingBlockLength, actingVersion);
+            sequenceIndex = blockHeader.sequenceIndex();
+            recordingId = blockHeader.recordingId();
+
+            long position = blockHeader.position();
+            int sequenceNumber = blockHeader.sequenceNumber();
+            positions[0] = position;
+            sequenceNumbers[0] = sequenceNumber;
+            lengths[0] = blockHeader.length();
+
+            cursor = offset + actingBlockLength;
+            end = offset + BLOCK_LENGTH;
+            int i = 1;
+            for (; i < count; i++)
+            {
+                final long encodedPosition = getVarInt(buffer);
+                final long encodedSequenceNumber = getVarInt(buffer);
+                final long encodedLength = getVarInt(buffer);
+                if (encodedLength == TRUNCATED)
+                {
+                    break;
+                }
+
+                position += unZigZag(encodedPosition) << ALIGNMENT_SHIFT;
+                sequenceNumber += (int)unZigZag(encodedSequenceNumber);
+                positions[i] = position;
+                sequenceNumbers[i] = sequenceNumber;
+                lengths[i] = (int)(encodedLength << ALIGNMENT_SHIFT);
+            }
+
+            return i;
+        }
+
+        boolean startsBefore(
+            final AtomicBuffer buffer,
+            final int offset,
+            final int actingBlockLength,
+            final int actingVersion,
+            final int sequenceNumber,
+            final int sequenceIndex)
+        {
+            final ReplayIndexBlockDecoder blockHeader = this.blockHeader.wrap(
+                buffer, offset, actingBlockLength, actingVersion);
+            final int blockSequenceIndex = blockHeader.sequenceIndex();
+            return blockSequenceIndex < sequenceIndex ||
+                (blockSequenceIndex == sequenceIndex && blockHeader.sequenceNumber() < sequenceNumber);
+        }
+
+        int sequenceIndex()
+        {
+            return sequenceIndex;
+        }
+
+        long recordingId()
+        {
+            return recordingId;
+        }
+
+        long position(final int index)
+        {
+            return positions[index];
+        }
+
+        int sequenceNumber(final int index)
+        {
+            return sequenceNumbers[index];
+        }
+
+        int length(final int index)
+        {
+            return lengths[index];
+        }
+
+        private long getVarInt(final AtomicBuffer buffer)
+        {
+            long value = 0;
+            int shift = 0;
+            while (cursor < end && shift < Long.SIZE)
+            {
+                final byte b = buffer.getByte(cursor++);
+                value |= (long)(b & 0x7F) << shift;
+                if (b >= 0)
+                {
+                    return value;
+                }
+                shift += 7;
+            }
+
+            cursor = end;
+            return TRUNCATED;
+        }
+    }
+
+    static long zigZag(final long value)
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(final long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int varIntLength(final long value)
+    {
+        int length = 1;
+        long remaining = value >>> 7;
+        while (remaining != 0)
+        {
+            length++;
+            remaining >>>= 7;
+        }
+        return length;
+    }
+
+    static int putVarInt(final AtomicBuffer buffer, final int offset, final long value)
+    {
+        int cursor = offset;
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0)
+        {
+            buffer.putByte(cursor++, (byte)((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.putByte(cursor++, (byte)remaining);
+        return cursor;
+    }
+}
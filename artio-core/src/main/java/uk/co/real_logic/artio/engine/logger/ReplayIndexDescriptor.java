@@ -60,6 +60,16 @@ public final class ReplayIndexDescriptor
             logFileDir + File.separator + "replay-index-" + fixSessionId + "-" + streamId + "-" + segmentIndex);
     }
 
+    static File packedReplayIndexTableFile(final String logFileDir, final int streamId)
+    {
+        return new File(logFileDir + File.separator + "replay-index-packed-" + streamId + "-table");
+    }
+
+    static File packedReplayIndexBlockFile(final String logFileDir, final int streamId, final int fileIndex)
+    {
+        return new File(logFileDir + File.separator + "replay-index-packed-" + streamId + "-" + fileIndex);
+    }
+
     static LongHashSet listReplayIndexSessionIds(final File logFileDir, final int streamId)
     {
         final String prefix = "replay-index-";
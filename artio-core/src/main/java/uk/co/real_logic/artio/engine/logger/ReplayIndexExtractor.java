@@ -6,6 +6,7 @@ import org.agrona.collections.Long2ObjectHashMap;
 import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordDecoder;
+import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordEncoder;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -248,6 +249,13 @@ public final class ReplayIndexExtractor
             messageFrameHeader.wrap(headerBuffer, 0);
             final int actingBlockLength = messageFrameHeader.blockLength();
             final int actingVersion = messageFrameHeader.version();
+            if (ReplayIndexBlock.isBlockTemplate(messageFrameHeader.templateId()))
+            {
+                extractBlocks(
+                    headerBuffer, indexFileSize, segmentSize, segmentBuffers, segmentSizeBitShift, actingBlockLength,
+                    actingVersion, fixSessionId, streamId, logFileDir, handler);
+                return;
+            }
 
             long iteratorPosition = Math.max(beginChangeVolatile(headerBuffer) - indexFileSize, 0);
             long stopIteratingPosition = iteratorPosition + indexFileSize;
@@ -293,6 +301,75 @@ public final class ReplayIndexExtractor
         }
     }
 
+    private static void extractBlocks(
+        final UnsafeBuffer headerBuffer,
+        final long indexFileSize,
+        final int segmentSize,
+        final UnsafeBuffer[] segmentBuffers,
+        final int segmentSizeBitShift,
+        final int actingBlockLength,
+        final int actingVersion,
+        final long fixSessionId,
+        final int streamId,
+        final String logFileDir,
+        final ReplayIndexHandler handler)
+    {
+        final ReplayIndexBlock.Reader indexBlock = new ReplayIndexBlock.Reader();
+        final UnsafeBuffer recordBuffer = new UnsafeBuffer(new byte[RECORD_LENGTH]);
+        final ReplayIndexRecordEncoder recordEncoder = new ReplayIndexRecordEncoder();
+        final ReplayIndexRecordDecoder indexRecord = new ReplayIndexRecordDecoder();
+
+        long iteratorPosition = Math.max(beginChangeVolatile(headerBuffer) - indexFileSize, 0);
+        long stopIteratingPosition = iteratorPosition + indexFileSize;
+
+        while (iteratorPosition < stopIteratingPosition)
+        {
+            final long changePosition = endChangeVolatile(headerBuffer);
+
+            final long beginChangePosition;
+            if (changePosition > iteratorPosition &&
+                (iteratorPosition + indexFileSize) < (beginChangePosition = beginChangeVolatile(headerBuffer)))
+            {
+                handler.onLapped();
+                iteratorPosition = beginChangePosition - indexFileSize;
+                stopIteratingPosition = beginChangePosition;
+            }
+
+            if (iteratorPosition >= changePosition)
+            {
+                break;
+            }
+
+            final UnsafeBuffer segmentBuffer = segmentBuffer(
+                iteratorPosition, segmentSizeBitShift, segmentBuffers, indexFileSize,
+                fixSessionId, streamId, logFileDir);
+            final int recordCount = indexBlock.read(
+                segmentBuffer, offsetInSegment(iteratorPosition, segmentSize), actingBlockLength, actingVersion);
+
+            if (recordCount == 0)
+            {
+                break;
+            }
+
+            for (int i = 0; i < recordCount; i++)
+            {
+                recordEncoder
+                    .wrap(recordBuffer, 0)
+                    .position(indexBlock.position(i))
+                    .sequenceNumber(indexBlock.sequenceNumber(i))
+                    .sequenceIndex(indexBlock.sequenceIndex())
+                    .recordingId(indexBlock.recordingId())
+                    .length(indexBlock.length(i));
+                indexRecord.wrap(
+                    recordBuffer, 0, ReplayIndexRecordEncoder.BLOCK_LENGTH, ReplayIndexRecordEncoder.SCHEMA_VERSION);
+
+                handler.onEntry(indexRecord);
+            }
+
+            iteratorPosition += ReplayIndexBlock.BLOCK_LENGTH;
+        }
+    }
+
     private static UnsafeBuffer segmentBuffer(
         final long position,
         final int segmentSizeBitShift,
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.collections.LongHashSet;
+import org.agrona.concurrent.AtomicBuffer;
+
+/**
+ * Storage for the replay index of every FIX session on a stream.
+ *
+ * Each session's index consists of a header buffer of {@link ReplayIndexDescriptor#HEADER_FILE_SIZE} bytes, that
+ * holds the begin and end change positions, and a ring of segment buffers that hold the index records. A stream's
+ * index has a single writer, the {@link ReplayIndex}, and any number of readers, the {@link ReplayQuery} instances,
+ * that each open their own instance of the store. Readers use the begin and end change positions in the header buffer
+ * in order to detect concurrent writes.
+ *
+ * @see FileReplayIndexStore
+ * @see PackedReplayIndexStore
+ */
+public interface ReplayIndexStore extends AutoCloseable
+{
+    /**
+     * Check whether a session has an index.
+     *
+     * @param fixSessionId the FIX session id.
+     * @return true iff the session has an index.
+     */
+    boolean hasSession(long fixSessionId);
+
+    /**
+     * Opens the index of a session for writing, creating it if it doesn't exist. Only called by the writer.
+     *
+     * @param fixSessionId the FIX session id.
+     * @return the session's index.
+     */
+    Session openSession(long fixSessionId);
+
+    /**
+     * Opens the existing index of a session for reading.
+     *
+     * @param fixSessionId the FIX session id.
+     * @return the session's index.
+     * @throws IllegalStateException if the session doesn't have an index.
+     */
+    Session openExistingSession(long fixSessionId);
+
+    /**
+     * Deletes the index of a session, freeing its storage. Only called by the writer after it has closed the session.
+     *
+     * @param fixSessionId the FIX session id.
+     */
+    void deleteSession(long fixSessionId);
+
+    /**
+     * Lists the sessions that have an index.
+     *
+     * @return the ids of the FIX sessions that have an index.
+     */
+    LongHashSet sessionIds();
+
+    void close();
+
+    /**
+     * The index of an individual session.
+     */
+    interface Session extends AutoCloseable
+    {
+        /**
+         * Gets the header buffer that the begin and end change positions are stored in.
+         *
+         * @return the header buffer.
+         */
+        AtomicBuffer headerBuffer();
+
+        /**
+         * Check whether this session's index was created when it was opened, in which case its header needs to be
+         * initialised by the writer.
+         *
+         * @return true iff this session's index was created when it was opened.
+         */
+        boolean isNew();
+
+        /**
+         * Gets a segment of this session's index, the segment's storage is allocated when the writer first gets it.
+         *
+         * @param segmentIndex the index of the segment within the ring of segments.
+         * @return the segment's buffer.
+         */
+        AtomicBuffer segmentBuffer(int segmentIndex);
+
+        /**
+         * Check whether this session's index is still stored where it was when it was opened. Readers check this
+         * after reading from it as a store may reuse the storage of a deleted session for another session.
+         *
+         * @return false if the session has since been deleted and its storage may have been reused.
+         */
+        boolean isValid();
+
+        void close();
+    }
+}
@@ -29,6 +29,7 @@ import uk.co.real_logic.artio.DebugLogger;
 import uk.co.real_logic.artio.LogTag;
 import uk.co.real_logic.artio.util.CharFormatter;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static io.aeron.CommonContext.IPC_CHANNEL;
@@ -73,17 +74,26 @@ public class ReplayOperation
     private static final ThreadLocal<CharFormatter> CLOSED_FORMATTER = ThreadLocal.withInitial(
         () -> new CharFormatter("ReplayOperation:CLOSED - id=%s"));
 
-    private final MessageTracker messageTracker;
     private final ControlledFragmentAssembler assembler;
 
-    private final List<RecordingRange> ranges;
+    private final ArrayList<RecordingRange> ranges = new ArrayList<>();
     private final AeronArchive aeronArchive;
     private final ErrorHandler errorHandler;
     private final int archiveReplayStream;
-    private final boolean logTagEnabled;
-    private final LogTag logTag;
     private final CountersReader countersReader;
     private final Subscription subscription;
+    private final ReplayCache replayCache;
+    private final ReplayCache.Cursor cacheCursor;
+    private final ArchiveSegmentReader.SegmentReplay segmentReplay;
+
+    // fields reset each time that the operation is reused
+    private MessageTracker messageTracker;
+    private boolean logTagEnabled;
+    private LogTag logTag;
+    // Bytes of the ranges that haven't been started yet
+    private long unstartedRangeBytes;
+    private int rangeIndex;
+    private boolean released;
 
     // fields reset for each recordingRange
     private int replayedMessages = 0;
@@ -92,6 +102,8 @@ public class ReplayOperation
     private long replaySessionId;
     private int aeronSessionId;
     private Image image;
+    private boolean replayingFromCache;
+    private boolean replayingFromSegments;
 
     private enum State
     {
@@ -105,28 +117,87 @@ public class ReplayOperation
     private State state = State.REPLAYING;
 
     ReplayOperation(
-        final List<RecordingRange> ranges,
         final AeronArchive aeronArchive,
         final ErrorHandler errorHandler,
         final Subscription subscription,
         final int archiveReplayStream,
-        final LogTag logTag,
-        final MessageTracker messageTracker)
+        final ReplayCache replayCache,
+        final ArchiveSegmentReader.SegmentReplay segmentReplay)
     {
-        this.messageTracker = messageTracker;
-        assembler = new ControlledFragmentAssembler(this.messageTracker);
+        // The tracker changes each time that the operation is reused, so the assembler can't hold onto it.
+        assembler = new ControlledFragmentAssembler(
+            (buffer, offset, length, header) -> messageTracker.onFragment(buffer, offset, length, header));
 
-        this.ranges = ranges;
         this.aeronArchive = aeronArchive;
         this.errorHandler = errorHandler;
         this.archiveReplayStream = archiveReplayStream;
-        this.logTag = logTag;
 
         final Aeron aeron = aeronArchive.context().aeron();
         countersReader = aeron.countersReader();
         this.subscription = subscription;
+        this.replayCache = replayCache;
+        cacheCursor = replayCache == null ? null : new ReplayCache.Cursor();
+        this.segmentReplay = segmentReplay;
+    }
 
+    // The ranges are added by the query before the operation is started.
+    List<RecordingRange> ranges()
+    {
+        return ranges;
+    }
+
+    ReplayOperation start(final LogTag logTag, final MessageTracker messageTracker)
+    {
+        this.logTag = logTag;
+        this.messageTracker = messageTracker;
         logTagEnabled = DebugLogger.isEnabled(logTag);
+        released = false;
+
+        final ArrayList<RecordingRange> ranges = this.ranges;
+        long unstartedRangeBytes = 0;
+        for (int i = 0, size = ranges.size(); i < size; i++)
+        {
+            unstartedRangeBytes += ranges.get(i).length;
+        }
+        this.unstartedRangeBytes = unstartedRangeBytes;
+
+        return this;
+    }
+
+    // Returns the ranges to the query's pool and resets the operation so that it can be started again. Returns false
+    // if the operation had already been released.
+    boolean release(final List<RecordingRange> freeRanges)
+    {
+        if (released)
+        {
+            return false;
+        }
+
+        closeSegmentReplay();
+        assembler.clear();
+
+        final ArrayList<RecordingRange> ranges = this.ranges;
+        for (int i = 0, size = ranges.size(); i < size; i++)
+        {
+            freeRanges.add(ranges.get(i));
+        }
+        ranges.clear();
+
+        messageTracker = null;
+        unstartedRangeBytes = 0;
+        rangeIndex = 0;
+        replayedMessages = 0;
+        endPosition = 0;
+        recordingRange = null;
+        replaySessionId = 0;
+        aeronSessionId = 0;
+        image = null;
+        replayingFromCache = false;
+        replayingFromSegments = false;
+        state = State.REPLAYING;
+        released = true;
+
+        return true;
     }
 
     /**
@@ -153,6 +224,7 @@ public class ReplayOperation
         {
             case INIT_CLOSING:
             {
+                closeSegmentReplay();
                 if (replaySessionId != 0)
                 {
                     DebugLogger.log(logTag, INIT_CLOSING_FORMATTER.get(), replaySessionId);
@@ -253,12 +325,12 @@ public class ReplayOperation
         if (recordingRange == null)
         {
             DebugLogger.log(logTag, "Acquiring Recording Range");
-            if (ranges.isEmpty())
+            if (rangeIndex == ranges.size())
             {
                 return true;
             }
 
-            recordingRange = ranges.get(0);
+            recordingRange = ranges.get(rangeIndex);
             logRange();
             final long beginPosition = recordingRange.position;
             final long length = recordingRange.length;
@@ -276,37 +348,40 @@ public class ReplayOperation
             }
             else
             {
-                ranges.remove(0);
+                rangeIndex++;
+                unstartedRangeBytes -= length;
             }
 
-            try
-            {
-                replaySessionId = aeronArchive.startReplay(
-                    recordingId,
-                    beginPosition,
-                    length,
-                    IPC_CHANNEL,
-                    archiveReplayStream);
-                aeronSessionId = (int)replaySessionId;
+            messageTracker.reset(count);
 
-                messageTracker.reset(count);
-
-                logStart(count);
-
-                // reset the image if the new recordingRange requires it
-                if (image != null && aeronSessionId != image.sessionId())
+            if (replayCache != null)
+            {
+                final long ringPosition = replayCache.lookup(recordingId, beginPosition);
+                if (ringPosition != ReplayCache.MISSING)
                 {
-                    image = null;
+                    DebugLogger.log(logTag, "Replaying from cache");
+                    cacheCursor.reset(ringPosition, beginPosition);
+                    replayingFromCache = true;
+                    return pollCache();
                 }
             }
-            catch (final Throwable exception)
-            {
-                errorHandler.onError(exception);
 
+            if (!replayFromArchive(recordingId, beginPosition, length, count))
+            {
                 return true;
             }
         }
 
+        if (replayingFromCache)
+        {
+            return pollCache();
+        }
+
+        if (replayingFromSegments)
+        {
+            return pollSegments();
+        }
+
         if (image == null)
         {
             return attemptAcquireImage();
@@ -342,6 +417,102 @@ public class ReplayOperation
         }
     }
 
+    // Returns false if the range can't be replayed
+    private boolean replayFromArchive(
+        final long recordingId, final long beginPosition, final long length, final int count)
+    {
+        if (segmentReplay != null && segmentReplay.start(recordingId, beginPosition, beginPosition + length))
+        {
+            DebugLogger.log(logTag, "Replaying from segment files");
+            replayingFromSegments = true;
+            return true;
+        }
+
+        return startReplay(recordingId, beginPosition, length, count);
+    }
+
+    private boolean startReplay(
+        final long recordingId, final long beginPosition, final long length, final int count)
+    {
+        try
+        {
+            replaySessionId = aeronArchive.startReplay(
+                recordingId,
+                beginPosition,
+                length,
+                IPC_CHANNEL,
+                archiveReplayStream);
+            aeronSessionId = (int)replaySessionId;
+
+            logStart(count);
+
+            // reset the image if the new recordingRange requires it
+            if (image != null && aeronSessionId != image.sessionId())
+            {
+                image = null;
+            }
+
+            return true;
+        }
+        catch (final Throwable exception)
+        {
+            errorHandler.onError(exception);
+
+            return false;
+        }
+    }
+
+    private boolean pollCache()
+    {
+        final RecordingRange recordingRange = this.recordingRange;
+        final ReplayCache.Cursor cacheCursor = this.cacheCursor;
+        final int recordingRangeCount = recordingRange.count;
+        final long recordingId = recordingRange.recordingId;
+
+        if (!replayCache.replay(cacheCursor, recordingId, endPosition, messageTracker, recordingRangeCount))
+        {
+            // Messages were evicted or never cached, replay the rest of the range from the archive.
+            DebugLogger.log(logTag, "Replay cache missed, replaying from archive");
+            replayingFromCache = false;
+            final long position = cacheCursor.recordingPosition;
+            return !replayFromArchive(recordingId, position, endPosition - position, recordingRangeCount);
+        }
+
+        final int messageTrackerCount = messageTracker.count;
+        if (cacheCursor.recordingPosition < endPosition && messageTrackerCount < recordingRangeCount)
+        {
+            return false;
+        }
+
+        replayingFromCache = false;
+        return onReachedMessageReplayCount(messageTrackerCount, recordingRangeCount);
+    }
+
+    private boolean pollSegments()
+    {
+        final RecordingRange recordingRange = this.recordingRange;
+        final ArchiveSegmentReader.SegmentReplay segmentReplay = this.segmentReplay;
+        final int recordingRangeCount = recordingRange.count;
+
+        if (!segmentReplay.poll(assembler))
+        {
+            // The segment file isn't available, replay the rest of the range through the archive.
+            DebugLogger.log(logTag, "Segment file unavailable, replaying from archive");
+            replayingFromSegments = false;
+            final long position = segmentReplay.resumePosition();
+            return !startReplay(recordingRange.recordingId, position, endPosition - position, recordingRangeCount);
+        }
+
+        final int messageTrackerCount = messageTracker.count;
+        if (!segmentReplay.isComplete() && messageTrackerCount < recordingRangeCount)
+        {
+            return false;
+        }
+
+        replayingFromSegments = false;
+        return onReachedMessageReplayCount(messageTrackerCount, recordingRangeCount);
+    }
+
     private boolean attemptAcquireImage()
     {
         if (DebugLogger.IS_REPLAY_ATTEMPT_ENABLED)
@@ -398,7 +569,20 @@ public class ReplayOperation
         replayedMessages += recordingRangeCount;
         recordingRange = null;
 
-        return ranges.isEmpty();
+        final boolean complete = rangeIndex == ranges.size();
+        if (complete)
+        {
+            closeSegmentReplay();
+        }
+        return complete;
+    }
+
+    private void closeSegmentReplay()
+    {
+        if (segmentReplay != null)
+        {
+            segmentReplay.close();
+        }
     }
 
     private boolean onEndOfImage(final int recordingRangeCount, final boolean closed, final boolean endOfStream)
@@ -415,7 +599,12 @@ public class ReplayOperation
         recordingRange = null;
         image = null;
 
-        return ranges.isEmpty();
+        final boolean complete = rangeIndex == ranges.size();
+        if (complete)
+        {
+            closeSegmentReplay();
+        }
+        return complete;
     }
 
     int replayedMessages()
@@ -423,6 +612,34 @@ public class ReplayOperation
         return replayedMessages;
     }
 
+    // Bytes of the recording left to be read by this operation, including other sessions' messages interleaved with it
+    long remainingBytes()
+    {
+        long remainingBytes = unstartedRangeBytes;
+        if (recordingRange != null)
+        {
+            remainingBytes += Math.max(0, endPosition - currentRangePosition());
+        }
+        return remainingBytes;
+    }
+
+    private long currentRangePosition()
+    {
+        if (replayingFromCache)
+        {
+            return cacheCursor.recordingPosition;
+        }
+
+        if (replayingFromSegments)
+        {
+            return segmentReplay.position();
+        }
+
+        final Image image = this.image;
+        // Archive replays start their images at the position within the recording that they replay from
+        return image == null ? recordingRange.position : image.position();
+    }
+
     private boolean archivingNotComplete(final long endPosition, final long recordingId)
     {
         final int counterId = RecordingPos.findCounterIdByRecording(countersReader, recordingId);
@@ -19,20 +19,18 @@ import io.aeron.Subscription;
 import io.aeron.archive.client.AeronArchive;
 import org.agrona.CloseHelper;
 import org.agrona.ErrorHandler;
-import org.agrona.IoUtil;
 import org.agrona.collections.Long2LongHashMap;
 import org.agrona.collections.Long2ObjectCache;
 import org.agrona.collections.Long2ObjectHashMap;
 import org.agrona.collections.LongHashSet;
+import org.agrona.concurrent.AtomicBuffer;
 import org.agrona.concurrent.IdleStrategy;
-import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.artio.DebugLogger;
 import uk.co.real_logic.artio.LogTag;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 import uk.co.real_logic.artio.storage.messages.ReplayIndexRecordDecoder;
 import uk.co.real_logic.artio.util.CharFormatter;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.LongFunction;
@@ -54,6 +52,7 @@ public class ReplayQuery implements AutoCloseable
 {
     private final MessageHeaderDecoder messageFrameHeader = new MessageHeaderDecoder();
     private final ReplayIndexRecordDecoder indexRecord = new ReplayIndexRecordDecoder();
+    private final ReplayIndexBlock.Reader indexBlock = new ReplayIndexBlock.Reader();
 
     private final CharFormatter startQueryFormatter = new CharFormatter("ReplayQuery:query," +
         "beginSequenceNumber=%s,beginSequenceIndex=%s,endSequenceNumber=%s,endSequenceIndex=%s");
@@ -62,11 +61,12 @@ public class ReplayQuery implements AutoCloseable
 
     private final LongFunction<SessionQuery> newSessionQuery = this::newSessionQuery;
 
+    // Operations and their ranges are recycled once released so that queries don't allocate in the steady state.
+    private final ArrayList<ReplayOperation> freeOperations = new ArrayList<>();
+    private final ArrayList<RecordingRange> freeRanges = new ArrayList<>();
+
     private final Long2ObjectCache<SessionQuery> fixSessionToIndex;
-    private final String logFileDir;
-    private final File logFileDirFile;
-    private final ExistingBufferFactory indexBufferFactory;
-    private final int requiredStreamId;
+    private final ReplayIndexStore indexStore;
     private final IdleStrategy idleStrategy;
     private final AeronArchive aeronArchive;
     private final ErrorHandler errorHandler;
@@ -74,8 +74,9 @@ public class ReplayQuery implements AutoCloseable
     private final int archiveReplayStream;
     private final int segmentSize;
     private final int segmentSizeBitShift;
-    private final int segmentCount;
     private final long indexFileSize;
+    private final ReplayCache replayCache;
+    private final ArchiveSegmentReader archiveSegmentReader;
 
     private Subscription replaySubscription;
 
@@ -93,9 +94,103 @@ public class ReplayQuery implements AutoCloseable
         final int indexFileCapacity,
         final int indexSegmentCapacity)
     {
-        this.logFileDir = logFileDir;
-        this.indexBufferFactory = indexBufferFactory;
-        this.requiredStreamId = requiredStreamId;
+        this(
+            logFileDir,
+            cacheNumSets,
+            cacheSetSize,
+            indexBufferFactory,
+            requiredStreamId,
+            idleStrategy,
+            aeronArchive,
+            errorHandler,
+            replayQueryListener,
+            archiveReplayStream,
+            indexFileCapacity,
+            indexSegmentCapacity,
+            null);
+    }
+
+    public ReplayQuery(
+        final String logFileDir,
+        final int cacheNumSets,
+        final int cacheSetSize,
+        final ExistingBufferFactory indexBufferFactory,
+        final int requiredStreamId,
+        final IdleStrategy idleStrategy,
+        final AeronArchive aeronArchive,
+        final ErrorHandler errorHandler,
+        final ReplayQueryListener replayQueryListener,
+        final int archiveReplayStream,
+        final int indexFileCapacity,
+        final int indexSegmentCapacity,
+        final ReplayCache replayCache)
+    {
+        this(
+            new FileReplayIndexStore(
+                logFileDir,
+                requiredStreamId,
+                indexFileCapacity,
+                indexSegmentCapacity,
+                LoggerUtil::map,
+                indexBufferFactory,
+                errorHandler),
+            cacheNumSets,
+            cacheSetSize,
+            idleStrategy,
+            aeronArchive,
+            errorHandler,
+            replayQueryListener,
+            archiveReplayStream,
+            indexFileCapacity,
+            indexSegmentCapacity,
+            replayCache,
+            null);
+    }
+
+    public ReplayQuery(
+        final ReplayIndexStore indexStore,
+        final int cacheNumSets,
+        final int cacheSetSize,
+        final IdleStrategy idleStrategy,
+        final AeronArchive aeronArchive,
+        final ErrorHandler errorHandler,
+        final ReplayQueryListener replayQueryListener,
+        final int archiveReplayStream,
+        final int indexFileCapacity,
+        final int indexSegmentCapacity)
+    {
+        this(
+            indexStore,
+            cacheNumSets,
+            cacheSetSize,
+            idleStrategy,
+            aeronArchive,
+            errorHandler,
+            replayQueryListener,
+            archiveReplayStream,
+            indexFileCapacity,
+            indexSegmentCapacity,
+            null,
+            null);
+    }
+
+    public ReplayQuery(
+        final ReplayIndexStore indexStore,
+        final int cacheNumSets,
+        final int cacheSetSize,
+        final IdleStrategy idleStrategy,
+        final AeronArchive aeronArchive,
+        final ErrorHandler errorHandler,
+        final ReplayQueryListener replayQueryListener,
+        final int archiveReplayStream,
+        final int indexFileCapacity,
+        final int indexSegmentCapacity,
+        final ReplayCache replayCache,
+        final ArchiveSegmentReader archiveSegmentReader)
+    {
+        this.indexStore = indexStore;
+        this.replayCache = replayCache;
+        this.archiveSegmentReader = archiveSegmentReader;
         this.idleStrategy = idleStrategy;
         this.aeronArchive = aeronArchive;
         this.errorHandler = errorHandler;
@@ -105,9 +200,7 @@ public class ReplayQuery implements AutoCloseable
         this.indexFileSize = ReplayIndexDescriptor.capacityToBytes(indexFileCapacity);
         this.segmentSize = ReplayIndexDescriptor.capacityToBytesInt(indexSegmentCapacity);
         this.segmentSizeBitShift = Long.numberOfTrailingZeros(segmentSize);
-        this.segmentCount = ReplayIndexDescriptor.segmentCount(indexFileCapacity, indexSegmentCapacity);
 
-        logFileDirFile = new File(logFileDir);
         fixSessionToIndex = new Long2ObjectCache<>(cacheNumSets, cacheSetSize, SessionQuery::close);
     }
 
@@ -141,9 +234,26 @@ public class ReplayQuery implements AutoCloseable
             .query(beginSequenceNumber, beginSequenceIndex, endSequenceNumber, endSequenceIndex, logTag, tracker);
     }
 
+    /**
+     * Releases an operation that was returned by {@link #query(long, int, int, int, int, LogTag, MessageTracker)}
+     * so that later queries can reuse it. The operation must either have completed, ie
+     * {@link ReplayOperation#pollReplay()} has returned true, or never have been polled, and mustn't be used again by
+     * the caller. Releasing an operation is optional, ones that aren't
+     * released are just garbage collected.
+     *
+     * @param operation the operation to release, or null.
+     */
+    public void release(final ReplayOperation operation)
+    {
+        if (operation != null && operation.release(freeRanges))
+        {
+            freeOperations.add(operation);
+        }
+    }
+
     public void queryStartPositions(final Long2LongHashMap newStartPositions)
     {
-        final LongHashSet allSessionIds = listReplayIndexSessionIds(logFileDirFile, requiredStreamId);
+        final LongHashSet allSessionIds = indexStore.sessionIds();
 
         // Run over existing session queries first in order to minimise cache evictions then reloads.
         for (final SessionQuery query : fixSessionToIndex.values())
@@ -163,6 +273,13 @@ public class ReplayQuery implements AutoCloseable
 
     private SessionQuery lookupSessionQuery(final long sessionId)
     {
+        final SessionQuery sessionQuery = fixSessionToIndex.get(sessionId);
+        if (sessionQuery != null && !sessionQuery.session.isValid())
+        {
+            // The session's index has been deleted and its storage reused without an onReset() call.
+            fixSessionToIndex.remove(sessionId);
+        }
+
         return fixSessionToIndex.computeIfAbsent(sessionId, newSessionQuery);
     }
 
@@ -170,7 +287,7 @@ public class ReplayQuery implements AutoCloseable
     {
         fixSessionToIndex.clear();
 
-        CloseHelper.close(replaySubscription);
+        CloseHelper.closeAll(replaySubscription, indexStore);
     }
 
     public void onReset(final long fixSessionId)
@@ -197,23 +314,24 @@ public class ReplayQuery implements AutoCloseable
     {
         private final long fixSessionId;
 
-        private final File headerFile;
-        private final UnsafeBuffer headerBuffer;
-        private final UnsafeBuffer[] segmentBuffers;
+        private final ReplayIndexStore.Session session;
+        private final AtomicBuffer headerBuffer;
 
         private final int actingBlockLength;
         private final int actingVersion;
+        private final boolean compressed;
+        private final BlockRangeQuery blockRangeQuery = new BlockRangeQuery();
 
         SessionQuery(final long fixSessionId)
         {
-            segmentBuffers = new UnsafeBuffer[segmentCount];
-            headerFile = replayIndexHeaderFile(logFileDir, fixSessionId, requiredStreamId);
-            headerBuffer = new UnsafeBuffer(indexBufferFactory.map(headerFile));
+            session = indexStore.openExistingSession(fixSessionId);
+            headerBuffer = session.headerBuffer();
             this.fixSessionId = fixSessionId;
 
             messageFrameHeader.wrap(headerBuffer, 0);
             actingBlockLength = messageFrameHeader.blockLength();
             actingVersion = messageFrameHeader.version();
+            compressed = ReplayIndexBlock.isBlockTemplate(messageFrameHeader.templateId());
         }
 
         @SuppressWarnings("MethodLength")
@@ -232,12 +350,19 @@ public class ReplayQuery implements AutoCloseable
                     beginSequenceNumber, beginSequenceIndex, endSequenceNumber, endSequenceIndex);
             }
 
-            final UnsafeBuffer[] segmentBuffers = this.segmentBuffers;
+            if (compressed)
+            {
+                return queryBlocks(
+                    beginSequenceNumber, beginSequenceIndex, endSequenceNumber, endSequenceIndex, logTag,
+                    messageTracker, log);
+            }
+
+            final ReplayIndexStore.Session session = this.session;
             final int segmentSize = ReplayQuery.this.segmentSize;
             final int segmentSizeBitShift = ReplayQuery.this.segmentSizeBitShift;
             final ReplayIndexRecordDecoder indexRecord = ReplayQuery.this.indexRecord;
             final IdleStrategy idleStrategy = ReplayQuery.this.idleStrategy;
-            final UnsafeBuffer headerBuffer = this.headerBuffer;
+            final AtomicBuffer headerBuffer = this.headerBuffer;
             final long indexFileSize = ReplayQuery.this.indexFileSize;
             final int actingBlockLength = this.actingBlockLength;
             final int actingVersion = this.actingVersion;
@@ -246,7 +371,8 @@ public class ReplayQuery implements AutoCloseable
 
             // LOOKUP THE RANGE FROM THE INDEX
             // NB: this is a List as we are looking up recordings in the correct order to replay them.
-            final List<RecordingRange> ranges = new ArrayList<>();
+            final ReplayOperation operation = acquireOperation();
+            final List<RecordingRange> ranges = operation.ranges();
             RecordingRange currentRange = null;
 
             long iteratorPosition = getIteratorPosition();
@@ -274,8 +400,8 @@ public class ReplayQuery implements AutoCloseable
                     break; // beginning of a segment, the file might not exist yet if we caught up with the writer
                 }
 
-                final UnsafeBuffer segmentBuffer = segmentBuffer(
-                    iteratorPosition, segmentSizeBitShift, segmentBuffers, indexFileSize);
+                final AtomicBuffer segmentBuffer = session.segmentBuffer(
+                    ReplayIndexDescriptor.segmentIndex(iteratorPosition, segmentSizeBitShift, indexFileSize));
 
                 indexRecord.wrap(segmentBuffer, offset, actingBlockLength, actingVersion);
                 final long beginPosition = indexRecord.position();
@@ -286,6 +412,11 @@ public class ReplayQuery implements AutoCloseable
 
                 UNSAFE.loadFence(); // LoadLoad required so previous loads don't move past version check below.
 
+                if (!session.isValid())
+                {
+                    break; // the session's index has been deleted, so its storage may have been reused
+                }
+
                 if (log)
                 {
                     DebugLogger.log(LogTag.REPLAY_ATTEMPT, onRowFormatter,
@@ -330,24 +461,132 @@ public class ReplayQuery implements AutoCloseable
                 ranges.add(currentRange);
             }
 
-            return newReplayOperation(ranges, logTag, messageTracker);
+            return operation.start(logTag, messageTracker);
+        }
+
+        private ReplayOperation queryBlocks(
+            final int beginSequenceNumber,
+            final int beginSequenceIndex,
+            final int endSequenceNumber,
+            final int endSequenceIndex,
+            final LogTag logTag,
+            final MessageTracker messageTracker,
+            final boolean log)
+        {
+            final ReplayOperation operation = acquireOperation();
+            final BlockRangeQuery blockRangeQuery = this.blockRangeQuery;
+            blockRangeQuery.init(
+                operation.ranges(), beginSequenceNumber, beginSequenceIndex, endSequenceNumber, endSequenceIndex, log);
+
+            readBlocks(blockRangeQuery);
+
+            blockRangeQuery.complete();
+
+            return operation.start(logTag, messageTracker);
         }
 
-        private UnsafeBuffer segmentBuffer(
-            final long position,
-            final int segmentSizeBitShift,
-            final UnsafeBuffer[] segmentBuffers,
-            final long indexFileSize)
+        // Reads each block of a compressed index that the writer didn't change whilst it was being read, restarting
+        // from the oldest block still in the index if the writer laps this reader.
+        @SuppressWarnings("MethodLength")
+        private void readBlocks(final BlockQuery blockQuery)
         {
-            final int segmentIndex = ReplayIndexDescriptor.segmentIndex(position, segmentSizeBitShift, indexFileSize);
-            UnsafeBuffer segmentBuffer = segmentBuffers[segmentIndex];
-            if (segmentBuffer == null)
+            final ReplayIndexStore.Session session = this.session;
+            final int segmentSize = ReplayQuery.this.segmentSize;
+            final int segmentSizeBitShift = ReplayQuery.this.segmentSizeBitShift;
+            final ReplayIndexBlock.Reader indexBlock = ReplayQuery.this.indexBlock;
+            final IdleStrategy idleStrategy = ReplayQuery.this.idleStrategy;
+            final AtomicBuffer headerBuffer = this.headerBuffer;
+            final long indexFileSize = ReplayQuery.this.indexFileSize;
+            final int actingBlockLength = this.actingBlockLength;
+            final int actingVersion = this.actingVersion;
+            final boolean skipsBlocksBeforeStart = blockQuery.skipsBlocksBeforeStart;
+
+            long iteratorPosition = getIteratorPosition();
+            long stopIteratingPosition = iteratorPosition + indexFileSize;
+
+            while (iteratorPosition < stopIteratingPosition)
             {
-                final File file = replayIndexSegmentFile(logFileDir, fixSessionId, requiredStreamId, segmentIndex);
-                segmentBuffer = new UnsafeBuffer(indexBufferFactory.map(file));
-                segmentBuffers[segmentIndex] = segmentBuffer;
+                final long changePosition = endChangeVolatile(headerBuffer);
+                replayQueryListener.onEndChangeRead();
+
+                // Lapped by writer
+                final long beginChangePosition;
+                if (changePosition > iteratorPosition &&
+                    (iteratorPosition + indexFileSize) < (beginChangePosition = beginChangeVolatile(headerBuffer)))
+                {
+                    iteratorPosition = beginChangePosition - indexFileSize;
+                    stopIteratingPosition = beginChangePosition;
+                    replayQueryListener.onLapped();
+                }
+
+                if (iteratorPosition >= changePosition)
+                {
+                    return; // caught up with the writer, the next block hasn't been started
+                }
+
+                // Use the next block's header to skip over blocks that are entirely before the query
+                final long nextBlockPosition = iteratorPosition + ReplayIndexBlock.BLOCK_LENGTH;
+                if (skipsBlocksBeforeStart && nextBlockPosition < changePosition)
+                {
+                    final boolean beforeStart = blockQuery.startsBefore(
+                        indexBlock,
+                        session.segmentBuffer(
+                            ReplayIndexDescriptor.segmentIndex(nextBlockPosition, segmentSizeBitShift, indexFileSize)),
+                        offsetInSegment(nextBlockPosition, segmentSize),
+                        actingBlockLength,
+                        actingVersion);
+
+                    UNSAFE.loadFence(); // LoadLoad required so previous loads don't move past version check below.
+
+                    if (!session.isValid())
+                    {
+                        return; // the session's index has been deleted, so its storage may have been reused
+                    }
+
+                    if (changePosition != beginChangeVolatile(headerBuffer))
+                    {
+                        idleStrategy.idle();
+                        continue;
+                    }
+
+                    if (beforeStart)
+                    {
+                        iteratorPosition = nextBlockPosition;
+                        continue;
+                    }
+                }
+
+                final int recordCount = indexBlock.read(
+                    session.segmentBuffer(
+                        ReplayIndexDescriptor.segmentIndex(iteratorPosition, segmentSizeBitShift, indexFileSize)),
+                    offsetInSegment(iteratorPosition, segmentSize),
+                    actingBlockLength,
+                    actingVersion);
+
+                UNSAFE.loadFence(); // LoadLoad required so previous loads don't move past version check below.
+
+                if (!session.isValid())
+                {
+                    return; // the session's index has been deleted, so its storage may have been reused
+                }
+
+                // if the block was read atomically with no updates
+                if (changePosition == beginChangeVolatile(headerBuffer))
+                {
+                    idleStrategy.reset();
+
+                    if (recordCount == 0 || !blockQuery.onBlock(indexBlock, recordCount))
+                    {
+                        return;
+                    }
+
+                    iteratorPosition = nextBlockPosition;
+                }
+                else
+                {
+                    idleStrategy.idle();
+                }
             }
-            return segmentBuffer;
         }
 
         private long skipToStart(final int beginSequenceNumber, final long iteratorPosition, final int sequenceNumber)
@@ -372,9 +611,15 @@ public class ReplayQuery implements AutoCloseable
             return iteratorPosition + jumpInBytes;
         }
 
-        private ReplayOperation newReplayOperation(
-            final List<RecordingRange> ranges, final LogTag logTag, final MessageTracker messageTracker)
+        private ReplayOperation acquireOperation()
         {
+            final ArrayList<ReplayOperation> freeOperations = ReplayQuery.this.freeOperations;
+            final int size = freeOperations.size();
+            if (size > 0)
+            {
+                return freeOperations.remove(size - 1);
+            }
+
             if (replaySubscription == null)
             {
                 replaySubscription = aeronArchive.context().aeron().addSubscription(
@@ -382,13 +627,24 @@ public class ReplayQuery implements AutoCloseable
             }
 
             return new ReplayOperation(
-                ranges,
                 aeronArchive,
                 errorHandler,
                 replaySubscription,
                 archiveReplayStream,
-                logTag,
-                messageTracker);
+                replayCache,
+                archiveSegmentReader == null ? null : archiveSegmentReader.newReplay());
+        }
+
+        private RecordingRange newRange(final long recordingId)
+        {
+            final ArrayList<RecordingRange> freeRanges = ReplayQuery.this.freeRanges;
+            final int size = freeRanges.size();
+            if (size > 0)
+            {
+                return freeRanges.remove(size - 1).reset(recordingId, fixSessionId);
+            }
+
+            return new RecordingRange(recordingId, fixSessionId);
         }
 
         private RecordingRange addRange(
@@ -403,12 +659,12 @@ public class ReplayQuery implements AutoCloseable
             RecordingRange range = currentRange;
             if (range == null)
             {
-                range = new RecordingRange(recordingId, fixSessionId);
+                range = newRange(recordingId);
             }
             else if (range.recordingId != recordingId)
             {
                 ranges.add(range);
-                range = new RecordingRange(recordingId, fixSessionId);
+                range = newRange(recordingId);
             }
 
             range.add(
@@ -433,14 +689,18 @@ public class ReplayQuery implements AutoCloseable
         public Long2ObjectHashMap<PrunePosition> queryStartPositions()
         {
             final StartPositionQuery startPositionQuery = new StartPositionQuery();
+            if (compressed)
+            {
+                return queryBlockStartPositions(startPositionQuery);
+            }
 
-            final UnsafeBuffer headerBuffer = this.headerBuffer;
+            final ReplayIndexStore.Session session = this.session;
+            final AtomicBuffer headerBuffer = this.headerBuffer;
             final long indexFileSize = ReplayQuery.this.indexFileSize;
             final ReplayIndexRecordDecoder indexRecord = ReplayQuery.this.indexRecord;
             final int actingBlockLength = this.actingBlockLength;
             final int actingVersion = this.actingVersion;
             final int segmentSizeBitShift = ReplayQuery.this.segmentSizeBitShift;
-            final UnsafeBuffer[] segmentBuffers = this.segmentBuffers;
             final int segmentSize = ReplayQuery.this.segmentSize;
             final IdleStrategy idleStrategy = ReplayQuery.this.idleStrategy;
 
@@ -466,8 +726,8 @@ public class ReplayQuery implements AutoCloseable
                     break; // beginning of a segment, the file might not exist yet if we caught up with the writer
                 }
 
-                final UnsafeBuffer segmentBuffer = segmentBuffer(
-                    iteratorPosition, segmentSizeBitShift, segmentBuffers, indexFileSize);
+                final AtomicBuffer segmentBuffer = session.segmentBuffer(
+                    ReplayIndexDescriptor.segmentIndex(iteratorPosition, segmentSizeBitShift, indexFileSize));
 
                 indexRecord.wrap(segmentBuffer, offset, actingBlockLength, actingVersion);
                 final long beginPosition = indexRecord.position();
@@ -477,6 +737,11 @@ public class ReplayQuery implements AutoCloseable
 
                 UNSAFE.loadFence(); // LoadLoad required so previous loads don't move past version check below.
 
+                if (!session.isValid())
+                {
+                    break; // the session's index has been deleted, so its storage may have been reused
+                }
+
                 // if the block was read atomically with no updates
                 if (changePosition == beginChangeVolatile(headerBuffer))
                 {
@@ -500,16 +765,161 @@ public class ReplayQuery implements AutoCloseable
             return startPositionQuery.recordingIdToStartPosition();
         }
 
+        private Long2ObjectHashMap<PrunePosition> queryBlockStartPositions(
+            final StartPositionQuery startPositionQuery)
+        {
+            readBlocks(new BlockStartPositionQuery(startPositionQuery));
+
+            return startPositionQuery.recordingIdToStartPosition();
+        }
+
         public void close()
         {
-            IoUtil.unmap(headerBuffer.byteBuffer());
-            for (final UnsafeBuffer segmentBuffer : segmentBuffers)
+            session.close();
+        }
+
+        private final class BlockRangeQuery extends BlockQuery
+        {
+            private List<RecordingRange> ranges;
+            private RecordingRange currentRange;
+            private int lastSequenceNumber;
+            private int beginSequenceNumber;
+            private int beginSequenceIndex;
+            private int endSequenceNumber;
+            private int endSequenceIndex;
+            private boolean upToMostRecentMessage;
+            private boolean log;
+
+            BlockRangeQuery()
+            {
+                super(true);
+            }
+
+            void init(
+                final List<RecordingRange> ranges,
+                final int beginSequenceNumber,
+                final int beginSequenceIndex,
+                final int endSequenceNumber,
+                final int endSequenceIndex,
+                final boolean log)
             {
-                if (segmentBuffer != null)
+                this.ranges = ranges;
+                this.currentRange = null;
+                this.lastSequenceNumber = -1;
+                this.beginSequenceNumber = beginSequenceNumber;
+                this.beginSequenceIndex = beginSequenceIndex;
+                this.endSequenceNumber = endSequenceNumber;
+                this.endSequenceIndex = endSequenceIndex;
+                this.upToMostRecentMessage = endSequenceNumber == MOST_RECENT_MESSAGE;
+                this.log = log;
+            }
+
+            boolean startsBefore(
+                final ReplayIndexBlock.Reader indexBlock,
+                final AtomicBuffer buffer,
+                final int offset,
+                final int actingBlockLength,
+                final int actingVersion)
+            {
+                return indexBlock.startsBefore(
+                    buffer, offset, actingBlockLength, actingVersion, beginSequenceNumber, beginSequenceIndex);
+            }
+
+            boolean onBlock(final ReplayIndexBlock.Reader indexBlock, final int recordCount)
+            {
+                final int sequenceIndex = indexBlock.sequenceIndex();
+                final long recordingId = indexBlock.recordingId();
+                for (int i = 0; i < recordCount; i++)
                 {
-                    IoUtil.unmap(segmentBuffer.byteBuffer());
+                    final long beginPosition = indexBlock.position(i);
+                    final int sequenceNumber = indexBlock.sequenceNumber(i);
+
+                    if (log)
+                    {
+                        DebugLogger.log(LogTag.REPLAY_ATTEMPT, onRowFormatter,
+                            beginPosition, recordingId, sequenceNumber, sequenceIndex);
+                    }
+
+                    final boolean afterEnd = !upToMostRecentMessage && (sequenceIndex > endSequenceIndex ||
+                        (sequenceIndex == endSequenceIndex && sequenceNumber > endSequenceNumber));
+                    if (afterEnd)
+                    {
+                        return false;
+                    }
+
+                    final boolean withinQueryRange = sequenceIndex > beginSequenceIndex ||
+                        (sequenceIndex == beginSequenceIndex && sequenceNumber >= beginSequenceNumber);
+                    if (withinQueryRange)
+                    {
+                        currentRange = addRange(
+                            ranges, currentRange, lastSequenceNumber, beginPosition, sequenceNumber,
+                            recordingId, indexBlock.length(i));
+                        lastSequenceNumber = sequenceNumber;
+                    }
                 }
+
+                return true;
             }
+
+            void complete()
+            {
+                if (currentRange != null)
+                {
+                    ranges.add(currentRange);
+                }
+
+                ranges = null;
+                currentRange = null;
+            }
+        }
+    }
+
+    // Handles the blocks of a compressed index, see SessionQuery.readBlocks()
+    private abstract static class BlockQuery
+    {
+        final boolean skipsBlocksBeforeStart;
+
+        BlockQuery(final boolean skipsBlocksBeforeStart)
+        {
+            this.skipsBlocksBeforeStart = skipsBlocksBeforeStart;
+        }
+
+        // Only called when skipsBlocksBeforeStart, true if the block only holds records from before the query
+        boolean startsBefore(
+            final ReplayIndexBlock.Reader indexBlock,
+            final AtomicBuffer buffer,
+            final int offset,
+            final int actingBlockLength,
+            final int actingVersion)
+        {
+            return false;
+        }
+
+        // Returns false to stop reading blocks
+        abstract boolean onBlock(ReplayIndexBlock.Reader indexBlock, int recordCount);
+    }
+
+    private static final class BlockStartPositionQuery extends BlockQuery
+    {
+        private final StartPositionQuery startPositionQuery;
+
+        BlockStartPositionQuery(final StartPositionQuery startPositionQuery)
+        {
+            super(false);
+            this.startPositionQuery = startPositionQuery;
+        }
+
+        boolean onBlock(final ReplayIndexBlock.Reader indexBlock, final int recordCount)
+        {
+            final int sequenceIndex = indexBlock.sequenceIndex();
+            final long recordingId = indexBlock.recordingId();
+            for (int i = 0; i < recordCount; i++)
+            {
+                startPositionQuery.updateStartPosition(
+                    indexBlock.sequenceNumber(i), sequenceIndex, recordingId, indexBlock.position(i));
+            }
+
+            return true;
         }
     }
 
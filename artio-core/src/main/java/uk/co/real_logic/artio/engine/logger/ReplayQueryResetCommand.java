@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import uk.co.real_logic.artio.engine.ReplayerCommand;
+
+/**
+ * Resets a session in a replay query that is owned by the replayer from an indexer running on another thread.
+ */
+class ReplayQueryResetCommand implements ReplayerCommand
+{
+    private final ReplayQuery replayQuery;
+    private final long fixSessionId;
+
+    private volatile boolean done = false;
+
+    ReplayQueryResetCommand(final ReplayQuery replayQuery, final long fixSessionId)
+    {
+        this.replayQuery = replayQuery;
+        this.fixSessionId = fixSessionId;
+    }
+
+    public void execute()
+    {
+        try
+        {
+            replayQuery.onReset(fixSessionId);
+        }
+        finally
+        {
+            done = true;
+        }
+    }
+
+    boolean isDone()
+    {
+        return done;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.collections.Long2ObjectHashMap;
+import uk.co.real_logic.artio.DebugLogger;
+import uk.co.real_logic.artio.timing.Timer;
+import uk.co.real_logic.artio.util.CharFormatter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static uk.co.real_logic.artio.DebugLogger.IS_REPLAY_LOG_TAG_ENABLED;
+import static uk.co.real_logic.artio.LogTag.REPLAY;
+
+/**
+ * Decides which replay channels the {@link Replayer} services in each duty cycle.
+ *
+ * When a byte budget is configured the replays share it and the replays with the fewest bytes left to replay are
+ * serviced first. Each duty cycle that a replay misses out on halves its size for the purposes of ordering, so that
+ * large replays can't be starved by a constant stream of small ones. Without a budget every replay is serviced in every
+ * duty cycle. Only messages that have been successfully claimed or offered use up the budget.
+ *
+ * The time that each replay waits before it's first serviced is recorded by a single timer for the whole engine, so
+ * its histogram covers the replays of all sessions. The wait of each individual replay is logged with its session
+ * and connection ids when the {@link uk.co.real_logic.artio.LogTag#REPLAY} log tag is enabled.
+ */
+class ReplayScheduler
+{
+    private static final int MAX_AGING_SHIFT = 62;
+    private static final Comparator<ReplayChannel> BY_PRIORITY =
+        (first, second) -> Long.compare(first.priority, second.priority);
+
+    private final CharFormatter queueWaitFormatter = new CharFormatter(
+        "ReplayScheduler: first serviced replay, connectionId=%s, sessionId=%s, queueWaitInNs=%s%n");
+    private final ArrayList<ReplayChannel> scheduledChannels = new ArrayList<>();
+    private final int bytesPerPoll;
+    private final Timer queueWaitTimer;
+
+    private long remainingBytes;
+
+    ReplayScheduler(final int bytesPerPoll, final Timer queueWaitTimer)
+    {
+        this.bytesPerPoll = bytesPerPoll;
+        this.queueWaitTimer = queueWaitTimer;
+    }
+
+    // Called at the start of each duty cycle, returns the channels in the order that they should be serviced.
+    List<ReplayChannel> schedule(final Long2ObjectHashMap<ReplayChannel> connectionIdToChannel)
+    {
+        final ArrayList<ReplayChannel> scheduledChannels = this.scheduledChannels;
+        scheduledChannels.clear();
+        for (final ReplayChannel channel : connectionIdToChannel.values())
+        {
+            scheduledChannels.add(channel);
+        }
+
+        if (bytesPerPoll != 0)
+        {
+            remainingBytes = bytesPerPoll;
+
+            for (int i = 0, size = scheduledChannels.size(); i < size; i++)
+            {
+                final ReplayChannel channel = scheduledChannels.get(i);
+                channel.priority =
+                    channel.remainingReplayBytes() >> Math.min(channel.skippedPolls, MAX_AGING_SHIFT);
+            }
+
+            scheduledChannels.sort(BY_PRIORITY);
+        }
+
+        return scheduledChannels;
+    }
+
+    // Returns true if the channel should be polled in this duty cycle.
+    boolean service(final ReplayChannel channel)
+    {
+        if (bytesPerPoll != 0 && remainingBytes <= 0)
+        {
+            channel.skippedPolls++;
+            return false;
+        }
+
+        channel.skippedPolls = 0;
+        if (channel.awaitingService)
+        {
+            channel.awaitingService = false;
+            final long queuedTimeInNs = channel.queuedTimeInNs;
+            final long servicedTimeInNs = queueWaitTimer.recordSince(queuedTimeInNs);
+            if (IS_REPLAY_LOG_TAG_ENABLED && servicedTimeInNs != 0)
+            {
+                DebugLogger.log(REPLAY, queueWaitFormatter.clear()
+                    .with(channel.connectionId())
+                    .with(channel.sessionId())
+                    .with(servicedTimeInNs - queuedTimeInNs));
+            }
+        }
+
+        return true;
+    }
+
+    // Returns true if another message can be replayed in this duty cycle. The last message to be replayed can take the
+    // duty cycle over budget as messages are never split.
+    boolean hasBudget()
+    {
+        return bytesPerPoll == 0 || remainingBytes > 0;
+    }
+
+    // Called once a message has been claimed or offered, so a back-pressured message doesn't use up any budget.
+    void consume(final int length)
+    {
+        if (bytesPerPoll != 0)
+        {
+            remainingBytes -= length;
+        }
+    }
+}
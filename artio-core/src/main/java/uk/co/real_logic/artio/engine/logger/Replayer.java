@@ -37,6 +37,7 @@ import uk.co.real_logic.artio.fields.EpochFractionFormat;
 import uk.co.real_logic.artio.fields.UtcTimestampEncoder;
 import uk.co.real_logic.artio.fixp.*;
 import uk.co.real_logic.artio.messages.*;
+import uk.co.real_logic.artio.timing.Timer;
 import uk.co.real_logic.artio.util.AsciiBuffer;
 import uk.co.real_logic.artio.util.CharFormatter;
 import uk.co.real_logic.artio.util.Lazy;
@@ -113,6 +114,7 @@ public class Replayer extends AbstractReplayer
     private final ReplayHandler replayHandler;
     private final FixPRetransmitHandler fixPRetransmitHandler;
     private final UtcTimestampEncoder utcTimestampEncoder;
+    private final ReplayScheduler replayScheduler;
 
     public Replayer(
         final ReplayQuery outboundReplayQuery,
@@ -136,7 +138,8 @@ public class Replayer extends AbstractReplayer
         final int maxConcurrentSessionReplays,
         final EpochNanoClock clock,
         final FixPProtocolType fixPProtocolType,
-        final EngineConfiguration configuration)
+        final EngineConfiguration configuration,
+        final Timer replayQueueWaitTimer)
     {
         super(publication, fixSessionCodecsFactory, bufferClaim, senderSequenceNumbers);
         this.outboundReplayQuery = outboundReplayQuery;
@@ -167,6 +170,7 @@ public class Replayer extends AbstractReplayer
         abstractBinaryFixPOffsets = new Lazy<>(() -> binaryFixPProtocol.get().makeOffsets());
 
         timestamper = new ReplayTimestamper(publication, clock);
+        replayScheduler = new ReplayScheduler(configuration.replayBytesPerPoll(), replayQueueWaitTimer);
     }
 
     public Action onFragment(
@@ -299,13 +303,15 @@ public class Replayer extends AbstractReplayer
             copiedBuffer.putBytes(0, asciiBuffer, 0, length);
 
             replayChannel.enqueueReplay(new EnqueuedReplay(
-                sessionId, connectionId, correlationId, beginSeqNo, endSeqNo, sequenceIndex, copiedBuffer));
+                sessionId, connectionId, correlationId, beginSeqNo, endSeqNo, sequenceIndex, copiedBuffer,
+                clock.nanoTime()));
 
             return COMMIT;
         }
         else
         {
             // New replay
+            final long queuedTimeInNs = clock.nanoTime();
             try
             {
                 final ReplayerSession session = processResendRequest(
@@ -315,7 +321,7 @@ public class Replayer extends AbstractReplayer
                     return ABORT;
                 }
 
-                final ReplayChannel channel = new ReplayChannel(session);
+                final ReplayChannel channel = new ReplayChannel(connectionId, session, queuedTimeInNs);
                 connectionIdToReplayerChannel.put(connectionId, channel);
                 currentReplayCount.increment();
 
@@ -471,21 +477,22 @@ public class Replayer extends AbstractReplayer
 
     private int pollReplayerChannels()
     {
-        final Long2ObjectHashMap<ReplayChannel>.EntryIterator replayerChannels =
-            connectionIdToReplayerChannel.entrySet().iterator();
-        final int size = connectionIdToReplayerChannel.size();
+        final Long2ObjectHashMap<ReplayChannel> connectionIdToReplayerChannel = this.connectionIdToReplayerChannel;
+        final ReplayScheduler replayScheduler = this.replayScheduler;
+        final List<ReplayChannel> replayerChannels = replayScheduler.schedule(connectionIdToReplayerChannel);
+        final int size = replayerChannels.size();
 
-        while (replayerChannels.hasNext())
+        for (int i = 0; i < size; i++)
         {
-            final ReplayChannel channel = replayerChannels.next().getValue();
-            if (channel.attemptReplay())
+            final ReplayChannel channel = replayerChannels.get(i);
+            if (replayScheduler.service(channel) && channel.attemptReplay())
             {
                 // Replay complete
                 final EnqueuedReplay enqueuedReplay = channel.pollReplay();
                 if (enqueuedReplay == null)
                 {
                     currentReplayCount.decrementOrdered();
-                    replayerChannels.remove();
+                    connectionIdToReplayerChannel.remove(channel.connectionId());
                 }
                 else
                 {
@@ -500,7 +507,7 @@ public class Replayer extends AbstractReplayer
                             enqueuedReplay.sequenceIndex(),
                             enqueuedReplay.asciiBuffer());
 
-                        channel.startReplay(session);
+                        channel.startReplay(session, enqueuedReplay.enqueuedTimeInNs());
                     }
                     catch (final IllegalStateException e)
                     {
@@ -513,6 +520,16 @@ public class Replayer extends AbstractReplayer
         return size + CollectionUtil.removeIf(closingChannels, ReplayChannel::attemptReplay);
     }
 
+    boolean hasReplayBudget()
+    {
+        return replayScheduler.hasBudget();
+    }
+
+    void consumeReplayBudget(final int messageLength)
+    {
+        replayScheduler.consume(messageLength);
+    }
+
     public void onClose()
     {
         connectionIdToReplayerChannel.values().forEach(ReplayChannel::closeNow);
@@ -104,6 +104,7 @@ abstract class ReplayerSession implements ControlledFragmentHandler
             if (position > 0)
             {
                 idleStrategy.reset();
+                replayer.consumeReplayBudget(messageLength);
                 return true;
             }
             else if (Pressure.isBackPressured(position))
@@ -121,7 +122,13 @@ abstract class ReplayerSession implements ControlledFragmentHandler
 
     boolean isBackpressured(final int messageLength)
     {
-        return maxBytesInBuffer < (bytesInBuffer.get() + messageLength);
+        return maxBytesInBuffer < (bytesInBuffer.get() + messageLength) || !replayer.hasReplayBudget();
+    }
+
+    long remainingReplayBytes()
+    {
+        final ReplayOperation replayOperation = this.replayOperation;
+        return replayOperation == null ? 0 : replayOperation.remainingBytes();
     }
 
     boolean sendCompleteMessage()
@@ -131,6 +138,17 @@ abstract class ReplayerSession implements ControlledFragmentHandler
 
     abstract boolean attemptReplay();
 
+    // Called once the replay has completed, so that its operation can be reused by another replay
+    void releaseReplayOperation()
+    {
+        final ReplayOperation replayOperation = this.replayOperation;
+        if (replayOperation != null)
+        {
+            this.replayOperation = null;
+            replayQuery.release(replayOperation);
+        }
+    }
+
     void closeNow()
     {
         if (replayOperation != null)
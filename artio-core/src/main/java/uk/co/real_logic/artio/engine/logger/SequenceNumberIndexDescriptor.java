@@ -15,6 +15,7 @@
  */
 package uk.co.real_logic.artio.engine.logger;
 
+import org.agrona.collections.Hashing;
 import org.agrona.concurrent.AtomicBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
@@ -24,6 +25,7 @@ import java.io.File;
 
 import static org.agrona.BitUtil.SIZE_OF_INT;
 import static org.agrona.BitUtil.SIZE_OF_LONG;
+import static uk.co.real_logic.artio.engine.SectorFramer.SECTOR_DATA_LENGTH;
 import static uk.co.real_logic.artio.engine.SectorFramer.SECTOR_SIZE;
 import static uk.co.real_logic.artio.engine.SectorFramer.nextSectorStart;
 
@@ -37,6 +39,11 @@ import static uk.co.real_logic.artio.engine.SectorFramer.nextSectorStart;
  * Series of LastKnownSequenceNumber records
  * ...
  * Positions Table
+ * <p>
+ * Records are stored in an open addressed hash table of slots, keyed by session id and linearly probed, so that a
+ * session's record can be found without scanning the file. The slots are laid out in the same sector aligned order
+ * that the records were appended in before {@link #HASHED_SLOTS_SINCE_VERSION}, files with an older version in their
+ * header are migrated by the writer.
  */
 final class SequenceNumberIndexDescriptor
 {
@@ -47,16 +54,33 @@ final class SequenceNumberIndexDescriptor
     static final long META_DATA_MAGIC_NUMBER = 0xBEEF;
     static final int META_DATA_FILE_VERSION = 1;
     static final int READABLE_META_DATA_FILE_VERSION = META_DATA_FILE_VERSION;
+    static final int META_DATA_STORE_VERSION = 3;
     static final int META_DATA_FILE_HEADER_LENGTH = SIZE_OF_LONG + SIZE_OF_INT;
     static final int SIZE_OF_META_DATA_LENGTH = SIZE_OF_INT;
 
     static final double SEQUENCE_NUMBER_RATIO = 0.9;
+    static final int HASHED_SLOTS_SINCE_VERSION = 12;
+
+    private static final int SLOTS_IN_FIRST_SECTOR = (SECTOR_DATA_LENGTH - HEADER_SIZE) / RECORD_SIZE;
+    private static final int SLOTS_PER_SECTOR = SECTOR_DATA_LENGTH / RECORD_SIZE;
 
+    /**
+     * The file that metadata was appended to before the {@link MetaDataStore}, the writer migrates it into the store
+     * on startup and then deletes it.
+     *
+     * @param logFileDir the directory that the engine logs to.
+     * @return the legacy metadata file.
+     */
     public static File metaDataFile(final String logFileDir)
     {
         return new File(logFileDir + "/metadata");
     }
 
+    public static File metaDataStoreFile(final String logFileDir)
+    {
+        return new File(logFileDir + "/metadata-store");
+    }
+
     static AtomicBuffer positionsBuffer(final AtomicBuffer buffer, final int positionsOffset)
     {
         return new UnsafeBuffer(buffer, positionsOffset, buffer.capacity() - positionsOffset);
@@ -79,6 +103,46 @@ final class SequenceNumberIndexDescriptor
         return proposedCapacity;
     }
 
+    /**
+     * Calculate the number of record slots that fit before the positions table.
+     *
+     * @param positionTableOffset the offset of the positions table, see {@link #positionTableOffset(int)}.
+     * @return the number of record slots.
+     */
+    static int slotCount(final int positionTableOffset)
+    {
+        final int sectors = positionTableOffset / SECTOR_SIZE;
+        return sectors == 0 ? 0 : SLOTS_IN_FIRST_SECTOR + (sectors - 1) * SLOTS_PER_SECTOR;
+    }
+
+    static int recordOffset(final int slot)
+    {
+        if (slot < SLOTS_IN_FIRST_SECTOR)
+        {
+            return HEADER_SIZE + slot * RECORD_SIZE;
+        }
+
+        final int sectorSlot = slot - SLOTS_IN_FIRST_SECTOR;
+        return (1 + sectorSlot / SLOTS_PER_SECTOR) * SECTOR_SIZE + (sectorSlot % SLOTS_PER_SECTOR) * RECORD_SIZE;
+    }
+
+    /**
+     * Gets the slot that probing for a session's record starts at.
+     *
+     * @param sessionId the session id of the record.
+     * @param slotCount the number of slots, see {@link #slotCount(int)}, must be positive.
+     * @return the slot that probing starts at.
+     */
+    static int homeSlot(final long sessionId, final int slotCount)
+    {
+        return (Hashing.hash(sessionId) & Integer.MAX_VALUE) % slotCount;
+    }
+
+    static boolean hasHashedSlots(final int version)
+    {
+        return version >= HASHED_SLOTS_SINCE_VERSION;
+    }
+
     public static File passingFile(final String indexFilePath)
     {
         return new File(indexFilePath + "-passing");
@@ -88,4 +152,9 @@ final class SequenceNumberIndexDescriptor
     {
         return new File(indexFilePath + "-writable");
     }
+
+    public static File journalFile(final String indexFilePath)
+    {
+        return new File(indexFilePath + "-journal");
+    }
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.BitUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import uk.co.real_logic.artio.engine.ByteBufferUtil;
+import uk.co.real_logic.artio.engine.MappedFile;
+import uk.co.real_logic.artio.engine.PersistenceScheduler;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import static org.agrona.BitUtil.SIZE_OF_INT;
+import static org.agrona.BitUtil.SIZE_OF_LONG;
+import static uk.co.real_logic.artio.engine.SectorFramer.OUT_OF_SPACE;
+
+/**
+ * An append only journal of the parts of a sequence number index that have changed since its file was last
+ * checkpointed, so that flushing the index costs IO in proportion to the number of records that have changed rather
+ * than the size of the index.
+ * <p>
+ * Header: epoch (long), checksum of the checkpointed index file that the journal applies to (int)
+ * ...
+ * Entries: checksum (int), length (int), epoch (long), index offset (int), padding (int), copy of the index
+ * ...
+ * <p>
+ * The checksum of an entry covers its epoch, so a torn write or an entry left over from before the journal was last
+ * reset ends a replay. An index file that doesn't match the checkpoint checksum already contains every journaled
+ * change, this happens if a checkpoint has been written but the journal hasn't been reset yet.
+ */
+class SequenceNumberIndexJournal implements AutoCloseable
+{
+    static final int EPOCH_OFFSET = 0;
+    static final int CHECKPOINT_CHECKSUM_OFFSET = EPOCH_OFFSET + SIZE_OF_LONG;
+    static final int HEADER_LENGTH = 64;
+
+    static final int ENTRY_CHECKSUM_OFFSET = 0;
+    static final int ENTRY_LENGTH_OFFSET = ENTRY_CHECKSUM_OFFSET + SIZE_OF_INT;
+    static final int ENTRY_EPOCH_OFFSET = ENTRY_LENGTH_OFFSET + SIZE_OF_INT;
+    static final int ENTRY_INDEX_OFFSET_OFFSET = ENTRY_EPOCH_OFFSET + SIZE_OF_LONG;
+    static final int ENTRY_HEADER_LENGTH = ENTRY_INDEX_OFFSET_OFFSET + 2 * SIZE_OF_INT;
+    static final int ENTRY_ALIGNMENT = SIZE_OF_LONG;
+
+    /**
+     * Index offset of an entry that clears all the records of the index.
+     */
+    static final int RESET_INDEX_OFFSET = -1;
+
+    private final CRC32 crc32 = new CRC32();
+    private final MappedFile file;
+    private final AtomicBuffer buffer;
+    private final int capacity;
+
+    private long epoch;
+    private int tail = HEADER_LENGTH;
+
+    SequenceNumberIndexJournal(final File file, final int capacity)
+    {
+        this.file = MappedFile.map(file, capacity);
+        buffer = this.file.buffer();
+        this.capacity = buffer.capacity();
+        if (this.capacity < HEADER_LENGTH)
+        {
+            this.file.close();
+            throw new IllegalStateException(String.format(
+                "Sequence number index journal %s is smaller than its header: %d", file, this.capacity));
+        }
+
+        epoch = buffer.getLong(EPOCH_OFFSET);
+    }
+
+    int checkpointChecksum()
+    {
+        return buffer.getInt(CHECKPOINT_CHECKSUM_OFFSET);
+    }
+
+    /**
+     * Append a copy of part of the index to the journal.
+     *
+     * @param indexBuffer the in memory buffer of the index.
+     * @param indexOffset the offset within the index of the part to copy.
+     * @param length the length of the part to copy.
+     * @return true if appended, false if the journal is full and the index needs a checkpoint.
+     */
+    boolean append(final AtomicBuffer indexBuffer, final int indexOffset, final int length)
+    {
+        final int entryOffset = claim(length);
+        if (entryOffset == OUT_OF_SPACE)
+        {
+            return false;
+        }
+
+        buffer.putBytes(entryOffset + ENTRY_HEADER_LENGTH, indexBuffer, indexOffset, length);
+        commit(entryOffset, indexOffset, length);
+        return true;
+    }
+
+    /**
+     * Append an entry that clears all the records of the index.
+     *
+     * @return true if appended, false if the journal is full and the index needs a checkpoint.
+     */
+    boolean appendReset()
+    {
+        final int entryOffset = claim(0);
+        if (entryOffset == OUT_OF_SPACE)
+        {
+            return false;
+        }
+
+        commit(entryOffset, RESET_INDEX_OFFSET, 0);
+        return true;
+    }
+
+    void force()
+    {
+        file.force();
+    }
+
+    void persistenceScheduler(final PersistenceScheduler persistenceScheduler)
+    {
+        file.persistenceScheduler(persistenceScheduler);
+    }
+
+    /**
+     * Replays the valid entries of the current epoch in the order that they were appended. Subsequent appends
+     * carry on after the last valid entry.
+     *
+     * @param handler the handler that applies each entry to the index.
+     * @return the number of entries replayed.
+     */
+    int replay(final EntryHandler handler)
+    {
+        final AtomicBuffer buffer = this.buffer;
+        int entries = 0;
+        int offset = HEADER_LENGTH;
+        while (offset + ENTRY_HEADER_LENGTH <= capacity)
+        {
+            final int length = buffer.getInt(offset + ENTRY_LENGTH_OFFSET);
+            if (length < 0 ||
+                length > capacity - offset - ENTRY_HEADER_LENGTH ||
+                buffer.getLong(offset + ENTRY_EPOCH_OFFSET) != epoch ||
+                buffer.getInt(offset + ENTRY_CHECKSUM_OFFSET) != entryChecksum(offset, length))
+            {
+                break;
+            }
+
+            handler.onEntry(
+                buffer, offset + ENTRY_HEADER_LENGTH, buffer.getInt(offset + ENTRY_INDEX_OFFSET_OFFSET), length);
+            entries++;
+            offset += entryLength(length);
+        }
+
+        tail = offset;
+        return entries;
+    }
+
+    /**
+     * Discard all the entries, called once the index file has been checkpointed.
+     *
+     * @param checkpointChecksum the checksum of the checkpointed index file, see {@link #checksum(AtomicBuffer, int)}.
+     */
+    void reset(final int checkpointChecksum)
+    {
+        epoch++;
+        buffer.putInt(CHECKPOINT_CHECKSUM_OFFSET, checkpointChecksum);
+        buffer.putLong(EPOCH_OFFSET, epoch);
+        force();
+        tail = HEADER_LENGTH;
+    }
+
+    /**
+     * Calculate the checksum of a whole index buffer, used to tie the journal to the checkpoint that it applies to.
+     *
+     * @param indexBuffer the buffer to checksum.
+     * @param length the length of the buffer to checksum.
+     * @return the checksum.
+     */
+    int checksum(final AtomicBuffer indexBuffer, final int length)
+    {
+        crc32.reset();
+        update(indexBuffer, 0, length);
+        return (int)crc32.getValue();
+    }
+
+    public void close()
+    {
+        file.close();
+    }
+
+    private int claim(final int length)
+    {
+        final int entryOffset = tail;
+        final int entryLength = entryLength(length);
+        if (entryLength > capacity - entryOffset)
+        {
+            return OUT_OF_SPACE;
+        }
+
+        tail = entryOffset + entryLength;
+        return entryOffset;
+    }
+
+    private void commit(final int entryOffset, final int indexOffset, final int length)
+    {
+        final AtomicBuffer buffer = this.buffer;
+        buffer.putInt(entryOffset + ENTRY_LENGTH_OFFSET, length);
+        buffer.putLong(entryOffset + ENTRY_EPOCH_OFFSET, epoch);
+        buffer.putInt(entryOffset + ENTRY_INDEX_OFFSET_OFFSET, indexOffset);
+        buffer.putInt(entryOffset + ENTRY_INDEX_OFFSET_OFFSET + SIZE_OF_INT, 0);
+        buffer.putInt(entryOffset + ENTRY_CHECKSUM_OFFSET, entryChecksum(entryOffset, length));
+    }
+
+    private int entryChecksum(final int entryOffset, final int length)
+    {
+        crc32.reset();
+        update(buffer, entryOffset + ENTRY_LENGTH_OFFSET, ENTRY_HEADER_LENGTH - ENTRY_LENGTH_OFFSET + length);
+        return (int)crc32.getValue();
+    }
+
+    private void update(final AtomicBuffer buffer, final int offset, final int length)
+    {
+        final byte[] bytes = buffer.byteArray();
+        final int start = buffer.wrapAdjustment() + offset;
+        if (bytes != null)
+        {
+            crc32.update(bytes, start, length);
+        }
+        else
+        {
+            final ByteBuffer byteBuffer = buffer.byteBuffer();
+            ByteBufferUtil.limit(byteBuffer, start + length);
+            ByteBufferUtil.position(byteBuffer, start);
+            crc32.update(byteBuffer);
+            byteBuffer.clear();
+        }
+    }
+
+    private static int entryLength(final int length)
+    {
+        return BitUtil.align(ENTRY_HEADER_LENGTH + length, ENTRY_ALIGNMENT);
+    }
+
+    @FunctionalInterface
+    interface EntryHandler
+    {
+        void onEntry(AtomicBuffer journalBuffer, int offset, int indexOffset, int length);
+    }
+}
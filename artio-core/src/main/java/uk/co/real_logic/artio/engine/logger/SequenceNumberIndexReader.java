@@ -15,11 +15,12 @@
  */
 package uk.co.real_logic.artio.engine.logger;
 
-import org.agrona.CloseHelper;
 import org.agrona.DirectBuffer;
 import org.agrona.ErrorHandler;
-import org.agrona.LangUtil;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.IoUtil;
 import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.artio.engine.SectorFramer;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 import uk.co.real_logic.artio.messages.MetaDataStatus;
@@ -27,14 +28,18 @@ import uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberDecoder;
 import uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
 
 import static io.aeron.archive.status.RecordingPos.NULL_RECORDING_ID;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static org.agrona.UnsafeAccess.UNSAFE;
 import static uk.co.real_logic.artio.engine.ConnectedSessionInfo.UNK_SESSION;
 import static uk.co.real_logic.artio.engine.SectorFramer.OUT_OF_SPACE;
 import static uk.co.real_logic.artio.engine.logger.IndexedPositionReader.UNKNOWN_POSITION;
+import static uk.co.real_logic.artio.engine.logger.MetaDataStore.SLOT_CAPACITY_OFFSET;
+import static uk.co.real_logic.artio.engine.logger.MetaDataStore.SLOT_HEADER_LENGTH;
+import static uk.co.real_logic.artio.engine.logger.MetaDataStore.SLOT_LENGTH_OFFSET;
+import static uk.co.real_logic.artio.engine.logger.MetaDataStore.SLOT_VERSION_OFFSET;
 import static uk.co.real_logic.artio.engine.logger.SequenceNumberIndexDescriptor.*;
 import static uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder.BLOCK_LENGTH;
 import static uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder.SCHEMA_VERSION;
@@ -44,14 +49,23 @@ import static uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEnc
  */
 public class SequenceNumberIndexReader implements AutoCloseable
 {
+    // Bounds the retries of a metadata copy, a slot that stays mid write this long isn't being written any more
+    static final int MAX_META_DATA_READ_ATTEMPTS = 10_000;
+
     private final MessageHeaderDecoder fileHeaderDecoder = new MessageHeaderDecoder();
     private final LastKnownSequenceNumberDecoder lastKnownDecoder = new LastKnownSequenceNumberDecoder();
     private final AtomicBuffer inMemoryBuffer;
     private final SectorFramer sectorFramer;
+    private final int slotCount;
     private final IndexedPositionReader positions;
     private final ErrorHandler errorHandler;
     private final RecordingIdLookup recordingIdLookup;
-    private final RandomAccessFile metaDataFile;
+    private final UnsafeBuffer metaDataView = new UnsafeBuffer();
+    private final UnsafeBuffer metaDataBuffer = new UnsafeBuffer();
+    private final ExpandableArrayBuffer metaDataCopy = new ExpandableArrayBuffer();
+    private final File metaDataStoreFile;
+
+    private MappedByteBuffer metaDataMapping;
 
     public SequenceNumberIndexReader(
         final AtomicBuffer inMemoryBuffer,
@@ -64,30 +78,46 @@ public class SequenceNumberIndexReader implements AutoCloseable
         this.recordingIdLookup = recordingIdLookup;
         final int positionTableOffset = positionTableOffset(inMemoryBuffer.capacity());
         sectorFramer = new SectorFramer(positionTableOffset);
+        slotCount = slotCount(positionTableOffset);
         validateBuffer();
         positions = new IndexedPositionReader(positionsBuffer(inMemoryBuffer, positionTableOffset));
-        metaDataFile = openMetaDataFile(metaDataDir);
+        metaDataStoreFile = metaDataDir != null ? metaDataStoreFile(metaDataDir) : null;
     }
 
-    private RandomAccessFile openMetaDataFile(final String metaDataDir)
+    public int lastKnownSequenceNumber(final long sessionId)
     {
-        if (metaDataDir != null)
+        // The writer may migrate the buffer to hashed slots after this reader was created
+        if (!hasHashedSlots(fileHeaderDecoder.version()))
         {
-            final File metaDataFile = metaDataFile(metaDataDir);
+            return scanForSequenceNumber(sessionId);
+        }
 
-            try
+        final int slotCount = this.slotCount;
+        int slot = slotCount == 0 ? 0 : homeSlot(sessionId, slotCount);
+        for (int probes = 0; probes < slotCount; probes++)
+        {
+            lastKnownDecoder.wrap(inMemoryBuffer, recordOffset(slot), BLOCK_LENGTH, SCHEMA_VERSION);
+
+            final long slotSessionId = lastKnownDecoder.sessionId();
+            if (slotSessionId == sessionId)
             {
-                return new RandomAccessFile(metaDataFile, "r");
+                return lastKnownDecoder.sequenceNumber();
             }
-            catch (final FileNotFoundException e)
+            else if (slotSessionId == 0)
             {
-                LangUtil.rethrowUnchecked(e);
+                return UNK_SESSION;
+            }
+
+            if (++slot == slotCount)
+            {
+                slot = 0;
             }
         }
-        return null;
+
+        return UNK_SESSION;
     }
 
-    public int lastKnownSequenceNumber(final long sessionId)
+    private int scanForSequenceNumber(final long sessionId)
     {
         int position = SequenceNumberIndexDescriptor.HEADER_SIZE;
         while (true)
@@ -134,46 +164,133 @@ public class SequenceNumberIndexReader implements AutoCloseable
             errorHandler);
     }
 
+    /**
+     * Read a copy of the metadata of a session.
+     *
+     * @param sessionId the session to read the metadata of.
+     * @param buffer the buffer to wrap around the copy.
+     * @return the status of the read.
+     */
     public MetaDataStatus readMetaData(final long sessionId, final DirectBuffer buffer)
     {
-        if (metaDataFile == null)
+        final MetaDataStatus status = wrapMetaData(sessionId, metaDataView);
+        if (status == MetaDataStatus.OK)
         {
-            return MetaDataStatus.FILE_ERROR;
+            final byte[] metaDataValue = new byte[metaDataView.capacity()];
+            metaDataView.getBytes(0, metaDataValue);
+            buffer.wrap(metaDataValue);
         }
 
-        if (lastKnownSequenceNumber(sessionId) == UNK_SESSION)
-        {
-            return MetaDataStatus.UNKNOWN_SESSION;
-        }
+        return status;
+    }
 
-        final int metaDataPosition = lastKnownDecoder.metaDataPosition();
-        if (metaDataPosition == NO_META_DATA)
+    /**
+     * Wrap a buffer around a copy of the metadata of a session without allocating. The copy is reused by the next
+     * read, so use the buffer straight away or use {@link #readMetaData(long, DirectBuffer)}.
+     * <p>
+     * The indexer updates metadata in place, so it's copied out of the store and the copy is retried if the slot's
+     * version or the session's metadata position changed whilst copying. If the copy doesn't succeed within
+     * a bounded number of attempts then {@link MetaDataStatus#FILE_ERROR} is returned.
+     *
+     * @param sessionId the session to read the metadata of.
+     * @param buffer the buffer to wrap around the copy of the metadata.
+     * @return the status of the read.
+     */
+    public MetaDataStatus wrapMetaData(final long sessionId, final DirectBuffer buffer)
+    {
+        if (metaDataStoreFile == null)
         {
-            return MetaDataStatus.NO_META_DATA;
+            return MetaDataStatus.FILE_ERROR;
         }
 
-        try
+        for (int attempts = 0; attempts < MAX_META_DATA_READ_ATTEMPTS; attempts++)
         {
-            metaDataFile.seek(metaDataPosition);
-            final int metaDataLength = metaDataFile.readInt();
+            if (lastKnownSequenceNumber(sessionId) == UNK_SESSION)
+            {
+                return MetaDataStatus.UNKNOWN_SESSION;
+            }
 
-            final byte[] metaDataValue = new byte[metaDataLength];
-            metaDataFile.read(metaDataValue);
+            final int metaDataPosition = lastKnownDecoder.metaDataPosition();
+            if (metaDataPosition == NO_META_DATA)
+            {
+                return MetaDataStatus.NO_META_DATA;
+            }
 
-            buffer.wrap(metaDataValue);
+            final int slotOffset = MetaDataStore.slotOffset(metaDataPosition);
+            final int dataOffset = slotOffset + SLOT_HEADER_LENGTH;
+            if (!MetaDataStore.isStorePosition(metaDataPosition) || !mapMetaDataStore(dataOffset))
+            {
+                return MetaDataStatus.FILE_ERROR;
+            }
+
+            final UnsafeBuffer metaDataBuffer = this.metaDataBuffer;
+            final long version = metaDataBuffer.getLongVolatile(slotOffset + SLOT_VERSION_OFFSET);
+            final int metaDataLength = metaDataBuffer.getIntVolatile(slotOffset + SLOT_LENGTH_OFFSET);
+            if ((version & 1) == 0 && metaDataLength >= 0 &&
+                metaDataLength <= metaDataBuffer.getInt(slotOffset + SLOT_CAPACITY_OFFSET))
+            {
+                if (!mapMetaDataStore(dataOffset + metaDataLength))
+                {
+                    return MetaDataStatus.FILE_ERROR;
+                }
+
+                metaDataCopy.putBytes(0, metaDataBuffer, dataOffset, metaDataLength);
+
+                UNSAFE.loadFence(); // LoadLoad required so previous loads don't move past version check below.
 
-            return MetaDataStatus.OK;
+                if (metaDataBuffer.getLongVolatile(slotOffset + SLOT_VERSION_OFFSET) == version &&
+                    lastKnownDecoder.sessionId() == sessionId &&
+                    lastKnownDecoder.metaDataPosition() == metaDataPosition)
+                {
+                    buffer.wrap(metaDataCopy, 0, metaDataLength);
+                    return MetaDataStatus.OK;
+                }
+            }
         }
-        catch (final IOException e)
+
+        return MetaDataStatus.FILE_ERROR;
+    }
+
+    // The store only grows, so remap when reading past the end of the current mapping. Nothing outside of this reader
+    // wraps the mapping, so the previous one can be unmapped straight away.
+    private boolean mapMetaDataStore(final int requiredLength)
+    {
+        if (metaDataBuffer.capacity() < requiredLength)
         {
-            errorHandler.onError(e);
-            return MetaDataStatus.FILE_ERROR;
+            final MappedByteBuffer previousMapping = metaDataMapping;
+            try
+            {
+                metaDataMapping = IoUtil.mapExistingFile(metaDataStoreFile, READ_ONLY, "metadata store");
+            }
+            catch (final Exception e)
+            {
+                errorHandler.onError(e);
+                return false;
+            }
+
+            metaDataBuffer.wrap(metaDataMapping);
+            IoUtil.unmap(previousMapping);
+
+            if (metaDataBuffer.capacity() < requiredLength)
+            {
+                errorHandler.onError(new IllegalStateException(String.format(
+                    "Metadata of length %d is beyond the end of %s", requiredLength, metaDataStoreFile)));
+                return false;
+            }
         }
+
+        return true;
     }
 
     public void close()
     {
-        CloseHelper.close(metaDataFile);
+        final MappedByteBuffer metaDataMapping = this.metaDataMapping;
+        if (metaDataMapping != null)
+        {
+            this.metaDataMapping = null;
+            metaDataBuffer.wrap(0, 0);
+            IoUtil.unmap(metaDataMapping);
+        }
     }
 
 }
@@ -22,13 +22,16 @@ import org.agrona.DirectBuffer;
 import org.agrona.ErrorHandler;
 import org.agrona.LangUtil;
 import org.agrona.collections.CollectionUtil;
+import org.agrona.collections.IntHashSet;
 import org.agrona.collections.Long2LongHashMap;
 import org.agrona.collections.Long2ObjectHashMap;
 import org.agrona.concurrent.AtomicBuffer;
 import org.agrona.concurrent.EpochClock;
+import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.artio.dictionary.generation.Exceptions;
 import uk.co.real_logic.artio.engine.ChecksumFramer;
 import uk.co.real_logic.artio.engine.MappedFile;
+import uk.co.real_logic.artio.engine.PersistenceScheduler;
 import uk.co.real_logic.artio.engine.SequenceNumberExtractor;
 import uk.co.real_logic.artio.engine.framer.FramerContext;
 import uk.co.real_logic.artio.engine.framer.WriteMetaDataResponse;
@@ -59,6 +62,10 @@ import static uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEnc
 /**
  * Writes updates into an in-memory buffer. This buffer is then flushed down to disk. A passing place
  * file is used to ensure that there's a recoverable option if it fails.
+ *
+ * When a journal is configured the records that have changed are appended to it when flushing instead, and the whole
+ * buffer is only checkpointed to disk when the journal is full, the term rolls or the writer is closed. The journal is
+ * replayed and compacted into a checkpoint on startup.
  */
 public class SequenceNumberIndexWriter implements Index
 {
@@ -66,6 +73,7 @@ public class SequenceNumberIndexWriter implements Index
     private static final long UNINITIALISED = -1;
     public static final long NO_REQUIRED_POSITION = -1000;
 
+    static final int SESSION_ID_OFFSET = LastKnownSequenceNumberEncoder.sessionIdEncodingOffset();
     static final int SEQUENCE_NUMBER_OFFSET = LastKnownSequenceNumberEncoder.sequenceNumberEncodingOffset();
     static final int MESSAGE_POSITION_OFFSET = LastKnownSequenceNumberEncoder.messagePositionEncodingOffset();
     static final int META_DATA_OFFSET = LastKnownSequenceNumberEncoder.metaDataPositionEncodingOffset();
@@ -87,12 +95,11 @@ public class SequenceNumberIndexWriter implements Index
     private final Long2LongHashMap recordOffsets = new Long2LongHashMap(MISSING_RECORD);
 
     // Meta data state
-    private final File metaDataLocation;
     private final List<WriteMetaDataResponse> responsesToResend = new ArrayList<>();
     private final Predicate<WriteMetaDataResponse> sendResponseFunc = this::sendResponse;
-    private final RandomAccessFile metaDataFile;
+    private final UnsafeBuffer metaDataUpdateBuffer = new UnsafeBuffer();
+    private final MetaDataStore metaDataStore;
     private final SequenceNumberIndexReader reader;
-    private byte[] metaDataWriteBuffer = new byte[0];
     private final Long2ObjectHashMap<Long2LongHashMap> sessionIdToRedactPositions = new Long2ObjectHashMap<>();
 
     private final SequenceNumberExtractor sequenceNumberExtractor;
@@ -106,8 +113,12 @@ public class SequenceNumberIndexWriter implements Index
     private final int fileCapacity;
     private final int streamId;
     private final int indexedPositionsOffset;
+    private final int slotCount;
     private final IndexedPositionWriter positionWriter;
     private final FixPSequenceIndexer fixPSequenceIndexer;
+    private final SequenceNumberIndexJournal journal;
+    private final IntHashSet dirtyRecordOffsets = new IntHashSet();
+    private final boolean indexChecksumEnabled;
 
     private MappedFile writableFile;
     private MappedFile indexFile;
@@ -118,6 +129,7 @@ public class SequenceNumberIndexWriter implements Index
     private final long indexFileStateFlushTimeoutInMs;
     private long lastUpdatedFileTimeInMs;
     private boolean hasSavedRecordSinceFileUpdate = false;
+    private boolean hasResetSinceJournalUpdate = false;
 
     public SequenceNumberIndexWriter(
         final SequenceNumberExtractor sequenceNumberExtractor,
@@ -133,6 +145,39 @@ public class SequenceNumberIndexWriter implements Index
         final FixPProtocolType fixPProtocolType,
         final boolean indexChecksumEnabled,
         final boolean logMessages)
+    {
+        this(
+            sequenceNumberExtractor,
+            inMemoryBuffer,
+            indexFile,
+            errorHandler,
+            streamId,
+            recordingIdLookup,
+            indexFileStateFlushTimeoutInMs,
+            clock,
+            metaDataDir,
+            connectionIdToFixPSessionId,
+            fixPProtocolType,
+            indexChecksumEnabled,
+            logMessages,
+            0);
+    }
+
+    public SequenceNumberIndexWriter(
+        final SequenceNumberExtractor sequenceNumberExtractor,
+        final AtomicBuffer inMemoryBuffer,
+        final MappedFile indexFile,
+        final ErrorHandler errorHandler,
+        final int streamId,
+        final RecordingIdLookup recordingIdLookup,
+        final long indexFileStateFlushTimeoutInMs,
+        final EpochClock clock,
+        final String metaDataDir,
+        final Long2LongHashMap connectionIdToFixPSessionId,
+        final FixPProtocolType fixPProtocolType,
+        final boolean indexChecksumEnabled,
+        final boolean logMessages,
+        final int journalSize)
     {
         this.sequenceNumberExtractor = sequenceNumberExtractor;
         this.inMemoryBuffer = inMemoryBuffer;
@@ -142,6 +187,7 @@ public class SequenceNumberIndexWriter implements Index
         this.fileCapacity = indexFile.buffer().capacity();
         this.indexFileStateFlushTimeoutInMs = indexFileStateFlushTimeoutInMs;
         this.clock = clock;
+        this.indexChecksumEnabled = indexChecksumEnabled;
 
         this.sessionOwnershipTracker = new SessionOwnershipTracker();
         final String indexFilePath = indexFile.file().getAbsolutePath();
@@ -150,15 +196,20 @@ public class SequenceNumberIndexWriter implements Index
         writablePath = writeableFile.toPath();
         passingPlacePath = passingFile(indexFilePath).toPath();
         writableFile = MappedFile.map(writeableFile, fileCapacity);
+        journal = journalSize > 0 ? new SequenceNumberIndexJournal(journalFile(indexFilePath), journalSize) : null;
+        metaDataStore = metaDataDir != null ? new MetaDataStore(metaDataStoreFile(metaDataDir), errorHandler) : null;
 
         // TODO: Fsync parent directory
         indexedPositionsOffset = positionTableOffset(fileCapacity);
+        slotCount = slotCount(indexedPositionsOffset);
         checksumFramer = new ChecksumFramer(
             inMemoryBuffer, indexedPositionsOffset, errorHandler, 0, "SequenceNumberIndex",
             indexChecksumEnabled);
         try
         {
             initialiseBuffer();
+            final boolean replayedJournal = journal != null && replayJournal();
+            final boolean migratedSlots = migrateToHashedSlots();
             if (logMessages)
             {
                 positionWriter = new IndexedPositionWriter(
@@ -173,20 +224,27 @@ public class SequenceNumberIndexWriter implements Index
                 positionWriter = null;
             }
 
-            if (metaDataDir != null)
+            final File legacyMetaDataFile = metaDataDir != null ? metaDataFile(metaDataDir) : null;
+            final boolean migratedMetaData = metaDataStore != null && migrateLegacyMetaData(legacyMetaDataFile);
+            if (metaDataStore != null)
             {
-                metaDataLocation = metaDataFile(metaDataDir);
-                metaDataFile = openMetaDataFile(metaDataLocation);
+                metaDataStore.reclaimUnreferencedSlots(referencedMetaDataPositions());
             }
-            else
+
+            if (replayedJournal || migratedSlots || migratedMetaData)
+            {
+                updateFile();
+            }
+
+            // Only once the index no longer references it on disk
+            if (legacyMetaDataFile != null && legacyMetaDataFile.exists() && !legacyMetaDataFile.delete())
             {
-                metaDataLocation = null;
-                metaDataFile = null;
+                errorHandler.onError(new IOException("Unable to delete legacy metadata file: " + legacyMetaDataFile));
             }
         }
         catch (final Exception e)
         {
-            CloseHelper.close(writableFile);
+            CloseHelper.closeAll(writableFile, journal, metaDataStore);
             indexFile.close();
             throw e;
         }
@@ -200,17 +258,18 @@ public class SequenceNumberIndexWriter implements Index
                 saveRecord(seqNum, uuid, endPosition, NO_REQUIRED_POSITION, possRetrans));
     }
 
-    private RandomAccessFile openMetaDataFile(final File metaDataLocation)
+    private boolean migrateLegacyMetaData(final File legacyMetaDataFile)
     {
-        RandomAccessFile file = null;
-        try
+        if (!legacyMetaDataFile.exists())
         {
-            file = new RandomAccessFile(metaDataLocation, "rw");
-            if (file.length() == 0)
-            {
-                writeMetaDataFileHeader(file);
-            }
-            else
+            return false;
+        }
+
+        boolean migrated = false;
+        try (RandomAccessFile file = new RandomAccessFile(legacyMetaDataFile, "r"))
+        {
+            final long fileLength = file.length();
+            if (fileLength >= META_DATA_FILE_HEADER_LENGTH)
             {
                 final long magicNumber = file.readLong();
                 final int fileVersion = file.readInt();
@@ -225,22 +284,58 @@ public class SequenceNumberIndexWriter implements Index
                     throw new IllegalStateException("Unreadable metadata file version: " + fileVersion);
                 }
             }
-            return file;
+
+            final AtomicBuffer inMemoryBuffer = this.inMemoryBuffer;
+            final int slotCount = this.slotCount;
+            for (int slot = 0; slot < slotCount; slot++)
+            {
+                final int recordOffset = recordOffset(slot);
+                final int oldMetaDataPosition = getMetaData(recordOffset);
+                if (inMemoryBuffer.getLong(recordOffset + SESSION_ID_OFFSET) == 0 ||
+                    oldMetaDataPosition == NO_META_DATA ||
+                    MetaDataStore.isStorePosition(oldMetaDataPosition))
+                {
+                    continue;
+                }
+
+                int metaDataPosition = NO_META_DATA;
+                if (oldMetaDataPosition + SIZE_OF_META_DATA_LENGTH <= fileLength)
+                {
+                    file.seek(oldMetaDataPosition);
+                    // Lengths could be overstated before, so don't read past the end of the file
+                    final int metaDataLength = (int)Math.min(
+                        file.readInt(), fileLength - oldMetaDataPosition - SIZE_OF_META_DATA_LENGTH);
+                    final byte[] metaDataValue = new byte[metaDataLength];
+                    file.readFully(metaDataValue);
+                    metaDataPosition = metaDataStore.write(
+                        NO_META_DATA, new UnsafeBuffer(metaDataValue), 0, 0, metaDataLength);
+                }
+
+                putMetaDataField(recordOffset, metaDataPosition == OUT_OF_SPACE ? NO_META_DATA : metaDataPosition);
+                migrated = true;
+            }
         }
-        catch (final IOException | IllegalStateException e)
+        catch (final IOException e)
         {
-            Exceptions.suppressingClose(file, e);
             LangUtil.rethrowUnchecked(e);
         }
 
-        return null;
+        return migrated;
     }
 
-    private void writeMetaDataFileHeader(final RandomAccessFile file) throws IOException
+    private IntHashSet referencedMetaDataPositions()
     {
-        file.writeLong(META_DATA_MAGIC_NUMBER);
-        file.writeInt(META_DATA_FILE_VERSION);
-        file.getFD().sync();
+        final IntHashSet positions = new IntHashSet();
+        final int slotCount = this.slotCount;
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            final int recordOffset = recordOffset(slot);
+            if (inMemoryBuffer.getLong(recordOffset + SESSION_ID_OFFSET) != 0)
+            {
+                positions.add(getMetaData(recordOffset));
+            }
+        }
+        return positions;
     }
 
     public void onCatchup(
@@ -473,8 +568,7 @@ public class SequenceNumberIndexWriter implements Index
         {
             metaDataLength = messageFrame.metaDataLength();
             metaDataOffset = messageFrame.metaDataUpdateOffset();
-            resizeMetaDataBuffer(metaDataOffset + metaDataLength);
-            messageFrame.getMetaData(metaDataWriteBuffer, metaDataOffset, metaDataLength);
+            messageFrame.wrapMetaData(metaDataUpdateBuffer);
 
             offset += FixMessageDecoder.metaDataHeaderLength() + metaDataLength;
         }
@@ -510,9 +604,9 @@ public class SequenceNumberIndexWriter implements Index
         if (msgSeqNum != NO_SEQUENCE_NUMBER)
         {
             final int position = saveRecord(msgSeqNum, sessionId, messagePosition, NO_REQUIRED_POSITION, false);
-            if (metaDataLength > 0 && position > 0)
+            if (metaDataLength > 0 && position > 0 && metaDataStore != null)
             {
-                writeMetaDataToFile(position, metaDataWriteBuffer, metaDataOffset, metaDataLength);
+                writeMetaDataToFile(position, metaDataUpdateBuffer, metaDataOffset);
             }
         }
         return true;
@@ -536,14 +630,6 @@ public class SequenceNumberIndexWriter implements Index
         return NO_SEQUENCE_NUMBER;
     }
 
-    private void resizeMetaDataBuffer(final int metaDataLength)
-    {
-        if (metaDataWriteBuffer.length < metaDataLength)
-        {
-            metaDataWriteBuffer = new byte[metaDataLength];
-        }
-    }
-
     private void onWriteMetaData()
     {
         final int libraryId = writeMetaData.libraryId();
@@ -551,7 +637,7 @@ public class SequenceNumberIndexWriter implements Index
         final long correlationId = writeMetaData.correlationId();
         final int metaDataOffset = writeMetaData.metaDataOffset();
 
-        if (framerContext == null || metaDataFile == null)
+        if (framerContext == null || metaDataStore == null)
         {
             writeMetaDataResponse(libraryId, correlationId, MetaDataStatus.FILE_ERROR);
 
@@ -566,84 +652,37 @@ public class SequenceNumberIndexWriter implements Index
             return;
         }
 
-        final int metaDataLength = writeMetaData.metaDataLength();
-        resizeMetaDataBuffer(metaDataOffset + metaDataLength);
-        writeMetaData.getMetaData(metaDataWriteBuffer, metaDataOffset, metaDataLength);
-
+        writeMetaData.wrapMetaData(metaDataUpdateBuffer);
         final MetaDataStatus status = writeMetaDataToFile(
-            sequenceNumberIndexFilePosition, metaDataWriteBuffer, metaDataOffset, metaDataLength);
+            sequenceNumberIndexFilePosition, metaDataUpdateBuffer, metaDataOffset);
         writeMetaDataResponse(libraryId, correlationId, status);
     }
 
     private MetaDataStatus writeMetaDataToFile(
         final int sequenceNumberIndexFilePosition,
-        final byte[] metaDataValue,
-        final int metaDataUpdateOffset,
-        final int metaDataUpdateLength)
+        final DirectBuffer metaDataUpdate,
+        final int metaDataUpdateOffset)
     {
         final int oldMetaDataPosition = getMetaData(sequenceNumberIndexFilePosition);
-        try
+        if (oldMetaDataPosition == NO_META_DATA && metaDataUpdateOffset != 0)
         {
-            if (oldMetaDataPosition == NO_META_DATA)
-            {
-                if (metaDataUpdateOffset != 0)
-                {
-                    return MetaDataStatus.INVALID_OFFSET;
-                }
-
-                allocateMetaDataSlot(sequenceNumberIndexFilePosition, metaDataValue, metaDataUpdateLength);
-            }
-            else
-            {
-                metaDataFile.seek(oldMetaDataPosition);
-                final int oldMetaDataLength = metaDataFile.readInt();
-                final int newMetaDataMinLength = metaDataUpdateOffset + metaDataUpdateLength;
-                // Is there space to replace?
-                if (newMetaDataMinLength <= oldMetaDataLength)
-                {
-                    metaDataFile.seek(oldMetaDataPosition + SIZE_OF_META_DATA_LENGTH + metaDataUpdateOffset);
-                    metaDataFile.write(metaDataValue, metaDataUpdateOffset, metaDataUpdateLength);
-                }
-                else
-                {
-                    // Pickup the old prefix that will be copied if it's an update
-                    if (metaDataUpdateOffset > 0)
-                    {
-                        // Already at the old metadata position
-                        metaDataFile.read(metaDataValue, 0, metaDataUpdateOffset);
-                    }
-
-                    allocateMetaDataSlot(sequenceNumberIndexFilePosition, metaDataValue, newMetaDataMinLength);
-                }
-            }
-
-            return MetaDataStatus.OK;
+            return MetaDataStatus.INVALID_OFFSET;
         }
-        catch (final IOException e)
-        {
-            errorHandler.onError(e);
 
+        final int metaDataPosition = metaDataStore.write(
+            oldMetaDataPosition, metaDataUpdate, 0, metaDataUpdateOffset, metaDataUpdate.capacity());
+        if (metaDataPosition == OUT_OF_SPACE)
+        {
             return MetaDataStatus.FILE_ERROR;
         }
-    }
 
-    private void allocateMetaDataSlot(
-        final int sequenceNumberIndexFilePosition,
-        final byte[] metaDataValue,
-        final int metaDataLength) throws IOException
-    {
-        final int metaDataFileInitialLength = (int)metaDataFile.length();
-        updateMetaDataFile(metaDataFileInitialLength, metaDataValue, metaDataLength);
-        putMetaDataField(sequenceNumberIndexFilePosition, metaDataFileInitialLength);
-        hasSavedRecordSinceFileUpdate = true;
-    }
+        if (metaDataPosition != oldMetaDataPosition)
+        {
+            putMetaDataField(sequenceNumberIndexFilePosition, metaDataPosition);
+            hasSavedRecordSinceFileUpdate = true;
+        }
 
-    private void updateMetaDataFile(
-        final int position, final byte[] metaDataValue, final int metaDataLength) throws IOException
-    {
-        metaDataFile.seek(position);
-        metaDataFile.writeInt(metaDataValue.length);
-        metaDataFile.write(metaDataValue, 0, metaDataLength);
+        return MetaDataStatus.OK;
     }
 
     private void writeMetaDataResponse(final int libraryId, final long correlationId, final MetaDataStatus status)
@@ -664,7 +703,7 @@ public class SequenceNumberIndexWriter implements Index
             final long requiredUpdateTimeInMs = lastUpdatedFileTimeInMs + indexFileStateFlushTimeoutInMs;
             if (requiredUpdateTimeInMs < clock.time())
             {
-                updateFile();
+                flush();
                 work++;
             }
         }
@@ -687,23 +726,16 @@ public class SequenceNumberIndexWriter implements Index
         inMemoryBuffer.setMemory(0, indexedPositionsOffset, (byte)0);
         initialiseBlankBuffer();
         recordOffsets.clear();
+        dirtyRecordOffsets.clear();
+        hasResetSinceJournalUpdate = journal != null;
         resetMetaDataFile();
     }
 
     private void resetMetaDataFile()
     {
-        if (metaDataLocation != null)
+        if (metaDataStore != null)
         {
-            try
-            {
-                metaDataFile.seek(0);
-                metaDataFile.setLength(META_DATA_FILE_HEADER_LENGTH);
-                writeMetaDataFileHeader(metaDataFile);
-            }
-            catch (final IOException e)
-            {
-                errorHandler.onError(e);
-            }
+            metaDataStore.reset();
         }
     }
 
@@ -722,6 +754,49 @@ public class SequenceNumberIndexWriter implements Index
         }
     }
 
+    private void flush()
+    {
+        if (journal == null || !updateJournal())
+        {
+            updateFile();
+            return;
+        }
+
+        // Metadata file positions are referenced by the journaled records
+        syncMetaDataFile();
+        journal.force();
+        onIndexFlushed();
+        hasSavedRecordSinceFileUpdate = false;
+        lastUpdatedFileTimeInMs = clock.time();
+    }
+
+    private boolean updateJournal()
+    {
+        final SequenceNumberIndexJournal journal = this.journal;
+        if (hasResetSinceJournalUpdate)
+        {
+            if (!journal.appendReset())
+            {
+                return false;
+            }
+            hasResetSinceJournalUpdate = false;
+        }
+
+        final AtomicBuffer inMemoryBuffer = this.inMemoryBuffer;
+        final IntHashSet.IntIterator it = dirtyRecordOffsets.iterator();
+        while (it.hasNext())
+        {
+            if (!journal.append(inMemoryBuffer, it.nextValue(), RECORD_SIZE))
+            {
+                return false;
+            }
+        }
+        dirtyRecordOffsets.clear();
+
+        // Appended after the records so that the positions never get ahead of the records when replaying a torn write
+        return positionWriter == null || positionWriter.appendTo(journal, inMemoryBuffer, indexedPositionsOffset);
+    }
+
     private void updateFile()
     {
         checksumFramer.updateChecksums();
@@ -731,29 +806,86 @@ public class SequenceNumberIndexWriter implements Index
         }
         saveFile();
         flipFiles();
+        resetJournal();
+        onIndexFlushed();
         hasSavedRecordSinceFileUpdate = false;
         lastUpdatedFileTimeInMs = clock.time();
     }
 
+    private void resetJournal()
+    {
+        if (journal != null)
+        {
+            journal.reset(journal.checksum(inMemoryBuffer, fileCapacity));
+            dirtyRecordOffsets.clear();
+            hasResetSinceJournalUpdate = false;
+        }
+    }
+
+    private boolean replayJournal()
+    {
+        final SequenceNumberIndexJournal journal = this.journal;
+        final int checkpointChecksum = journal.checksum(inMemoryBuffer, fileCapacity);
+        if (journal.checkpointChecksum() != checkpointChecksum)
+        {
+            // Either a new journal or the index file was checkpointed after the last journal update
+            journal.reset(checkpointChecksum);
+            return false;
+        }
+
+        if (journal.replay(this::onJournalEntry) == 0)
+        {
+            return false;
+        }
+
+        new ChecksumFramer(inMemoryBuffer, fileCapacity, errorHandler, 0, "SequenceNumberIndex", indexChecksumEnabled)
+            .updateChecksums();
+        return true;
+    }
+
+    private void onJournalEntry(
+        final AtomicBuffer journalBuffer, final int offset, final int indexOffset, final int length)
+    {
+        if (indexOffset == SequenceNumberIndexJournal.RESET_INDEX_OFFSET)
+        {
+            inMemoryBuffer.setMemory(0, indexedPositionsOffset, (byte)0);
+            initialiseBlankBuffer();
+        }
+        else if (indexOffset < HEADER_SIZE || indexOffset > fileCapacity - length)
+        {
+            errorHandler.onError(new IllegalStateException(String.format(
+                "Invalid sequence number index journal entry at %d: offset=%d, length=%d",
+                offset, indexOffset, length)));
+        }
+        else
+        {
+            inMemoryBuffer.putBytes(indexOffset, journalBuffer, offset, length);
+        }
+    }
+
     private void saveFile()
     {
         writableFile.buffer().putBytes(0, inMemoryBuffer, 0, fileCapacity);
-        writableFile.force();
-        syncMetaDataFile();
+        writableFile.forceCheckpoint();
+        if (metaDataStore != null)
+        {
+            metaDataStore.forceCheckpoint();
+        }
     }
 
     private void syncMetaDataFile()
     {
-        if (metaDataFile != null)
+        if (metaDataStore != null)
         {
-            try
-            {
-                metaDataFile.getFD().sync();
-            }
-            catch (final IOException e)
-            {
-                errorHandler.onError(e);
-            }
+            metaDataStore.force();
+        }
+    }
+
+    private void onIndexFlushed()
+    {
+        if (metaDataStore != null)
+        {
+            metaDataStore.onIndexFlushed();
         }
     }
 
@@ -807,6 +939,26 @@ public class SequenceNumberIndexWriter implements Index
         return writableFile.isOpen();
     }
 
+    /**
+     * Lets the scheduler decide when this index's files are synced. The metadata store is registered ahead of the
+     * journal so that a group commit syncs metadata before the journal records that refer to it.
+     *
+     * @param persistenceScheduler the scheduler that syncs the files.
+     */
+    public void persistenceScheduler(final PersistenceScheduler persistenceScheduler)
+    {
+        if (metaDataStore != null)
+        {
+            metaDataStore.persistenceScheduler(persistenceScheduler);
+        }
+        if (journal != null)
+        {
+            journal.persistenceScheduler(persistenceScheduler);
+        }
+        indexFile.persistenceScheduler(persistenceScheduler);
+        writableFile.persistenceScheduler(persistenceScheduler);
+    }
+
     public void close()
     {
         try
@@ -818,20 +970,7 @@ public class SequenceNumberIndexWriter implements Index
         }
         finally
         {
-            Exceptions.closeAll(indexFile, writableFile, reader, () ->
-            {
-                if (metaDataFile != null)
-                {
-                    try
-                    {
-                        metaDataFile.close();
-                    }
-                    catch (final IOException e)
-                    {
-                        errorHandler.onError(e);
-                    }
-                }
-            });
+            Exceptions.closeAll(indexFile, writableFile, journal, reader, metaDataStore);
         }
     }
 
@@ -854,17 +993,11 @@ public class SequenceNumberIndexWriter implements Index
         int position = (int)recordOffsets.get(sessionId);
         if (position == MISSING_RECORD)
         {
-            position = SequenceNumberIndexDescriptor.HEADER_SIZE;
-            while (true)
+            final int slotCount = this.slotCount;
+            int slot = slotCount == 0 ? 0 : homeSlot(sessionId, slotCount);
+            for (int probes = 0; probes < slotCount; probes++)
             {
-                position = checksumFramer.claim(position, RECORD_SIZE);
-                if (position == OUT_OF_SPACE)
-                {
-                    errorHandler.onError(new IllegalStateException(
-                        "Sequence Number Index out of space, can't claim slot for " + sessionId));
-                    return position;
-                }
-
+                position = recordOffset(slot);
                 lastKnownDecoder.wrap(inMemoryBuffer, position, RECORD_SIZE, SCHEMA_VERSION);
                 if (lastKnownDecoder.sessionId() == 0)
                 {
@@ -888,8 +1021,15 @@ public class SequenceNumberIndexWriter implements Index
                     return position;
                 }
 
-                position += RECORD_SIZE;
+                if (++slot == slotCount)
+                {
+                    slot = 0;
+                }
             }
+
+            errorHandler.onError(new IllegalStateException(
+                "Sequence Number Index out of space, can't claim slot for " + sessionId));
+            return OUT_OF_SPACE;
         }
         else
         {
@@ -946,15 +1086,9 @@ public class SequenceNumberIndexWriter implements Index
                 if (oldMetaDataPosition != NO_META_DATA)
                 {
                     putMetaDataField(recordOffset, NO_META_DATA);
-                    try
+                    if (metaDataStore != null)
                     {
-                        metaDataFile.seek(oldMetaDataPosition);
-                        final int metaDataLength = metaDataFile.readInt();
-                        updateMetaDataFile(oldMetaDataPosition, new byte[metaDataLength], metaDataLength);
-                    }
-                    catch (final IOException e)
-                    {
-                        errorHandler.onError(e);
+                        metaDataStore.free(oldMetaDataPosition);
                     }
                 }
             }
@@ -1013,6 +1147,44 @@ public class SequenceNumberIndexWriter implements Index
         }
     }
 
+    private boolean migrateToHashedSlots()
+    {
+        fileHeaderDecoder.wrap(inMemoryBuffer, 0);
+        if (hasHashedSlots(fileHeaderDecoder.version()))
+        {
+            return false;
+        }
+
+        // Records were appended into the slots in order before, so rehash every one of them
+        final AtomicBuffer inMemoryBuffer = this.inMemoryBuffer;
+        final UnsafeBuffer oldRecords = new UnsafeBuffer(new byte[indexedPositionsOffset]);
+        oldRecords.putBytes(0, inMemoryBuffer, 0, indexedPositionsOffset);
+        inMemoryBuffer.setMemory(0, indexedPositionsOffset, (byte)0);
+        initialiseBlankBuffer();
+
+        final int slotCount = this.slotCount;
+        for (int oldSlot = 0; oldSlot < slotCount; oldSlot++)
+        {
+            final int oldOffset = recordOffset(oldSlot);
+            lastKnownDecoder.wrap(oldRecords, oldOffset, RECORD_SIZE, SCHEMA_VERSION);
+            final long sessionId = lastKnownDecoder.sessionId();
+            if (sessionId != 0)
+            {
+                int slot = homeSlot(sessionId, slotCount);
+                while (inMemoryBuffer.getLong(recordOffset(slot) + SESSION_ID_OFFSET) != 0)
+                {
+                    if (++slot == slotCount)
+                    {
+                        slot = 0;
+                    }
+                }
+                inMemoryBuffer.putBytes(recordOffset(slot), oldRecords, oldOffset, RECORD_SIZE);
+            }
+        }
+
+        return true;
+    }
+
     private void initialiseBlankBuffer()
     {
         LoggerUtil.initialiseBuffer(
@@ -1075,6 +1247,7 @@ public class SequenceNumberIndexWriter implements Index
         final int value)
     {
         inMemoryBuffer.putIntOrdered(recordOffset + SEQUENCE_NUMBER_OFFSET, value);
+        markDirty(recordOffset);
     }
 
     private int getSequenceNumber(final int recordOffset)
@@ -1092,6 +1265,15 @@ public class SequenceNumberIndexWriter implements Index
         final int value)
     {
         inMemoryBuffer.putIntOrdered(recordOffset + META_DATA_OFFSET, value);
+        markDirty(recordOffset);
+    }
+
+    private void markDirty(final int recordOffset)
+    {
+        if (journal != null)
+        {
+            dirtyRecordOffsets.add(recordOffset);
+        }
     }
 
     private int getMetaData(
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.IoUtil;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.artio.storage.messages.MessageHeaderDecoder;
+import uk.co.real_logic.artio.storage.messages.SessionTimeIndexRecordDecoder;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+
+import static org.agrona.UnsafeAccess.UNSAFE;
+import static uk.co.real_logic.artio.engine.logger.SessionTimeIndexWriter.*;
+
+/**
+ * Finds the positions of a session's messages within a time range from the time index written by
+ * {@link SessionTimeIndexWriter}.
+ *
+ * A session's index only answers a query if the query's time range lies between the oldest and the latest timestamp
+ * within its ring, otherwise messages from before the index was enabled or that have been overwritten in the ring
+ * could be missed and the caller should fall back to the {@link TimeIndexReader}. A query that raced with the writer
+ * overwriting the records that it read also falls back.
+ */
+class SessionTimeIndexReader implements AutoCloseable
+{
+    private static final long MISSING = -1;
+    private static final int NO_SLOT_OFFSET = -1;
+
+    private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+    private final SessionTimeIndexRecordDecoder recordDecoder = new SessionTimeIndexRecordDecoder();
+    private final Long2LongHashMap recordingIdToStartPosition = new Long2LongHashMap(MISSING);
+    private final Long2LongHashMap recordingIdToEndPosition = new Long2LongHashMap(MISSING);
+    private final UnsafeBuffer buffer = new UnsafeBuffer(0, 0);
+    private final File file;
+
+    private MappedByteBuffer mappedBuffer;
+
+    SessionTimeIndexReader(final String logFileDir, final int streamId)
+    {
+        file = fileLocation(logFileDir, streamId);
+    }
+
+    boolean findPositionRange(
+        final IndexQuery indexQuery, final Long2ObjectHashMap<PositionRange> recordingIdToPositionRange)
+    {
+        final long beginTimestampInclusive = indexQuery.beginTimestampInclusive();
+        final long endTimestampExclusive = indexQuery.endTimestampExclusive();
+        final long fixSessionId = indexQuery.sessionId();
+        if (fixSessionId == IndexQuery.NO_SESSION ||
+            beginTimestampInclusive == IndexQuery.NO_BEGIN ||
+            endTimestampExclusive == IndexQuery.NO_END ||
+            !map())
+        {
+            return false;
+        }
+
+        final UnsafeBuffer buffer = this.buffer;
+        final int ringCapacity = buffer.getInt(RING_CAPACITY_OFFSET);
+        final int slotOffset = findSlot(fixSessionId, ringCapacity);
+        if (slotOffset == NO_SLOT_OFFSET)
+        {
+            return false;
+        }
+
+        final Long2LongHashMap recordingIdToStartPosition = this.recordingIdToStartPosition;
+        final Long2LongHashMap recordingIdToEndPosition = this.recordingIdToEndPosition;
+        recordingIdToStartPosition.clear();
+        recordingIdToEndPosition.clear();
+
+        final long generation = buffer.getLongVolatile(slotOffset + SLOT_GENERATION_OFFSET);
+        final long endChangePosition = buffer.getLongVolatile(slotOffset + SLOT_END_CHANGE_OFFSET);
+        final long startChangePosition = Math.max(0, endChangePosition - ringCapacity);
+        if (startChangePosition == endChangePosition)
+        {
+            return false;
+        }
+
+        final SessionTimeIndexRecordDecoder record = this.recordDecoder;
+        final int blockLength = headerDecoder.blockLength();
+        final int version = headerDecoder.version();
+
+        long firstTimestampInNs = Long.MIN_VALUE;
+        long latestTimestampInNs = Long.MIN_VALUE;
+        for (long changePosition = startChangePosition; changePosition < endChangePosition; changePosition++)
+        {
+            record.wrap(buffer, recordOffset(slotOffset, changePosition, ringCapacity), blockLength, version);
+
+            final long timestampInNs = record.timestamp();
+            if (changePosition == startChangePosition)
+            {
+                firstTimestampInNs = timestampInNs;
+            }
+            latestTimestampInNs = Math.max(latestTimestampInNs, timestampInNs);
+
+            if (timestampInNs >= beginTimestampInclusive && timestampInNs < endTimestampExclusive)
+            {
+                final long recordingId = record.recordingId();
+                final long startPosition = record.position();
+                final long endPosition = startPosition + record.length();
+
+                final long existingStartPosition = recordingIdToStartPosition.get(recordingId);
+                if (existingStartPosition == MISSING || startPosition < existingStartPosition)
+                {
+                    recordingIdToStartPosition.put(recordingId, startPosition);
+                }
+
+                if (endPosition > recordingIdToEndPosition.get(recordingId))
+                {
+                    recordingIdToEndPosition.put(recordingId, endPosition);
+                }
+            }
+        }
+
+        UNSAFE.loadFence(); // LoadLoad required so previous loads don't move past the checks below.
+
+        // Records from before the begin change less the ring's capacity may have been overwritten whilst reading
+        final long beginChangePosition = buffer.getLongVolatile(slotOffset + SLOT_BEGIN_CHANGE_OFFSET);
+        if (beginChangePosition - ringCapacity > startChangePosition ||
+            buffer.getLongVolatile(slotOffset + SLOT_GENERATION_OFFSET) != generation ||
+            !isAllocatedTo(slotOffset, fixSessionId) ||
+            beginTimestampInclusive < firstTimestampInNs ||
+            endTimestampExclusive > latestTimestampInNs)
+        {
+            return false;
+        }
+
+        final Long2LongHashMap.KeyIterator recordingIds = recordingIdToStartPosition.keySet().iterator();
+        while (recordingIds.hasNext())
+        {
+            final long recordingId = recordingIds.nextValue();
+            recordingIdToPositionRange.put(recordingId, new PositionRange(
+                recordingIdToStartPosition.get(recordingId),
+                recordingIdToEndPosition.get(recordingId)));
+        }
+
+        return true;
+    }
+
+    public void close()
+    {
+        if (mappedBuffer != null)
+        {
+            IoUtil.unmap(mappedBuffer);
+            mappedBuffer = null;
+            buffer.wrap(0, 0);
+        }
+    }
+
+    // The writer only grows the file, so remap when it has grown past the end of the current mapping.
+    private boolean map()
+    {
+        final long fileLength = file.length();
+        if (fileLength < HEADER_LENGTH)
+        {
+            return false;
+        }
+
+        if (fileLength > buffer.capacity())
+        {
+            close();
+            mappedBuffer = LoggerUtil.mapExistingFile(file);
+            buffer.wrap(mappedBuffer);
+        }
+
+        return headerDecoder.wrap(buffer, 0).templateId() == SessionTimeIndexRecordDecoder.TEMPLATE_ID;
+    }
+
+    private int findSlot(final long fixSessionId, final int ringCapacity)
+    {
+        final UnsafeBuffer buffer = this.buffer;
+        final int slotLength = slotLength(ringCapacity);
+        final int slotCount = Math.min(
+            buffer.getIntVolatile(SLOT_COUNT_OFFSET), (buffer.capacity() - HEADER_LENGTH) / slotLength);
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            final int slotOffset = HEADER_LENGTH + slot * slotLength;
+            if (isAllocatedTo(slotOffset, fixSessionId))
+            {
+                return slotOffset;
+            }
+        }
+
+        return NO_SLOT_OFFSET;
+    }
+
+    private boolean isAllocatedTo(final int slotOffset, final long fixSessionId)
+    {
+        final UnsafeBuffer buffer = this.buffer;
+        return buffer.getIntVolatile(slotOffset + SLOT_STATE_OFFSET) == ALLOCATED &&
+            buffer.getLong(slotOffset + SLOT_SESSION_ID_OFFSET) == fixSessionId;
+    }
+}
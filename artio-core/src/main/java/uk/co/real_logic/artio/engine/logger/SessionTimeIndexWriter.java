@@ -0,0 +1,344 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.BitUtil;
+import org.agrona.CloseHelper;
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.LangUtil;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.artio.dictionary.generation.Exceptions;
+import uk.co.real_logic.artio.storage.messages.MessageHeaderDecoder;
+import uk.co.real_logic.artio.storage.messages.MessageHeaderEncoder;
+import uk.co.real_logic.artio.storage.messages.SessionTimeIndexRecordEncoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static org.agrona.UnsafeAccess.UNSAFE;
+
+/**
+ * Writes a time index for each session of a stream, alongside its replay index.
+ *
+ * The time indices of every session of a stream are packed into a single memory mapped file at
+ * {@link #fileLocation(String, int)}. Each session has a slot in the file that holds a ring of the
+ * SessionTimeIndexRecords of its most recent replay index records, so the index of a session is bounded in size and
+ * older records are overwritten. A session's slot is freed when its sequence numbers are reset and is then reused by
+ * another session. Records are written straight into the mapped file, using the same begin and end change protocol
+ * as the replay index so that readers can detect concurrent writes.
+ *
+ * File Consists of:
+ *
+ * Header: MessageHeader, ring capacity (int), slot count (int)
+ * Multiple slots, each of which is: state, generation, FIX session id, begin change, end change and the ring
+ */
+class SessionTimeIndexWriter implements AutoCloseable
+{
+    static final String FILE_NAME = "session-time-index-";
+
+    static final int RING_CAPACITY_OFFSET = MessageHeaderEncoder.ENCODED_LENGTH;
+    static final int SLOT_COUNT_OFFSET = RING_CAPACITY_OFFSET + BitUtil.SIZE_OF_INT;
+    static final int HEADER_LENGTH = BitUtil.CACHE_LINE_LENGTH;
+
+    static final int SLOT_STATE_OFFSET = 0;
+    static final int SLOT_GENERATION_OFFSET = BitUtil.SIZE_OF_LONG;
+    static final int SLOT_SESSION_ID_OFFSET = SLOT_GENERATION_OFFSET + BitUtil.SIZE_OF_LONG;
+    static final int SLOT_BEGIN_CHANGE_OFFSET = SLOT_SESSION_ID_OFFSET + BitUtil.SIZE_OF_LONG;
+    static final int SLOT_END_CHANGE_OFFSET = SLOT_BEGIN_CHANGE_OFFSET + BitUtil.SIZE_OF_LONG;
+    static final int SLOT_HEADER_LENGTH = BitUtil.CACHE_LINE_LENGTH;
+
+    static final int RECORD_LENGTH = BitUtil.align(SessionTimeIndexRecordEncoder.BLOCK_LENGTH, BitUtil.SIZE_OF_LONG);
+
+    static final int FREE = 0;
+    static final int ALLOCATED = 1;
+
+    static File fileLocation(final String logFileDir, final int streamId)
+    {
+        return new File(logFileDir + File.separator + FILE_NAME + streamId);
+    }
+
+    static int slotLength(final int ringCapacity)
+    {
+        return SLOT_HEADER_LENGTH + ringCapacity * RECORD_LENGTH;
+    }
+
+    static int recordOffset(final int slotOffset, final long changePosition, final int ringCapacity)
+    {
+        return slotOffset + SLOT_HEADER_LENGTH + (int)(changePosition & (ringCapacity - 1)) * RECORD_LENGTH;
+    }
+
+    private static final long MISSING_SLOT = -1;
+    private static final int NO_SLOT_OFFSET = -1;
+
+    private final SessionTimeIndexRecordEncoder recordEncoder = new SessionTimeIndexRecordEncoder();
+    private final UnsafeBuffer buffer = new UnsafeBuffer();
+    private final Long2LongHashMap sessionIdToSlot = new Long2LongHashMap(MISSING_SLOT);
+    private final IntArrayList freeSlots = new IntArrayList();
+    private final File file;
+    private final int ringCapacity;
+    private final int slotLength;
+    private final ErrorHandler errorHandler;
+    private final RandomAccessFile randomAccessFile;
+
+    private MappedByteBuffer mappedBuffer;
+    private int slotCount;
+
+    SessionTimeIndexWriter(
+        final String logFileDir,
+        final int streamId,
+        final int ringCapacity,
+        final ErrorHandler errorHandler)
+    {
+        if (!BitUtil.isPowerOfTwo(ringCapacity))
+        {
+            throw new IllegalArgumentException(
+                "Session time index record capacity must be a positive power of 2: " + ringCapacity);
+        }
+
+        this.ringCapacity = ringCapacity;
+        this.slotLength = slotLength(ringCapacity);
+        this.errorHandler = errorHandler;
+
+        file = fileLocation(logFileDir, streamId);
+        IoUtil.ensureDirectoryExists(file.getParentFile(), file.getParent());
+        randomAccessFile = open(file);
+        try
+        {
+            final boolean isNew = randomAccessFile.length() == 0;
+            if (isNew)
+            {
+                randomAccessFile.setLength(HEADER_LENGTH + slotLength);
+            }
+            map();
+
+            if (isNew)
+            {
+                recordEncoder.wrapAndApplyHeader(buffer, 0, new MessageHeaderEncoder());
+                buffer.putInt(RING_CAPACITY_OFFSET, ringCapacity);
+            }
+            else
+            {
+                validateHeader();
+                loadSlots();
+            }
+        }
+        catch (final IOException | IllegalStateException e)
+        {
+            Exceptions.suppressingClose(randomAccessFile, e);
+            LangUtil.rethrowUnchecked(e);
+        }
+    }
+
+    void onRecord(
+        final long fixSessionId,
+        final long timestamp,
+        final long recordingId,
+        final long beginPosition,
+        final int length,
+        final int sequenceNumber,
+        final int sequenceIndex)
+    {
+        final int slotOffset = slotOffset(fixSessionId);
+        if (slotOffset == NO_SLOT_OFFSET)
+        {
+            return;
+        }
+
+        // Written from the end change so that a record left torn by a crash, which readers skip as the begin change
+        // is ahead of it, is overwritten.
+        final UnsafeBuffer buffer = this.buffer;
+        final long beginChangePosition = buffer.getLong(slotOffset + SLOT_END_CHANGE_OFFSET);
+        final long changePosition = beginChangePosition + 1;
+
+        buffer.putLongOrdered(slotOffset + SLOT_BEGIN_CHANGE_OFFSET, changePosition);
+        UNSAFE.storeFence();
+
+        recordEncoder
+            .wrap(buffer, recordOffset(slotOffset, beginChangePosition, ringCapacity))
+            .timestamp(timestamp)
+            .recordingId(recordingId)
+            .position(beginPosition)
+            .length(length)
+            .sequenceNumber(sequenceNumber)
+            .sequenceIndex(sequenceIndex);
+
+        buffer.putLongOrdered(slotOffset + SLOT_END_CHANGE_OFFSET, changePosition);
+    }
+
+    /**
+     * Discards the time index of a session, as its sequence numbers have been reset, and frees its slot.
+     *
+     * @param fixSessionId the FIX session id.
+     */
+    void onResetSequenceNumber(final long fixSessionId)
+    {
+        final long slot = sessionIdToSlot.remove(fixSessionId);
+        if (slot == MISSING_SLOT)
+        {
+            return;
+        }
+
+        final UnsafeBuffer buffer = this.buffer;
+        final int slotOffset = slotOffset((int)slot);
+
+        // Invalidate any readers of the session before its slot can be reused
+        buffer.putIntOrdered(slotOffset + SLOT_STATE_OFFSET, FREE);
+        buffer.putLongOrdered(
+            slotOffset + SLOT_GENERATION_OFFSET, buffer.getLong(slotOffset + SLOT_GENERATION_OFFSET) + 1);
+        UNSAFE.storeFence();
+        buffer.putLong(slotOffset + SLOT_BEGIN_CHANGE_OFFSET, 0);
+        buffer.putLong(slotOffset + SLOT_END_CHANGE_OFFSET, 0);
+
+        freeSlots.addInt((int)slot);
+    }
+
+    public void close()
+    {
+        IoUtil.unmap(mappedBuffer);
+        CloseHelper.close(randomAccessFile);
+    }
+
+    private int slotOffset(final long fixSessionId)
+    {
+        final long slot = sessionIdToSlot.get(fixSessionId);
+        if (slot != MISSING_SLOT)
+        {
+            return slotOffset((int)slot);
+        }
+
+        final int newSlot;
+        if (!freeSlots.isEmpty())
+        {
+            newSlot = freeSlots.popInt();
+        }
+        else
+        {
+            newSlot = slotCount;
+            final long requiredLength = HEADER_LENGTH + (long)(newSlot + 1) * slotLength;
+            if (requiredLength > Integer.MAX_VALUE)
+            {
+                errorHandler.onError(new IllegalStateException(String.format(
+                    "Session time index %s out of space, can't index session %d, reduce the session time index " +
+                    "record capacity of %d", file, fixSessionId, ringCapacity)));
+                return NO_SLOT_OFFSET;
+            }
+
+            if (requiredLength > buffer.capacity() && !grow((int)requiredLength))
+            {
+                return NO_SLOT_OFFSET;
+            }
+
+            slotCount = newSlot + 1;
+            buffer.putIntOrdered(SLOT_COUNT_OFFSET, slotCount);
+        }
+
+        final UnsafeBuffer buffer = this.buffer;
+        final int slotOffset = slotOffset(newSlot);
+        buffer.putLong(slotOffset + SLOT_SESSION_ID_OFFSET, fixSessionId);
+        UNSAFE.storeFence();
+        buffer.putIntOrdered(slotOffset + SLOT_STATE_OFFSET, ALLOCATED);
+        sessionIdToSlot.put(fixSessionId, newSlot);
+        return slotOffset;
+    }
+
+    private int slotOffset(final int slot)
+    {
+        return HEADER_LENGTH + slot * slotLength;
+    }
+
+    private boolean grow(final int requiredLength)
+    {
+        long fileLength = buffer.capacity();
+        while (fileLength < requiredLength)
+        {
+            fileLength *= 2;
+        }
+
+        try
+        {
+            randomAccessFile.setLength(Math.min(fileLength, Integer.MAX_VALUE));
+            IoUtil.unmap(mappedBuffer);
+            map();
+            return true;
+        }
+        catch (final IOException e)
+        {
+            errorHandler.onError(e);
+            return false;
+        }
+    }
+
+    private void map() throws IOException
+    {
+        mappedBuffer = randomAccessFile.getChannel().map(READ_WRITE, 0, randomAccessFile.length());
+        buffer.wrap(mappedBuffer);
+    }
+
+    private void validateHeader()
+    {
+        final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder().wrap(buffer, 0);
+        if (headerDecoder.templateId() != SessionTimeIndexRecordEncoder.TEMPLATE_ID)
+        {
+            throw new IllegalStateException(
+                "Invalid template id in session time index " + file + ": " + headerDecoder.templateId());
+        }
+
+        final int fileRingCapacity = buffer.getInt(RING_CAPACITY_OFFSET);
+        if (fileRingCapacity != ringCapacity)
+        {
+            throw new IllegalStateException("Session time index " + file + " was created with a record capacity of " +
+                fileRingCapacity + ", but is configured with: " + ringCapacity);
+        }
+    }
+
+    // Rebuilds the writer's slot lookup and free list from the file
+    private void loadSlots()
+    {
+        final UnsafeBuffer buffer = this.buffer;
+        slotCount = buffer.getInt(SLOT_COUNT_OFFSET);
+        for (int slot = slotCount - 1; slot >= 0; slot--)
+        {
+            final int slotOffset = slotOffset(slot);
+            if (buffer.getInt(slotOffset + SLOT_STATE_OFFSET) == ALLOCATED)
+            {
+                sessionIdToSlot.put(buffer.getLong(slotOffset + SLOT_SESSION_ID_OFFSET), slot);
+            }
+            else
+            {
+                freeSlots.addInt(slot);
+            }
+        }
+    }
+
+    private static RandomAccessFile open(final File file)
+    {
+        try
+        {
+            return new RandomAccessFile(file, "rw");
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+            return null;
+        }
+    }
+}
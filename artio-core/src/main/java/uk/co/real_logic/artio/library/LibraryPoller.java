@@ -69,6 +69,7 @@ import static uk.co.real_logic.artio.library.SessionConfiguration.AUTOMATIC_INIT
 import static uk.co.real_logic.artio.messages.ConnectionType.INITIATOR;
 import static uk.co.real_logic.artio.messages.InitialAcceptedSessionOwner.ENGINE;
 import static uk.co.real_logic.artio.messages.SessionState.ACTIVE;
+import static uk.co.real_logic.artio.protocol.GatewayPublication.ALL_MESSAGE_TYPES;
 import static uk.co.real_logic.artio.session.Session.UNKNOWN_TIME;
 
 final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, AutoCloseable
@@ -223,6 +224,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
                 LibraryPoller.this,
                 timeInMs() + configuration.replyTimeoutInMs(),
                 sessionId,
+                ALL_MESSAGE_TYPES,
                 throttleWindowInMs,
                 throttleLimitOfMessages);
         }
@@ -509,6 +511,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
     long saveThrottleConfiguration(
         final long correlationId,
         final long sessionId,
+        final long messageType,
         final int throttleWindowInMs,
         final int throttleLimitOfMessages)
     {
@@ -518,6 +521,7 @@ final class LibraryPoller implements LibraryEndPointHandler, ProtocolHandler, Au
             libraryId,
             correlationId,
             sessionId,
+            messageType,
             throttleWindowInMs,
             throttleLimitOfMessages);
     }
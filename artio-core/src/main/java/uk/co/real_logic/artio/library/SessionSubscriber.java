@@ -245,12 +245,16 @@ class SessionSubscriber implements AutoCloseable, FixSessionOwner
     }
 
     public Reply<ThrottleConfigurationStatus> messageThrottle(
-        final long sessionId, final int throttleWindowInMs, final int throttleLimitOfMessages)
+        final long sessionId,
+        final long messageType,
+        final int throttleWindowInMs,
+        final int throttleLimitOfMessages)
     {
         return new ThrottleConfigurationReply(
             libraryPoller,
             libraryPoller.timeInMs() + replyTimeoutInMs,
             sessionId,
+            messageType,
             throttleWindowInMs,
             throttleLimitOfMessages);
     }
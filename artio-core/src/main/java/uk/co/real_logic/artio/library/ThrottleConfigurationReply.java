@@ -23,6 +23,7 @@ import uk.co.real_logic.artio.messages.ThrottleConfigurationStatus;
 class ThrottleConfigurationReply extends LibraryReply<ThrottleConfigurationStatus>
 {
     private final long sessionId;
+    private final long messageType;
     private final int throttleWindowInMs;
     private final int throttleLimitOfMessages;
 
@@ -30,11 +31,13 @@ class ThrottleConfigurationReply extends LibraryReply<ThrottleConfigurationStatu
         final LibraryPoller libraryPoller,
         final long latestReplyArrivalTime,
         final long sessionId,
+        final long messageType,
         final int throttleWindowInMs,
         final int throttleLimitOfMessages)
     {
         super(libraryPoller, latestReplyArrivalTime);
         this.sessionId = sessionId;
+        this.messageType = messageType;
         this.throttleWindowInMs = throttleWindowInMs;
         this.throttleLimitOfMessages = throttleLimitOfMessages;
         if (libraryPoller.isConnected())
@@ -46,7 +49,7 @@ class ThrottleConfigurationReply extends LibraryReply<ThrottleConfigurationStatu
     protected void sendMessage()
     {
         final long position = libraryPoller.saveThrottleConfiguration(
-            correlationId, sessionId, throttleWindowInMs, throttleLimitOfMessages);
+            correlationId, sessionId, messageType, throttleWindowInMs, throttleLimitOfMessages);
 
         requiresResend = position < 0;
     }
@@ -137,7 +137,12 @@ public interface EngineEndPointHandler
         Header header);
 
     Action onThrottleConfiguration(
-        int libraryId, long correlationId, long session, int throttleWindowInMs, int throttleLimitOfMessages);
+        int libraryId,
+        long correlationId,
+        long session,
+        long messageType,
+        int throttleWindowInMs,
+        int throttleLimitOfMessages);
 
     Action onSeqIndexSync(int libraryId, long sessionId, int sequenceIndex);
 
@@ -157,6 +157,7 @@ public final class EngineProtocolSubscription implements ControlledFragmentHandl
             throttleConfiguration.libraryId(),
             throttleConfiguration.correlationId(),
             throttleConfiguration.session(),
+            throttleConfiguration.messageType(),
             throttleConfiguration.throttleWindowInMs(),
             throttleConfiguration.throttleLimitOfMessages());
     }
@@ -54,6 +54,9 @@ import static uk.co.real_logic.artio.messages.FixMessageEncoder.metaDataHeaderLe
 public class GatewayPublication extends ClaimablePublication
 {
     public static final long NO_REWRITE_SEQUENCE_NUMBER = 0;
+    // Throttle configuration that applies to every message type without a throttle of its own, also the value decoded
+    // from throttle configurations sent by older libraries
+    public static final long ALL_MESSAGE_TYPES = ThrottleConfigurationEncoder.messageTypeNullValue();
 
     public static final int FRAME_SIZE = FixMessageEncoder.BLOCK_LENGTH + FixMessageDecoder.metaDataHeaderLength() +
         FixMessageDecoder.bodyHeaderLength();
@@ -1645,6 +1648,7 @@ public class GatewayPublication extends ClaimablePublication
         final int libraryId,
         final long correlationId,
         final long sessionId,
+        final long messageType,
         final int throttleWindowInMs,
         final int throttleLimitOfMessages)
     {
@@ -1663,7 +1667,8 @@ public class GatewayPublication extends ClaimablePublication
             .correlationId(correlationId)
             .session(sessionId)
             .throttleWindowInMs(throttleWindowInMs)
-            .throttleLimitOfMessages(throttleLimitOfMessages);
+            .throttleLimitOfMessages(throttleLimitOfMessages)
+            .messageType(messageType);
 
         bufferClaim.commit();
 
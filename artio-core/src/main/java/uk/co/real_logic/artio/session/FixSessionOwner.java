@@ -41,7 +41,7 @@ public interface FixSessionOwner
     void enqueueTask(BooleanSupplier task);
 
     Reply<ThrottleConfigurationStatus> messageThrottle(
-        long sessionId, int throttleWindowInMs, int throttleLimitOfMessages);
+        long sessionId, long messageType, int throttleWindowInMs, int throttleLimitOfMessages);
 
     long inboundMessagePosition();
 }
@@ -69,8 +69,10 @@ import static uk.co.real_logic.artio.library.SessionConfiguration.NO_RESEND_REQU
 import static uk.co.real_logic.artio.messages.DisconnectReason.*;
 import static uk.co.real_logic.artio.messages.MessageStatus.OK;
 import static uk.co.real_logic.artio.messages.SessionState.*;
+import static uk.co.real_logic.artio.protocol.GatewayPublication.ALL_MESSAGE_TYPES;
 import static uk.co.real_logic.artio.session.DirectSessionProxy.NO_LAST_MSG_SEQ_NUM_PROCESSED;
 import static uk.co.real_logic.artio.session.InternalSession.*;
+import static uk.co.real_logic.artio.util.MessageTypeEncoding.packMessageType;
 
 /**
  * Stores information about the current state of a session - no matter whether outbound or inbound.
@@ -575,7 +577,8 @@ public class Session
      * Override Artio's message throttle configuration for a given session.
      *
      * @param throttleWindowInMs the time window to apply the throttle over.
-     * @param throttleLimitOfMessages the maximum number of messages that can be received within the time window.
+     * @param throttleLimitOfMessages the number of messages per time window that are accepted at a sustained rate,
+     *                                which is also the largest burst of messages that is accepted.
      * @return a reply object that represents the state of the operation.
      * @throws IllegalArgumentException if either parameter is &lt; 1.
      * @see uk.co.real_logic.artio.engine.EngineConfiguration#enableMessageThrottle(int, int)
@@ -586,7 +589,29 @@ public class Session
         validateMessageThrottleOptions(throttleWindowInMs, throttleLimitOfMessages);
 
         return fixSessionOwner.messageThrottle(
-            id, throttleWindowInMs, throttleLimitOfMessages);
+            id, ALL_MESSAGE_TYPES, throttleWindowInMs, throttleLimitOfMessages);
+    }
+
+    /**
+     * Override Artio's message throttle configuration for a single message type of a given session. Messages of
+     * this type are only counted against this throttle, not the throttle configured by
+     * {@link #throttleMessagesAt(int, int)}.
+     *
+     * @param messageType the value of the MsgType field of the messages to throttle.
+     * @param throttleWindowInMs the time window to apply the throttle over.
+     * @param throttleLimitOfMessages the number of messages per time window that are accepted at a sustained rate,
+     *                                which is also the largest burst of messages that is accepted.
+     * @return a reply object that represents the state of the operation.
+     * @throws IllegalArgumentException if either parameter is &lt; 1.
+     * @see uk.co.real_logic.artio.engine.EngineConfiguration#enableMessageThrottle(String, int, int)
+     */
+    public Reply<ThrottleConfigurationStatus> throttleMessagesAt(
+        final String messageType, final int throttleWindowInMs, final int throttleLimitOfMessages)
+    {
+        validateMessageThrottleOptions(throttleWindowInMs, throttleLimitOfMessages);
+
+        return fixSessionOwner.messageThrottle(
+            id, packMessageType(messageType), throttleWindowInMs, throttleLimitOfMessages);
     }
 
     /**
@@ -25,13 +25,17 @@ public class EngineTimers
 {
     private final Timer outboundTimer;
     private final Timer sendTimer;
+    private final Timer persistenceTimer;
+    private final Timer replayQueueWaitTimer;
     private final List<Timer> timers;
 
     public EngineTimers(final EpochNanoClock clock, final AtomicCounter negativeTimestamps)
     {
         outboundTimer = new Timer(clock, "Outbound", 1, negativeTimestamps);
         sendTimer = new Timer(clock, "Send", 2, negativeTimestamps);
-        timers = Arrays.asList(outboundTimer, sendTimer);
+        persistenceTimer = new Timer(clock, "Persistence", 3, negativeTimestamps);
+        replayQueueWaitTimer = new Timer(clock, "ReplayQueueWait", 4, negativeTimestamps);
+        timers = Arrays.asList(outboundTimer, sendTimer, persistenceTimer, replayQueueWaitTimer);
     }
 
     public Timer outboundTimer()
@@ -44,6 +48,16 @@ public class EngineTimers
         return sendTimer;
     }
 
+    public Timer persistenceTimer()
+    {
+        return persistenceTimer;
+    }
+
+    public Timer replayQueueWaitTimer()
+    {
+        return replayQueueWaitTimer;
+    }
+
     public List<Timer> all()
     {
         return timers;
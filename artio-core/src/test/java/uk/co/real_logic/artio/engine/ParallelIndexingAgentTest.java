@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine;
+
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.mockito.Mockito.*;
+import static uk.co.real_logic.artio.Timing.assertEventuallyTrue;
+
+public class ParallelIndexingAgentTest
+{
+    private final Agent inboundIndexer = mock(Agent.class);
+    private final Agent outboundIndexer = mock(Agent.class);
+    private final Agent replayer = mock(Agent.class);
+    private final ErrorHandler errorHandler = mock(ErrorHandler.class);
+
+    private final ParallelIndexingAgent agent = new ParallelIndexingAgent(
+        inboundIndexer,
+        outboundIndexer,
+        new BusySpinIdleStrategy(),
+        replayer,
+        new BusySpinIdleStrategy(),
+        errorHandler,
+        Thread::new);
+
+    @Test
+    public void shouldRunOutboundIndexerAndReplayerOnTheirOwnThreads() throws Exception
+    {
+        agent.onStart();
+        agent.doWork();
+
+        verify(inboundIndexer).onStart();
+        verify(inboundIndexer).doWork();
+        assertEventuallyTrue(
+            "Failed to invoke outbound indexer and replayer",
+            () ->
+            {
+                verify(outboundIndexer, atLeastOnce()).doWork();
+                verify(replayer, atLeastOnce()).doWork();
+            });
+
+        agent.onClose();
+    }
+
+    @Test
+    public void shouldCloseReplayerAfterIndexers() throws Exception
+    {
+        agent.onStart();
+        agent.onClose();
+
+        final InOrder inOrder = inOrder(outboundIndexer, inboundIndexer, replayer);
+        inOrder.verify(outboundIndexer).onClose();
+        inOrder.verify(inboundIndexer).onClose();
+        inOrder.verify(replayer).onClose();
+        verifyNoInteractions(errorHandler);
+    }
+}
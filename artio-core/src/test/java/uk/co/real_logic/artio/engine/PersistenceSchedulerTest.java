@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine;
+
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.Test;
+import org.mockito.InOrder;
+import uk.co.real_logic.artio.timing.Timer;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class PersistenceSchedulerTest
+{
+    private static final long COMMIT_INTERVAL_IN_NS = 1_000;
+
+    private final PersistenceScheduler.Syncable first = mock(PersistenceScheduler.Syncable.class);
+    private final PersistenceScheduler.Syncable second = mock(PersistenceScheduler.Syncable.class);
+    private final ErrorHandler errorHandler = mock(ErrorHandler.class);
+    private long timeInNs = 1;
+
+    @Test
+    public void shouldGroupCommitDirtyFilesOncePerInterval() throws IOException
+    {
+        final PersistenceScheduler scheduler = newScheduler(DurabilityPolicy.INTERVAL);
+        final PersistenceScheduler.Target firstTarget = scheduler.register(first);
+        final PersistenceScheduler.Target secondTarget = scheduler.register(second);
+
+        secondTarget.onWrite();
+        firstTarget.onWrite();
+        secondTarget.onWrite();
+        verifyNoInteractions(first, second);
+
+        assertEquals(2, scheduler.doWork());
+        final InOrder inOrder = inOrder(first, second);
+        inOrder.verify(first).sync();
+        inOrder.verify(second).sync();
+
+        firstTarget.onWrite();
+        assertEquals(0, scheduler.doWork());
+
+        timeInNs += COMMIT_INTERVAL_IN_NS;
+        assertEquals(1, scheduler.doWork());
+        verify(first, times(2)).sync();
+        verify(second, times(1)).sync();
+        verifyNoInteractions(errorHandler);
+    }
+
+    @Test
+    public void shouldSyncCheckpointsImmediately() throws IOException
+    {
+        final PersistenceScheduler scheduler = newScheduler(DurabilityPolicy.INTERVAL);
+        final PersistenceScheduler.Target target = scheduler.register(first);
+
+        target.onWrite();
+        target.onCheckpoint();
+        verify(first).sync();
+
+        assertEquals(0, scheduler.doWork());
+    }
+
+    @Test
+    public void shouldSyncEachWrite() throws IOException
+    {
+        final PersistenceScheduler scheduler = newScheduler(DurabilityPolicy.PER_WRITE);
+        final PersistenceScheduler.Target target = scheduler.register(first);
+
+        target.onWrite();
+        target.onWrite();
+
+        verify(first, times(2)).sync();
+        assertEquals(0, scheduler.doWork());
+    }
+
+    @Test
+    public void shouldLeaveSyncingToOperatingSystem() throws IOException
+    {
+        final PersistenceScheduler scheduler = newScheduler(DurabilityPolicy.OS_MANAGED);
+        final PersistenceScheduler.Target target = scheduler.register(first);
+
+        target.onWrite();
+        target.onCheckpoint();
+        scheduler.doWork();
+        scheduler.onClose();
+
+        verifyNoInteractions(first);
+    }
+
+    @Test
+    public void shouldCommitDirtyFilesOnClose() throws IOException
+    {
+        final PersistenceScheduler scheduler = newScheduler(DurabilityPolicy.INTERVAL);
+        final PersistenceScheduler.Target target = scheduler.register(first);
+        scheduler.doWork();
+
+        target.onWrite();
+        scheduler.onClose();
+
+        verify(first).sync();
+    }
+
+    @Test
+    public void shouldReportSyncFailures() throws IOException
+    {
+        final IOException exception = new IOException("disk failure");
+        doThrow(exception).when(first).sync();
+        final PersistenceScheduler scheduler = newScheduler(DurabilityPolicy.PER_WRITE);
+
+        scheduler.register(first).onWrite();
+
+        verify(errorHandler).onError(exception);
+    }
+
+    private PersistenceScheduler newScheduler(final DurabilityPolicy policy)
+    {
+        final Timer timer = new Timer(() -> timeInNs, "Persistence", 3, mock(AtomicCounter.class));
+        return new PersistenceScheduler(policy, COMMIT_INTERVAL_IN_NS, () -> timeInNs, timer, errorHandler);
+    }
+}
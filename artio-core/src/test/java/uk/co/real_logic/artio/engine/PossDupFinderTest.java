@@ -44,4 +44,51 @@ public class PossDupFinderTest
         assertEquals(12, possDupFinder.bodyLengthOffset());
         assertEquals(2, possDupFinder.lengthOfBodyLength());
     }
+
+    @Test
+    public void shouldFindSameFieldsAsParser()
+    {
+        buffer.putBytes(0, FIRST_MESSAGE);
+        buffer.putBytes(FIRST_MESSAGE.length, SECOND_MESSAGE);
+
+        parser.onMessage(buffer, FIRST_MESSAGE.length, SECOND_MESSAGE.length);
+        final int possDupOffset = possDupFinder.possDupOffset();
+        final int sendingTimeOffset = possDupFinder.sendingTimeOffset();
+        final int bodyLengthOffset = possDupFinder.bodyLengthOffset();
+        final int checkSumOffset = possDupFinder.checkSumOffset();
+
+        possDupFinder.find(buffer, FIRST_MESSAGE.length, SECOND_MESSAGE.length);
+
+        assertEquals(possDupOffset, possDupFinder.possDupOffset());
+        assertEquals(sendingTimeOffset, possDupFinder.sendingTimeOffset());
+        assertEquals(24, possDupFinder.sendingTimeLength());
+        assertEquals(PossDupFinder.NO_ENTRY, possDupFinder.origSendingTimeOffset());
+        assertEquals(bodyLengthOffset, possDupFinder.bodyLengthOffset());
+        assertEquals(65, possDupFinder.bodyLength());
+        assertEquals(checkSumOffset, possDupFinder.checkSumOffset());
+        assertEquals(88, possDupFinder.checkSum());
+    }
+
+    @Test
+    public void shouldNotTrustCheckSumThatDoesNotMatchMessage()
+    {
+        buffer.putBytes(0, FIRST_MESSAGE);
+
+        possDupFinder.find(buffer, 0, FIRST_MESSAGE.length);
+
+        assertEquals(FIRST_MESSAGE.length - 4, possDupFinder.checkSumOffset());
+        assertEquals(PossDupFinder.NO_ENTRY, possDupFinder.checkSum());
+    }
+
+    @Test
+    public void shouldNotFindFieldsOfTruncatedMessage()
+    {
+        buffer.putBytes(0, FIRST_MESSAGE);
+
+        possDupFinder.find(buffer, 0, FIRST_MESSAGE.length - 5);
+
+        assertEquals(12, possDupFinder.bodyLengthOffset());
+        assertEquals(PossDupFinder.NO_ENTRY, possDupFinder.checkSumOffset());
+        assertEquals(PossDupFinder.NO_ENTRY, possDupFinder.checkSum());
+    }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited., Monotonic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import org.agrona.CloseHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.engine.EngineConfiguration;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static uk.co.real_logic.artio.TestFixtures.unusedPort;
+
+public class DefaultTcpChannelSupplierTest
+{
+    private static final int MAX_ACCEPTS_PER_POLL = 2;
+    private static final int CONNECTIONS = 5;
+
+    private final int port = unusedPort();
+    private final List<SocketChannel> clientChannels = new ArrayList<>();
+    private final List<TcpChannel> acceptedChannels = new ArrayList<>();
+    private DefaultTcpChannelSupplier channelSupplier;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        final EngineConfiguration configuration = new EngineConfiguration()
+            .bindTo("localhost", port)
+            .maxAcceptsPerPoll(MAX_ACCEPTS_PER_POLL);
+        channelSupplier = new DefaultTcpChannelSupplier(configuration);
+        channelSupplier.bind();
+    }
+
+    @After
+    public void tearDown()
+    {
+        CloseHelper.closeAll(acceptedChannels);
+        CloseHelper.closeAll(clientChannels);
+        CloseHelper.close(channelSupplier);
+    }
+
+    @Test
+    public void shouldAcceptBoundedBatchOfPendingConnectionsPerPoll() throws IOException
+    {
+        for (int i = 0; i < CONNECTIONS; i++)
+        {
+            // Blocking connects complete once the connection is in the listening socket's backlog
+            clientChannels.add(SocketChannel.open(new InetSocketAddress("localhost", port)));
+        }
+
+        pollSelector();
+        assertEquals(MAX_ACCEPTS_PER_POLL, acceptedChannels.size());
+
+        pollSelector();
+        assertEquals(2 * MAX_ACCEPTS_PER_POLL, acceptedChannels.size());
+
+        pollSelector();
+        assertEquals(CONNECTIONS, acceptedChannels.size());
+
+        pollSelector();
+        assertEquals(CONNECTIONS, acceptedChannels.size());
+    }
+
+    private void pollSelector() throws IOException
+    {
+        channelSupplier.pollSelector(0, (timeInMs, channel) -> acceptedChannels.add(channel));
+    }
+}
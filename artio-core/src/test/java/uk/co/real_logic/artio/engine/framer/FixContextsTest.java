@@ -46,6 +46,7 @@ import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.*;
 import static uk.co.real_logic.artio.engine.EngineConfiguration.DEFAULT_INITIAL_SEQUENCE_INDEX;
@@ -203,6 +204,40 @@ public class FixContextsTest
             contextsAfterRestart.onLogon(keys.get(i), fixDictionary)));
     }
 
+    @Test
+    public void growsFileWhenOutOfSpace()
+    {
+        final AtomicBuffer grownBuffer = new UnsafeBuffer(ByteBuffer.allocate(2 * BUFFER_SIZE));
+        when(mappedFile.growTo(2 * BUFFER_SIZE)).then(inv ->
+        {
+            grownBuffer.putBytes(0, buffer, 0, BUFFER_SIZE);
+            return grownBuffer;
+        });
+
+        final int numberOfWritesToOverflowBuffer = 135;
+        final List<CompositeKey> keys = IntStream
+            .range(0, numberOfWritesToOverflowBuffer)
+            .mapToObj((i) -> idStrategy.onInitiateLogon("b" + i, null, null, "a" + i, null, null))
+            .collect(toList());
+        final List<SessionContext> contexts = keys
+            .stream()
+            .map(compositeKey -> fixContexts.onLogon(compositeKey, fixDictionary))
+            .collect(toList());
+
+        verify(mappedFile).growTo(2 * BUFFER_SIZE);
+        assertThat(fixContexts.filePosition(), greaterThan(BUFFER_SIZE));
+
+        final FixContexts contextsAfterRestart = newSessionContexts(grownBuffer);
+        IntStream
+            .range(0, numberOfWritesToOverflowBuffer)
+            .forEach((i) ->
+            {
+                final SessionContext context = contexts.get(i);
+                assertValuesEqual(context, contextsAfterRestart.lookupById(context.sessionId()).getValue());
+            });
+        verify(errorHandler, never()).onError(any());
+    }
+
     @Test
     public void resetsSessionContexts()
     {
@@ -320,6 +355,20 @@ public class FixContextsTest
         assertEquals(fixtDictionary.getClass(), newContext.lastFixDictionary().getClass());
     }
 
+    @Test
+    public void shouldShareDictionaryBetweenSessionsLoadedWithTheSameDictionary()
+    {
+        final long sessionIdA = fixContexts.onLogon(aSession, fixDictionary).sessionId();
+        final long sessionIdB = fixContexts.onLogon(bSession, fixDictionary).sessionId();
+
+        fixContexts = newSessionContexts(buffer);
+
+        final FixDictionary reloadedADictionary = fixContexts.lookupById(sessionIdA).getValue().lastFixDictionary();
+        final FixDictionary reloadedBDictionary = fixContexts.lookupById(sessionIdB).getValue().lastFixDictionary();
+        assertEquals(fixDictionary.getClass(), reloadedADictionary.getClass());
+        assertSame(reloadedADictionary, reloadedBDictionary);
+    }
+
     private FixDictionary fixtDictionary()
     {
         return FixDictionary.of(FixDictionaryImpl.class);
@@ -31,6 +31,7 @@ import uk.co.real_logic.artio.engine.MessageTimingHandler;
 import uk.co.real_logic.artio.engine.SenderSequenceNumber;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicLong;
@@ -41,6 +42,7 @@ import static org.mockito.Mockito.*;
 import static uk.co.real_logic.artio.engine.EngineConfiguration.DEFAULT_SLOW_CONSUMER_TIMEOUT_IN_MS;
 import static uk.co.real_logic.artio.engine.framer.FixSenderEndPoint.*;
 import static uk.co.real_logic.artio.engine.logger.ArchiveDescriptor.alignTerm;
+import static uk.co.real_logic.artio.messages.DisconnectReason.EXCEPTION;
 import static uk.co.real_logic.artio.messages.DisconnectReason.SLOW_CONSUMER;
 import static uk.co.real_logic.artio.protocol.GatewayPublication.FRAME_SIZE;
 
@@ -54,6 +56,8 @@ public class FixSenderEndPointTest
     private static final int BODY_LENGTH = 84;
     private static final int FRAGMENT_LENGTH = alignTerm(HEADER_LENGTH + FRAME_SIZE + BODY_LENGTH);
     private static final int MAX_BYTES_IN_BUFFER = 3 * BODY_LENGTH;
+    private static final int MAX_BATCH_BYTES = 3 * (BODY_LENGTH + ENQ_MESSAGE_BLOCK_LEN);
+    private static final int MAX_SPILL_BYTES = 64 * 1024;
     public static final int INBOUND_BUFFER_LEN = 128;
     public static final int REPLAY_CORRELATION_ID = 2;
     public static final int REPLAY_CORRELATION_ID_2 = 3;
@@ -72,27 +76,42 @@ public class FixSenderEndPointTest
     private final ReproductionLogWriter reproductionLogWriter = mock(ReproductionLogWriter.class);
     private final UnsafeBuffer inboundBuffer = new UnsafeBuffer(new byte[INBOUND_BUFFER_LEN]);
     private final FixReceiverEndPoint receiverEndPoint = mock(FixReceiverEndPoint.class);
-    private final FixSenderEndPoint endPoint = new FixSenderEndPoint(
-        CONNECTION_ID,
-        LIBRARY_ID,
-        inboundPublication,
-        reproductionLogWriter,
-        tcpChannel,
-        bytesInBuffer,
-        invalidLibraryAttempts,
-        errorHandler,
-        framer,
-        MAX_BYTES_IN_BUFFER,
-        DEFAULT_SLOW_CONSUMER_TIMEOUT_IN_MS,
-        0,
-        senderSequenceNumber,
-        messageTimingHandler,
-        receiverEndPoint,
-        new FixSenderEndPoint.Formatters());
+    private FixSenderEndPoint endPoint = newEndPoint(0);
+
+    private FixSenderEndPoint newEndPoint(final int maxBatchBytes)
+    {
+        return newEndPoint(maxBatchBytes, null, 0);
+    }
+
+    private FixSenderEndPoint newEndPoint(
+        final int maxBatchBytes, final SenderSpillFile spillFile, final int maxSpillBytes)
+    {
+        return new FixSenderEndPoint(
+            CONNECTION_ID,
+            LIBRARY_ID,
+            inboundPublication,
+            reproductionLogWriter,
+            tcpChannel,
+            bytesInBuffer,
+            invalidLibraryAttempts,
+            errorHandler,
+            framer,
+            MAX_BYTES_IN_BUFFER,
+            maxBatchBytes,
+            DEFAULT_SLOW_CONSUMER_TIMEOUT_IN_MS,
+            0,
+            senderSequenceNumber,
+            messageTimingHandler,
+            receiverEndPoint,
+            new FixSenderEndPoint.Formatters(),
+            spillFile,
+            maxSpillBytes);
+    }
 
     @Before
     public void setup()
     {
+        when(tcpChannel.isOpen()).thenReturn(true);
         when(inboundPublication.tryClaim(anyInt(), any())).then(invocation ->
         {
             final BufferClaim claim = invocation.getArgument(1);
@@ -193,12 +212,337 @@ public class FixSenderEndPointTest
         verifySlowConsumerDisconnect(times(1));
     }
 
+    @Test
+    public void shouldCoalesceMessagesIntoSingleGatheringWrite()
+    {
+        givenBatching();
+
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        byteBufferNotWritten();
+        batchNotWritten();
+
+        channelWillWriteBatch(2 * BODY_LENGTH);
+        endPoint.flushBatch(0);
+
+        batchWritten(2);
+        verify(messageTimingHandler, times(2)).onMessage(anyLong(), eq(CONNECTION_ID), any(), anyInt(), anyInt());
+        assertDoesNotRequireReattempting();
+        assertBytesInBuffer(0);
+        verifyNoMoreErrors();
+    }
+
+    @Test
+    public void shouldFlushBatchWhenFull()
+    {
+        givenBatching();
+        channelWillWriteBatch(3 * BODY_LENGTH);
+
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        batchNotWritten();
+
+        onOutboundMessage(0);
+        batchWritten(3);
+
+        channelWillWriteBatch(BODY_LENGTH);
+        endPoint.flushBatch(0);
+        batchWritten(1);
+        assertBytesInBuffer(0);
+        verifyNoMoreErrors();
+    }
+
+    @Test
+    public void shouldReattemptRemainderOfPartiallyWrittenBatch()
+    {
+        givenBatching();
+        final int partialWrite = 10;
+
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+
+        channelWillWriteBatch(BODY_LENGTH + partialWrite);
+        endPoint.flushBatch(0);
+
+        batchWritten(2);
+        verify(messageTimingHandler, times(1)).onMessage(anyLong(), eq(CONNECTION_ID), any(), anyInt(), anyInt());
+        assertReattemptBytesWritten(partialWrite);
+        assertBytesInBuffer(BODY_LENGTH + ENQ_MESSAGE_BLOCK_LEN);
+
+        // Not batched whilst there are messages to reattempt
+        onOutboundMessage(0);
+        assertBytesInBuffer(2 * (BODY_LENGTH + ENQ_MESSAGE_BLOCK_LEN));
+        reset(tcpChannel);
+
+        channelWillWrite(BODY_LENGTH - partialWrite);
+        poll();
+        channelWillWrite(partialWrite);
+        poll();
+
+        assertBytesInBuffer(0);
+        assertDoesNotRequireReattempting();
+        verify(messageTimingHandler, times(3)).onMessage(anyLong(), eq(CONNECTION_ID), any(), anyInt(), anyInt());
+        verifyNoMoreErrors();
+    }
+
+    @Test
+    public void shouldDisconnectWhenBatchCannotBeWritten()
+    {
+        givenBatching();
+        channelWillFailToWriteBatch();
+
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        endPoint.flushBatch(0);
+
+        batchWritten(2);
+        verify(errorHandler).onError(any(Exception.class));
+        verify(receiverEndPoint).completeDisconnect(EXCEPTION);
+
+        endPoint.flushBatch(0);
+        batchNotWritten();
+        assertBytesInBuffer(0);
+    }
+
+    @Test
+    public void shouldFlushBatchOnClose()
+    {
+        givenBatching();
+        channelWillWriteBatch(2 * BODY_LENGTH);
+
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        endPoint.close();
+
+        batchWritten(2);
+        verifyNoMoreErrors();
+    }
+
+    @Test
+    public void shouldReportBatchThatCannotBeWrittenOnClose()
+    {
+        givenBatching();
+        channelWillFailToWriteBatch();
+
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        endPoint.close();
+
+        batchWritten(2);
+        verify(errorHandler).onError(any(Exception.class));
+        verify(receiverEndPoint, never()).completeDisconnect(any());
+    }
+
+    @Test
+    public void shouldFlushBatchBeforeDisconnect()
+    {
+        givenBatching();
+        channelWillWriteBatch(2 * BODY_LENGTH);
+
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        endPoint.flushBatchBeforeClose(0);
+
+        batchWritten(2);
+        verifyNoMoreErrors();
+    }
+
+    @Test
+    public void shouldDisconnectWhenBatchCannotBeWrittenAfterEarlierFlushBeforeDisconnect()
+    {
+        givenBatching();
+        channelWillWriteBatch(2 * BODY_LENGTH);
+
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        endPoint.flushBatchBeforeClose(0);
+        batchWritten(2);
+
+        channelWillFailToWriteBatch();
+        onOutboundMessage(0);
+        endPoint.flushBatch(0);
+
+        verify(errorHandler).onError(any(Exception.class));
+        verify(receiverEndPoint).completeDisconnect(EXCEPTION);
+    }
+
+    @Test
+    public void shouldNotFlushBatchOnCloseWhenChannelIsClosed()
+    {
+        givenBatching();
+        when(tcpChannel.isOpen()).thenReturn(false);
+
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        endPoint.close();
+
+        batchNotWritten();
+        verifyNoMoreErrors();
+    }
+
+    @Test
+    public void shouldNotFlushBatchOnCloseWhenReceiverHasDisconnected()
+    {
+        givenBatching();
+        when(receiverEndPoint.hasDisconnected()).thenReturn(true);
+
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        endPoint.close();
+
+        batchNotWritten();
+        verifyNoMoreErrors();
+    }
+
+    private SenderSpillFile givenSpilling(final int maxSpillBytes) throws IOException
+    {
+        final File file = File.createTempFile("sender", ".spill");
+        file.deleteOnExit();
+        final SenderSpillFile spillFile = new SenderSpillFile(file, errorHandler);
+        endPoint = newEndPoint(0, spillFile, maxSpillBytes);
+        return spillFile;
+    }
+
+    private void channelWillWriteInTurn(final int firstWrite, final Integer... subsequentWrites)
+    {
+        try
+        {
+            when(tcpChannel.write(any(), anyInt(), anyBoolean())).thenReturn(firstWrite, subsequentWrites);
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+        }
+    }
+
+    private void givenBatching()
+    {
+        endPoint = newEndPoint(MAX_BATCH_BYTES);
+    }
+
+    private void channelWillWriteBatch(final long bytes)
+    {
+        try
+        {
+            when(tcpChannel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenReturn(bytes);
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+        }
+    }
+
+    private void channelWillFailToWriteBatch()
+    {
+        try
+        {
+            when(tcpChannel.write(any(ByteBuffer[].class), anyInt(), anyInt()))
+                .thenThrow(new IOException("Connection reset by peer"));
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+        }
+    }
+
+    private void batchWritten(final int messageCount)
+    {
+        try
+        {
+            verify(tcpChannel).write(any(ByteBuffer[].class), eq(0), eq(messageCount));
+            clearInvocations(tcpChannel);
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+        }
+    }
+
+    private void batchNotWritten()
+    {
+        try
+        {
+            verify(tcpChannel, never()).write(any(ByteBuffer[].class), anyInt(), anyInt());
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+        }
+    }
+
     private void startValidReplay()
     {
         endPoint.onValidResendRequest(REPLAY_CORRELATION_ID);
         endPoint.onStartReplay(REPLAY_CORRELATION_ID);
     }
 
+    @Test
+    public void shouldSpillSlowConsumerToDiskRatherThanDisconnect() throws IOException
+    {
+        final SenderSpillFile spillFile = givenSpilling(MAX_SPILL_BYTES);
+
+        becomeSlowConsumer();
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+
+        assertBytesInBuffer(4 * (BODY_LENGTH + ENQ_MESSAGE_BLOCK_LEN));
+        assertTrue(spillFile.isMapped());
+        assertTrue(spillFile.file().exists());
+        verifySlowConsumerDisconnect(never());
+
+        channelWillWrite(BODY_LENGTH);
+        poll();
+
+        assertBytesInBuffer(0);
+        assertFalse(spillFile.isMapped());
+        assertFalse(spillFile.file().exists());
+        verifyNoMoreErrors();
+    }
+
+    @Test
+    public void shouldDrainSpilledMessagesAcrossPolls() throws IOException
+    {
+        final SenderSpillFile spillFile = givenSpilling(MAX_SPILL_BYTES);
+
+        becomeSlowConsumer();
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+
+        final int firstWrites = 41;
+        channelWillWriteInTurn(BODY_LENGTH, firstWrites, 0);
+        poll();
+        assertBytesInBuffer(3 * (BODY_LENGTH + ENQ_MESSAGE_BLOCK_LEN));
+        assertReattemptBytesWritten(firstWrites);
+        assertTrue(spillFile.isMapped());
+
+        onOutboundMessage(0);
+        channelWillWriteInTurn(BODY_LENGTH - firstWrites, BODY_LENGTH);
+        poll();
+
+        assertBytesInBuffer(0);
+        assertFalse(spillFile.isMapped());
+        verifySlowConsumerDisconnect(never());
+        verifyNoMoreErrors();
+    }
+
+    @Test
+    public void shouldDisconnectSlowConsumerWhenSpillFull() throws IOException
+    {
+        givenSpilling(4 * (BODY_LENGTH + ENQ_MESSAGE_BLOCK_LEN));
+
+        becomeSlowConsumer();
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        onOutboundMessage(0);
+        verifySlowConsumerDisconnect(never());
+
+        onOutboundMessage(0);
+        verifySlowConsumerDisconnect(times(1));
+    }
+
     @Test
     public void shouldDisconnectReplaySlowConsumer()
     {
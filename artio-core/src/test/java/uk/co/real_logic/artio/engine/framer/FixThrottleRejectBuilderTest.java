@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+import uk.co.real_logic.artio.dictionary.FixDictionary;
+import uk.co.real_logic.artio.fields.EpochFractionFormat;
+import uk.co.real_logic.artio.fields.UtcTimestampEncoder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static uk.co.real_logic.artio.dictionary.generation.CodecUtil.MISSING_INT;
+import static uk.co.real_logic.artio.util.MessageTypeEncoding.packMessageType;
+
+public class FixThrottleRejectBuilderTest
+{
+    private static final long NEW_ORDER_SINGLE = packMessageType("D");
+    private static final long ORDER_CANCEL_REQUEST = packMessageType("F");
+    private static final UnsafeBuffer REF_ID = new UnsafeBuffer(new byte[]{ 'A', 'B', 'C' });
+
+    private final FixDictionary fixDictionary = FixDictionary.of(FixDictionary.findDefault());
+
+    @Test
+    public void shouldRejectWithSessionLimitText()
+    {
+        final FixThrottleRejectBuilder builder = newBuilder(100, 10);
+
+        assertRejectText(builder, ORDER_CANCEL_REQUEST, "58=Throttle limit exceeded (10 in 100ms)\001");
+    }
+
+    @Test
+    public void shouldRejectWithMessageTypeLimitText()
+    {
+        final FixThrottleRejectBuilder builder = newBuilder(100, 10);
+        builder.configureThrottle(NEW_ORDER_SINGLE, 50, 2);
+
+        assertRejectText(builder, NEW_ORDER_SINGLE, "58=Throttle limit exceeded (2 in 50ms)\001");
+        assertRejectText(builder, ORDER_CANCEL_REQUEST, "58=Throttle limit exceeded (10 in 100ms)\001");
+    }
+
+    @Test
+    public void shouldRejectWithoutLimitTextWhenOnlyMessageTypesAreThrottled()
+    {
+        final FixThrottleRejectBuilder builder = newBuilder(MISSING_INT, MISSING_INT);
+        builder.configureThrottle(NEW_ORDER_SINGLE, 50, 2);
+
+        assertRejectText(builder, ORDER_CANCEL_REQUEST, "58=Throttle limit exceeded\001");
+        assertRejectText(builder, NEW_ORDER_SINGLE, "58=Throttle limit exceeded (2 in 50ms)\001");
+    }
+
+    private FixThrottleRejectBuilder newBuilder(final int throttleWindowInMs, final int throttleLimitOfMessages)
+    {
+        final FixThrottleRejectBuilder builder = new FixThrottleRejectBuilder(
+            fixDictionary,
+            mock(ErrorHandler.class),
+            1,
+            2,
+            new UtcTimestampEncoder(EpochFractionFormat.MILLISECONDS),
+            () -> 0,
+            throttleWindowInMs,
+            throttleLimitOfMessages);
+        builder.header().senderCompID("ACC").targetCompID("INIT");
+        return builder;
+    }
+
+    private void assertRejectText(
+        final FixThrottleRejectBuilder builder, final long refMsgType, final String expectedText)
+    {
+        assertTrue(builder.build(refMsgType, 1, 2, REF_ID, 0, REF_ID.capacity(), false));
+        final String message = builder.buffer().getAscii(builder.offset(), builder.length());
+        assertThat(message, containsString(expectedText));
+    }
+}
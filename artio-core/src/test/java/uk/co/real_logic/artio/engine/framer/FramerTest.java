@@ -31,6 +31,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.mockito.verification.VerificationMode;
 import uk.co.real_logic.artio.CloseChecker;
@@ -150,7 +151,7 @@ public class FramerTest
         when(outboundLibrarySubscription.imageBySessionId(anyInt())).thenReturn(normalImage);
 
         when(mockEndPointFactory.receiverEndPoint(
-            any(), connectionId.capture(), anyLong(), anyInt(), anyInt(), any()))
+            any(), connectionId.capture(), anyLong(), anyInt(), anyInt(), any(), any()))
             .thenReturn(mockReceiverEndPoint);
 
         when(mockEndPointFactory.senderEndPoint(any(), anyLong(), anyInt(), any(), any()))
@@ -196,7 +197,7 @@ public class FramerTest
             mock(CountersReader.class),
             2,
             1,
-            mock(FixCounters.class),
+            mock(FixCounters.class, RETURNS_MOCKS),
             mock(SenderSequenceNumbers.class),
             mock(AgentInvoker.class),
             null);
@@ -284,6 +285,32 @@ public class FramerTest
         verifyEndPointsDisconnected(APPLICATION_DISCONNECT);
     }
 
+    @Test
+    public void shouldFlushBatchedMessagesBeforeClosingSocketUponDisconnect() throws Exception
+    {
+        aClientConnects();
+        awaitEndpointCreation();
+
+        framer.onDisconnect(LIBRARY_ID, connectionId.getValue(), APPLICATION_DISCONNECT);
+
+        final InOrder inOrder = inOrder(mockSenderEndPoint, mockReceiverEndPoint);
+        inOrder.verify(mockSenderEndPoint).flushBatchBeforeClose(anyLong());
+        inOrder.verify(mockReceiverEndPoint).close(APPLICATION_DISCONNECT);
+    }
+
+    @Test
+    public void shouldCloseSenderEndPointsBeforeReceiverEndPointsCloseTheirSockets() throws Exception
+    {
+        aClientConnects();
+        awaitEndpointCreation();
+
+        framer.onClose();
+
+        final InOrder inOrder = inOrder(mockSenderEndPoint, mockReceiverEndPoint);
+        inOrder.verify(mockSenderEndPoint).close();
+        inOrder.verify(mockReceiverEndPoint).close(DisconnectReason.ENGINE_SHUTDOWN);
+    }
+
     @Test
     public void shouldConnectToAddress() throws Exception
     {
@@ -992,7 +1019,7 @@ public class FramerTest
     private void verifyEndpointsCreated()
     {
         verify(mockEndPointFactory).receiverEndPoint(
-            notNull(), anyLong(), anyLong(), anyInt(), eq(ENGINE_LIBRARY_ID), eq(framer));
+            notNull(), anyLong(), anyLong(), anyInt(), eq(ENGINE_LIBRARY_ID), eq(framer), notNull());
 
         verify(mockEndPointFactory).senderEndPoint(
             notNull(), anyLong(), eq(ENGINE_LIBRARY_ID), eq(framer), any());
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.EpochClock;
+import org.junit.Test;
+import uk.co.real_logic.artio.engine.logger.SequenceNumberIndexReader;
+import uk.co.real_logic.artio.protocol.GatewayPublication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.co.real_logic.artio.messages.DisconnectReason.FAILED_AUTHENTICATION;
+
+public class GatewaySessionsTest
+{
+    private final ReceiverEndPoint receiverEndPoint = mock(ReceiverEndPoint.class);
+
+    @Test
+    public void shouldAdmitEveryAuthenticatedLogonWithoutALimit()
+    {
+        final StubGatewaySessions gatewaySessions = new StubGatewaySessions(0);
+        final StubLogon[] logons = acceptedLogons(gatewaySessions, 3);
+
+        for (final StubLogon logon : logons)
+        {
+            assertFalse(logon.poll());
+            assertAdmitted(logon);
+        }
+    }
+
+    @Test
+    public void shouldDeferAuthenticatedLogonsOverTheLimitUntilTheNextPoll()
+    {
+        final StubGatewaySessions gatewaySessions = new StubGatewaySessions(2);
+        final StubLogon[] logons = acceptedLogons(gatewaySessions, 3);
+
+        for (final StubLogon logon : logons)
+        {
+            assertFalse(logon.poll());
+        }
+
+        assertAdmitted(logons[0]);
+        assertAdmitted(logons[1]);
+        assertDeferred(logons[2]);
+
+        // Still deferred until the framer's duty cycle moves on
+        assertFalse(logons[2].poll());
+        assertDeferred(logons[2]);
+
+        gatewaySessions.pollSessions(0, 0);
+
+        assertFalse(logons[2].poll());
+        assertAdmitted(logons[2]);
+    }
+
+    @Test
+    public void shouldNotDeferOrCountRejectedLogons()
+    {
+        when(receiverEndPoint.sendRejectedPendingLogon()).thenReturn(true);
+        final StubGatewaySessions gatewaySessions = new StubGatewaySessions(1);
+
+        final StubLogon rejected = gatewaySessions.newLogon();
+        rejected.reject();
+        final StubLogon accepted = gatewaySessions.newLogon();
+        accepted.accept();
+        final StubLogon rejectedOverLimit = gatewaySessions.newLogon();
+        rejectedOverLimit.reject();
+
+        assertTrue(rejected.poll());
+        assertFalse(accepted.poll());
+        assertTrue(rejectedOverLimit.poll());
+
+        assertRejected(rejected);
+        assertAdmitted(accepted);
+        assertRejected(rejectedOverLimit);
+    }
+
+    private StubLogon[] acceptedLogons(final StubGatewaySessions gatewaySessions, final int count)
+    {
+        final StubLogon[] logons = new StubLogon[count];
+        for (int i = 0; i < count; i++)
+        {
+            logons[i] = gatewaySessions.newLogon();
+            logons[i].accept();
+        }
+        return logons;
+    }
+
+    private void assertAdmitted(final StubLogon logon)
+    {
+        verify(logon.gatewaySession).onAuthenticationResult();
+        assertEquals(1, logon.authenticatedCount);
+        assertTrue(logon.isAccepted());
+    }
+
+    private void assertDeferred(final StubLogon logon)
+    {
+        verify(logon.gatewaySession, never()).onAuthenticationResult();
+        assertEquals(0, logon.authenticatedCount);
+        assertEquals(GatewaySessions.AuthenticationState.AUTHENTICATED, logon.state);
+    }
+
+    private void assertRejected(final StubLogon logon)
+    {
+        verify(logon.gatewaySession).onAuthenticationResult();
+        assertEquals(0, logon.authenticatedCount);
+        assertEquals(FAILED_AUTHENTICATION, logon.reason());
+        assertEquals(GatewaySessions.AuthenticationState.REJECTED, logon.state);
+    }
+
+    private final class StubGatewaySessions extends GatewaySessions
+    {
+        private long connectionId;
+
+        StubGatewaySessions(final int maxLogonsPerPoll)
+        {
+            super(
+                mock(EpochClock.class),
+                mock(GatewayPublication.class),
+                mock(GatewayPublication.class),
+                mock(ErrorHandler.class),
+                mock(SequenceNumberIndexReader.class),
+                mock(SequenceNumberIndexReader.class),
+                maxLogonsPerPoll);
+        }
+
+        StubLogon newLogon()
+        {
+            return new StubLogon(this, mock(GatewaySession.class), ++connectionId);
+        }
+
+        protected void setLastSequenceResetTime(final GatewaySession gatewaySession)
+        {
+        }
+    }
+
+    private final class StubLogon extends GatewaySessions.PendingAcceptorLogon
+    {
+        private final GatewaySession gatewaySession;
+        private int authenticatedCount;
+
+        StubLogon(
+            final GatewaySessions gatewaySessions, final GatewaySession gatewaySession, final long connectionId)
+        {
+            gatewaySessions.super(
+                gatewaySession, connectionId, mock(TcpChannel.class), mock(Framer.class), receiverEndPoint);
+            this.gatewaySession = gatewaySession;
+        }
+
+        protected void onAuthenticated()
+        {
+            authenticatedCount++;
+            setState(GatewaySessions.AuthenticationState.ACCEPTED);
+        }
+
+        protected void encodeRejectMessage()
+        {
+        }
+
+        protected GatewaySessions.SendRejectResult sendReject()
+        {
+            return GatewaySessions.SendRejectResult.DISCONNECTED;
+        }
+
+        public void reject()
+        {
+            reject(FAILED_AUTHENTICATION);
+        }
+
+        public String remoteAddress()
+        {
+            return "";
+        }
+    }
+}
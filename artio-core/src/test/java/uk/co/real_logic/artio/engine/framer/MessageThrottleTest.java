@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static uk.co.real_logic.artio.dictionary.generation.CodecUtil.MISSING_INT;
+
+public class MessageThrottleTest
+{
+    private static final int WINDOW_IN_MS = 100;
+    private static final int LIMIT = 4;
+    private static final long INTERVAL_IN_NS = MILLISECONDS.toNanos(WINDOW_IN_MS) / LIMIT;
+    // Negative to check that nano time values before the epoch of the clock are handled
+    private static final long START_TIME_IN_NS = -MILLISECONDS.toNanos(10);
+
+    private final MessageThrottle throttle = new MessageThrottle();
+
+    @Test
+    public void shouldNotThrottleWhenDisabled()
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            assertFalse(throttle.shouldThrottle(START_TIME_IN_NS));
+        }
+    }
+
+    @Test
+    public void shouldAllowBurstUpToLimitThenThrottle()
+    {
+        throttle.configure(WINDOW_IN_MS, LIMIT);
+
+        assertBurstAllowed(START_TIME_IN_NS);
+        assertTrue(throttle.shouldThrottle(START_TIME_IN_NS));
+        assertTrue(throttle.shouldThrottle(START_TIME_IN_NS + INTERVAL_IN_NS - 1));
+    }
+
+    @Test
+    public void shouldAllowOneMessagePerIntervalAfterBurst()
+    {
+        throttle.configure(WINDOW_IN_MS, LIMIT);
+
+        assertBurstAllowed(START_TIME_IN_NS);
+
+        final long nextTimeInNs = START_TIME_IN_NS + INTERVAL_IN_NS;
+        assertFalse(throttle.shouldThrottle(nextTimeInNs));
+        assertTrue(throttle.shouldThrottle(nextTimeInNs));
+    }
+
+    @Test
+    public void shouldAllowFullBurstAfterWindow()
+    {
+        throttle.configure(WINDOW_IN_MS, LIMIT);
+
+        assertBurstAllowed(START_TIME_IN_NS);
+        assertBurstAllowed(START_TIME_IN_NS + MILLISECONDS.toNanos(WINDOW_IN_MS));
+    }
+
+    @Test
+    public void shouldNotCountThrottledMessages()
+    {
+        throttle.configure(WINDOW_IN_MS, LIMIT);
+
+        assertBurstAllowed(START_TIME_IN_NS);
+        for (int i = 0; i < 100; i++)
+        {
+            assertTrue(throttle.shouldThrottle(START_TIME_IN_NS));
+        }
+
+        assertFalse(throttle.shouldThrottle(START_TIME_IN_NS + INTERVAL_IN_NS));
+    }
+
+    @Test
+    public void shouldNotThrottleSteadyRateAtLimit()
+    {
+        throttle.configure(WINDOW_IN_MS, LIMIT);
+
+        for (int i = 0; i < 100; i++)
+        {
+            assertFalse(throttle.shouldThrottle(START_TIME_IN_NS + i * INTERVAL_IN_NS));
+        }
+    }
+
+    @Test
+    public void shouldStopThrottlingWhenDisabled()
+    {
+        throttle.configure(WINDOW_IN_MS, LIMIT);
+        assertBurstAllowed(START_TIME_IN_NS);
+
+        throttle.configure(MISSING_INT, MISSING_INT);
+
+        assertFalse(throttle.shouldThrottle(START_TIME_IN_NS));
+    }
+
+    @Test
+    public void shouldNotGrantFreshBurstWhenReconfigured()
+    {
+        throttle.configure(WINDOW_IN_MS, 1);
+        assertFalse(throttle.shouldThrottle(START_TIME_IN_NS));
+        assertTrue(throttle.shouldThrottle(START_TIME_IN_NS));
+
+        throttle.configure(WINDOW_IN_MS, LIMIT);
+
+        assertTrue(throttle.shouldThrottle(START_TIME_IN_NS));
+        assertFalse(throttle.shouldThrottle(START_TIME_IN_NS + INTERVAL_IN_NS));
+        assertTrue(throttle.shouldThrottle(START_TIME_IN_NS + INTERVAL_IN_NS));
+    }
+
+    @Test
+    public void shouldAcceptAtMostTwiceTheLimitLessOneWithinAWindow()
+    {
+        throttle.configure(WINDOW_IN_MS, LIMIT);
+
+        final long windowEndInNs = START_TIME_IN_NS + MILLISECONDS.toNanos(WINDOW_IN_MS);
+        int accepted = 0;
+        for (long timeInNs = START_TIME_IN_NS; timeInNs < windowEndInNs; timeInNs += INTERVAL_IN_NS / 2)
+        {
+            for (int i = 0; i < LIMIT; i++)
+            {
+                if (!throttle.shouldThrottle(timeInNs))
+                {
+                    accepted++;
+                }
+            }
+        }
+
+        assertEquals(2 * LIMIT - 1, accepted);
+    }
+
+    private void assertBurstAllowed(final long timeInNs)
+    {
+        for (int i = 0; i < LIMIT; i++)
+        {
+            assertFalse("message " + i, throttle.shouldThrottle(timeInNs));
+        }
+    }
+}
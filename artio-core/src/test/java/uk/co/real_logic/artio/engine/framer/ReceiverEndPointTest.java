@@ -86,6 +86,9 @@ class ReceiverEndPointTest
         .onInitiateLogon("ACCEPTOR", "", "", "INIATOR", "", "");
     private FixReceiverEndPoint endPoint;
     private final EpochNanoClock mockClock = mock(EpochNanoClock.class);
+    private int compactionThreshold = 0;
+    private int minBufferSize = BUFFER_SIZE;
+    private ReceiveBufferPool bufferPool;
 
     private AcceptorLogonResult createSuccessfulPendingAuth()
     {
@@ -147,10 +150,24 @@ class ReceiverEndPointTest
         givenReceiverEndPoint(SESSION_ID);
     }
 
+    private void givenCompactionIsDeferred()
+    {
+        compactionThreshold = MSG_LEN;
+        givenAnAuthenticatedReceiverEndPoint();
+    }
+
+    private void givenElasticBuffers()
+    {
+        minBufferSize = MSG_LEN - 8;
+        givenAnAuthenticatedReceiverEndPoint();
+    }
+
     private void givenReceiverEndPoint(final long sessionId)
     {
+        bufferPool = new ReceiveBufferPool(
+            minBufferSize, BUFFER_SIZE, mock(AtomicCounter.class), mock(AtomicCounter.class));
         endPoint = new FixReceiverEndPoint(
-            mockChannel, BUFFER_SIZE, publication,
+            mockChannel, bufferPool, compactionThreshold, publication,
             CONNECTION_ID, sessionId, SEQUENCE_INDEX + 1, mockFixContexts,
             messagesRead, framer, errorHandler, LIBRARY_ID,
             mockGatewaySessions,
@@ -354,6 +371,130 @@ class ReceiverEndPointTest
         sessionReceivesTwoMessageAtBufferStart();
     }
 
+    @Test
+    void shouldFrameSecondSplitMessageInPlaceWhenCompactionDeferred()
+    {
+        givenCompactionIsDeferred();
+
+        theEndpointReceivesACompleteAndAnIncompleteMessage();
+        endPoint.poll();
+
+        theEndpointReceivesTheRestOfTheMessage();
+        endPoint.poll();
+
+        savesTwoFramedMessages(1);
+
+        sessionReceivesTwoMessages();
+    }
+
+    @Test
+    void shouldCompactBufferWhenFreeSpaceBelowThreshold()
+    {
+        compactionThreshold = BUFFER_SIZE - MSG_LEN;
+        givenAnAuthenticatedReceiverEndPoint();
+
+        theEndpointReceivesACompleteAndAnIncompleteMessage();
+        endPoint.poll();
+
+        theEndpointReceivesTheRestOfTheMessage();
+        endPoint.poll();
+
+        savesFramedMessages(2, OK, MSG_LEN);
+
+        sessionReceivesTwoMessageAtBufferStart();
+    }
+
+    @Test
+    void shouldGrowBufferToFrameMessageLargerThanMinimumBufferSize()
+    {
+        givenElasticBuffers();
+
+        theEndpointReceivesAnIncompleteMessage();
+        endPoint.poll();
+        assertEquals(2 * minBufferSize, bufferPool.bytesInUse());
+
+        theEndpointReceivesTheRestOfTheMessage();
+        endPoint.poll();
+
+        savesAFramedMessage();
+        sessionReceivesOneMessage();
+    }
+
+    @Test
+    void shouldKeepGrownBufferWhilstMessagesLargerThanMinimumBufferSizeKeepArriving()
+    {
+        givenElasticBuffers();
+
+        theEndpointReceivesAnIncompleteMessage();
+        endPoint.poll();
+
+        theEndpointReceivesTheRestOfTheMessage();
+        endPoint.poll();
+
+        theEndpointReceivesACompleteMessage();
+        for (int i = 0; i < 2 * FixReceiverEndPoint.SHRINK_AFTER_SMALL_DRAINS; i++)
+        {
+            endPoint.poll();
+        }
+
+        assertEquals(2 * minBufferSize, bufferPool.bytesInUse());
+        assertEquals(minBufferSize, bufferPool.bytesFree());
+    }
+
+    @Test
+    void shouldReturnGrownBufferToPoolOnceMessagesHaveFittedMinimumBufferSizeForAWhile()
+    {
+        minBufferSize = MSG_LEN + 8;
+        givenAnAuthenticatedReceiverEndPoint();
+
+        theEndpointReceivesTwoMessages(0, 8);
+        endPoint.poll();
+        assertEquals(2 * minBufferSize, bufferPool.bytesInUse());
+
+        theEndpointReceives(EG_MESSAGE, 8, MSG_LEN - 8);
+        endPoint.poll();
+
+        theEndpointReceivesACompleteMessage();
+        for (int i = 2; i < FixReceiverEndPoint.SHRINK_AFTER_SMALL_DRAINS; i++)
+        {
+            endPoint.poll();
+        }
+        assertEquals(2 * minBufferSize, bufferPool.bytesInUse());
+
+        endPoint.poll();
+        assertEquals(minBufferSize, bufferPool.bytesInUse());
+        assertEquals(2 * minBufferSize, bufferPool.bytesFree());
+    }
+
+    @Test
+    void shouldNotCountPollsWithoutDataTowardsReturningGrownBuffer()
+    {
+        givenElasticBuffers();
+
+        theEndpointReceivesAnIncompleteMessage();
+        endPoint.poll();
+
+        theEndpointReceivesTheRestOfTheMessage();
+        endPoint.poll();
+
+        theEndpointReceivesNothing();
+        for (int i = 0; i < 2 * FixReceiverEndPoint.SHRINK_AFTER_SMALL_DRAINS; i++)
+        {
+            endPoint.poll();
+        }
+
+        assertEquals(2 * minBufferSize, bufferPool.bytesInUse());
+    }
+
+    @Test
+    void shouldReturnBufferToPoolOnClose()
+    {
+        endPoint.close(ENGINE_SHUTDOWN);
+
+        assertEquals(0, bufferPool.bytesInUse());
+        assertEquals(BUFFER_SIZE, bufferPool.bytesFree());
+    }
+
     @Test
     void aClosedSocketSavesItsDisconnect() throws IOException
     {
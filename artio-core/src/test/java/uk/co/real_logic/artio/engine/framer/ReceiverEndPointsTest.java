@@ -15,15 +15,22 @@
  */
 package uk.co.real_logic.artio.engine.framer;
 
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.After;
 import org.junit.Test;
+import uk.co.real_logic.artio.messages.DisconnectReason;
+import uk.co.real_logic.artio.session.CompositeKey;
 
 import java.util.Arrays;
 import java.util.function.LongConsumer;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static uk.co.real_logic.artio.engine.framer.ReceiverEndPoints.ARTIO_ITERATION_THRESHOLD;
 import static uk.co.real_logic.artio.engine.framer.ReceiverEndPoints.disconnectILinkConnections;
 
 public class ReceiverEndPointsTest
@@ -31,6 +38,142 @@ public class ReceiverEndPointsTest
     private static final int LIBRARY_ID = 1;
 
     private final LongConsumer removeFunc = mock(LongConsumer.class);
+    private final CompositeKey hotSessionKey = mock(CompositeKey.class);
+    private final AtomicCounter busyPollReads = mock(AtomicCounter.class);
+    private final AtomicCounter busyPollEmptyReads = mock(AtomicCounter.class);
+    private final AtomicCounter selectedReads = mock(AtomicCounter.class);
+    private final AtomicCounter selectedEmptyReads = mock(AtomicCounter.class);
+
+    private final ReceiverEndPoints receiverEndPoints = new ReceiverEndPoints(
+        mock(ErrorHandler.class),
+        mock(ReceiveBufferPool.class),
+        sessionKey -> sessionKey == hotSessionKey,
+        busyPollReads,
+        busyPollEmptyReads,
+        selectedReads,
+        selectedEmptyReads);
+
+    @After
+    public void close()
+    {
+        receiverEndPoints.close();
+    }
+
+    @Test
+    public void shouldBusyPollHotSessionsWithoutRegisteringThem() throws Exception
+    {
+        final FixReceiverEndPoint hotEndPoint = newEndPoint(1, hotSessionKey);
+        final FixReceiverEndPoint normalEndPoint = newEndPoint(2, mock(CompositeKey.class));
+        when(hotEndPoint.poll()).thenReturn(0, 100);
+
+        receiverEndPoints.add(hotEndPoint);
+        receiverEndPoints.add(normalEndPoint);
+
+        assertEquals(0, receiverEndPoints.pollEndPoints());
+        assertEquals(100, receiverEndPoints.pollEndPoints());
+
+        verify(hotEndPoint, never()).register(any());
+        verify(normalEndPoint).register(any());
+        verify(hotEndPoint, times(2)).poll();
+        // Both end points are read on each poll, the normal one because there are too few to need the selector
+        verify(busyPollReads, times(2)).getAndAddOrdered(2);
+        verify(busyPollEmptyReads).getAndAddOrdered(2);
+        verify(busyPollEmptyReads).getAndAddOrdered(1);
+        verifyNoInteractions(selectedReads, selectedEmptyReads);
+        assertEquals(2, receiverEndPoints.size());
+    }
+
+    @Test
+    public void shouldCountReadsWithoutSelectionAsBusyPollReads()
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            receiverEndPoints.add(newEndPoint(i + 1, mock(CompositeKey.class)));
+        }
+
+        receiverEndPoints.pollEndPoints();
+
+        verify(busyPollReads).getAndAddOrdered(3);
+        verify(busyPollEmptyReads).getAndAddOrdered(3);
+        verifyNoInteractions(selectedReads, selectedEmptyReads);
+    }
+
+    @Test
+    public void shouldBusyPollHotSessionsOnceAuthenticated() throws Exception
+    {
+        final FixReceiverEndPoint hotEndPoint = newEndPoint(1, hotSessionKey);
+        when(hotEndPoint.requiresAuthentication()).thenReturn(true);
+
+        receiverEndPoints.add(hotEndPoint);
+        receiverEndPoints.pollEndPoints();
+        verifyNoInteractions(busyPollReads);
+
+        receiverEndPoints.receiverEndPointPollingOptional(1, true);
+        receiverEndPoints.pollEndPoints();
+
+        verify(hotEndPoint, never()).register(any());
+        verify(busyPollReads).getAndAddOrdered(1);
+    }
+
+    @Test
+    public void shouldPollEndPointsWithoutSelectionOnlyWhileTheirChannelsHoldData() throws Exception
+    {
+        final FixReceiverEndPoint heldDataEndPoint = newEndPoint(1, mock(CompositeKey.class));
+        when(heldDataEndPoint.requiresBusyPolling()).thenReturn(true, true, false);
+        receiverEndPoints.add(heldDataEndPoint);
+
+        // Enough endpoints that they aren't all polled on each duty cycle
+        final FixReceiverEndPoint[] otherEndPoints = new FixReceiverEndPoint[ARTIO_ITERATION_THRESHOLD];
+        for (int i = 0; i < otherEndPoints.length; i++)
+        {
+            otherEndPoints[i] = newEndPoint(i + 2, mock(CompositeKey.class));
+            receiverEndPoints.add(otherEndPoints[i]);
+        }
+
+        receiverEndPoints.pollEndPoints();
+        receiverEndPoints.pollEndPoints();
+        receiverEndPoints.pollEndPoints();
+
+        verify(heldDataEndPoint).register(any());
+        verify(heldDataEndPoint, times(2)).poll();
+        verify(busyPollReads, times(2)).getAndAddOrdered(1);
+        verifyNoInteractions(selectedReads, selectedEmptyReads);
+        for (final FixReceiverEndPoint otherEndPoint : otherEndPoints)
+        {
+            verify(otherEndPoint, never()).poll();
+        }
+    }
+
+    @Test
+    public void shouldNotPollRemovedEndPointsThatHoldData()
+    {
+        final FixReceiverEndPoint heldDataEndPoint = newEndPoint(1, mock(CompositeKey.class));
+        when(heldDataEndPoint.requiresBusyPolling()).thenReturn(true);
+        receiverEndPoints.add(heldDataEndPoint);
+        for (int i = 0; i < ARTIO_ITERATION_THRESHOLD; i++)
+        {
+            receiverEndPoints.add(newEndPoint(i + 2, mock(CompositeKey.class)));
+        }
+
+        receiverEndPoints.removeConnection(1, DisconnectReason.REMOTE_DISCONNECT);
+        receiverEndPoints.pollEndPoints();
+
+        verify(heldDataEndPoint, never()).poll();
+    }
+
+    @Test
+    public void shouldRemoveBusyPolledEndPoints()
+    {
+        final FixReceiverEndPoint hotEndPoint = newEndPoint(1, hotSessionKey);
+
+        receiverEndPoints.add(hotEndPoint);
+        receiverEndPoints.removeConnection(1, DisconnectReason.REMOTE_DISCONNECT);
+        receiverEndPoints.pollEndPoints();
+
+        verify(hotEndPoint).close(DisconnectReason.REMOTE_DISCONNECT);
+        verify(hotEndPoint, never()).poll();
+        assertEquals(0, receiverEndPoints.size());
+    }
 
     @Test
     public void shouldRemoveILink3EndPoints()
@@ -81,6 +224,14 @@ public class ReceiverEndPointsTest
         return endPoints;
     }
 
+    private FixReceiverEndPoint newEndPoint(final long connectionId, final CompositeKey sessionKey)
+    {
+        final FixReceiverEndPoint endPoint = mock(FixReceiverEndPoint.class);
+        when(endPoint.connectionId()).thenReturn(connectionId);
+        when(endPoint.sessionKey()).thenReturn(sessionKey);
+        return endPoint;
+    }
+
     private void isOwned(final ReceiverEndPoint[] endPoints, final int i)
     {
         when(endPoints[i].libraryId()).thenReturn(LIBRARY_ID);
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.framer;
+
+import org.agrona.CloseHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TlsTcpChannelTest
+{
+    private static final char[] PASSWORD = "artio-test".toCharArray();
+    private static final long TIMEOUT_IN_NS = TimeUnit.SECONDS.toNanos(10);
+
+    private static SSLContext sslContext;
+
+    private final TlsBufferPool bufferPool = new TlsBufferPool(64 * 1024);
+
+    private ServerSocketChannel serverSocketChannel;
+    private TlsTcpChannel acceptor;
+    private TlsTcpChannel initiator;
+
+    @BeforeClass
+    public static void createSslContext() throws Exception
+    {
+        // Self signed key pair, generated with the JDK's keytool as there's no public API for creating certificates
+        final File keyStoreFile = File.createTempFile("artio-tls-test", ".p12");
+        keyStoreFile.deleteOnExit();
+        assertTrue(keyStoreFile.delete());
+
+        final String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+        final Process process = new ProcessBuilder(
+            keytool, "-genkeypair",
+            "-alias", "artio",
+            "-keyalg", "EC",
+            "-keysize", "256",
+            "-dname", "CN=localhost",
+            "-validity", "2",
+            "-storetype", "PKCS12",
+            "-keystore", keyStoreFile.getAbsolutePath(),
+            "-storepass", new String(PASSWORD),
+            "-keypass", new String(PASSWORD))
+            .inheritIO()
+            .start();
+        assertEquals(0, process.waitFor());
+
+        final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = new FileInputStream(keyStoreFile))
+        {
+            keyStore.load(in, PASSWORD);
+        }
+
+        final KeyManagerFactory keyManagerFactory =
+            KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, PASSWORD);
+        final TrustManagerFactory trustManagerFactory =
+            TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+
+        sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        final SocketChannel initiatorSocketChannel = SocketChannel.open(serverSocketChannel.getLocalAddress());
+        final SocketChannel acceptorSocketChannel = serverSocketChannel.accept();
+        initiatorSocketChannel.configureBlocking(false);
+        acceptorSocketChannel.configureBlocking(false);
+
+        final SSLEngine acceptorEngine = sslContext.createSSLEngine();
+        acceptorEngine.setUseClientMode(false);
+        acceptor = new TlsTcpChannel(acceptorSocketChannel, acceptorEngine, bufferPool);
+
+        final SSLEngine initiatorEngine = sslContext.createSSLEngine("localhost", 0);
+        initiatorEngine.setUseClientMode(true);
+        initiator = new TlsTcpChannel(initiatorSocketChannel, initiatorEngine, bufferPool);
+    }
+
+    @After
+    public void tearDown()
+    {
+        CloseHelper.closeAll(initiator, acceptor, serverSocketChannel);
+    }
+
+    @Test
+    public void shouldNotWriteUntilHandshakeComplete() throws IOException
+    {
+        assertEquals(0, initiator.write(message("8=FIX.4.4\u0001"), TcpChannel.UNKNOWN_SEQ_NUM, false));
+    }
+
+    @Test
+    public void shouldExchangeMessagesInBothDirections() throws IOException
+    {
+        assertTransferred(initiator, acceptor, "8=FIX.4.4\u00019=5\u000135=A\u000110=000\u0001", 1024);
+        assertTransferred(acceptor, initiator, "8=FIX.4.4\u00019=5\u000135=0\u000110=000\u0001", 1024);
+        assertTransferred(initiator, acceptor, "8=FIX.4.4\u00019=5\u000135=1\u000110=000\u0001", 1024);
+    }
+
+    @Test
+    public void shouldTransferMessagesLargerThanARecord() throws IOException
+    {
+        assertTransferred(initiator, acceptor, largeMessage(100 * 1024), 256 * 1024);
+    }
+
+    @Test
+    public void shouldReadIntoBufferSmallerThanARecord() throws IOException
+    {
+        assertTransferred(initiator, acceptor, largeMessage(8 * 1024), 100);
+    }
+
+    @Test
+    public void shouldOnlyRequireBusyPollingWhileHandshakingOrHoldingData() throws IOException
+    {
+        assertTrue(initiator.requiresBusyPolling());
+        assertTrue(acceptor.requiresBusyPolling());
+
+        assertTransferred(initiator, acceptor, "8=FIX.4.4\u0001", 1024);
+        assertTransferred(acceptor, initiator, "8=FIX.4.4\u0001", 1024);
+        assertFalse(initiator.requiresBusyPolling());
+        assertFalse(acceptor.requiresBusyPolling());
+
+        final ByteBuffer src = message(largeMessage(8 * 1024));
+        final long deadline = System.nanoTime() + TIMEOUT_IN_NS;
+        while (src.hasRemaining())
+        {
+            checkDeadline(deadline);
+            final int position = src.position();
+            src.position(position + initiator.write(src, TcpChannel.UNKNOWN_SEQ_NUM, false));
+        }
+
+        final ByteBuffer dst = ByteBuffer.allocateDirect(100);
+        while (acceptor.read(dst) == 0)
+        {
+            checkDeadline(deadline);
+        }
+
+        // The rest of the decrypted record is held by the channel where the selector can't see it
+        assertTrue(acceptor.requiresBusyPolling());
+    }
+
+    @Test
+    public void shouldDetectDisconnect() throws IOException
+    {
+        assertTransferred(initiator, acceptor, "8=FIX.4.4\u0001", 1024);
+
+        initiator.close();
+
+        final ByteBuffer dst = ByteBuffer.allocateDirect(1024);
+        final long deadline = System.nanoTime() + TIMEOUT_IN_NS;
+        while (acceptor.read(dst) != ReceiverEndPoint.SOCKET_DISCONNECTED)
+        {
+            checkDeadline(deadline);
+        }
+    }
+
+    private void assertTransferred(
+        final TcpChannel sender, final TcpChannel receiver, final String message, final int readBufferSize)
+        throws IOException
+    {
+        final ByteBuffer src = message(message);
+        final int length = src.remaining();
+        final ByteBuffer dst = ByteBuffer.allocateDirect(readBufferSize);
+        final byte[] received = new byte[length];
+        final ByteBuffer scratch = ByteBuffer.allocateDirect(1024);
+
+        int receivedLength = 0;
+        final long deadline = System.nanoTime() + TIMEOUT_IN_NS;
+        while (receivedLength < length)
+        {
+            checkDeadline(deadline);
+
+            if (src.hasRemaining())
+            {
+                final int position = src.position();
+                final int written = sender.write(src, TcpChannel.UNKNOWN_SEQ_NUM, false);
+                assertTrue(written >= 0);
+                // Callers reattempt from the first unwritten byte
+                src.position(position + written);
+            }
+
+            // Drives the handshake from the sender's side
+            scratch.clear();
+            assertEquals(0, sender.read(scratch));
+
+            final int read = receiver.read(dst);
+            assertTrue(read >= 0);
+            dst.flip();
+            dst.get(received, receivedLength, read);
+            dst.clear();
+            receivedLength += read;
+        }
+
+        assertEquals(message, new String(received, US_ASCII));
+    }
+
+    private static String largeMessage(final int minLength)
+    {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < minLength; i++)
+        {
+            builder.append("58=").append(i).append('\u0001');
+        }
+        return builder.toString();
+    }
+
+    private static ByteBuffer message(final String message)
+    {
+        final byte[] bytes = message.getBytes(US_ASCII);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+    private static void checkDeadline(final long deadline)
+    {
+        if (System.nanoTime() > deadline)
+        {
+            fail("Timed out");
+        }
+    }
+}
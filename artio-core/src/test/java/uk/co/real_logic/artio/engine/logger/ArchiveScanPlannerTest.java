@@ -45,5 +45,29 @@ public class ArchiveScanPlannerTest
         final IndexQuery indexQuery = ArchiveScanPlanner.extractIndexQuery(queryPredicate);
         assertEquals(epochStartTimeInNs, indexQuery.beginTimestampInclusive());
         assertEquals(epochEndTimeInNs, indexQuery.endTimestampExclusive());
+        assertEquals(IndexQuery.NO_SESSION, indexQuery.sessionId());
+    }
+
+    @Test
+    public void shouldExtractSessionThatEveryMessageMustBeFrom()
+    {
+        final long sessionId = 1;
+        final FixMessagePredicate timeFilter = between(100, 200);
+
+        assertEquals(sessionId, extractSessionId(sessionOf(sessionId).and(timeFilter)));
+        assertEquals(sessionId, extractSessionId(
+            sessionOf(sessionId).and(sessionOf(sessionId + 1).or(messageTypeOf(1))).and(timeFilter)));
+        assertEquals(IndexQuery.NO_SESSION, extractSessionId(sessionOf(sessionId).or(timeFilter)));
+        assertEquals(IndexQuery.NO_SESSION, extractSessionId(
+            sessionOf(sessionId).or(sessionOf(sessionId + 1)).and(timeFilter)));
+    }
+
+    private long extractSessionId(final FixMessagePredicate predicate)
+    {
+        final FixMessageConsumer consumer = (message, buffer, offset, length, header) ->
+        {
+        };
+
+        return ArchiveScanPlanner.extractIndexQuery(filterBy(consumer, predicate)).sessionId();
     }
 }
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.archive.Archive;
+import io.aeron.archive.client.AeronArchive;
+import io.aeron.archive.client.RecordingDescriptorConsumer;
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.aeron.archive.client.AeronArchive.NULL_POSITION;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
+import static io.aeron.logbuffer.FrameDescriptor.*;
+import static io.aeron.protocol.DataHeaderFlyweight.HDR_TYPE_DATA;
+import static io.aeron.protocol.DataHeaderFlyweight.HDR_TYPE_PAD;
+import static io.aeron.protocol.DataHeaderFlyweight.HEADER_LENGTH;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ArchiveSegmentReaderTest
+{
+    private static final long RECORDING_ID = 1;
+    private static final long MISSING_RECORDING_ID = 2;
+    private static final int TERM_LENGTH = 64 * 1024;
+    private static final int MESSAGE_LENGTH = 100;
+    private static final int FRAME_LENGTH = HEADER_LENGTH + MESSAGE_LENGTH;
+    private static final int ALIGNED_FRAME_LENGTH = 160;
+
+    private final File archiveDir = new File(IoUtil.tmpDirName(), "archive-segment-reader-test");
+    private final AeronArchive aeronArchive = mock(AeronArchive.class);
+    private final ErrorHandler errorHandler = mock(ErrorHandler.class);
+    private final UnsafeBuffer segment = new UnsafeBuffer(new byte[TERM_LENGTH]);
+    private final List<Byte> messages = new ArrayList<>();
+    private final ControlledFragmentHandler handler = (buffer, offset, length, header) ->
+    {
+        assertEquals(MESSAGE_LENGTH, length);
+        messages.add(buffer.getByte(offset));
+        return CONTINUE;
+    };
+
+    private long stopPosition = TERM_LENGTH * 2;
+    private ArchiveSegmentReader.SegmentReplay segmentReplay;
+
+    @Before
+    public void setUp()
+    {
+        IoUtil.delete(archiveDir, true);
+        IoUtil.ensureDirectoryExists(archiveDir, archiveDir.getName());
+
+        when(aeronArchive.listRecording(eq(RECORDING_ID), any())).then(invocation ->
+        {
+            final RecordingDescriptorConsumer consumer = invocation.getArgument(1);
+            consumer.onRecordingDescriptor(
+                0, 0, RECORDING_ID, 0, 0, 0, stopPosition, 0, TERM_LENGTH, TERM_LENGTH, 1408, 3, 4,
+                "aeron:ipc", "aeron:ipc", "");
+            return 1;
+        });
+
+        segmentReplay = new ArchiveSegmentReader(archiveDir, aeronArchive, errorHandler).newReplay();
+    }
+
+    @After
+    public void tearDown()
+    {
+        segmentReplay.close();
+        IoUtil.delete(archiveDir, true);
+        verifyNoInteractions(errorHandler);
+    }
+
+    @Test
+    public void shouldReadFramesOfRange() throws IOException
+    {
+        putFrames(0, 3, UNFRAGMENTED);
+        writeSegment(0, TERM_LENGTH);
+
+        assertTrue(segmentReplay.start(RECORDING_ID, ALIGNED_FRAME_LENGTH, ALIGNED_FRAME_LENGTH * 3));
+        assertTrue(segmentReplay.poll(handler));
+
+        assertTrue(segmentReplay.isComplete());
+        assertMessages(1, 2);
+    }
+
+    @Test
+    public void shouldContinueFromAbortedFrame() throws IOException
+    {
+        putFrames(0, 2, UNFRAGMENTED);
+        writeSegment(0, TERM_LENGTH);
+
+        final boolean[] aborted = new boolean[1];
+        final ControlledFragmentHandler abortOnce = (buffer, offset, length, header) ->
+        {
+            if (!aborted[0])
+            {
+                aborted[0] = true;
+                return ABORT;
+            }
+            return handler.onFragment(buffer, offset, length, header);
+        };
+
+        assertTrue(segmentReplay.start(RECORDING_ID, 0, ALIGNED_FRAME_LENGTH * 2));
+        assertTrue(segmentReplay.poll(abortOnce));
+        assertFalse(segmentReplay.isComplete());
+        assertTrue(messages.isEmpty());
+
+        assertTrue(segmentReplay.poll(abortOnce));
+        assertTrue(segmentReplay.isComplete());
+        assertMessages(0, 1);
+    }
+
+    @Test
+    public void shouldNotReadRecordingWithoutSegmentFile()
+    {
+        assertFalse(segmentReplay.start(RECORDING_ID, 0, ALIGNED_FRAME_LENGTH));
+        assertFalse(segmentReplay.start(MISSING_RECORDING_ID, 0, ALIGNED_FRAME_LENGTH));
+    }
+
+    @Test
+    public void shouldResumeFromStartOfMessageWhenNextSegmentIsMissing() throws IOException
+    {
+        putFrames(0, 1, UNFRAGMENTED);
+        final int fragmentOffset = TERM_LENGTH - ALIGNED_FRAME_LENGTH;
+        putFrame(ALIGNED_FRAME_LENGTH, fragmentOffset - ALIGNED_FRAME_LENGTH, HDR_TYPE_PAD, UNFRAGMENTED);
+        putFrame(fragmentOffset, FRAME_LENGTH, HDR_TYPE_DATA, BEGIN_FRAG_FLAG);
+        writeSegment(0, TERM_LENGTH);
+
+        assertTrue(segmentReplay.start(RECORDING_ID, 0, TERM_LENGTH + ALIGNED_FRAME_LENGTH));
+        assertFalse(segmentReplay.poll(handler));
+
+        assertEquals(fragmentOffset, segmentReplay.resumePosition());
+        assertEquals(2, messages.size());
+    }
+
+    @Test
+    public void shouldNotReadBeyondEndOfSegmentFileThatIsBeingWritten() throws IOException
+    {
+        putFrames(0, 3, UNFRAGMENTED);
+        writeSegment(0, ALIGNED_FRAME_LENGTH * 2);
+
+        assertTrue(segmentReplay.start(RECORDING_ID, 0, ALIGNED_FRAME_LENGTH * 3));
+        assertFalse(segmentReplay.poll(handler));
+
+        assertEquals(ALIGNED_FRAME_LENGTH * 2, segmentReplay.resumePosition());
+        assertMessages(0, 1);
+    }
+
+    @Test
+    public void shouldOnlyReadActiveRecordingUpToRecordingPosition() throws IOException
+    {
+        givenActiveRecording(ALIGNED_FRAME_LENGTH * 2);
+        // The third frame is in the segment file, but may still be being written
+        putFrames(0, 3, UNFRAGMENTED);
+        writeSegment(0, TERM_LENGTH);
+
+        assertTrue(segmentReplay.start(RECORDING_ID, 0, ALIGNED_FRAME_LENGTH * 3));
+        assertFalse(segmentReplay.poll(handler));
+
+        assertEquals(ALIGNED_FRAME_LENGTH * 2, segmentReplay.resumePosition());
+        assertMessages(0, 1);
+        assertFalse(segmentReplay.start(RECORDING_ID, ALIGNED_FRAME_LENGTH * 2, ALIGNED_FRAME_LENGTH * 3));
+    }
+
+    @Test
+    public void shouldReadFramesOfActiveRecordingOnceRecordingPositionHasPassedThem() throws IOException
+    {
+        givenActiveRecording(ALIGNED_FRAME_LENGTH);
+        putFrames(0, 3, UNFRAGMENTED);
+        writeSegment(0, TERM_LENGTH);
+
+        assertTrue(segmentReplay.start(RECORDING_ID, 0, ALIGNED_FRAME_LENGTH * 3));
+        assertFalse(segmentReplay.poll(handler));
+        assertMessages(0);
+
+        when(aeronArchive.getRecordingPosition(RECORDING_ID)).thenReturn((long)ALIGNED_FRAME_LENGTH * 3);
+
+        assertTrue(segmentReplay.start(RECORDING_ID, ALIGNED_FRAME_LENGTH, ALIGNED_FRAME_LENGTH * 3));
+        assertTrue(segmentReplay.poll(handler));
+
+        assertTrue(segmentReplay.isComplete());
+        assertMessages(0, 1, 2);
+    }
+
+    @Test
+    public void shouldReadUpToStopPositionOfRecordingThatStopsWhilstBeingRead() throws IOException
+    {
+        givenActiveRecording(ALIGNED_FRAME_LENGTH);
+        putFrames(0, 3, UNFRAGMENTED);
+        writeSegment(0, TERM_LENGTH);
+
+        assertTrue(segmentReplay.start(RECORDING_ID, 0, ALIGNED_FRAME_LENGTH * 3));
+        when(aeronArchive.getRecordingPosition(RECORDING_ID)).thenReturn(NULL_POSITION);
+        when(aeronArchive.getStopPosition(RECORDING_ID)).thenReturn((long)ALIGNED_FRAME_LENGTH * 2);
+        assertFalse(segmentReplay.poll(handler));
+
+        assertEquals(ALIGNED_FRAME_LENGTH * 2, segmentReplay.resumePosition());
+        assertMessages(0, 1);
+    }
+
+    private void givenActiveRecording(final long recordingPosition)
+    {
+        stopPosition = NULL_POSITION;
+        when(aeronArchive.getRecordingPosition(RECORDING_ID)).thenReturn(recordingPosition);
+    }
+
+    private void putFrames(final int fromIndex, final int toIndex, final byte flags)
+    {
+        for (int index = fromIndex; index < toIndex; index++)
+        {
+            final int frameOffset = index * ALIGNED_FRAME_LENGTH;
+            putFrame(frameOffset, FRAME_LENGTH, HDR_TYPE_DATA, flags);
+            segment.setMemory(frameOffset + HEADER_LENGTH, MESSAGE_LENGTH, (byte)index);
+        }
+    }
+
+    private void putFrame(final int frameOffset, final int frameLength, final int type, final byte flags)
+    {
+        frameType(segment, frameOffset, type);
+        frameFlags(segment, frameOffset, flags);
+        frameTermOffset(segment, frameOffset);
+        frameLengthOrdered(segment, frameOffset, frameLength);
+    }
+
+    private void writeSegment(final long segmentBasePosition, final int length) throws IOException
+    {
+        final File file = new File(archiveDir, Archive.segmentFileName(RECORDING_ID, segmentBasePosition));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.write(segment.byteArray(), 0, length);
+        }
+    }
+
+    private void assertMessages(final int... indices)
+    {
+        final List<Byte> expected = new ArrayList<>();
+        for (final int index : indices)
+        {
+            expected.add((byte)index);
+        }
+        assertEquals(expected, messages);
+    }
+}
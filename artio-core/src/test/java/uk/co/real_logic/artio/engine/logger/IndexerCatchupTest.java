@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.Aeron;
+import io.aeron.ExclusivePublication;
+import io.aeron.Image;
+import io.aeron.Subscription;
+import io.aeron.archive.ArchivingMediaDriver;
+import io.aeron.archive.client.AeronArchive;
+import io.aeron.archive.codecs.SourceLocation;
+import org.agrona.CloseHelper;
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.YieldingIdleStrategy;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import uk.co.real_logic.artio.engine.CompletionPosition;
+import uk.co.real_logic.artio.engine.MappedFile;
+import uk.co.real_logic.artio.engine.SequenceNumberExtractor;
+import uk.co.real_logic.artio.engine.framer.FakeEpochClock;
+import uk.co.real_logic.artio.messages.FixPProtocolType;
+
+import java.io.File;
+import java.util.concurrent.FutureTask;
+
+import static io.aeron.CommonContext.IPC_CHANNEL;
+import static io.aeron.archive.client.AeronArchive.NULL_POSITION;
+import static java.util.Collections.singletonList;
+import static org.agrona.IoUtil.deleteIfExists;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static uk.co.real_logic.artio.TestFixtures.*;
+import static uk.co.real_logic.artio.engine.EngineConfiguration.DEFAULT_INDEX_CHECKSUM_ENABLED;
+import static uk.co.real_logic.artio.engine.EngineConfiguration.DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS;
+import static uk.co.real_logic.artio.engine.SessionInfo.UNK_SESSION;
+import static uk.co.real_logic.artio.engine.logger.SequenceNumberIndexDescriptor.*;
+
+public class IndexerCatchupTest extends AbstractLogTest
+{
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int REPLAY_STREAM_ID = 1000;
+    private static final int FIRST_LAST_SEQUENCE_NUMBER = 200;
+    private static final int SECOND_LAST_SEQUENCE_NUMBER = 300;
+
+    private final ErrorHandler errorHandler = mock(ErrorHandler.class);
+    private final FakeEpochClock clock = new FakeEpochClock();
+
+    private ArchivingMediaDriver mediaDriver;
+    private AeronArchive aeronArchive;
+    private Aeron aeron;
+    private RecordingIdLookup recordingIdLookup;
+    private CatchupStream first;
+    private CatchupStream second;
+
+    @Before
+    public void setUp()
+    {
+        mediaDriver = launchMediaDriver();
+        aeronArchive = AeronArchive.connect(aeronArchiveContext());
+        aeron = aeronArchive.context().aeron();
+        recordingIdLookup = new RecordingIdLookup(YieldingIdleStrategy.INSTANCE, aeron.countersReader());
+
+        first = new CatchupStream(STREAM_ID, SESSION_ID);
+        second = new CatchupStream(STREAM_ID + 1, SESSION_ID_2);
+    }
+
+    @After
+    public void tearDown()
+    {
+        CloseHelper.closeAll(first, second);
+
+        verify(errorHandler, never()).onError(any());
+
+        CloseHelper.close(aeronArchive);
+        cleanupMediaDriver(mediaDriver);
+
+        Mockito.framework().clearInlineMocks();
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldCatchUpTheIndicesOfSeveralStreamsInParallel() throws Exception
+    {
+        first.indexMessage(1);
+        second.indexMessage(1);
+
+        first.writeMessagesUpTo(FIRST_LAST_SEQUENCE_NUMBER);
+        second.writeMessagesUpTo(SECOND_LAST_SEQUENCE_NUMBER);
+
+        first.stopRecording();
+        second.stopRecording();
+
+        final FutureTask<Void> secondCatchup = new FutureTask<>(second::catchIndexUp, null);
+        final Thread secondCatchupThread = new Thread(secondCatchup, "second-catchup");
+        secondCatchupThread.start();
+        first.catchIndexUp();
+        secondCatchup.get();
+
+        assertEquals(FIRST_LAST_SEQUENCE_NUMBER, first.reader.lastKnownSequenceNumber(SESSION_ID));
+        assertEquals(SECOND_LAST_SEQUENCE_NUMBER, second.reader.lastKnownSequenceNumber(SESSION_ID_2));
+        assertEquals(UNK_SESSION, first.reader.lastKnownSequenceNumber(SESSION_ID_2));
+        assertEquals(UNK_SESSION, second.reader.lastKnownSequenceNumber(SESSION_ID));
+    }
+
+    private final class CatchupStream implements AutoCloseable
+    {
+        private final int streamId;
+        private final long sessionId;
+        private final String indexFilePath;
+        private final ExclusivePublication publication;
+        private final Subscription subscription;
+        private final SequenceNumberIndexWriter writer;
+        private final SequenceNumberIndexReader reader;
+        private final Indexer indexer;
+
+        CatchupStream(final int streamId, final long sessionId)
+        {
+            this.streamId = streamId;
+            this.sessionId = sessionId;
+            indexFilePath = IoUtil.tmpDirName() + "/IndexerCatchupTest-" + streamId;
+            deleteFiles();
+
+            aeronArchive.startRecording(IPC_CHANNEL, streamId, SourceLocation.LOCAL);
+            publication = aeron.addExclusivePublication(IPC_CHANNEL, streamId);
+            subscription = aeron.addSubscription(IPC_CHANNEL, streamId);
+
+            final AtomicBuffer inMemoryBuffer = new UnsafeBuffer(new byte[BUFFER_SIZE]);
+            writer = new SequenceNumberIndexWriter(new SequenceNumberExtractor(),
+                inMemoryBuffer, MappedFile.map(indexFilePath, BUFFER_SIZE), errorHandler, streamId, recordingIdLookup,
+                DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS, clock, null,
+                new Long2LongHashMap(UNK_SESSION),
+                FixPProtocolType.ILINK_3, DEFAULT_INDEX_CHECKSUM_ENABLED, true, 0);
+            reader = new SequenceNumberIndexReader(inMemoryBuffer, errorHandler, recordingIdLookup, null);
+            indexer = new Indexer(
+                singletonList(writer), subscription, "test", new CompletionPosition(), REPLAY_STREAM_ID);
+        }
+
+        void indexMessage(final int sequenceNumber)
+        {
+            final long position = writeMessage(sequenceNumber);
+
+            Image image = null;
+            while (image == null || image.position() < position)
+            {
+                if (image == null)
+                {
+                    image = subscription.imageBySessionId(publication.sessionId());
+                }
+
+                if (image != null)
+                {
+                    image.poll(writer, 1);
+                }
+            }
+        }
+
+        void writeMessagesUpTo(final int lastSequenceNumber)
+        {
+            for (int sequenceNumber = 2; sequenceNumber <= lastSequenceNumber; sequenceNumber++)
+            {
+                writeMessage(sequenceNumber);
+            }
+        }
+
+        void stopRecording()
+        {
+            final long recordingId = recordingIdLookup.getRecordingId(publication.sessionId());
+            final long position = publication.position();
+            aeronArchive.stopRecording(IPC_CHANNEL, streamId);
+
+            long stopPosition;
+            while ((stopPosition = aeronArchive.getStopPosition(recordingId)) == NULL_POSITION)
+            {
+                Thread.yield();
+            }
+            assertEquals(position, stopPosition);
+        }
+
+        // Each thread uses its own archive client, as the engine does when catching up in parallel
+        void catchIndexUp()
+        {
+            try (AeronArchive archive = AeronArchive.connect(aeronArchiveContext()))
+            {
+                indexer.catchIndexUp(archive, errorHandler, mock(AtomicCounter.class), mock(AtomicCounter.class));
+            }
+        }
+
+        private long writeMessage(final int sequenceNumber)
+        {
+            bufferContainsExampleMessage(false, sessionId, sequenceNumber, SEQUENCE_INDEX);
+
+            long position = 0;
+            while (position < 1)
+            {
+                position = publication.offer(buffer, START, fragmentLength());
+
+                Thread.yield();
+            }
+            return position;
+        }
+
+        public void close()
+        {
+            CloseHelper.closeAll(writer, subscription, publication);
+            deleteFiles();
+        }
+
+        private void deleteFiles()
+        {
+            deleteIfExists(new File(indexFilePath));
+            deleteIfExists(writableFile(indexFilePath));
+            deleteIfExists(passingFile(indexFilePath));
+            deleteIfExists(journalFile(indexFilePath));
+        }
+    }
+}
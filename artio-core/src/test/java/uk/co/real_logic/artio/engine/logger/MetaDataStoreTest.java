@@ -0,0 +1,281 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.CloseHelper;
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.collections.IntHashSet;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
+import uk.co.real_logic.artio.messages.MetaDataStatus;
+import uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static uk.co.real_logic.artio.engine.logger.MetaDataStore.*;
+import static uk.co.real_logic.artio.engine.logger.SequenceNumberIndexDescriptor.*;
+
+public class MetaDataStoreTest
+{
+    private static final File STORE_FILE = new File(IoUtil.tmpDirName() + "/metadata-store");
+    private static final int SMALL_LENGTH = 8;
+    private static final int LARGE_LENGTH = 200;
+    private static final int INDEX_LENGTH = 16 * 1024;
+    private static final long SESSION_ID = 1;
+
+    private final ErrorHandler errorHandler = mock(ErrorHandler.class);
+    private final UnsafeBuffer src = new UnsafeBuffer(new byte[INITIAL_FILE_LENGTH * 2]);
+    private final AtomicBuffer indexBuffer = new UnsafeBuffer(new byte[INDEX_LENGTH]);
+    private final LastKnownSequenceNumberEncoder lastKnownEncoder = new LastKnownSequenceNumberEncoder();
+    private MetaDataStore store;
+    private SequenceNumberIndexReader reader;
+
+    @Before
+    public void setUp()
+    {
+        IoUtil.deleteIfExists(STORE_FILE);
+        for (int i = 0; i < src.capacity(); i++)
+        {
+            src.putByte(i, (byte)i);
+        }
+        store = new MetaDataStore(STORE_FILE, errorHandler);
+    }
+
+    @After
+    public void tearDown()
+    {
+        CloseHelper.closeAll(reader, store);
+        IoUtil.deleteIfExists(STORE_FILE);
+        verify(errorHandler, never()).onError(any());
+    }
+
+    @Test
+    public void shouldUpdateInPlaceWithinSizeClass()
+    {
+        final int position = store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH);
+        assertTrue(isStorePosition(position));
+
+        assertEquals(position, store.write(position, src, 100, 4, SMALL_LENGTH));
+
+        final UnsafeBuffer metaData = read(position);
+        assertEquals(4 + SMALL_LENGTH, metaData.capacity());
+        assertEquals(src.getInt(0), metaData.getInt(0));
+        assertEquals(src.getLong(100), metaData.getLong(4));
+    }
+
+    @Test
+    public void shouldKeepPrefixWhenMovingToLargerSlot()
+    {
+        final int position = store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH);
+        final int movedPosition = store.write(position, src, 300, SMALL_LENGTH, LARGE_LENGTH);
+        assertNotEquals(position, movedPosition);
+
+        final UnsafeBuffer metaData = read(movedPosition);
+        assertEquals(SMALL_LENGTH + LARGE_LENGTH, metaData.capacity());
+        assertEquals(src.getLong(0), metaData.getLong(0));
+        assertEquals(src.getLong(300), metaData.getLong(SMALL_LENGTH));
+    }
+
+    @Test
+    public void shouldOnlyReuseFreedSlotsOnceIndexFlushed()
+    {
+        final int position = store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH);
+        store.free(position);
+
+        final int otherPosition = store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH);
+        assertNotEquals(position, otherPosition);
+
+        store.onIndexFlushed();
+        assertEquals(position, store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH));
+    }
+
+    @Test
+    public void shouldReclaimUnreferencedSlotsOnRestart()
+    {
+        final int position = store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH);
+        final int unreferencedPosition = store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH);
+        store.close();
+
+        store = new MetaDataStore(STORE_FILE, errorHandler);
+        final IntHashSet referencedPositions = new IntHashSet();
+        referencedPositions.add(position);
+        store.reclaimUnreferencedSlots(referencedPositions);
+
+        assertEquals(unreferencedPosition, store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH));
+        assertEquals(src.getLong(0), read(position).getLong(0));
+    }
+
+    @Test
+    public void shouldGrowFile()
+    {
+        final int length = INITIAL_FILE_LENGTH + 1;
+        final int position = store.write(NO_META_DATA, src, 0, 0, length);
+
+        final UnsafeBuffer metaData = read(position);
+        assertEquals(length, metaData.capacity());
+        assertEquals(src.getByte(length - 1), metaData.getByte(length - 1));
+    }
+
+    @Test
+    public void shouldBumpSlotVersionAroundEachWrite()
+    {
+        final int position = store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH);
+        assertEquals(2, slotVersion(position));
+
+        store.write(position, src, 100, 4, SMALL_LENGTH);
+        assertEquals(4, slotVersion(position));
+    }
+
+    @Test
+    public void shouldReadACopyOfMetaDataThatIsUpdatedInPlace()
+    {
+        final int position = store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH);
+        newReader(position);
+
+        final UnsafeBuffer metaData = new UnsafeBuffer();
+        assertEquals(MetaDataStatus.OK, reader.wrapMetaData(SESSION_ID, metaData));
+
+        store.write(position, src, 100, 0, SMALL_LENGTH);
+
+        assertEquals(SMALL_LENGTH, metaData.capacity());
+        assertEquals(src.getLong(0), metaData.getLong(0));
+    }
+
+    @Test
+    public void shouldRemapWhenMetaDataMovesBeyondTheEndOfTheMapping()
+    {
+        final int position = store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH);
+        newReader(position);
+
+        final UnsafeBuffer metaData = new UnsafeBuffer();
+        assertEquals(MetaDataStatus.OK, reader.wrapMetaData(SESSION_ID, metaData));
+
+        final int length = INITIAL_FILE_LENGTH + 1;
+        final int movedPosition = store.write(position, src, 0, 0, length);
+        lastKnownEncoder.metaDataPosition(movedPosition);
+
+        assertEquals(MetaDataStatus.OK, reader.wrapMetaData(SESSION_ID, metaData));
+        assertEquals(length, metaData.capacity());
+        assertEquals(src.getByte(length - 1), metaData.getByte(length - 1));
+    }
+
+    @Test
+    public void shouldNotReadMetaDataWhilstItIsBeingWritten()
+    {
+        final int position = store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH);
+        newReader(position);
+
+        final UnsafeBuffer metaData = new UnsafeBuffer();
+        putSlotVersion(position, 3);
+        assertEquals(MetaDataStatus.FILE_ERROR, reader.wrapMetaData(SESSION_ID, metaData));
+
+        putSlotVersion(position, 4);
+        assertEquals(MetaDataStatus.OK, reader.wrapMetaData(SESSION_ID, metaData));
+        assertEquals(src.getLong(0), metaData.getLong(0));
+    }
+
+    @Test
+    public void shouldMakeSlotVersionsEvenWhenReopenedAfterACrashMidWrite()
+    {
+        final int position = store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH);
+        store.close();
+        putSlotVersion(position, 3);
+
+        store = new MetaDataStore(STORE_FILE, errorHandler);
+        assertEquals(4, slotVersion(position));
+
+        newReader(position);
+        final UnsafeBuffer metaData = new UnsafeBuffer();
+        assertEquals(MetaDataStatus.OK, reader.wrapMetaData(SESSION_ID, metaData));
+
+        store.write(position, src, 100, 0, SMALL_LENGTH);
+        assertEquals(6, slotVersion(position));
+        assertEquals(MetaDataStatus.OK, reader.wrapMetaData(SESSION_ID, metaData));
+        assertEquals(src.getLong(100), metaData.getLong(0));
+    }
+
+    @Test
+    public void shouldBumpSlotVersionsWhenReset()
+    {
+        final int position = store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH);
+        final int otherPosition = store.write(NO_META_DATA, src, 0, 0, LARGE_LENGTH);
+
+        store.reset();
+
+        assertEquals(4, slotVersion(position));
+        assertEquals(4, slotVersion(otherPosition));
+        assertEquals(0, read(position).capacity());
+
+        assertEquals(position, store.write(NO_META_DATA, src, 0, 0, SMALL_LENGTH));
+        assertEquals(6, slotVersion(position));
+    }
+
+    private void newReader(final int position)
+    {
+        final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+        lastKnownEncoder.wrapAndApplyHeader(indexBuffer, 0, headerEncoder);
+
+        final int slot = homeSlot(SESSION_ID, slotCount(positionTableOffset(INDEX_LENGTH)));
+        lastKnownEncoder
+            .wrap(indexBuffer, recordOffset(slot))
+            .sessionId(SESSION_ID)
+            .sequenceNumber(1)
+            .metaDataPosition(position);
+
+        reader = new SequenceNumberIndexReader(indexBuffer, errorHandler, null, IoUtil.tmpDirName());
+    }
+
+    private long slotVersion(final int position)
+    {
+        final MappedByteBuffer mappedBuffer = IoUtil.mapExistingFile(STORE_FILE, READ_ONLY, "metadata store");
+        final long version = new UnsafeBuffer(mappedBuffer).getLong(slotOffset(position) + SLOT_VERSION_OFFSET);
+        IoUtil.unmap(mappedBuffer);
+        return version;
+    }
+
+    private void putSlotVersion(final int position, final long version)
+    {
+        final MappedByteBuffer mappedBuffer = IoUtil.mapExistingFile(STORE_FILE, "metadata store");
+        new UnsafeBuffer(mappedBuffer).putLongVolatile(slotOffset(position) + SLOT_VERSION_OFFSET, version);
+        IoUtil.unmap(mappedBuffer);
+    }
+
+    private UnsafeBuffer read(final int position)
+    {
+        final MappedByteBuffer mappedBuffer = IoUtil.mapExistingFile(STORE_FILE, READ_ONLY, "metadata store");
+        final UnsafeBuffer buffer = new UnsafeBuffer(mappedBuffer);
+        final int slotOffset = slotOffset(position);
+        final int length = buffer.getInt(slotOffset + SLOT_LENGTH_OFFSET);
+        final byte[] metaData = new byte[length];
+        buffer.getBytes(slotOffset + SLOT_HEADER_LENGTH, metaData);
+        IoUtil.unmap(mappedBuffer);
+        return new UnsafeBuffer(metaData);
+    }
+}
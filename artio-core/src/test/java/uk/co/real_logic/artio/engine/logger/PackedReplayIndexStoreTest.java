@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.CloseHelper;
+import org.agrona.IoUtil;
+import org.agrona.collections.LongHashSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Objects;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PackedReplayIndexStoreTest
+{
+    private static final String LOG_FILE_DIR = IoUtil.tmpDirName() + "packed-replay-index-store-test";
+    private static final int STREAM_ID = 1;
+    private static final int INDEX_CAPACITY = 8;
+    private static final int INDEX_SEGMENT_CAPACITY = 4;
+    private static final int SESSION_CAPACITY = 4;
+    private static final int SEGMENT_SIZE = ReplayIndexDescriptor.capacityToBytesInt(INDEX_SEGMENT_CAPACITY);
+
+    private static final long SESSION_ID = 1;
+    private static final long OTHER_SESSION_ID = 2;
+    private static final long THIRD_SESSION_ID = 3;
+
+    private PackedReplayIndexStore writer;
+    private PackedReplayIndexStore reader;
+
+    @Before
+    public void setUp()
+    {
+        IoUtil.delete(new File(LOG_FILE_DIR), true);
+        writer = newStore(true);
+        reader = newStore(false);
+    }
+
+    @After
+    public void tearDown()
+    {
+        CloseHelper.closeAll(reader, writer);
+        IoUtil.delete(new File(LOG_FILE_DIR), true);
+    }
+
+    @Test
+    public void shouldStoreManySessionsInSharedFiles()
+    {
+        write(SESSION_ID, 0, 1);
+        write(OTHER_SESSION_ID, 0, 2);
+        write(OTHER_SESSION_ID, 1, 3);
+        write(THIRD_SESSION_ID, 0, 4);
+
+        // The allocation table and a single block file
+        assertEquals(2, Objects.requireNonNull(new File(LOG_FILE_DIR).listFiles()).length);
+
+        assertThat(reader.sessionIds(), containsInAnyOrder(SESSION_ID, OTHER_SESSION_ID, THIRD_SESSION_ID));
+        assertRead(SESSION_ID, 0, 1);
+        assertRead(OTHER_SESSION_ID, 0, 2);
+        assertRead(OTHER_SESSION_ID, 1, 3);
+        assertRead(THIRD_SESSION_ID, 0, 4);
+    }
+
+    @Test
+    public void shouldShareHeaderBetweenWriterAndReader()
+    {
+        final ReplayIndexStore.Session writerSession = writer.openSession(SESSION_ID);
+        assertTrue(writerSession.isNew());
+        ReplayIndexDescriptor.beginChangeOrdered(writerSession.headerBuffer(), 64);
+
+        final ReplayIndexStore.Session readerSession = reader.openExistingSession(SESSION_ID);
+        assertEquals(64, ReplayIndexDescriptor.beginChangeVolatile(readerSession.headerBuffer()));
+        assertFalse(writer.openSession(SESSION_ID).isNew());
+    }
+
+    @Test
+    public void shouldReuseStorageOfDeletedSessions()
+    {
+        write(SESSION_ID, 0, 1);
+        final ReplayIndexStore.Session readerSession = reader.openExistingSession(SESSION_ID);
+        assertTrue(readerSession.isValid());
+
+        writer.deleteSession(SESSION_ID);
+
+        assertFalse(readerSession.isValid());
+        assertFalse(writer.hasSession(SESSION_ID));
+        assertFalse(reader.hasSession(SESSION_ID));
+
+        final ReplayIndexStore.Session newSession = writer.openSession(OTHER_SESSION_ID);
+        assertTrue(newSession.isNew());
+        assertEquals(0, newSession.headerBuffer().getLong(0));
+        // Reused blocks are cleared as readers stop at the first unwritten record
+        assertEquals(0, newSession.segmentBuffer(0).getLong(0));
+        assertEquals(2, Objects.requireNonNull(new File(LOG_FILE_DIR).listFiles()).length);
+    }
+
+    @Test
+    public void shouldReloadAllocationsOnRestart()
+    {
+        write(SESSION_ID, 0, 1);
+        write(OTHER_SESSION_ID, 0, 2);
+        writer.deleteSession(SESSION_ID);
+        writer.close();
+
+        writer = newStore(true);
+        assertTrue(writer.hasSession(OTHER_SESSION_ID));
+        assertFalse(writer.hasSession(SESSION_ID));
+        assertFalse(writer.openSession(OTHER_SESSION_ID).isNew());
+
+        write(THIRD_SESSION_ID, 0, 3);
+        assertRead(OTHER_SESSION_ID, 0, 2);
+        assertRead(THIRD_SESSION_ID, 0, 3);
+    }
+
+    @Test
+    public void shouldRejectSessionsBeyondCapacity()
+    {
+        for (int i = 0; i < SESSION_CAPACITY; i++)
+        {
+            writer.openSession(i);
+        }
+
+        try
+        {
+            writer.openSession(SESSION_CAPACITY);
+            fail("Should have thrown");
+        }
+        catch (final IllegalStateException e)
+        {
+            // Deliberately blank
+        }
+
+        writer.deleteSession(0);
+        assertTrue(writer.openSession(SESSION_CAPACITY).isNew());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotOpenMissingSessionForReading()
+    {
+        reader.openExistingSession(SESSION_ID);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectChangedConfiguration()
+    {
+        writer.close();
+
+        writer = new PackedReplayIndexStore(
+            LOG_FILE_DIR, STREAM_ID, INDEX_CAPACITY * 2, INDEX_SEGMENT_CAPACITY, SESSION_CAPACITY, true);
+    }
+
+    @Test
+    public void shouldListNoSessionsBeforeTableCreated()
+    {
+        final PackedReplayIndexStore otherStreamReader = new PackedReplayIndexStore(
+            LOG_FILE_DIR, STREAM_ID + 1, INDEX_CAPACITY, INDEX_SEGMENT_CAPACITY, SESSION_CAPACITY, false);
+        try
+        {
+            assertEquals(new LongHashSet(), otherStreamReader.sessionIds());
+            assertFalse(otherStreamReader.hasSession(SESSION_ID));
+        }
+        finally
+        {
+            otherStreamReader.close();
+        }
+    }
+
+    private PackedReplayIndexStore newStore(final boolean writable)
+    {
+        return new PackedReplayIndexStore(
+            LOG_FILE_DIR, STREAM_ID, INDEX_CAPACITY, INDEX_SEGMENT_CAPACITY, SESSION_CAPACITY, writable);
+    }
+
+    private void write(final long sessionId, final int segmentIndex, final long value)
+    {
+        final ReplayIndexStore.Session session = writer.openSession(sessionId);
+        session.segmentBuffer(segmentIndex).putLong(SEGMENT_SIZE - 8, value);
+        session.close();
+    }
+
+    private void assertRead(final long sessionId, final int segmentIndex, final long value)
+    {
+        final ReplayIndexStore.Session session = reader.openExistingSession(sessionId);
+        assertTrue(session.isValid());
+        assertEquals(value, session.segmentBuffer(segmentIndex).getLong(SEGMENT_SIZE - 8));
+        session.close();
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import io.aeron.logbuffer.ControlledFragmentHandler.Action;
+import io.aeron.logbuffer.Header;
+import org.agrona.BitUtil;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.LogTag;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.ABORT;
+import static io.aeron.logbuffer.ControlledFragmentHandler.Action.CONTINUE;
+import static io.aeron.logbuffer.FrameDescriptor.*;
+import static io.aeron.protocol.DataHeaderFlyweight.HEADER_LENGTH;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ReplayCacheTest extends AbstractLogTest
+{
+    private static final long RECORDING_ID = 3;
+    private static final int AERON_SESSION_ID = 4;
+    private static final int CAPACITY = 4096;
+
+    private final RecordingIdLookup recordingIdLookup = mock(RecordingIdLookup.class);
+    private final AtomicCounter hits = mock(AtomicCounter.class);
+    private final AtomicCounter misses = mock(AtomicCounter.class);
+    private final Header fragmentHeader = mock(Header.class);
+    private final List<byte[]> indexedMessages = new ArrayList<>();
+    private final List<byte[]> replayedMessages = new ArrayList<>();
+    private final List<Long> replayedPositions = new ArrayList<>();
+    private final Deque<Action> actions = new ArrayDeque<>();
+    private final ControlledFragmentHandler handler = (buffer, offset, length, header) ->
+    {
+        final Action action = actions.isEmpty() ? CONTINUE : actions.poll();
+        if (action != ABORT)
+        {
+            final byte[] message = new byte[length];
+            buffer.getBytes(offset, message);
+            replayedMessages.add(message);
+            replayedPositions.add(header.position());
+            assertEquals(AERON_SESSION_ID, header.sessionId());
+            assertEquals(STREAM_ID, header.streamId());
+            assertEquals(UNFRAGMENTED, header.flags());
+        }
+        return action;
+    };
+    private final FixMessageTracker tracker = new FixMessageTracker(LogTag.REPLAY, handler, SESSION_ID);
+    private final ReplayCache.Cursor cursor = new ReplayCache.Cursor();
+    private final List<Long> beginPositions = new ArrayList<>();
+
+    private ReplayCache replayCache = newReplayCache(CAPACITY);
+    private long position = 0;
+
+    @Before
+    public void setUp()
+    {
+        when(recordingIdLookup.getRecordingId(AERON_SESSION_ID)).thenReturn(RECORDING_ID);
+        when(fragmentHeader.streamId()).thenReturn(STREAM_ID);
+        when(fragmentHeader.sessionId()).thenReturn(AERON_SESSION_ID);
+    }
+
+    @Test
+    public void shouldReplayCachedMessages()
+    {
+        indexMessages(1, 3, UNFRAGMENTED);
+
+        assertTrue(replay(0, 3, 3));
+
+        assertEquals(3, tracker.count);
+        assertEquals(position, cursor.recordingPosition);
+        assertReplayedMessages(0, 3);
+        verify(hits).increment();
+        verifyNoInteractions(misses);
+    }
+
+    @Test
+    public void shouldReplayPartOfCachedMessages()
+    {
+        indexMessages(1, 5, UNFRAGMENTED);
+
+        assertTrue(replay(1, 3, 2));
+
+        assertEquals(2, tracker.count);
+        assertEquals((long)beginPositions.get(3), cursor.recordingPosition);
+        assertReplayedMessages(1, 3);
+        verify(hits).increment();
+        verifyNoInteractions(misses);
+    }
+
+    @Test
+    public void shouldReplayExactLengthOfMessagesThatAreNotAligned()
+    {
+        indexMessages(8, 11, UNFRAGMENTED);
+
+        assertTrue(indexedMessages.stream().anyMatch(message -> message.length % 8 != 0));
+        assertTrue(replay(0, 4, 4));
+
+        assertEquals(4, tracker.count);
+        assertReplayedMessages(0, 4);
+    }
+
+    @Test
+    public void shouldMissRangesThatWereNotCached()
+    {
+        indexMessages(1, 2, UNFRAGMENTED);
+
+        assertEquals(ReplayCache.MISSING, replayCache.lookup(RECORDING_ID, position));
+        assertEquals(ReplayCache.MISSING, replayCache.lookup(RECORDING_ID + 1, 0));
+
+        verify(misses, times(2)).increment();
+        verifyNoInteractions(hits);
+    }
+
+    @Test
+    public void shouldEvictOldestMessages()
+    {
+        replayCache = newReplayCache(1024);
+        indexMessages(1, 20, UNFRAGMENTED);
+
+        assertEquals(ReplayCache.MISSING, replayCache.lookup(RECORDING_ID, beginPositions.get(0)));
+        assertTrue(replay(19, 20, 1));
+        assertEquals(1, tracker.count);
+        assertReplayedMessages(19, 20);
+    }
+
+    @Test
+    public void shouldContinueReplayAfterAbort()
+    {
+        indexMessages(1, 2, UNFRAGMENTED);
+        actions.add(ABORT);
+
+        assertTrue(replay(0, 2, 2));
+        assertEquals(0, tracker.count);
+        assertEquals((long)beginPositions.get(0), cursor.recordingPosition);
+        assertReplayedMessages(0, 0);
+        verifyNoInteractions(hits);
+
+        assertTrue(replayCache.replay(cursor, RECORDING_ID, position, tracker, 2));
+        assertEquals(2, tracker.count);
+        assertEquals(position, cursor.recordingPosition);
+        assertReplayedMessages(0, 2);
+        verify(hits).increment();
+        verifyNoInteractions(misses);
+    }
+
+    @Test
+    public void shouldFallBackToArchiveForFragmentedMessages()
+    {
+        indexMessages(1, 1, UNFRAGMENTED);
+        indexMessages(2, 2, BEGIN_FRAG_FLAG);
+        indexMessages(3, 3, UNFRAGMENTED);
+
+        assertFalse(replay(0, 3, 3));
+
+        assertEquals(1, tracker.count);
+        assertEquals((long)beginPositions.get(1), cursor.recordingPosition);
+        assertReplayedMessages(0, 1);
+        verify(misses).increment();
+        verifyNoInteractions(hits);
+    }
+
+    @Test
+    public void shouldFallBackToArchiveWhenMessagesAreEvictedDuringReplay()
+    {
+        replayCache = newReplayCache(1024);
+        indexMessages(1, 3, UNFRAGMENTED);
+        actions.add(ABORT);
+
+        assertTrue(replay(0, 3, 3));
+        indexMessages(4, 20, UNFRAGMENTED);
+
+        assertFalse(replayCache.replay(cursor, RECORDING_ID, beginPositions.get(3), tracker, 3));
+        assertEquals((long)beginPositions.get(0), cursor.recordingPosition);
+        assertReplayedMessages(0, 0);
+        verify(misses).increment();
+        verifyNoInteractions(hits);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequirePowerOfTwoCapacity()
+    {
+        newReplayCache(1000);
+    }
+
+    private ReplayCache newReplayCache(final int capacity)
+    {
+        return new ReplayCache(capacity, STREAM_ID, recordingIdLookup, hits, misses);
+    }
+
+    private boolean replay(final int fromIndex, final int toIndex, final int count)
+    {
+        final long beginPosition = beginPositions.get(fromIndex);
+        final long endPosition = toIndex < beginPositions.size() ? beginPositions.get(toIndex) : position;
+        final long ringPosition = replayCache.lookup(RECORDING_ID, beginPosition);
+        assertNotEquals(ReplayCache.MISSING, ringPosition);
+
+        tracker.reset(count);
+        cursor.reset(ringPosition, beginPosition);
+        return replayCache.replay(cursor, RECORDING_ID, endPosition, tracker, count);
+    }
+
+    private void assertReplayedMessages(final int fromIndex, final int toIndex)
+    {
+        assertEquals(toIndex - fromIndex, replayedMessages.size());
+        for (int i = fromIndex; i < toIndex; i++)
+        {
+            final int replayedIndex = i - fromIndex;
+            assertArrayEquals(indexedMessages.get(i), replayedMessages.get(replayedIndex));
+            final long endPosition = i + 1 < beginPositions.size() ? beginPositions.get(i + 1) : position;
+            assertEquals(endPosition, (long)replayedPositions.get(replayedIndex));
+        }
+    }
+
+    private void indexMessages(final int fromSequenceNumber, final int toSequenceNumber, final byte flags)
+    {
+        when(fragmentHeader.flags()).thenReturn(flags);
+        for (int sequenceNumber = fromSequenceNumber; sequenceNumber <= toSequenceNumber; sequenceNumber++)
+        {
+            bufferContainsExampleMessage(false, SESSION_ID, sequenceNumber, SEQUENCE_INDEX);
+            final int length = fragmentLength();
+            final byte[] message = new byte[length];
+            buffer.getBytes(START, message);
+            indexedMessages.add(message);
+
+            beginPositions.add(position);
+            position += BitUtil.align(length + HEADER_LENGTH, FRAME_ALIGNMENT);
+            when(fragmentHeader.position()).thenReturn(position);
+
+            replayCache.onFragment(buffer, START, length, fragmentHeader);
+        }
+    }
+}
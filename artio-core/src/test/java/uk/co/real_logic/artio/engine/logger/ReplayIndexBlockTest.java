@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+import uk.co.real_logic.artio.storage.messages.ReplayIndexBlockDecoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static uk.co.real_logic.artio.engine.logger.ReplayIndexBlock.BLOCK_LENGTH;
+
+public class ReplayIndexBlockTest
+{
+    private static final int OFFSET = BLOCK_LENGTH;
+    private static final int SEQUENCE_INDEX = 2;
+    private static final long RECORDING_ID = 3;
+    private static final int LENGTH = 256;
+
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[BLOCK_LENGTH * 3]);
+    private final ReplayIndexBlock.Writer writer = new ReplayIndexBlock.Writer();
+    private final ReplayIndexBlock.Reader reader = new ReplayIndexBlock.Reader();
+
+    @Test
+    public void shouldDecodeAppendedRecords()
+    {
+        writer.start(buffer, OFFSET, 1024, 1, SEQUENCE_INDEX, RECORDING_ID, LENGTH);
+        assertTrue(writer.append(1024 + LENGTH, 2, SEQUENCE_INDEX, RECORDING_ID, 64));
+        assertTrue(writer.append(1024 + LENGTH + 64, 2, SEQUENCE_INDEX, RECORDING_ID, 32 * 1024));
+        assertTrue(writer.append(1024 + 2 * LENGTH, 1, SEQUENCE_INDEX, RECORDING_ID, LENGTH));
+
+        assertEquals(4, read());
+        assertEquals(SEQUENCE_INDEX, reader.sequenceIndex());
+        assertEquals(RECORDING_ID, reader.recordingId());
+        assertRecord(0, 1024, 1, LENGTH);
+        assertRecord(1, 1024 + LENGTH, 2, 64);
+        assertRecord(2, 1024 + LENGTH + 64, 2, 32 * 1024);
+        assertRecord(3, 1024 + 2 * LENGTH, 1, LENGTH);
+    }
+
+    @Test
+    public void shouldNotAppendRecordsThatDontShareTheBlocksHeader()
+    {
+        writer.start(buffer, OFFSET, 1024, 1, SEQUENCE_INDEX, RECORDING_ID, LENGTH);
+
+        assertFalse(writer.append(1024 + LENGTH, 1, SEQUENCE_INDEX + 1, RECORDING_ID, LENGTH));
+        assertFalse(writer.append(1024 + LENGTH, 2, SEQUENCE_INDEX, RECORDING_ID + 1, LENGTH));
+        assertFalse(writer.append(1024 + LENGTH + 1, 2, SEQUENCE_INDEX, RECORDING_ID, LENGTH));
+        assertEquals(1, read());
+    }
+
+    @Test
+    public void shouldFillBlockWithoutOverrunningIt()
+    {
+        long position = 1024;
+        int sequenceNumber = 1;
+        writer.start(buffer, OFFSET, position, sequenceNumber, SEQUENCE_INDEX, RECORDING_ID, LENGTH);
+
+        int count = 1;
+        while (writer.append(position + LENGTH, sequenceNumber + 1, SEQUENCE_INDEX, RECORDING_ID, LENGTH))
+        {
+            position += LENGTH;
+            sequenceNumber++;
+            count++;
+        }
+
+        assertEquals(ReplayIndexBlock.MAX_RECORDS, count);
+        assertEquals(0, buffer.getLong(OFFSET + BLOCK_LENGTH));
+        assertEquals(count, read());
+        assertRecord(count - 1, position, sequenceNumber, LENGTH);
+    }
+
+    @Test
+    public void shouldNotReadUnstartedBlock()
+    {
+        assertEquals(0, read());
+    }
+
+    @Test
+    public void shouldUseBlockHeaderToSkipBlocks()
+    {
+        writer.start(buffer, OFFSET, 1024, 10, SEQUENCE_INDEX, RECORDING_ID, LENGTH);
+
+        assertTrue(startsBefore(11, SEQUENCE_INDEX));
+        assertTrue(startsBefore(1, SEQUENCE_INDEX + 1));
+        assertFalse(startsBefore(10, SEQUENCE_INDEX));
+        assertFalse(startsBefore(20, SEQUENCE_INDEX - 1));
+    }
+
+    private boolean startsBefore(final int sequenceNumber, final int sequenceIndex)
+    {
+        return reader.startsBefore(
+            buffer,
+            OFFSET,
+            ReplayIndexBlockDecoder.BLOCK_LENGTH,
+            ReplayIndexBlockDecoder.SCHEMA_VERSION,
+            sequenceNumber,
+            sequenceIndex);
+    }
+
+    private int read()
+    {
+        return reader.read(
+            buffer, OFFSET, ReplayIndexBlockDecoder.BLOCK_LENGTH, ReplayIndexBlockDecoder.SCHEMA_VERSION);
+    }
+
+    private void assertRecord(final int index, final long position, final int sequenceNumber, final int length)
+    {
+        assertEquals(position, reader.position(index));
+        assertEquals(sequenceNumber, reader.sequenceNumber(index));
+        assertEquals(length, reader.length(index));
+    }
+}
@@ -15,6 +15,7 @@
  */
 package uk.co.real_logic.artio.engine.logger;
 
+import com.sun.management.ThreadMXBean;
 import io.aeron.Aeron;
 import io.aeron.CommonContext;
 import io.aeron.ExclusivePublication;
@@ -45,6 +46,7 @@ import uk.co.real_logic.artio.protocol.GatewayPublication;
 import uk.co.real_logic.artio.session.Session;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
 import java.util.stream.IntStream;
 
@@ -52,6 +54,9 @@ import static io.aeron.Aeron.NULL_VALUE;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.Mockito.*;
 import static uk.co.real_logic.artio.CommonConfiguration.DEFAULT_INBOUND_MAX_CLAIM_ATTEMPTS;
 import static uk.co.real_logic.artio.LogTag.REPLAY;
@@ -325,6 +330,89 @@ public class ReplayIndexTest extends AbstractLogTest
             .accept(aeronSessionId, recordingId, alignedEndPosition());
     }
 
+    @Test(timeout = 20_000L)
+    public void shouldTrackRemainingBytesOfReplay()
+    {
+        indexExampleMessage();
+        indexExampleMessage(SESSION_ID, SEQUENCE_NUMBER + 1, SEQUENCE_INDEX);
+
+        final ReplayOperation operation = query.query(
+            SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX, SEQUENCE_NUMBER + 1, SEQUENCE_INDEX, REPLAY,
+            new FixMessageTracker(REPLAY, fakeHandler, SESSION_ID));
+
+        long rangeBytes = 0;
+        for (final RecordingRange range : operation.ranges())
+        {
+            rangeBytes += range.length;
+        }
+        assertThat(rangeBytes, greaterThan(0L));
+        assertEquals(rangeBytes, operation.remainingBytes());
+
+        final IdleStrategy idleStrategy = CommonConfiguration.backoffIdleStrategy();
+        while (!operation.pollReplay())
+        {
+            assertThat(operation.remainingBytes(), lessThanOrEqualTo(rangeBytes));
+            idleStrategy.idle();
+        }
+
+        assertEquals(0, operation.remainingBytes());
+        query.release(operation);
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldReuseReleasedReplayOperations()
+    {
+        indexExampleMessage();
+
+        final FixMessageTracker messageTracker = new FixMessageTracker(REPLAY, fakeHandler, SESSION_ID);
+        final ReplayOperation operation = query.query(
+            SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX, SEQUENCE_NUMBER, SEQUENCE_INDEX, REPLAY, messageTracker);
+        final RecordingRange range = operation.ranges().get(0);
+        query.release(operation);
+        query.release(operation);
+
+        final ReplayOperation reusedOperation = query.query(
+            SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX, SEQUENCE_NUMBER, SEQUENCE_INDEX, REPLAY, messageTracker);
+        assertSame(operation, reusedOperation);
+        assertSame(range, reusedOperation.ranges().get(0));
+        assertEquals(1, reusedOperation.ranges().size());
+
+        final ReplayOperation otherOperation = query.query(
+            SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX, SEQUENCE_NUMBER, SEQUENCE_INDEX, REPLAY, messageTracker);
+        assertNotSame(operation, otherOperation);
+
+        query.release(reusedOperation);
+        query.release(otherOperation);
+
+        assertEquals(1, query(SEQUENCE_NUMBER, SEQUENCE_INDEX, SEQUENCE_NUMBER, SEQUENCE_INDEX));
+        verifyMessagesRead(1);
+    }
+
+    @Test(timeout = 20_000L)
+    public void shouldNotAllocateWhenQueryingWithReleasedOperations()
+    {
+        final ThreadMXBean threadMXBean = ManagementFactory.getPlatformMXBean(ThreadMXBean.class);
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        indexExampleMessage();
+        indexExampleMessage(SESSION_ID, SEQUENCE_NUMBER + 1, SEQUENCE_INDEX);
+
+        // Only the query path is measured, the replay itself goes through the archive client.
+        final FixMessageTracker messageTracker = new FixMessageTracker(REPLAY, fakeHandler, SESSION_ID);
+        final long threadId = Thread.currentThread().getId();
+        queryAndRelease(messageTracker, 10_000);
+
+        final long overheadBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        final long measurementOverhead = threadMXBean.getThreadAllocatedBytes(threadId) - overheadBefore;
+
+        final long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        queryAndRelease(messageTracker, 1_000);
+        final long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertEquals(0, allocatedBytes - measurementOverhead);
+    }
+
     @Test(timeout = 20_000L)
     public void shouldOnlyMapSessionFileOnce()
     {
@@ -520,6 +608,17 @@ public class ReplayIndexTest extends AbstractLogTest
         return position;
     }
 
+    private void queryAndRelease(final FixMessageTracker messageTracker, final int times)
+    {
+        for (int i = 0; i < times; i++)
+        {
+            final ReplayOperation operation = query.query(
+                SESSION_ID, SEQUENCE_NUMBER, SEQUENCE_INDEX, MOST_RECENT_MESSAGE, SEQUENCE_INDEX, REPLAY,
+                messageTracker);
+            query.release(operation);
+        }
+    }
+
     private int query()
     {
         return query(SEQUENCE_NUMBER, SEQUENCE_INDEX, SEQUENCE_NUMBER, SEQUENCE_INDEX);
@@ -557,7 +656,9 @@ public class ReplayIndexTest extends AbstractLogTest
         }
         idleStrategy.reset();
 
-        return operation.replayedMessages();
+        final int replayedMessages = operation.replayedMessages();
+        query.release(operation);
+        return replayedMessages;
     }
 
     static class FakeMessageHandler implements ControlledFragmentHandler
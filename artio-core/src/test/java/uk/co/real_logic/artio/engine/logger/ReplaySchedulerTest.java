@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.collections.Long2ObjectHashMap;
+import org.junit.Test;
+import uk.co.real_logic.artio.timing.Timer;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ReplaySchedulerTest
+{
+    private static final int BYTES_PER_POLL = 1024;
+    private static final long LARGE_REPLAY_BYTES = 1024 * 1024 * 1024;
+    private static final long SMALL_REPLAY_BYTES = 500;
+
+    private final Timer queueWaitTimer = mock(Timer.class);
+    private final Long2ObjectHashMap<ReplayChannel> connectionIdToChannel = new Long2ObjectHashMap<>();
+
+    private ReplayScheduler scheduler = new ReplayScheduler(BYTES_PER_POLL, queueWaitTimer);
+
+    @Test
+    public void shouldServiceEveryReplayWithoutBudget()
+    {
+        scheduler = new ReplayScheduler(0, queueWaitTimer);
+        final ReplayChannel large = newChannel(1, LARGE_REPLAY_BYTES, 0);
+        final ReplayChannel small = newChannel(2, SMALL_REPLAY_BYTES, 0);
+
+        final List<ReplayChannel> channels = scheduler.schedule(connectionIdToChannel);
+
+        assertEquals(2, channels.size());
+        assertTrue(scheduler.service(large));
+        scheduler.consume(BYTES_PER_POLL * 2);
+        assertTrue(scheduler.hasBudget());
+        assertTrue(scheduler.service(small));
+        scheduler.consume(BYTES_PER_POLL * 2);
+        assertTrue(scheduler.hasBudget());
+    }
+
+    @Test
+    public void shouldServiceSmallestReplaysFirst()
+    {
+        final ReplayChannel large = newChannel(1, LARGE_REPLAY_BYTES, 0);
+        final ReplayChannel small = newChannel(2, SMALL_REPLAY_BYTES, 0);
+
+        final List<ReplayChannel> channels = scheduler.schedule(connectionIdToChannel);
+
+        assertSame(small, channels.get(0));
+        assertSame(large, channels.get(1));
+    }
+
+    @Test
+    public void shouldSkipReplaysOnceBudgetIsUsed()
+    {
+        final ReplayChannel large = newChannel(1, LARGE_REPLAY_BYTES, 0);
+        final ReplayChannel small = newChannel(2, SMALL_REPLAY_BYTES, 0);
+
+        scheduler.schedule(connectionIdToChannel);
+
+        assertTrue(scheduler.service(small));
+        assertTrue(scheduler.hasBudget());
+        scheduler.consume(BYTES_PER_POLL - 1);
+        assertTrue(scheduler.hasBudget());
+        scheduler.consume(BYTES_PER_POLL);
+        assertFalse(scheduler.hasBudget());
+
+        assertFalse(scheduler.service(large));
+        assertEquals(1, large.skippedPolls);
+
+        scheduler.schedule(connectionIdToChannel);
+        assertTrue(scheduler.hasBudget());
+    }
+
+    @Test
+    public void shouldNotUseBudgetForBackPressuredMessages()
+    {
+        final ReplayChannel channel = newChannel(1, SMALL_REPLAY_BYTES, 0);
+
+        scheduler.schedule(connectionIdToChannel);
+        assertTrue(scheduler.service(channel));
+
+        // A back-pressured claim checks the budget but doesn't consume it
+        for (int i = 0; i < 10; i++)
+        {
+            assertTrue(scheduler.hasBudget());
+        }
+
+        scheduler.consume(BYTES_PER_POLL);
+        assertFalse(scheduler.hasBudget());
+    }
+
+    @Test
+    public void shouldOrderReplaysByTheirRemainingBytes()
+    {
+        final ReplayerSession nearlyCompleteSession = newSession(LARGE_REPLAY_BYTES);
+        final ReplayChannel nearlyComplete = addChannel(1, nearlyCompleteSession, 0);
+        final ReplayChannel small = newChannel(2, SMALL_REPLAY_BYTES, 0);
+
+        assertSame(small, scheduler.schedule(connectionIdToChannel).get(0));
+
+        when(nearlyCompleteSession.remainingReplayBytes()).thenReturn(SMALL_REPLAY_BYTES - 1);
+
+        assertSame(nearlyComplete, scheduler.schedule(connectionIdToChannel).get(0));
+    }
+
+    @Test
+    public void shouldEventuallyServiceLargeReplaysFirst()
+    {
+        final ReplayChannel large = newChannel(1, LARGE_REPLAY_BYTES, 0);
+        final ReplayChannel small = newChannel(2, SMALL_REPLAY_BYTES, 0);
+
+        int polls = 0;
+        List<ReplayChannel> channels = scheduler.schedule(connectionIdToChannel);
+        while (channels.get(0) != large)
+        {
+            assertTrue(scheduler.service(small));
+            scheduler.consume(BYTES_PER_POLL);
+            assertFalse(scheduler.service(large));
+
+            small.skippedPolls = 0;
+            channels = scheduler.schedule(connectionIdToChannel);
+            polls++;
+        }
+
+        assertEquals(22, polls);
+        assertTrue(scheduler.service(large));
+        assertEquals(0, large.skippedPolls);
+    }
+
+    @Test
+    public void shouldRecordQueueWaitWhenReplayIsFirstServiced()
+    {
+        final long queuedTimeInNs = 123;
+        final ReplayChannel channel = newChannel(1, SMALL_REPLAY_BYTES, queuedTimeInNs);
+
+        scheduler.schedule(connectionIdToChannel);
+        assertTrue(scheduler.service(channel));
+        scheduler.schedule(connectionIdToChannel);
+        assertTrue(scheduler.service(channel));
+
+        verify(queueWaitTimer, times(1)).recordSince(queuedTimeInNs);
+
+        channel.startReplay(newSession(SMALL_REPLAY_BYTES), queuedTimeInNs + 1);
+        scheduler.schedule(connectionIdToChannel);
+        assertTrue(scheduler.service(channel));
+
+        verify(queueWaitTimer).recordSince(queuedTimeInNs + 1);
+    }
+
+    private ReplayChannel newChannel(final long connectionId, final long replayBytes, final long queuedTimeInNs)
+    {
+        return addChannel(connectionId, newSession(replayBytes), queuedTimeInNs);
+    }
+
+    private ReplayChannel addChannel(
+        final long connectionId, final ReplayerSession session, final long queuedTimeInNs)
+    {
+        final ReplayChannel channel = new ReplayChannel(connectionId, session, queuedTimeInNs);
+        connectionIdToChannel.put(connectionId, channel);
+        return channel;
+    }
+
+    private ReplayerSession newSession(final long replayBytes)
+    {
+        final ReplayerSession session = mock(ReplayerSession.class);
+        when(session.remainingReplayBytes()).thenReturn(replayBytes);
+        return session;
+    }
+}
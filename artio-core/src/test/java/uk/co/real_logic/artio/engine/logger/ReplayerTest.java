@@ -49,6 +49,7 @@ import uk.co.real_logic.artio.fields.UtcTimestampDecoder;
 import uk.co.real_logic.artio.messages.FixPProtocolType;
 import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
 import uk.co.real_logic.artio.messages.ReplayCompleteDecoder;
+import uk.co.real_logic.artio.timing.Timer;
 import uk.co.real_logic.artio.util.AsciiBuffer;
 import uk.co.real_logic.artio.util.MutableAsciiBuffer;
 
@@ -138,7 +139,8 @@ public class ReplayerTest extends AbstractLogTest
             DEFAULT_MAX_CONCURRENT_SESSION_REPLAYS,
             clock,
             FixPProtocolType.ILINK_3,
-            mock(EngineConfiguration.class));
+            mock(EngineConfiguration.class),
+            mock(Timer.class));
     }
 
     private void setReplayedMessages(final int replayedMessages)
@@ -533,6 +535,17 @@ public class ReplayerTest extends AbstractLogTest
         });
     }
 
+    @Test
+    public void shouldReplayMessageWithValidChecksumWhenOriginalChecksumIsWrong()
+    {
+        // The checksum of this message is wrong, so it can't be adjusted by the fields that have changed
+        final int checksumFieldStart = MESSAGE_REQUIRING_LONGER_BODY_LENGTH.length - "10=005\001".length();
+        final MutableAsciiBuffer message = new MutableAsciiBuffer(MESSAGE_REQUIRING_LONGER_BODY_LENGTH);
+        assertNotEquals(5, message.computeChecksum(0, checksumFieldStart));
+
+        shouldReplayMessageWithExpandingBodyLength();
+    }
+
     @Test
     public void shouldReplayMessageWithExpandingBodyLengthWhenBackPressured()
     {
@@ -700,8 +713,13 @@ public class ReplayerTest extends AbstractLogTest
     private void assertEndsWithValidChecksum(final int afterOffset)
     {
         final String message = resultAsciiBuffer.getAscii(afterOffset, resultAsciiBuffer.capacity() - afterOffset);
-        final Matcher matcher = Pattern.compile("10=\\d+\001").matcher(message);
+        final Matcher matcher = Pattern.compile("\00110=(\\d{3})\001").matcher(message);
         assertTrue(message, matcher.find());
+
+        // The checksum covers everything up to and including the separator before the checksum field
+        final int checksumFieldStart = afterOffset + matcher.start() + 1;
+        final int checksum = resultAsciiBuffer.computeChecksum(afterOffset, checksumFieldStart);
+        assertEquals(message, checksum, Integer.parseInt(matcher.group(1)));
     }
 
     private void hasNotOverwrittenSeperatorChar()
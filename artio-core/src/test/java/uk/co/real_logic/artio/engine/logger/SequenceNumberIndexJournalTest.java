@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.CloseHelper;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.engine.MappedFile;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static uk.co.real_logic.artio.engine.logger.SequenceNumberIndexJournal.*;
+
+public class SequenceNumberIndexJournalTest
+{
+    private static final File JOURNAL_FILE = new File(IoUtil.tmpDirName() + "/SequenceNumberIndex-journal");
+    private static final int JOURNAL_SIZE = 1024;
+    private static final int INDEX_SIZE = 256;
+    private static final int RECORD_OFFSET = 64;
+    private static final int OTHER_RECORD_OFFSET = 128;
+    private static final int RECORD_LENGTH = 32;
+
+    private final AtomicBuffer indexBuffer = new UnsafeBuffer(new byte[INDEX_SIZE]);
+    private final AtomicBuffer replayedBuffer = new UnsafeBuffer(new byte[INDEX_SIZE]);
+    private SequenceNumberIndexJournal journal;
+
+    @Before
+    public void setUp()
+    {
+        IoUtil.deleteIfExists(JOURNAL_FILE);
+        journal = new SequenceNumberIndexJournal(JOURNAL_FILE, JOURNAL_SIZE);
+        journal.reset(journal.checksum(indexBuffer, INDEX_SIZE));
+    }
+
+    @After
+    public void tearDown()
+    {
+        CloseHelper.close(journal);
+        IoUtil.deleteIfExists(JOURNAL_FILE);
+    }
+
+    @Test
+    public void shouldReplayEntriesInOrderAfterRestart()
+    {
+        append(RECORD_OFFSET, 1);
+        append(OTHER_RECORD_OFFSET, 2);
+        append(RECORD_OFFSET, 3);
+
+        assertEquals(3, replayAfterRestart());
+        assertEquals(3, replayedBuffer.getLong(RECORD_OFFSET));
+        assertEquals(2, replayedBuffer.getLong(OTHER_RECORD_OFFSET));
+    }
+
+    @Test
+    public void shouldStopReplayingAtTornEntry()
+    {
+        append(RECORD_OFFSET, 1);
+        append(OTHER_RECORD_OFFSET, 2);
+        journal.close();
+
+        try (MappedFile file = MappedFile.map(JOURNAL_FILE, JOURNAL_SIZE))
+        {
+            final int secondEntryPayload = HEADER_LENGTH + 2 * ENTRY_HEADER_LENGTH + RECORD_LENGTH;
+            file.buffer().putLong(secondEntryPayload, 5);
+        }
+
+        assertEquals(1, replayAfterRestart());
+        assertEquals(1, replayedBuffer.getLong(RECORD_OFFSET));
+        assertEquals(0, replayedBuffer.getLong(OTHER_RECORD_OFFSET));
+    }
+
+    @Test
+    public void shouldNotReplayEntriesFromBeforeReset()
+    {
+        append(RECORD_OFFSET, 1);
+        append(OTHER_RECORD_OFFSET, 2);
+        journal.reset(journal.checksum(indexBuffer, INDEX_SIZE));
+        append(RECORD_OFFSET, 3);
+
+        assertEquals(1, replayAfterRestart());
+        assertEquals(3, replayedBuffer.getLong(RECORD_OFFSET));
+        assertEquals(0, replayedBuffer.getLong(OTHER_RECORD_OFFSET));
+    }
+
+    @Test
+    public void shouldReplayResetEntries()
+    {
+        append(RECORD_OFFSET, 1);
+        assertTrue(journal.appendReset());
+
+        journal.close();
+        journal = new SequenceNumberIndexJournal(JOURNAL_FILE, JOURNAL_SIZE);
+        final int[] resetCount = new int[1];
+        assertEquals(2, journal.replay((journalBuffer, offset, indexOffset, length) ->
+        {
+            if (indexOffset == RESET_INDEX_OFFSET)
+            {
+                resetCount[0]++;
+            }
+        }));
+        assertEquals(1, resetCount[0]);
+    }
+
+    @Test
+    public void shouldRejectEntriesOnceFull()
+    {
+        int appended = 0;
+        while (journal.append(indexBuffer, RECORD_OFFSET, RECORD_LENGTH))
+        {
+            appended++;
+        }
+
+        final int entryLength = ENTRY_HEADER_LENGTH + RECORD_LENGTH;
+        assertEquals((JOURNAL_SIZE - HEADER_LENGTH) / entryLength, appended);
+        assertFalse(journal.appendReset());
+    }
+
+    @Test
+    public void shouldTieJournalToCheckpoint()
+    {
+        final int checksum = journal.checksum(indexBuffer, INDEX_SIZE);
+        assertEquals(checksum, journal.checkpointChecksum());
+
+        indexBuffer.putLong(RECORD_OFFSET, 1);
+        assertFalse(checksum == journal.checksum(indexBuffer, INDEX_SIZE));
+    }
+
+    private void append(final int recordOffset, final long value)
+    {
+        indexBuffer.putLong(recordOffset, value);
+        assertTrue(journal.append(indexBuffer, recordOffset, RECORD_LENGTH));
+    }
+
+    private int replayAfterRestart()
+    {
+        journal.close();
+        journal = new SequenceNumberIndexJournal(JOURNAL_FILE, JOURNAL_SIZE);
+        return journal.replay((journalBuffer, offset, indexOffset, length) ->
+            replayedBuffer.putBytes(indexOffset, journalBuffer, offset, length));
+    }
+}
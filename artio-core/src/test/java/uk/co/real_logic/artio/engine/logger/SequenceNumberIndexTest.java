@@ -39,11 +39,15 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import uk.co.real_logic.artio.FileSystemCorruptionException;
 import uk.co.real_logic.artio.dictionary.SessionConstants;
+import uk.co.real_logic.artio.engine.ChecksumFramer;
 import uk.co.real_logic.artio.engine.MappedFile;
 import uk.co.real_logic.artio.engine.SequenceNumberExtractor;
 import uk.co.real_logic.artio.engine.framer.FakeEpochClock;
 import uk.co.real_logic.artio.messages.FixPProtocolType;
+import uk.co.real_logic.artio.messages.MessageHeaderDecoder;
+import uk.co.real_logic.artio.messages.MessageHeaderEncoder;
 import uk.co.real_logic.artio.protocol.GatewayPublication;
+import uk.co.real_logic.artio.storage.messages.LastKnownSequenceNumberEncoder;
 
 import java.io.File;
 
@@ -70,6 +74,7 @@ public class SequenceNumberIndexTest extends AbstractLogTest
 {
     private static final int BUFFER_SIZE = 16 * 1024;
     private static final String INDEX_FILE_PATH = IoUtil.tmpDirName() + "/SequenceNumberIndex";
+    private static final int JOURNAL_SIZE = 4 * 1024;
 
     private final AtomicBuffer inMemoryBuffer = newBuffer();
 
@@ -310,6 +315,111 @@ public class SequenceNumberIndexTest extends AbstractLogTest
         }
     }
 
+    @Test
+    public void shouldRecoverJournaledRecordsAfterCrash()
+    {
+        writer.close();
+        writer = newWriter(inMemoryBuffer, JOURNAL_SIZE);
+
+        indexFixMessage();
+        clock.advanceMilliSeconds(DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS + 1);
+        assertEquals(1, writer.doWork());
+
+        // Restarting without closing the writer only leaves the journal to recover from
+        final SequenceNumberIndexReader newReader = newInstanceAfterRestart(JOURNAL_SIZE);
+        assertLastKnownSequenceNumberIs(SESSION_ID, SEQUENCE_NUMBER, newReader);
+    }
+
+    @Test
+    public void shouldRecoverJournaledResetAfterCrash()
+    {
+        writer.close();
+        writer = newWriter(inMemoryBuffer, JOURNAL_SIZE);
+
+        indexFixMessage();
+        clock.advanceMilliSeconds(DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS + 1);
+        assertEquals(1, writer.doWork());
+
+        writer.resetSequenceNumbers();
+        bufferContainsExampleMessage(true, SESSION_ID_2, SEQUENCE_NUMBER + 1, SEQUENCE_INDEX);
+        indexRecord();
+        clock.advanceMilliSeconds(DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS + 1);
+        assertEquals(1, writer.doWork());
+
+        final SequenceNumberIndexReader newReader = newInstanceAfterRestart(JOURNAL_SIZE);
+        assertLastKnownSequenceNumberIs(SESSION_ID, UNK_SESSION, newReader);
+        assertLastKnownSequenceNumberIs(SESSION_ID_2, SEQUENCE_NUMBER + 1, newReader);
+    }
+
+    @Test
+    public void shouldCheckpointWhenJournalIsFull()
+    {
+        writer.close();
+        writer = newWriter(inMemoryBuffer, JOURNAL_SIZE);
+
+        final int sessionCount = JOURNAL_SIZE / RECORD_SIZE;
+        for (int i = 1; i <= sessionCount; i++)
+        {
+            bufferContainsExampleMessage(true, i, i, SEQUENCE_INDEX);
+            indexRecord();
+        }
+        clock.advanceMilliSeconds(DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS + 1);
+        assertEquals(1, writer.doWork());
+
+        try (MappedFile mappedFile = newIndexFile())
+        {
+            final SequenceNumberIndexReader newReader = new SequenceNumberIndexReader(
+                mappedFile.buffer(), errorHandler, recordingIdLookup, null);
+
+            assertLastKnownSequenceNumberIs(sessionCount, sessionCount, newReader);
+        }
+    }
+
+    @Test
+    public void shouldMigrateAppendedRecordsToHashedSlots()
+    {
+        writer.close();
+        deleteFiles();
+
+        final int sessionCount = 3;
+        try (MappedFile mappedFile = newIndexFile())
+        {
+            final AtomicBuffer fileBuffer = mappedFile.buffer();
+            final LastKnownSequenceNumberEncoder lastKnownEncoder = new LastKnownSequenceNumberEncoder();
+            new MessageHeaderEncoder()
+                .wrap(fileBuffer, 0)
+                .blockLength(lastKnownEncoder.sbeBlockLength())
+                .templateId(lastKnownEncoder.sbeTemplateId())
+                .schemaId(lastKnownEncoder.sbeSchemaId())
+                .version(HASHED_SLOTS_SINCE_VERSION - 1);
+
+            for (int slot = 0; slot < sessionCount; slot++)
+            {
+                lastKnownEncoder
+                    .wrap(fileBuffer, recordOffset(slot))
+                    .sessionId(SESSION_ID + slot)
+                    .sequenceNumber(SEQUENCE_NUMBER + slot)
+                    .metaDataPosition(NO_META_DATA);
+            }
+
+            new ChecksumFramer(fileBuffer, positionTableOffset(BUFFER_SIZE), errorHandler, 0, "", true)
+                .updateChecksums();
+        }
+
+        writer = newWriter(inMemoryBuffer);
+
+        for (int i = 0; i < sessionCount; i++)
+        {
+            assertLastKnownSequenceNumberIs(SESSION_ID + i, SEQUENCE_NUMBER + i);
+        }
+
+        try (MappedFile mappedFile = newIndexFile())
+        {
+            final MessageHeaderDecoder fileHeader = new MessageHeaderDecoder().wrap(mappedFile.buffer(), 0);
+            assertEquals(LastKnownSequenceNumberEncoder.SCHEMA_VERSION, fileHeader.version());
+        }
+    }
+
     /**
      * Simulate scenario that you've crashed halfway through file flip.
      */
@@ -453,20 +563,30 @@ public class SequenceNumberIndexTest extends AbstractLogTest
     }
 
     private SequenceNumberIndexReader newInstanceAfterRestart()
+    {
+        return newInstanceAfterRestart(0);
+    }
+
+    private SequenceNumberIndexReader newInstanceAfterRestart(final int journalSize)
     {
         final AtomicBuffer inMemoryBuffer = newBuffer();
-        newWriter(inMemoryBuffer).close();
+        newWriter(inMemoryBuffer, journalSize).close();
         return new SequenceNumberIndexReader(inMemoryBuffer, errorHandler, recordingIdLookup, null);
     }
 
     private SequenceNumberIndexWriter newWriter(final AtomicBuffer inMemoryBuffer)
+    {
+        return newWriter(inMemoryBuffer, 0);
+    }
+
+    private SequenceNumberIndexWriter newWriter(final AtomicBuffer inMemoryBuffer, final int journalSize)
     {
         final MappedFile indexFile = newIndexFile();
         return new SequenceNumberIndexWriter(new SequenceNumberExtractor(),
             inMemoryBuffer, indexFile, errorHandler, STREAM_ID, recordingIdLookup,
             DEFAULT_INDEX_FILE_STATE_FLUSH_TIMEOUT_IN_MS, clock, null,
             new Long2LongHashMap(UNK_SESSION),
-            FixPProtocolType.ILINK_3, DEFAULT_INDEX_CHECKSUM_ENABLED, true);
+            FixPProtocolType.ILINK_3, DEFAULT_INDEX_CHECKSUM_ENABLED, true, journalSize);
     }
 
     private MappedFile newIndexFile()
@@ -555,5 +675,6 @@ public class SequenceNumberIndexTest extends AbstractLogTest
         deleteIfExists(new File(INDEX_FILE_PATH));
         deleteIfExists(writableFile(INDEX_FILE_PATH));
         deleteIfExists(passingFile(INDEX_FILE_PATH));
+        deleteIfExists(journalFile(INDEX_FILE_PATH));
     }
 }
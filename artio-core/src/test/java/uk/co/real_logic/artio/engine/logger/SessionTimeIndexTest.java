@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited, Adaptive Financial Consulting Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.engine.logger;
+
+import org.agrona.ErrorHandler;
+import org.agrona.IoUtil;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.artio.dictionary.generation.Exceptions;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static uk.co.real_logic.artio.engine.EngineConfiguration.*;
+
+public class SessionTimeIndexTest
+{
+    private static final long SESSION_ID = 1;
+    private static final long OTHER_SESSION_ID = 2;
+    private static final long NEW_SESSION_ID = 5;
+    private static final int RECORD_CAPACITY = 16;
+    private static final long REC_ID = 3;
+    private static final long REC_ID_2 = 4;
+    private static final int LENGTH = 128;
+    private static final int SEQUENCE_INDEX = 0;
+    private static final long TIMESTAMP_STEP_IN_NS = 1_000;
+
+    private final ErrorHandler errorHandler = spy(new ErrorHandler()
+    {
+        public void onError(final Throwable throwable)
+        {
+            throwable.printStackTrace();
+        }
+    });
+
+    private final SessionTimeIndexReader reader = new SessionTimeIndexReader(
+        DEFAULT_LOG_FILE_DIR, DEFAULT_OUTBOUND_LIBRARY_STREAM);
+    private final Long2ObjectHashMap<PositionRange> recordingIdToPositionRange = new Long2ObjectHashMap<>();
+    private final IndexQuery query = new IndexQuery();
+
+    private SessionTimeIndexWriter writer;
+
+    @Before
+    public void setup()
+    {
+        final File logFileDir = new File(DEFAULT_LOG_FILE_DIR);
+        if (logFileDir.exists())
+        {
+            IoUtil.delete(logFileDir, false);
+        }
+        assertTrue(logFileDir.mkdirs());
+
+        newWriter();
+
+        // Sequence numbers 1 to 10 for each session, with the second half of each in a second recording
+        for (int sequenceNumber = 1; sequenceNumber <= 10; sequenceNumber++)
+        {
+            final long recordingId = sequenceNumber <= 5 ? REC_ID : REC_ID_2;
+            writer.onRecord(
+                SESSION_ID, timestamp(sequenceNumber), recordingId, position(sequenceNumber), LENGTH,
+                sequenceNumber, SEQUENCE_INDEX);
+            writer.onRecord(
+                OTHER_SESSION_ID, timestamp(sequenceNumber), recordingId, position(sequenceNumber) + LENGTH, LENGTH,
+                sequenceNumber, SEQUENCE_INDEX);
+        }
+    }
+
+    @After
+    public void teardown()
+    {
+        verifyNoInteractions(errorHandler);
+        Exceptions.closeAll(reader, writer);
+    }
+
+    @Test
+    public void shouldNarrowRangeToSessionsRecordsWithinTimeRange()
+    {
+        query.sessionId(SESSION_ID);
+        query.from(timestamp(2));
+        query.to(timestamp(4));
+
+        assertTrue(findPositionRange());
+        assertEquals(recordingIdToPositionRange.toString(), 1, recordingIdToPositionRange.size());
+        assertPositions(REC_ID, position(2), position(3) + LENGTH);
+    }
+
+    @Test
+    public void shouldNarrowRangeOfEachRecording()
+    {
+        query.sessionId(SESSION_ID);
+        query.from(timestamp(4));
+        query.to(timestamp(8));
+
+        assertTrue(findPositionRange());
+        assertEquals(recordingIdToPositionRange.toString(), 2, recordingIdToPositionRange.size());
+        assertPositions(REC_ID, position(4), position(5) + LENGTH);
+        assertPositions(REC_ID_2, position(6), position(7) + LENGTH);
+    }
+
+    @Test
+    public void shouldAnswerQueriesForRecordsAsSoonAsTheyAreWritten()
+    {
+        writeRecords(SESSION_ID, 11, 11);
+
+        query.sessionId(SESSION_ID);
+        query.from(timestamp(9));
+        query.to(timestamp(12));
+        assertFalse(findPositionRange());
+
+        writeRecords(SESSION_ID, 12, 12);
+
+        assertTrue(findPositionRange());
+        assertPositions(REC_ID_2, position(9), position(11) + LENGTH);
+    }
+
+    @Test
+    public void shouldNotAnswerQueriesOutsideOfIndexedTimes()
+    {
+        query.sessionId(SESSION_ID);
+        query.from(timestamp(0));
+        query.to(timestamp(4));
+        assertFalse(findPositionRange());
+
+        final IndexQuery laterQuery = new IndexQuery();
+        laterQuery.sessionId(SESSION_ID);
+        laterQuery.from(timestamp(2));
+        laterQuery.to(timestamp(11));
+        assertFalse(reader.findPositionRange(laterQuery, recordingIdToPositionRange));
+
+        final IndexQuery unknownSessionQuery = new IndexQuery();
+        unknownSessionQuery.sessionId(OTHER_SESSION_ID + 1);
+        unknownSessionQuery.from(timestamp(2));
+        unknownSessionQuery.to(timestamp(4));
+        assertFalse(reader.findPositionRange(unknownSessionQuery, recordingIdToPositionRange));
+
+        assertTrue(recordingIdToPositionRange.isEmpty());
+    }
+
+    @Test
+    public void shouldOverwriteOldestRecordsOnceTheRingIsFull()
+    {
+        writeRecords(SESSION_ID, 11, 20);
+
+        query.sessionId(SESSION_ID);
+        query.from(timestamp(4));
+        query.to(timestamp(6));
+        assertFalse(findPositionRange());
+
+        final IndexQuery retainedQuery = new IndexQuery();
+        retainedQuery.sessionId(SESSION_ID);
+        retainedQuery.from(timestamp(5));
+        retainedQuery.to(timestamp(20));
+        assertTrue(reader.findPositionRange(retainedQuery, recordingIdToPositionRange));
+        assertPositions(REC_ID, position(5), position(5) + LENGTH);
+        assertPositions(REC_ID_2, position(6), position(19) + LENGTH);
+    }
+
+    @Test
+    public void shouldDiscardSessionsIndexWhenSequenceNumbersReset()
+    {
+        final long fileLength = SessionTimeIndexWriter.fileLocation(
+            DEFAULT_LOG_FILE_DIR, DEFAULT_OUTBOUND_LIBRARY_STREAM).length();
+
+        writer.onResetSequenceNumber(SESSION_ID);
+
+        query.sessionId(SESSION_ID);
+        query.from(timestamp(2));
+        query.to(timestamp(4));
+        assertFalse(findPositionRange());
+
+        final IndexQuery otherSessionQuery = new IndexQuery();
+        otherSessionQuery.sessionId(OTHER_SESSION_ID);
+        otherSessionQuery.from(timestamp(2));
+        otherSessionQuery.to(timestamp(4));
+        assertTrue(reader.findPositionRange(otherSessionQuery, recordingIdToPositionRange));
+
+        // A new session reuses the slot without seeing the records of the reset session
+        writeRecords(NEW_SESSION_ID, 21, 23);
+        final IndexQuery newSessionQuery = new IndexQuery();
+        newSessionQuery.sessionId(NEW_SESSION_ID);
+        newSessionQuery.from(timestamp(2));
+        newSessionQuery.to(timestamp(22));
+        assertFalse(reader.findPositionRange(newSessionQuery, recordingIdToPositionRange));
+
+        recordingIdToPositionRange.clear();
+        newSessionQuery.from(timestamp(21));
+        assertTrue(reader.findPositionRange(newSessionQuery, recordingIdToPositionRange));
+        assertEquals(recordingIdToPositionRange.toString(), 1, recordingIdToPositionRange.size());
+        assertPositions(REC_ID_2, position(21), position(21) + LENGTH);
+
+        assertEquals(fileLength, SessionTimeIndexWriter.fileLocation(
+            DEFAULT_LOG_FILE_DIR, DEFAULT_OUTBOUND_LIBRARY_STREAM).length());
+    }
+
+    @Test
+    public void shouldAppendToIndexAfterRestart()
+    {
+        writer.close();
+        newWriter();
+
+        writeRecords(SESSION_ID, 11, 12);
+
+        query.sessionId(SESSION_ID);
+        query.from(timestamp(9));
+        query.to(timestamp(12));
+
+        assertTrue(findPositionRange());
+        assertPositions(REC_ID_2, position(9), position(11) + LENGTH);
+    }
+
+    private void newWriter()
+    {
+        writer = new SessionTimeIndexWriter(
+            DEFAULT_LOG_FILE_DIR,
+            DEFAULT_OUTBOUND_LIBRARY_STREAM,
+            RECORD_CAPACITY,
+            errorHandler);
+    }
+
+    private void writeRecords(final long sessionId, final int fromSequenceNumber, final int toSequenceNumber)
+    {
+        for (int sequenceNumber = fromSequenceNumber; sequenceNumber <= toSequenceNumber; sequenceNumber++)
+        {
+            writer.onRecord(
+                sessionId, timestamp(sequenceNumber), REC_ID_2, position(sequenceNumber), LENGTH,
+                sequenceNumber, SEQUENCE_INDEX);
+        }
+    }
+
+    private boolean findPositionRange()
+    {
+        return reader.findPositionRange(query, recordingIdToPositionRange);
+    }
+
+    private static long timestamp(final int sequenceNumber)
+    {
+        return sequenceNumber * TIMESTAMP_STEP_IN_NS;
+    }
+
+    private static long position(final int sequenceNumber)
+    {
+        return sequenceNumber * 2L * LENGTH;
+    }
+
+    private void assertPositions(final long recordingId, final long startPosition, final long endPosition)
+    {
+        final PositionRange positionRange = recordingIdToPositionRange.get(recordingId);
+        assertEquals(recordingIdToPositionRange.toString(), startPosition, positionRange.startPosition());
+        assertEquals(recordingIdToPositionRange.toString(), endPosition, positionRange.endPosition());
+    }
+}
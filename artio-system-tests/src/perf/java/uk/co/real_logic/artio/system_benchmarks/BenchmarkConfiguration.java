@@ -15,10 +15,17 @@
  */
 package uk.co.real_logic.artio.system_benchmarks;
 
+import org.agrona.LangUtil;
 import org.agrona.concurrent.IdleStrategy;
 import org.agrona.concurrent.NoOpIdleStrategy;
 import org.agrona.concurrent.YieldingIdleStrategy;
 
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
 import java.util.concurrent.TimeUnit;
 
 import static io.aeron.CommonContext.IPC_CHANNEL;
@@ -44,6 +51,40 @@ public final class BenchmarkConfiguration
         "fix.benchmark.logout_linger_timeout", TimeUnit.SECONDS.toMillis(2));
     public static final String VALID_PASSWORD = "password";
     public static final char[] VALID_PASSWORD_CHARS = VALID_PASSWORD.toCharArray();
+    public static final boolean TLS = Boolean.getBoolean("fix.benchmark.tls");
+    // Generated by bench/tls-keystore.sh, used as both the key store and the trust store
+    public static final String TLS_KEY_STORE = System.getProperty("fix.benchmark.tls_key_store", "artio-bench.p12");
+    public static final String TLS_KEY_STORE_PASSWORD =
+        System.getProperty("fix.benchmark.tls_key_store_password", "artio-bench");
+
+    static SSLContext sslContext()
+    {
+        try
+        {
+            final char[] password = TLS_KEY_STORE_PASSWORD.toCharArray();
+            final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            try (InputStream in = new FileInputStream(TLS_KEY_STORE))
+            {
+                keyStore.load(in, password);
+            }
+
+            final KeyManagerFactory keyManagerFactory =
+                KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, password);
+            final TrustManagerFactory trustManagerFactory =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init(keyStore);
+
+            final SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+            return sslContext;
+        }
+        catch (final Exception ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+            return null;
+        }
+    }
 
     static IdleStrategy idleStrategy()
     {
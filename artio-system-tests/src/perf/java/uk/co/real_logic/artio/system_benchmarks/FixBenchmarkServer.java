@@ -92,6 +92,15 @@ public final class FixBenchmarkServer
 
         configuration.authenticationStrategy(new BenchmarkAuthenticationStrategy());
 
+        if (TLS)
+        {
+            System.out.println("Accepting TLS connections");
+            configuration.acceptorSslContext(sslContext());
+        }
+
+        System.out.println(
+            "Receiver buffer compaction threshold: " + configuration.receiverBufferCompactionThreshold());
+
         return configuration
             .bindTo("localhost", BenchmarkConfiguration.PORT)
             .libraryAeronChannel(AERON_CHANNEL)
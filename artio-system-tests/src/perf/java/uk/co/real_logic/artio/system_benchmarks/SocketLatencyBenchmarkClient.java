@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2024 Real Logic Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.artio.system_benchmarks;
+
+import org.HdrHistogram.Histogram;
+import uk.co.real_logic.artio.builder.Encoder;
+import uk.co.real_logic.artio.builder.HeaderEncoder;
+import uk.co.real_logic.artio.builder.LogonEncoder;
+import uk.co.real_logic.artio.builder.TestRequestEncoder;
+import uk.co.real_logic.artio.timing.HistogramLogReader;
+
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+import static uk.co.real_logic.artio.system_benchmarks.BenchmarkConfiguration.*;
+
+/**
+ * Latency benchmark that uses the same blocking socket code for both plain TCP and TLS connections, so that the
+ * overhead of terminating TLS within the engine can be compared with plain TCP. Run the {@link FixBenchmarkServer}
+ * and this client with <code>-Dfix.benchmark.tls=true</code> for TLS, using a key store generated by
+ * <code>bench/tls-keystore.sh</code>, and without it for plain TCP.
+ */
+public final class SocketLatencyBenchmarkClient extends AbstractBenchmarkClient
+{
+    private final byte[] writeBytes = new byte[BUFFER_SIZE];
+    private final byte[] readBytes = new byte[BUFFER_SIZE];
+
+    public static void main(final String[] args) throws IOException
+    {
+        new SocketLatencyBenchmarkClient().runBenchmark();
+    }
+
+    public void runBenchmark() throws IOException
+    {
+        System.out.printf("Connecting using %s%n", TLS ? "TLS" : "plain TCP");
+        while (true)
+        {
+            try (Socket socket = openSocket())
+            {
+                final InputStream in = socket.getInputStream();
+                final OutputStream out = socket.getOutputStream();
+
+                logon(in, out);
+
+                final TestRequestEncoder testRequest = setupTestRequest();
+                final HeaderEncoder header = testRequest.header();
+                final Histogram histogram = new Histogram(3);
+
+                for (int i = 0; i < WARMUP_MESSAGES; i++)
+                {
+                    exchangeMessage(in, out, testRequest, header, i, histogram);
+                }
+                System.out.println("Warmup Complete");
+
+                parkAfterWarmup();
+
+                histogram.reset();
+                for (int i = 0; i < MESSAGES_EXCHANGED; i++)
+                {
+                    exchangeMessage(in, out, testRequest, header, WARMUP_MESSAGES + i, histogram);
+                }
+
+                HistogramLogReader.prettyPrint(
+                    System.currentTimeMillis(), histogram, (TLS ? "TLS" : "TCP") + " Client in Micros", 1000);
+            }
+        }
+    }
+
+    private Socket openSocket() throws IOException
+    {
+        final Socket socket;
+        if (TLS)
+        {
+            final SSLSocket sslSocket = (SSLSocket)sslContext().getSocketFactory().createSocket(HOST, PORT);
+            sslSocket.startHandshake();
+            socket = sslSocket;
+        }
+        else
+        {
+            socket = new Socket(HOST, PORT);
+        }
+
+        socket.setTcpNoDelay(true);
+        socket.setReceiveBufferSize(1024 * 1024);
+        return socket;
+    }
+
+    private void logon(final InputStream in, final OutputStream out) throws IOException
+    {
+        final LogonEncoder logon = new LogonEncoder();
+        logon.heartBtInt(10);
+        logon.password(VALID_PASSWORD_CHARS);
+        setupHeader(INITIATOR_ID, logon.header())
+            .msgSeqNum(1);
+
+        timestampEncoder.encode(System.currentTimeMillis());
+
+        write(out, logon.encode(writeFlyweight, 0));
+        read(in);
+    }
+
+    private void exchangeMessage(
+        final InputStream in,
+        final OutputStream out,
+        final TestRequestEncoder testRequest,
+        final HeaderEncoder header,
+        final int index,
+        final Histogram histogram)
+        throws IOException
+    {
+        header.msgSeqNum(index + 2);
+        timestampEncoder.encode(System.currentTimeMillis());
+
+        final long result = testRequest.encode(writeFlyweight, 0);
+
+        final long sendingTime = System.nanoTime();
+        write(out, result);
+
+        read(in);
+        final long returnTime = System.nanoTime();
+        histogram.recordValue(returnTime - sendingTime);
+    }
+
+    private void write(final OutputStream out, final long result) throws IOException
+    {
+        final int length = Encoder.length(result);
+        writeFlyweight.getBytes(Encoder.offset(result), writeBytes, 0, length);
+        out.write(writeBytes, 0, length);
+        out.flush();
+    }
+
+    private void read(final InputStream in) throws IOException
+    {
+        if (in.read(readBytes) < 0)
+        {
+            throw new IOException("Disconnected");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+#!/bin/sh
+
+# Generates the self-signed key store used by the TLS latency benchmark, run the server and
+# client with -Dfix.benchmark.tls=true from the directory that contains it.
+
+set -eu
+
+rm -f artio-bench.p12
+
+keytool -genkeypair \
+  -alias artio-bench \
+  -keyalg EC \
+  -keysize 256 \
+  -dname CN=localhost \
+  -validity 365 \
+  -storetype PKCS12 \
+  -keystore artio-bench.p12 \
+  -storepass artio-bench \
+  -keypass artio-bench